@@ -1,9 +1,11 @@
 package com.kehu.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.servlet.MultipartConfigFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -12,6 +14,15 @@ import javax.servlet.MultipartConfigElement;
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
+    // 异步请求超时（流式输出所有客户等接口在异步线程中写响应，容器默认的30秒不够输出整表）
+    @Value("${customer.stream.timeout-ms:3600000}")
+    private long asyncTimeoutMs;
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setDefaultTimeout(asyncTimeoutMs);
+    }
+
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         registry.addInterceptor(new AuthInterceptor())
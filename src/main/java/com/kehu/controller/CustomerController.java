@@ -1,34 +1,70 @@
 package com.kehu.controller;
 
+import com.kehu.dto.BatchDeleteRequest;
+import com.kehu.dto.BulkUpdateRequest;
+import com.kehu.dto.CountEstimate;
+import com.kehu.dto.CustomerRow;
+import com.kehu.dto.KeysetPage;
 import com.kehu.entity.Customer;
 import com.kehu.entity.CustomerRemark;
 import com.kehu.entity.UploadTask;
 import com.kehu.entity.User;
 import com.kehu.util.FileMultipartFile;
+import com.kehu.util.PageCursor;
+import com.kehu.service.BackgroundJob;
+import com.kehu.service.BatchQueryJobService;
 import com.kehu.service.ChunkUploadService;
+import com.kehu.service.CustomerBulkUpdateService;
+import com.kehu.service.CustomerExportService;
 import com.kehu.service.CustomerService;
+import com.kehu.service.CustomerPhoneBackfillService;
+import com.kehu.service.CustomerPhoneIndex;
+import com.kehu.service.CustomerPurgeService;
 import com.kehu.service.CustomerRemarkService;
+import com.kehu.service.CustomerSearchIndex;
+import com.kehu.service.CustomerSelectionService;
 import com.kehu.service.ExcelImportService;
+import com.kehu.service.ImportContext;
 import com.kehu.service.OperationLogService;
 import com.kehu.service.UploadTaskService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Slice;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 
 @RestController
@@ -53,33 +89,108 @@ public class CustomerController {
     @Autowired
     private ChunkUploadService chunkUploadService;
 
+    @Autowired
+    private CustomerSearchIndex customerSearchIndex;
+
+    @Autowired
+    private CustomerPhoneIndex customerPhoneIndex;
+
+    @Autowired
+    private CustomerPhoneBackfillService customerPhoneBackfillService;
+
     @Autowired
     private com.kehu.service.FileUploadService fileUploadService;  // 保留用于旧的接口（已废弃但未删除）
 
+    @Autowired
+    private CustomerExportService customerExportService;
+
+    @Autowired
+    private BatchQueryJobService batchQueryJobService;
+
+    @Autowired
+    private CustomerPurgeService customerPurgeService;
+
+    @Autowired
+    private CustomerSelectionService customerSelectionService;
+
+    @Autowired
+    private CustomerBulkUpdateService customerBulkUpdateService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // 流式输出时每写多少行刷新一次（客户端断开时在刷新时发现并停止读取）
+    @Value("${customer.stream.flush-rows:500}")
+    private int streamFlushRows;
+
+    // 批量查询（非流式）每次最多的查询项数
+    @Value("${customer.batch-query.max-items:10000}")
+    private int batchQueryMaxItems;
+
+    // 流式批量查询每批匹配的查询项数
+    @Value("${customer.batch-query.chunk-size:1000}")
+    private int batchQueryChunkSize;
+
     private static final Logger logger = LoggerFactory.getLogger(CustomerController.class);
 
     /**
-     * 获取所有客户（不分页，适用于数据量较小的情况）
+     * 获取所有客户（流式输出，内存占用与客户数量无关）
+     * 数据库使用只向前读取的游标，边读边写，每 customer.stream.flush-rows 行刷新一次；客户端断开后停止读取
+     * @param format json（默认）：{"success":true,"data":[...],"total":N,"message":"查询成功"}，total 在数据之后输出；
+     *               ndjson：每行一个客户
      */
     @GetMapping("/all")
-    public ResponseEntity<Map<String, Object>> getAllCustomers() {
-        Map<String, Object> response = new HashMap<>();
-        try {
-            List<Customer> customers = customerService.getAllCustomers();
-            response.put("success", true);
-            response.put("data", customers);
-            response.put("total", customers.size());
-            response.put("message", "查询成功");
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            response.put("success", false);
-            response.put("message", "查询失败: " + e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
-        }
+    public ResponseEntity<StreamingResponseBody> getAllCustomers(@RequestParam(defaultValue = "json") String format) {
+        boolean ndjson = "ndjson".equalsIgnoreCase(format);
+        StreamingResponseBody body = out -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+            // 由容器关闭输出流
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // NDJSON 的行之间只用换行分隔（默认在顶层值之间加空格）
+            generator.setRootValueSeparator(null);
+            if (!ndjson) {
+                generator.writeStartObject();
+                generator.writeBooleanField("success", true);
+                generator.writeArrayFieldStart("data");
+            }
+            long startTime = System.currentTimeMillis();
+            long[] written = {0};
+            long total;
+            try {
+                total = customerService.streamAllRows(row -> {
+                    generator.writeObject(row);
+                    if (ndjson) {
+                        generator.writeRaw('\n');
+                    }
+                    if (++written[0] % streamFlushRows == 0) {
+                        generator.flush();
+                    }
+                });
+            } catch (IOException e) {
+                logger.info("客户端已断开，停止输出所有客户: {}", e.getMessage());
+                return;
+            } catch (Exception e) {
+                logger.error("输出所有客户失败", e);
+                // 继续抛出，让容器中止响应：还没有输出时返回错误状态，已开始输出时连接被中断，客户端不会把截断的数据当作完整结果
+                throw new IllegalStateException("输出所有客户失败: " + e.getMessage(), e);
+            }
+            if (!ndjson) {
+                generator.writeEndArray();
+                generator.writeNumberField("total", total);
+                generator.writeStringField("message", "查询成功");
+                generator.writeEndObject();
+            }
+            generator.flush();
+            logger.debug("输出所有客户: {} 条, 耗时={}ms", total, System.currentTimeMillis() - startTime);
+        };
+        return ResponseEntity.ok()
+            .contentType(ndjson ? MediaType.parseMediaType("application/x-ndjson;charset=UTF-8") : MediaType.APPLICATION_JSON)
+            .body(body);
     }
 
     /**
      * 分页查询客户（支持大数据量）
+     * 不统计总数（多取一条判断是否有下一页），总数通过 /count 单独获取
      * @param page 页码（从0开始，默认0）
      * @param size 每页大小（默认20）
      * @return 分页结果
@@ -87,51 +198,35 @@ public class CustomerController {
     @GetMapping
     public ResponseEntity<Map<String, Object>> getCustomers(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size) {
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(required = false) Long beforeId) {
         Map<String, Object> response = new HashMap<>();
         try {
-            Page<Customer> customerPage = customerService.getAllCustomers(page, size);
-            
-            logger.debug("查询客户数据: page={}, size={}, total={}, totalPages={}, currentPageSize={}", 
-                page, size, customerPage.getTotalElements(), customerPage.getTotalPages(), customerPage.getContent().size());
-            
-            // 为每个客户添加关联的文件名
-            List<Map<String, Object>> customerDataList = new ArrayList<>();
-            for (Customer customer : customerPage.getContent()) {
-                Map<String, Object> customerMap = new HashMap<>();
-                customerMap.put("id", customer.getId());
-                customerMap.put("name", customer.getName());
-                customerMap.put("phone", customer.getPhone());
-                customerMap.put("email", customer.getEmail());
-                customerMap.put("address", customer.getAddress());
-                customerMap.put("uploadTaskId", customer.getUploadTaskId());
-                customerMap.put("createTime", customer.getCreateTime());
-                customerMap.put("updateTime", customer.getUpdateTime());
-                
-                // 获取关联的文件名
-                if (customer.getUploadTaskId() != null) {
-                    Optional<UploadTask> taskOpt = uploadTaskService.getTaskById(customer.getUploadTaskId());
-                    if (taskOpt.isPresent()) {
-                        customerMap.put("uploadFileName", taskOpt.get().getFileName());
-                    } else {
-                        customerMap.put("uploadFileName", "");
-                    }
-                } else {
-                    customerMap.put("uploadFileName", "");
-                }
-                
-                customerDataList.add(customerMap);
+            // 键集分页：传了游标（或afterId/beforeId）时按id范围定位，不再使用 LIMIT offset
+            PageCursor pageCursor = keysetCursor(cursor, afterId, beforeId);
+            if (pageCursor != null) {
+                KeysetPage<CustomerRow> keysetPage = customerService.getCustomersByCursor(pageCursor, size);
+                putKeysetPage(response, keysetPage, size);
+                response.put("message", "查询成功");
+                return ResponseEntity.ok(response);
             }
             
-            response.put("success", true);
-            response.put("data", customerDataList);
-            response.put("total", customerPage.getTotalElements());
-            response.put("totalPages", customerPage.getTotalPages());
-            response.put("currentPage", page);
-            response.put("pageSize", size);
-            response.put("message", "查询成功，共 " + customerPage.getTotalElements() + " 条记录");
+            Slice<CustomerRow> customerSlice = customerService.getCustomersSlice(page, size);
+            
+            logger.debug("查询客户数据: page={}, size={}, hasNext={}, currentPageSize={}", 
+                page, size, customerSlice.hasNext(), customerSlice.getContent().size());
+            
+            putSlice(response, customerSlice, page, size);
+            response.put("message", "查询成功");
             
             return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            // 分页游标无效
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
         } catch (Exception e) {
             // 查询错误不需要记录日志
             response.put("success", false);
@@ -140,17 +235,375 @@ public class CustomerController {
         }
     }
 
+    /**
+     * 导出客户（条件同 /advanced-search），边查询边输出
+     * @param format csv（默认，gzip 压缩的 .csv.gz）或 xlsx
+     * @param selection 选择集令牌（指定时按选择集导出，忽略其他条件）
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportCustomers(
+            @RequestParam(defaultValue = CustomerExportService.FORMAT_CSV) String format,
+            @RequestParam(required = false) String selection,
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String phone,
+            @RequestParam(required = false) String email,
+            @RequestParam(required = false) String address,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(required = false) Long uploadTaskId,
+            @RequestParam(defaultValue = "false") boolean startsWith,
+            HttpSession session,
+            HttpServletRequest request) {
+        if (!CustomerExportService.isSupportedFormat(format)) {
+            return ResponseEntity.badRequest().build();
+        }
+        User user = (User) session.getAttribute("user");
+        String clientIp = getClientIpAddress(request);
+        Roaring64Bitmap selectedIds;
+        try {
+            selectedIds = selection != null ? getSelectedIds(selection, user) : null;
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        }
+        StreamingResponseBody body = out -> {
+            long startMillis = System.currentTimeMillis();
+            long rows;
+            try {
+                rows = selectedIds != null
+                    ? customerExportService.export(format, selectedIds, out, null)
+                    : customerExportService.export(format, name, phone, email, address, startTime, endTime,
+                        uploadTaskId, startsWith, out, null);
+            } catch (IOException e) {
+                logger.info("客户端已断开，停止导出: {}", e.getMessage());
+                return;
+            } catch (Exception e) {
+                logger.error("导出客户失败", e);
+                if (user != null) {
+                    operationLogService.logFailure(user.getUsername(), "EXPORT", "CUSTOMER", "导出客户失败",
+                        clientIp, null, e.getMessage());
+                }
+                // 继续抛出，让容器中止响应：xlsx 还没有输出时返回错误状态，已开始输出时连接被中断，下载明确失败
+                throw new IllegalStateException("导出客户失败: " + e.getMessage(), e);
+            }
+            logger.info("导出客户: {} 条（{}）, 耗时={}ms", rows, format, System.currentTimeMillis() - startMillis);
+            if (user != null) {
+                operationLogService.logSuccess(user.getUsername(), "EXPORT", "CUSTOMER",
+                    "导出客户: " + rows + " 条（" + format + "）", clientIp, null);
+            }
+        };
+        return ResponseEntity.ok()
+            .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(CustomerExportService.fileName(format), StandardCharsets.UTF_8).build().toString())
+            .contentType(MediaType.APPLICATION_OCTET_STREAM)
+            .body(body);
+    }
+
+    /**
+     * 提交后台导出任务（条件同 /export，也可以指定选择集），导出到文件，完成后通过 /export/jobs/{id}/file 下载
+     */
+    @PostMapping("/export/jobs")
+    public ResponseEntity<Map<String, Object>> startExportJob(
+            @RequestParam(defaultValue = CustomerExportService.FORMAT_CSV) String format,
+            @RequestParam(required = false) String selection,
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String phone,
+            @RequestParam(required = false) String email,
+            @RequestParam(required = false) String address,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(required = false) Long uploadTaskId,
+            @RequestParam(defaultValue = "false") boolean startsWith,
+            HttpSession session,
+            HttpServletRequest request) {
+        Map<String, Object> response = new HashMap<>();
+        if (!CustomerExportService.isSupportedFormat(format)) {
+            response.put("success", false);
+            response.put("message", "不支持的导出格式: " + format);
+            return ResponseEntity.badRequest().body(response);
+        }
+        try {
+            User user = (User) session.getAttribute("user");
+            String username = user != null ? user.getUsername() : null;
+            CustomerExportService.ExportJob job = selection != null
+                ? customerExportService.startJob(format, getSelectedIds(selection, user), username,
+                    getClientIpAddress(request))
+                : customerExportService.startJob(format, name, phone, email, address, startTime, endTime,
+                    uploadTaskId, startsWith, username, getClientIpAddress(request));
+            response.put("success", true);
+            response.put("data", job);
+            response.put("message", "已开始后台导出");
+            return ResponseEntity.ok(response);
+        } catch (NoSuchElementException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        } catch (IllegalStateException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(response);
+        }
+    }
+
+    /**
+     * 查询后台导出任务（只有提交人和管理员可以查看）
+     */
+    @GetMapping("/export/jobs/{id}")
+    public ResponseEntity<Map<String, Object>> getExportJob(@PathVariable String id, HttpSession session) {
+        Map<String, Object> response = new HashMap<>();
+        CustomerExportService.ExportJob job = customerExportService.getJob(id);
+        if (job == null || !canAccessJob(job.getUsername(), session)) {
+            response.put("success", false);
+            response.put("message", "导出任务不存在或已过期");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+        response.put("success", true);
+        response.put("data", job);
+        response.put("message", "查询成功");
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 下载后台导出任务的文件
+     */
+    @GetMapping("/export/jobs/{id}/file")
+    public ResponseEntity<Resource> downloadExportJob(@PathVariable String id, HttpSession session) {
+        CustomerExportService.ExportJob job = customerExportService.getJob(id);
+        if (job == null || !canAccessJob(job.getUsername(), session)
+                || job.getState() != BackgroundJob.State.DONE) {
+            return ResponseEntity.notFound().build();
+        }
+        Path file = customerExportService.getJobFile(job);
+        if (!Files.exists(file)) {
+            return ResponseEntity.notFound().build();
+        }
+        Resource resource = new FileSystemResource(file.toFile());
+        return ResponseEntity.ok()
+            .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(job.getFileName(), StandardCharsets.UTF_8).build().toString())
+            .contentType(MediaType.APPLICATION_OCTET_STREAM)
+            .body(resource);
+    }
+
+    /**
+     * 提交按条件删除任务（仅管理员，条件同 /advanced-search，至少指定一个条件）
+     * 后台按主键分段删除，进度通过 /purge/jobs/{id} 查询，可通过 /purge/jobs/{id}/cancel 取消
+     */
+    @PostMapping("/purge/jobs")
+    public ResponseEntity<Map<String, Object>> startPurgeJob(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String phone,
+            @RequestParam(required = false) String email,
+            @RequestParam(required = false) String address,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(required = false) Long uploadTaskId,
+            @RequestParam(defaultValue = "false") boolean startsWith,
+            HttpSession session,
+            HttpServletRequest request) {
+        Map<String, Object> response = new HashMap<>();
+        if (!hasAdminRole(session)) {
+            response.put("success", false);
+            response.put("message", "权限不足，只有管理员可以删除客户");
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(response);
+        }
+        try {
+            User user = (User) session.getAttribute("user");
+            CustomerPurgeService.PurgeJob job = customerPurgeService.startJob(name, phone, email, address,
+                startTime, endTime, uploadTaskId, startsWith, user.getUsername(), getClientIpAddress(request));
+            response.put("success", true);
+            response.put("data", job);
+            response.put("message", "已开始按条件删除");
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (IllegalStateException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+        }
+    }
+
+    /**
+     * 查询按条件删除任务的进度（仅管理员）
+     */
+    @GetMapping("/purge/jobs/{id}")
+    public ResponseEntity<Map<String, Object>> getPurgeJob(@PathVariable String id, HttpSession session) {
+        Map<String, Object> response = new HashMap<>();
+        CustomerPurgeService.PurgeJob job = customerPurgeService.getJob(id);
+        if (job == null || !hasAdminRole(session)) {
+            response.put("success", false);
+            response.put("message", "删除任务不存在或已过期");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+        response.put("success", true);
+        response.put("data", job);
+        response.put("message", "查询成功");
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 取消按条件删除任务（仅管理员，当前段删除完成后停止，已删除的不会恢复）
+     */
+    @PostMapping("/purge/jobs/{id}/cancel")
+    public ResponseEntity<Map<String, Object>> cancelPurgeJob(@PathVariable String id, HttpSession session) {
+        Map<String, Object> response = new HashMap<>();
+        if (!hasAdminRole(session) || !customerPurgeService.cancelJob(id)) {
+            response.put("success", false);
+            response.put("message", "删除任务不存在或已结束");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+        response.put("success", true);
+        response.put("data", customerPurgeService.getJob(id));
+        response.put("message", "已请求取消，当前段删除完成后停止");
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 后台任务只有提交人和管理员可以访问
+     */
+    private boolean canAccessJob(String owner, HttpSession session) {
+        User user = (User) session.getAttribute("user");
+        return user != null && (user.getUsername().equals(owner) || hasAdminRole(session));
+    }
+
+    /**
+     * 按高级搜索条件创建选择集（条件同 /advanced-search），服务端保存全部匹配客户的id，返回短期令牌
+     * 令牌可用于集合运算、批量删除和批量修改（{"selection":令牌}）、导出（selection=令牌）
+     */
+    @PostMapping("/selections")
+    public ResponseEntity<Map<String, Object>> createSelection(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String phone,
+            @RequestParam(required = false) String email,
+            @RequestParam(required = false) String address,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(required = false) Long uploadTaskId,
+            @RequestParam(defaultValue = "false") boolean startsWith,
+            HttpSession session) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            User user = (User) session.getAttribute("user");
+            CustomerSelectionService.Selection selection = customerSelectionService.createFromSearch(name, phone,
+                email, address, startTime, endTime, uploadTaskId, startsWith, user != null ? user.getUsername() : null);
+            response.put("success", true);
+            response.put("data", selection);
+            response.put("message", "已选择 " + selection.getCount() + " 个客户");
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            logger.error("创建选择集失败", e);
+            response.put("success", false);
+            response.put("message", "创建选择集失败: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    /**
+     * 按id列表创建选择集，请求体 {"ids":[...]}
+     */
+    @PostMapping("/selections/ids")
+    public ResponseEntity<Map<String, Object>> createSelectionFromIds(@RequestBody BatchDeleteRequest request,
+                                                                      HttpSession session) {
+        Map<String, Object> response = new HashMap<>();
+        if (request.getIds() == null) {
+            response.put("success", false);
+            response.put("message", "请指定客户id");
+            return ResponseEntity.badRequest().body(response);
+        }
+        User user = (User) session.getAttribute("user");
+        CustomerSelectionService.Selection selection = customerSelectionService.createFromIds(request.getIds(),
+            user != null ? user.getUsername() : null);
+        response.put("success", true);
+        response.put("data", selection);
+        response.put("message", "已选择 " + selection.getCount() + " 个客户");
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 两个选择集做集合运算，结果为新的选择集
+     * @param op union（并集）、intersect（交集）、minus（差集，token 中去掉 other 中的客户）
+     */
+    @PostMapping("/selections/{token}/{op}")
+    public ResponseEntity<Map<String, Object>> combineSelections(@PathVariable String token,
+                                                                 @PathVariable String op,
+                                                                 @RequestParam String other,
+                                                                 HttpSession session) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            User user = (User) session.getAttribute("user");
+            CustomerSelectionService.Selection selection = customerSelectionService.combine(token, op, other,
+                user != null ? user.getUsername() : null);
+            response.put("success", true);
+            response.put("data", selection);
+            response.put("message", "运算结果 " + selection.getCount() + " 个客户");
+            return ResponseEntity.ok(response);
+        } catch (NoSuchElementException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    /**
+     * 查询选择集（数量、占用内存、过期时间）
+     */
+    @GetMapping("/selections/{token}")
+    public ResponseEntity<Map<String, Object>> getSelection(@PathVariable String token, HttpSession session) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            User user = (User) session.getAttribute("user");
+            response.put("data", customerSelectionService.get(token, user != null ? user.getUsername() : null));
+            response.put("success", true);
+            response.put("message", "查询成功");
+            return ResponseEntity.ok(response);
+        } catch (NoSuchElementException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+    }
+
+    /**
+     * 释放选择集
+     */
+    @DeleteMapping("/selections/{token}")
+    public ResponseEntity<Map<String, Object>> deleteSelection(@PathVariable String token, HttpSession session) {
+        Map<String, Object> response = new HashMap<>();
+        User user = (User) session.getAttribute("user");
+        if (!customerSelectionService.remove(token, user != null ? user.getUsername() : null)) {
+            response.put("success", false);
+            response.put("message", "选择集不存在或已过期");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+        response.put("success", true);
+        response.put("message", "已释放选择集");
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 当前用户的选择集中的客户id
+     * @throws NoSuchElementException 选择集不存在、已过期或不属于当前用户
+     */
+    private Roaring64Bitmap getSelectedIds(String token, User user) {
+        return customerSelectionService.get(token, user != null ? user.getUsername() : null).getIds();
+    }
+
     /**
      * 获取客户总数（优化：添加超时和错误处理）
+     * 没有缓存时返回近似值（totalExact=false），精确值在后台统计完成后再次请求即可获得
      */
     @GetMapping("/count")
     public ResponseEntity<Map<String, Object>> getTotalCount() {
         Map<String, Object> response = new HashMap<>();
         try {
-            // 使用线程池执行，避免阻塞
-            long count = customerService.getTotalCount();
+            putCount(response, customerService.countAllCustomers());
             response.put("success", true);
-            response.put("total", count);
             response.put("message", "查询成功");
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -197,38 +650,20 @@ public class CustomerController {
             @RequestParam String keyword,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(required = false) Long beforeId,
             HttpSession session,
             HttpServletRequest request) {
         Map<String, Object> response = new HashMap<>();
         try {
-            Page<Customer> customerPage = customerService.searchCustomers(keyword, page, size);
-            
-            // 为每个客户添加关联的文件名
-            List<Map<String, Object>> customerDataList = new ArrayList<>();
-            for (Customer customer : customerPage.getContent()) {
-                Map<String, Object> customerMap = new HashMap<>();
-                customerMap.put("id", customer.getId());
-                customerMap.put("name", customer.getName());
-                customerMap.put("phone", customer.getPhone());
-                customerMap.put("email", customer.getEmail());
-                customerMap.put("address", customer.getAddress());
-                customerMap.put("uploadTaskId", customer.getUploadTaskId());
-                customerMap.put("createTime", customer.getCreateTime());
-                customerMap.put("updateTime", customer.getUpdateTime());
-                
-                // 获取关联的文件名
-                if (customer.getUploadTaskId() != null) {
-                    Optional<UploadTask> taskOpt = uploadTaskService.getTaskById(customer.getUploadTaskId());
-                    if (taskOpt.isPresent()) {
-                        customerMap.put("uploadFileName", taskOpt.get().getFileName());
-                    } else {
-                        customerMap.put("uploadFileName", "");
-                    }
-                } else {
-                    customerMap.put("uploadFileName", "");
-                }
-                
-                customerDataList.add(customerMap);
+            // 不统计总数，总数通过 /search/count 单独获取
+            PageCursor pageCursor = keysetCursor(cursor, afterId, beforeId);
+            if (pageCursor != null) {
+                KeysetPage<CustomerRow> keysetPage = customerService.searchCustomersByCursor(keyword, pageCursor, size);
+                putKeysetPage(response, keysetPage, size);
+            } else {
+                putSlice(response, customerService.searchCustomersSlice(keyword, page, size), page, size);
             }
             
             // 记录操作日志
@@ -244,14 +679,13 @@ public class CustomerController {
                 );
             }
             
-            response.put("success", true);
-            response.put("data", customerDataList);
-            response.put("total", customerPage.getTotalElements());
-            response.put("totalPages", customerPage.getTotalPages());
-            response.put("currentPage", page);
-            response.put("pageSize", size);
             response.put("message", "搜索成功");
             return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            // 分页游标无效
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
         } catch (Exception e) {
             response.put("success", false);
             response.put("message", "搜索失败: " + e.getMessage());
@@ -260,7 +694,9 @@ public class CustomerController {
     }
 
     /**
-     * 高级搜索：多条件组合查询
+     * 高级搜索：多条件组合查询（startsWith=true 时姓名、电话、邮箱、地址按前缀匹配）
+     * materialize=true 时只执行一次搜索，把全部匹配的id保存为快照（单独的快照池），返回快照令牌 snapshot 和精确总数，
+     * 之后通过 /advanced-search/snapshots/{snapshot} 翻页，结果不随导入变化
      */
     @GetMapping("/advanced-search")
     public ResponseEntity<Map<String, Object>> advancedSearch(
@@ -271,41 +707,31 @@ public class CustomerController {
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
             @RequestParam(required = false) Long uploadTaskId,
+            @RequestParam(defaultValue = "false") boolean startsWith,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(defaultValue = "false") boolean materialize,
             HttpSession session,
             HttpServletRequest request) {
         Map<String, Object> response = new HashMap<>();
         try {
-            Page<Customer> customerPage = customerService.advancedSearch(
-                name, phone, email, address, startTime, endTime, uploadTaskId, page, size);
-            
-            // 为每个客户添加关联的文件名
-            List<Map<String, Object>> customerDataList = new ArrayList<>();
-            for (Customer customer : customerPage.getContent()) {
-                Map<String, Object> customerMap = new HashMap<>();
-                customerMap.put("id", customer.getId());
-                customerMap.put("name", customer.getName());
-                customerMap.put("phone", customer.getPhone());
-                customerMap.put("email", customer.getEmail());
-                customerMap.put("address", customer.getAddress());
-                customerMap.put("uploadTaskId", customer.getUploadTaskId());
-                customerMap.put("createTime", customer.getCreateTime());
-                customerMap.put("updateTime", customer.getUpdateTime());
-                
-                // 获取关联的文件名
-                if (customer.getUploadTaskId() != null) {
-                    Optional<UploadTask> taskOpt = uploadTaskService.getTaskById(customer.getUploadTaskId());
-                    if (taskOpt.isPresent()) {
-                        customerMap.put("uploadFileName", taskOpt.get().getFileName());
-                    } else {
-                        customerMap.put("uploadFileName", "");
-                    }
-                } else {
-                    customerMap.put("uploadFileName", "");
-                }
-                
-                customerDataList.add(customerMap);
+            // 不统计总数，总数通过 /advanced-search/count 单独获取
+            PageCursor pageCursor = keysetCursor(cursor, afterId, beforeId);
+            if (materialize) {
+                User user = (User) session.getAttribute("user");
+                CustomerSelectionService.Selection snapshot = customerSelectionService.createSnapshot(name, phone,
+                    email, address, startTime, endTime, uploadTaskId, startsWith, user != null ? user.getUsername() : null);
+                putSnapshotPage(response, snapshot, page, size);
+            } else if (pageCursor != null) {
+                KeysetPage<CustomerRow> keysetPage = customerService.advancedSearchByCursor(
+                    name, phone, email, address, startTime, endTime, uploadTaskId, startsWith, pageCursor, size);
+                putKeysetPage(response, keysetPage, size);
+            } else {
+                putSlice(response, customerService.advancedSearchSlice(
+                    name, phone, email, address, startTime, endTime, uploadTaskId, startsWith, page, size), page, size);
             }
             
             // 记录操作日志
@@ -325,14 +751,13 @@ public class CustomerController {
                 );
             }
             
-            response.put("success", true);
-            response.put("data", customerDataList);
-            response.put("total", customerPage.getTotalElements());
-            response.put("totalPages", customerPage.getTotalPages());
-            response.put("currentPage", page);
-            response.put("pageSize", size);
             response.put("message", "搜索成功");
             return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            // 分页游标无效
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
         } catch (Exception e) {
             response.put("success", false);
             response.put("message", "搜索失败: " + e.getMessage());
@@ -340,8 +765,178 @@ public class CustomerController {
         }
     }
 
+    /**
+     * 高级搜索结果快照翻页（快照由 /advanced-search?materialize=true 创建），只按主键取本页的行
+     */
+    @GetMapping("/advanced-search/snapshots/{token}")
+    public ResponseEntity<Map<String, Object>> advancedSearchSnapshot(
+            @PathVariable String token,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            HttpSession session) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            User user = (User) session.getAttribute("user");
+            putSnapshotPage(response,
+                customerSelectionService.getSnapshot(token, user != null ? user.getUsername() : null), page, size);
+            response.put("message", "查询成功");
+            return ResponseEntity.ok(response);
+        } catch (NoSuchElementException e) {
+            response.put("success", false);
+            response.put("message", "搜索结果已过期，请重新搜索");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    /**
+     * 写入快照的一页和精确总数
+     */
+    private void putSnapshotPage(Map<String, Object> response, CustomerSelectionService.Selection snapshot,
+                                 int page, int size) {
+        putSlice(response, customerService.selectionSlice(snapshot.getIds(), page, size), page, size);
+        response.put("snapshot", snapshot.getToken());
+        response.put("total", snapshot.getCount());
+        response.put("totalLabel", String.valueOf(snapshot.getCount()));
+        response.put("totalExact", true);
+    }
+
+    /**
+     * 搜索结果总数（与 /search 分开请求，结果缓存；totalExact=false 时为估算值）
+     */
+    @GetMapping("/search/count")
+    public ResponseEntity<Map<String, Object>> countSearchCustomers(@RequestParam(required = false) String keyword) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            putCount(response, customerService.countSearchCustomers(keyword));
+            response.put("success", true);
+            response.put("message", "查询成功");
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "统计失败: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    /**
+     * 高级搜索结果总数（与 /advanced-search 分开请求，结果缓存；totalExact=false 时为估算值）
+     */
+    @GetMapping("/advanced-search/count")
+    public ResponseEntity<Map<String, Object>> countAdvancedSearch(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String phone,
+            @RequestParam(required = false) String email,
+            @RequestParam(required = false) String address,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(required = false) Long uploadTaskId,
+            @RequestParam(defaultValue = "false") boolean startsWith) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            putCount(response, customerService.countAdvancedSearch(
+                name, phone, email, address, startTime, endTime, uploadTaskId, startsWith));
+            response.put("success", true);
+            response.put("message", "查询成功");
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "统计失败: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    /**
+     * 全文索引状态（是否可用、是否在重建、文档数），phoneIndex 为电话片段索引的状态，phoneBackfill 为电话规范化回填的进度
+     */
+    @GetMapping("/search-index/status")
+    public ResponseEntity<Map<String, Object>> getSearchIndexStatus() {
+        Map<String, Object> response = new HashMap<>();
+        Map<String, Object> status = customerSearchIndex.getStatus();
+        status.put("phoneIndex", customerPhoneIndex.getStatus());
+        status.put("phoneBackfill", customerPhoneBackfillService.getStatus());
+        response.put("success", true);
+        response.put("data", status);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 从数据库重建全文索引、重新加载电话片段索引（后台执行，重建期间搜索使用数据库查询）
+     */
+    @PostMapping("/search-index/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildSearchIndex(HttpSession session, HttpServletRequest httpRequest) {
+        Map<String, Object> response = new HashMap<>();
+        if (!hasAdminRole(session)) {
+            response.put("success", false);
+            response.put("message", "权限不足，只有管理员可以重建索引");
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(response);
+        }
+        if (!Boolean.TRUE.equals(customerSearchIndex.getStatus().get("enabled"))) {
+            response.put("success", false);
+            response.put("message", "全文索引未启用");
+            return ResponseEntity.badRequest().body(response);
+        }
+        boolean started = customerSearchIndex.rebuildAsync();
+        customerPhoneIndex.reloadAsync();
+        User user = (User) session.getAttribute("user");
+        operationLogService.logSuccess(user.getUsername(), "UPDATE", "CUSTOMER",
+            "重建客户全文索引", getClientIpAddress(httpRequest), null);
+        response.put("success", true);
+        response.put("message", started ? "已开始重建全文索引" : "全文索引正在重建，完成后将再重建一次");
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 写入总数：total、totalExact（是否精确值）、totalLabel（估算值显示为"约 N"）
+     */
+    private void putCount(Map<String, Object> response, CountEstimate count) {
+        response.put("total", count.getValue());
+        response.put("totalExact", count.isExact());
+        response.put("totalLabel", count.getLabel());
+    }
+
+    /**
+     * 解析键集分页参数；cursor、afterId、beforeId 都没传时返回null（使用页码分页）
+     * cursor 传空字符串表示键集分页的第一页
+     */
+    private PageCursor keysetCursor(String cursor, Long afterId, Long beforeId) {
+        if (cursor == null && afterId == null && beforeId == null) {
+            return null;
+        }
+        return PageCursor.of(cursor, afterId, beforeId);
+    }
+
+    /**
+     * 写入页码分页（不含总数）的返回数据
+     */
+    private void putSlice(Map<String, Object> response, Slice<CustomerRow> slice, int page, int size) {
+        response.put("success", true);
+        response.put("data", slice.getContent());
+        response.put("currentPage", page);
+        response.put("pageSize", size);
+        response.put("hasNext", slice.hasNext());
+        response.put("hasPrevious", slice.hasPrevious());
+    }
+
+    /**
+     * 写入键集分页的返回数据
+     */
+    private void putKeysetPage(Map<String, Object> response, KeysetPage<CustomerRow> keysetPage, int size) {
+        response.put("success", true);
+        response.put("data", keysetPage.getContent());
+        response.put("pageSize", size);
+        response.put("hasNext", keysetPage.hasNext());
+        response.put("hasPrevious", keysetPage.hasPrevious());
+        response.put("nextCursor", keysetPage.getNextCursor());
+        response.put("prevCursor", keysetPage.getPrevCursor());
+    }
+
     /**
      * 批量查询客户
+     * 查询项较多时使用 /batch-query/stream（不限条数，边匹配边输出）
      * @param request 包含查询项列表的请求体
      * @return 查询结果
      */
@@ -358,30 +953,14 @@ public class CustomerController {
                 return ResponseEntity.badRequest().body(response);
             }
             
-            if (items.size() > 500) {
+            if (items.size() > batchQueryMaxItems) {
                 response.put("success", false);
-                response.put("message", "每次查询最多500条");
+                response.put("message", "每次查询最多" + batchQueryMaxItems + "条，更多请使用流式批量查询");
                 return ResponseEntity.badRequest().body(response);
             }
             
             List<Map<String, Object>> results = customerService.batchQueryCustomers(items);
-            
-            // 为匹配的客户添加关联的文件名
-            for (Map<String, Object> result : results) {
-                if (result.get("matched") != null && (Boolean) result.get("matched")) {
-                    Customer customer = (Customer) result.get("customer");
-                    if (customer != null && customer.getUploadTaskId() != null) {
-                        Optional<UploadTask> taskOpt = uploadTaskService.getTaskById(customer.getUploadTaskId());
-                        if (taskOpt.isPresent()) {
-                            result.put("uploadFileName", taskOpt.get().getFileName());
-                        } else {
-                            result.put("uploadFileName", "");
-                        }
-                    } else {
-                        result.put("uploadFileName", "");
-                    }
-                }
-            }
+            results.forEach(this::putUploadFileName);
             
             response.put("success", true);
             response.put("data", results);
@@ -398,6 +977,161 @@ public class CustomerController {
         }
     }
 
+    /**
+     * 流式批量查询客户（不限条数，内存占用与查询项数量无关）
+     * 请求体为 NDJSON（每行一个查询项 {"name":..,"phone":..}）或查询项的JSON数组；
+     * 边读边按 customer.batch-query.chunk-size 项一批匹配，每批匹配完立即输出
+     * @return NDJSON，每行一个结果 {"queryItem":..,"customer":..,"matched":..,"uploadFileName":..}，与查询项顺序一致；
+     *         中途失败时最后一行为 {"success":false,"message":..}
+     */
+    @PostMapping("/batch-query/stream")
+    public ResponseEntity<StreamingResponseBody> batchQueryCustomersStream(HttpServletRequest request) throws IOException {
+        InputStream in = request.getInputStream();
+        StreamingResponseBody body = out -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            long startTime = System.currentTimeMillis();
+            long total = 0;
+            long matched = 0;
+            try (MappingIterator<Map<String, String>> items = objectMapper
+                    .readerFor(new TypeReference<Map<String, String>>() { })
+                    .readValues(in)) {
+                List<Map<String, String>> chunk = new ArrayList<>(batchQueryChunkSize);
+                while (true) {
+                    boolean more = items.hasNextValue();
+                    if (more) {
+                        chunk.add(items.nextValue());
+                    }
+                    if (chunk.size() >= batchQueryChunkSize || (!more && !chunk.isEmpty())) {
+                        for (Map<String, Object> result : customerService.batchQueryCustomers(chunk)) {
+                            putUploadFileName(result);
+                            generator.writeObject(result);
+                            generator.writeRaw('\n');
+                            if ((Boolean) result.get("matched")) {
+                                matched++;
+                            }
+                        }
+                        generator.flush();
+                        total += chunk.size();
+                        chunk.clear();
+                    }
+                    if (!more) {
+                        break;
+                    }
+                }
+            } catch (JsonProcessingException e) {
+                writeStreamError(generator, "查询项格式错误: " + e.getOriginalMessage());
+                return;
+            } catch (IOException e) {
+                logger.info("客户端已断开，停止批量查询: {}", e.getMessage());
+                return;
+            } catch (Exception e) {
+                // 响应已开始输出，无法再返回错误状态，在最后一行输出错误
+                logger.error("流式批量查询失败", e);
+                writeStreamError(generator, "批量查询失败: " + e.getMessage());
+                return;
+            }
+            logger.debug("流式批量查询: {} 项, 匹配 {} 项, 耗时={}ms", total, matched, System.currentTimeMillis() - startTime);
+        };
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType("application/x-ndjson;charset=UTF-8"))
+            .body(body);
+    }
+
+    /**
+     * 提交按文件批量查询任务（CSV / Excel，第1列姓名、第2列电话，第一行为表头）
+     * 后台逐批匹配，进度通过 /batch-query/jobs/{id} 查询，完成后通过 /batch-query/jobs/{id}/file 下载结果
+     */
+    @PostMapping("/batch-query/jobs")
+    public ResponseEntity<Map<String, Object>> startBatchQueryJob(@RequestParam("file") MultipartFile file,
+                                                                  HttpSession session,
+                                                                  HttpServletRequest request) {
+        Map<String, Object> response = new HashMap<>();
+        if (file.isEmpty() || !BatchQueryJobService.isSupportedFile(file.getOriginalFilename())) {
+            response.put("success", false);
+            response.put("message", "请上传 .csv、.xlsx 或 .xls 文件");
+            return ResponseEntity.badRequest().body(response);
+        }
+        try {
+            User user = (User) session.getAttribute("user");
+            BatchQueryJobService.BatchQueryJob job = batchQueryJobService.startJob(file,
+                user != null ? user.getUsername() : null, getClientIpAddress(request));
+            response.put("success", true);
+            response.put("data", job);
+            response.put("message", "已开始批量查询");
+            return ResponseEntity.ok(response);
+        } catch (IllegalStateException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(response);
+        } catch (IOException e) {
+            logger.error("保存批量查询文件失败", e);
+            response.put("success", false);
+            response.put("message", "保存查询文件失败: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    /**
+     * 查询按文件批量查询任务的进度（只有提交人和管理员可以查看）
+     */
+    @GetMapping("/batch-query/jobs/{id}")
+    public ResponseEntity<Map<String, Object>> getBatchQueryJob(@PathVariable String id, HttpSession session) {
+        Map<String, Object> response = new HashMap<>();
+        BatchQueryJobService.BatchQueryJob job = batchQueryJobService.getJob(id);
+        if (job == null || !canAccessJob(job.getUsername(), session)) {
+            response.put("success", false);
+            response.put("message", "批量查询任务不存在或已过期");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+        response.put("success", true);
+        response.put("data", job);
+        response.put("message", "查询成功");
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 下载按文件批量查询的结果文件
+     */
+    @GetMapping("/batch-query/jobs/{id}/file")
+    public ResponseEntity<Resource> downloadBatchQueryJob(@PathVariable String id, HttpSession session) {
+        BatchQueryJobService.BatchQueryJob job = batchQueryJobService.getJob(id);
+        if (job == null || !canAccessJob(job.getUsername(), session)
+                || job.getState() != BackgroundJob.State.DONE) {
+            return ResponseEntity.notFound().build();
+        }
+        Path file = batchQueryJobService.getJobFile(job);
+        if (!Files.exists(file)) {
+            return ResponseEntity.notFound().build();
+        }
+        Resource resource = new FileSystemResource(file.toFile());
+        return ResponseEntity.ok()
+            .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(job.getFileName(), StandardCharsets.UTF_8).build().toString())
+            .contentType(MediaType.APPLICATION_OCTET_STREAM)
+            .body(resource);
+    }
+
+    private void writeStreamError(JsonGenerator generator, String message) throws IOException {
+        generator.writeStartObject();
+        generator.writeBooleanField("success", false);
+        generator.writeStringField("message", message);
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+        generator.flush();
+    }
+
+    /**
+     * 匹配的客户行已带关联的文件名
+     */
+    private void putUploadFileName(Map<String, Object> result) {
+        CustomerRow customer = (CustomerRow) result.get("customer");
+        if (customer != null) {
+            result.put("uploadFileName", customer.getUploadFileName());
+        }
+    }
+
     @GetMapping("/{id:[0-9]+}")
     public ResponseEntity<Map<String, Object>> getCustomerById(@PathVariable Long id) {
         Map<String, Object> response = new HashMap<>();
@@ -585,12 +1319,90 @@ public class CustomerController {
         }
     }
     
+    /**
+     * 批量修改客户字段（仅管理员）
+     * 目标为 ids、selection、uploadTaskId 或 filter 之一，set 设置字段、clear 清空字段，见 {@link BulkUpdateRequest}
+     */
+    @PutMapping("/batch")
+    public ResponseEntity<Map<String, Object>> bulkUpdateCustomers(
+            @RequestBody BulkUpdateRequest request,
+            HttpSession session,
+            HttpServletRequest httpRequest) {
+        Map<String, Object> response = new HashMap<>();
+        if (!hasAdminRole(session)) {
+            response.put("success", false);
+            response.put("message", "权限不足，只有管理员可以修改客户");
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(response);
+        }
+        int targets = (request.getIds() != null ? 1 : 0) + (request.getSelection() != null ? 1 : 0)
+            + (request.getUploadTaskId() != null ? 1 : 0) + (request.getFilter() != null ? 1 : 0);
+        if (targets != 1) {
+            response.put("success", false);
+            response.put("message", "请指定 ids、selection、uploadTaskId、filter 其中之一作为修改目标");
+            return ResponseEntity.badRequest().body(response);
+        }
+        Map<String, String> changes = new LinkedHashMap<>();
+        if (request.getSet() != null) {
+            changes.putAll(request.getSet());
+        }
+        if (request.getClear() != null) {
+            for (String field : request.getClear()) {
+                changes.put(field, null);
+            }
+        }
+
+        try {
+            User user = (User) session.getAttribute("user");
+            String clientIp = getClientIpAddress(httpRequest);
+            long updatedCount;
+            if (request.getIds() != null || request.getSelection() != null) {
+                Roaring64Bitmap ids;
+                String target;
+                if (request.getSelection() != null) {
+                    ids = getSelectedIds(request.getSelection(), user);
+                    target = "选择集 " + ids.getLongCardinality() + " 个";
+                } else {
+                    ids = Roaring64Bitmap.bitmapOf(request.getIds());
+                    target = "IDs: " + ids.getLongCardinality() + " 个";
+                }
+                updatedCount = customerBulkUpdateService.updateByIds(ids, changes, target, user.getUsername(), clientIp);
+            } else {
+                BulkUpdateRequest.Filter filter = request.getFilter() != null
+                    ? request.getFilter() : new BulkUpdateRequest.Filter();
+                if (request.getUploadTaskId() != null) {
+                    filter.setUploadTaskId(request.getUploadTaskId());
+                }
+                updatedCount = customerBulkUpdateService.updateByFilter(filter.getName(), filter.getPhone(),
+                    filter.getEmail(), filter.getAddress(), filter.getStartTime(), filter.getEndTime(),
+                    filter.getUploadTaskId(), filter.isStartsWith(), changes, user.getUsername(), clientIp);
+            }
+            response.put("success", true);
+            response.put("message", "成功修改 " + updatedCount + " 个客户");
+            response.put("updatedCount", updatedCount);
+            return ResponseEntity.ok(response);
+        } catch (NoSuchElementException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (Exception e) {
+            // 失败日志已由 CustomerBulkUpdateService 记录
+            response.put("success", false);
+            response.put("message", "批量修改失败: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
     /**
      * 批量删除客户（优化性能，避免卡顿）
+     * 请求体 {"ids":[...]}（id 直接解析为 long[]）或 {"selection":"选择集令牌"}
      */
     @DeleteMapping("/batch")
     public ResponseEntity<Map<String, Object>> batchDeleteCustomers(
-            @RequestBody Map<String, Object> request,
+            @RequestBody BatchDeleteRequest request,
             HttpSession session,
             HttpServletRequest httpRequest) {
         Map<String, Object> response = new HashMap<>();
@@ -603,22 +1415,18 @@ public class CustomerController {
         }
         
         try {
-            @SuppressWarnings("unchecked")
-            List<Integer> ids = (List<Integer>) request.get("ids");
+            long[] ids = request.getSelection() != null
+                ? getSelectedIds(request.getSelection(), (User) session.getAttribute("user")).toArray()
+                : request.getIds();
             
-            if (ids == null || ids.isEmpty()) {
+            if (ids == null || ids.length == 0) {
                 response.put("success", false);
                 response.put("message", "请选择要删除的客户");
                 return ResponseEntity.badRequest().body(response);
             }
             
-            // 转换为Long类型
-            List<Long> longIds = ids.stream()
-                    .map(Integer::longValue)
-                    .collect(java.util.stream.Collectors.toList());
-            
             // 批量删除
-            int deletedCount = customerService.batchDeleteCustomers(longIds);
+            int deletedCount = customerService.batchDeleteCustomers(ids);
             
             // 记录操作日志
             User user = (User) session.getAttribute("user");
@@ -626,7 +1434,7 @@ public class CustomerController {
                 user.getUsername(),
                 "DELETE",
                 "CUSTOMER",
-                "批量删除客户: 共 " + deletedCount + " 条 (IDs: " + ids.size() + " 个)",
+                "批量删除客户: 共 " + deletedCount + " 条 (IDs: " + ids.length + " 个)",
                 getClientIpAddress(httpRequest),
                 null
             );
@@ -636,6 +1444,10 @@ public class CustomerController {
             response.put("deletedCount", deletedCount);
             return ResponseEntity.ok(response);
             
+        } catch (NoSuchElementException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
         } catch (Exception e) {
             logger.error("批量删除客户失败", e);
             
@@ -671,6 +1483,8 @@ public class CustomerController {
     @PostMapping("/import")
     public ResponseEntity<Map<String, Object>> importCustomers(
             @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "mode", required = false) String mode,
+            @RequestParam(value = "mergeRules", required = false) String mergeRules,
             HttpSession session,
             HttpServletRequest request) {
         Map<String, Object> response = new HashMap<>();
@@ -706,12 +1520,23 @@ public class CustomerController {
                 return ResponseEntity.badRequest().body(response);
             }
             
-            logger.info("开始接收文件并异步处理: {}, 大小: {} MB", fileName, file.getSize() / (1024.0 * 1024.0));
+            // 解析导入模式和合并规则（参数错误直接返回400）
+            ImportContext importContext;
+            try {
+                importContext = ImportContext.of(null, mode, mergeRules);
+            } catch (IllegalArgumentException e) {
+                response.put("success", false);
+                response.put("message", e.getMessage());
+                return ResponseEntity.badRequest().body(response);
+            }
+            
+            logger.info("开始接收文件并异步处理: {}, 大小: {} MB, 模式: {}", fileName, file.getSize() / (1024.0 * 1024.0), importContext.getMode());
             
             // 创建上传任务记录（使用独立事务，立即提交并释放连接）
             UploadTask uploadTask = new UploadTask();
             uploadTask.setFileName(fileName);
             uploadTask.setStatus("处理中");
+            uploadTask.setImportMode(importContext.getMode());
             logger.info("准备保存任务记录: fileName={}", fileName);
             uploadTask = uploadTaskService.saveTask(uploadTask);
             logger.info("任务记录已保存: taskId={}, fileName={}", uploadTask.getId(), fileName);
@@ -727,7 +1552,7 @@ public class CustomerController {
             
             // 异步处理文件（流式导入 + 批量入库）
             logger.info("准备启动异步处理: taskId={}, user={}", taskId, user != null ? user.getUsername() : "null");
-            importFileAsync(file, taskId, user, clientIp);
+            importFileAsync(file, importContext.forTask(taskId), user, clientIp);
             
             response.put("success", true);
             response.put("message", "文件上传成功，正在后台处理");
@@ -764,7 +1589,8 @@ public class CustomerController {
      * 异步处理导入文件（流式导入 + 批量入库）
      */
     @Async("taskExecutor")
-    public void importFileAsync(MultipartFile file, Long taskId, User user, String clientIp) {
+    public void importFileAsync(MultipartFile file, ImportContext importContext, User user, String clientIp) {
+        Long taskId = importContext.getUploadTaskId();
         UploadTask uploadTask = null;
         try {
             uploadTask = uploadTaskService.getTaskById(taskId)
@@ -777,9 +1603,9 @@ public class CustomerController {
             Map<String, Object> importResult;
             try {
             if (fileName.toLowerCase().endsWith(".csv")) {
-                    importResult = excelImportService.parseAndImportCsvFileStream(file, taskId);
+                    importResult = excelImportService.parseAndImportCsvFileStream(file, importContext);
             } else if (fileName.toLowerCase().endsWith(".xls") || fileName.toLowerCase().endsWith(".xlsx")) {
-                    importResult = excelImportService.parseAndImportExcelFileStream(file, taskId);
+                    importResult = excelImportService.parseAndImportExcelFileStream(file, importContext);
             } else {
                     uploadTask.setStatus("失败");
                     uploadTaskService.saveTask(uploadTask);
@@ -812,9 +1638,14 @@ public class CustomerController {
                                  (importResult.get("totalCount") != null ? (Integer) importResult.get("totalCount") : 0);
             Integer skipCount = importResult.get("skipCount") != null ? (Integer) importResult.get("skipCount") : 0;
             Integer errorCount = importResult.get("errorCount") != null ? (Integer) importResult.get("errorCount") : 0;
+            int updatedCount = (Integer) importResult.getOrDefault("updatedCount", 0);
+            int unchangedCount = (Integer) importResult.getOrDefault("unchangedCount", 0);
             
             // 不要重新设置 addedCount，因为流式导入过程中已经通过 updateTaskProgress 更新了
-            uploadTask.setExistingCount(skipCount);
+            // 存在数目 = 跳过的重复数据 + 合并模式下已存在的数据（更新 + 无变化）
+            uploadTask.setExistingCount(skipCount + updatedCount + unchangedCount);
+            uploadTask.setUpdatedCount(updatedCount);
+            uploadTask.setUnchangedCount(unchangedCount);
             uploadTask.setErrorCount(errorCount);
             
             // 如果流式导入没有更新 addedCount，才设置（兼容旧逻辑）
@@ -827,7 +1658,7 @@ public class CustomerController {
                 uploadTask.setStatus("部分失败");
             } else if (skipCount > 0 && successCount > 0) {
                 uploadTask.setStatus("部分跳过");
-            } else if (successCount > 0) {
+            } else if (successCount > 0 || updatedCount + unchangedCount > 0) {
                 uploadTask.setStatus("完成");
             } else {
                 uploadTask.setStatus("失败");
@@ -843,7 +1674,7 @@ public class CustomerController {
                     user.getUsername(),
                     "IMPORT",
                     "CUSTOMER",
-                    "导入客户数据: " + fileName + " (成功:" + successCount + ", 跳过:" + skipCount + ", 失败:" + errorCount + ")",
+                    "导入客户数据: " + fileName + " (成功:" + successCount + ", 跳过:" + skipCount + ", 更新:" + updatedCount + ", 失败:" + errorCount + ")",
                     clientIp,
                     taskId
                 );
@@ -1048,6 +1879,8 @@ public class CustomerController {
             int successCount = (Integer) importResult.get("successCount");
             int skipCount = (Integer) importResult.get("skipCount");
             int errorCount = (Integer) importResult.get("errorCount");
+            int updatedCount = (Integer) importResult.getOrDefault("updatedCount", 0);
+            int unchangedCount = (Integer) importResult.getOrDefault("unchangedCount", 0);
             
             // 如果流式导入没有更新 totalCount，才设置
             Integer totalCount = (Integer) importResult.get("totalCount");
@@ -1056,7 +1889,9 @@ public class CustomerController {
             }
             
             // 不要重新设置 addedCount，因为流式导入过程中已经通过 updateTaskProgress 更新了
-            uploadTask.setExistingCount(skipCount);
+            uploadTask.setExistingCount(skipCount + updatedCount + unchangedCount);
+            uploadTask.setUpdatedCount(updatedCount);
+            uploadTask.setUnchangedCount(unchangedCount);
             uploadTask.setErrorCount(errorCount);
             
             // 如果流式导入没有更新 addedCount，才设置（兼容旧逻辑）
@@ -1068,7 +1903,7 @@ public class CustomerController {
                 uploadTask.setStatus("部分失败");
             } else if (skipCount > 0 && successCount > 0) {
                 uploadTask.setStatus("部分跳过");
-            } else if (successCount > 0) {
+            } else if (successCount > 0 || updatedCount + unchangedCount > 0) {
                 uploadTask.setStatus("完成");
             } else {
                 uploadTask.setStatus("失败");
@@ -1081,7 +1916,7 @@ public class CustomerController {
                     user.getUsername(),
                     "IMPORT",
                     "CUSTOMER",
-                    "导入客户数据: " + fileName + " (成功:" + successCount + ", 跳过:" + skipCount + ", 失败:" + errorCount + ")",
+                    "导入客户数据: " + fileName + " (成功:" + successCount + ", 跳过:" + skipCount + ", 更新:" + updatedCount + ", 失败:" + errorCount + ")",
                     clientIp,
                     taskId
                 );
@@ -1213,6 +2048,16 @@ public class CustomerController {
                 return ResponseEntity.badRequest().body(response);
             }
             
+            // 解析导入模式和合并规则
+            ImportContext importContext;
+            try {
+                importContext = ImportContext.of(null, request.get("mode"), request.get("mergeRules"));
+            } catch (IllegalArgumentException e) {
+                response.put("success", false);
+                response.put("message", e.getMessage());
+                return ResponseEntity.badRequest().body(response);
+            }
+            
             // 合并所有块为完整文件
             java.io.File mergedFile = chunkUploadService.mergeChunks(uploadId);
             
@@ -1220,11 +2065,12 @@ public class CustomerController {
             UploadTask uploadTask = new UploadTask();
             uploadTask.setFileName(fileName);
             uploadTask.setStatus("处理中");
+            uploadTask.setImportMode(importContext.getMode());
             uploadTask = uploadTaskService.saveTask(uploadTask);
             
             // 异步处理文件（避免524超时错误）
             // 立即返回taskId，让前端开始轮询，后台异步处理文件
-            processMergedFileAsync(uploadId, mergedFile, fileName, uploadTask.getId(), 
+            processMergedFileAsync(uploadId, mergedFile, fileName, importContext.forTask(uploadTask.getId()), 
                 (User) session.getAttribute("user"), getClientIpAddress(httpRequest));
             
             // 立即返回，不等待处理完成（避免Cloudflare 524超时）
@@ -1251,13 +2097,15 @@ public class CustomerController {
      */
     @Async("taskExecutor")
     public void processMergedFileAsync(String uploadId, java.io.File mergedFile, String fileName, 
-                                       Long taskId, User user, String clientIp) {
+                                       ImportContext importContext, User user, String clientIp) {
+        Long taskId = importContext.getUploadTaskId();
         UploadTask uploadTask = null;
         try {
             uploadTask = uploadTaskService.getTaskById(taskId)
                 .orElseThrow(() -> new RuntimeException("任务不存在: " + taskId));
             
-            logger.info("开始异步处理文件: taskId={}, fileName={}", taskId, fileName);
+            logger.info("开始异步处理文件: taskId={}, fileName={}, mode={}, rules={}", 
+                taskId, fileName, importContext.getMode(), importContext.describeRules());
             
             // 将File转换为MultipartFile
             String contentType = "application/octet-stream";
@@ -1273,9 +2121,9 @@ public class CustomerController {
             // 使用流式导入处理文件
             Map<String, Object> importResult;
             if (fileName.toLowerCase().endsWith(".csv")) {
-                importResult = excelImportService.parseAndImportCsvFileStream(multipartFile, taskId);
+                importResult = excelImportService.parseAndImportCsvFileStream(multipartFile, importContext);
             } else if (fileName.toLowerCase().endsWith(".xls") || fileName.toLowerCase().endsWith(".xlsx")) {
-                importResult = excelImportService.parseAndImportExcelFileStream(multipartFile, taskId);
+                importResult = excelImportService.parseAndImportExcelFileStream(multipartFile, importContext);
             } else {
                 uploadTask.setStatus("失败");
                 uploadTaskService.saveTask(uploadTask);
@@ -1294,6 +2142,8 @@ public class CustomerController {
             int successCount = (Integer) importResult.get("successCount");
             int skipCount = (Integer) importResult.get("skipCount");
             int errorCount = (Integer) importResult.get("errorCount");
+            int updatedCount = (Integer) importResult.getOrDefault("updatedCount", 0);
+            int unchangedCount = (Integer) importResult.getOrDefault("unchangedCount", 0);
             
             // 如果流式导入没有更新 totalCount，才设置
             Integer totalCount = (Integer) importResult.get("totalCount");
@@ -1303,7 +2153,9 @@ public class CustomerController {
             
             // 不要重新设置 addedCount，因为流式导入过程中已经通过 updateTaskProgress 更新了
             // uploadTask.setAddedCount(successCount);  // 删除：避免覆盖流式导入过程中的进度更新
-            uploadTask.setExistingCount(skipCount);
+            uploadTask.setExistingCount(skipCount + updatedCount + unchangedCount);
+            uploadTask.setUpdatedCount(updatedCount);
+            uploadTask.setUnchangedCount(unchangedCount);
             uploadTask.setErrorCount(errorCount);
             
             // 如果流式导入没有更新 addedCount，才设置（兼容旧逻辑）
@@ -1315,7 +2167,7 @@ public class CustomerController {
                 uploadTask.setStatus("部分失败");
             } else if (skipCount > 0 && successCount > 0) {
                 uploadTask.setStatus("部分跳过");
-            } else if (successCount > 0) {
+            } else if (successCount > 0 || updatedCount + unchangedCount > 0) {
                 uploadTask.setStatus("完成");
             } else {
                 uploadTask.setStatus("失败");
@@ -1328,7 +2180,7 @@ public class CustomerController {
                     user.getUsername(),
                     "IMPORT",
                     "CUSTOMER",
-                    "导入客户数据: " + fileName + " (成功:" + successCount + ", 跳过:" + skipCount + ", 失败:" + errorCount + ")",
+                    "导入客户数据: " + fileName + " (成功:" + successCount + ", 跳过:" + skipCount + ", 更新:" + updatedCount + ", 失败:" + errorCount + ")",
                     clientIp,
                     taskId
                 );
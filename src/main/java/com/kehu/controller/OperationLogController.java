@@ -2,6 +2,8 @@ package com.kehu.controller;
 
 import com.kehu.entity.OperationLog;
 import com.kehu.entity.User;
+import com.kehu.service.OperationLogArchiveService;
+import com.kehu.service.OperationLogRetentionService;
 import com.kehu.service.OperationLogService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -22,6 +24,12 @@ public class OperationLogController {
     @Autowired
     private OperationLogService operationLogService;
 
+    @Autowired
+    private OperationLogRetentionService operationLogRetentionService;
+
+    @Autowired
+    private OperationLogArchiveService operationLogArchiveService;
+
     /**
      * 分页查询操作日志
      */
@@ -100,6 +108,101 @@ public class OperationLogController {
         }
     }
 
+    /**
+     * 日志异步写入状态（待写入、丢弃、写入失败的条数）
+     */
+    @GetMapping("/writer-status")
+    public ResponseEntity<Map<String, Object>> getWriterStatus(HttpSession session) {
+        Map<String, Object> response = new HashMap<>();
+        if (!hasAdminRole(session)) {
+            response.put("success", false);
+            response.put("message", "权限不足，只有管理员可以查看操作日志");
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(response);
+        }
+        response.put("success", true);
+        response.put("data", operationLogService.getWriterStatus());
+        response.put("message", "查询成功");
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 日志保留期清理的配置、正在执行的清理进度和最近一次清理结果（仅管理员）
+     */
+    @GetMapping("/retention")
+    public ResponseEntity<Map<String, Object>> getRetentionStatus(HttpSession session) {
+        Map<String, Object> response = new HashMap<>();
+        if (!hasAdminRole(session)) {
+            response.put("success", false);
+            response.put("message", "权限不足，只有管理员可以查看操作日志");
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(response);
+        }
+        response.put("success", true);
+        response.put("data", operationLogRetentionService.getStatus());
+        response.put("message", "查询成功");
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 立即按保留期清理一次（仅管理员），在后台执行，进度和结果通过 /retention 查询
+     */
+    @PostMapping("/retention/run")
+    public ResponseEntity<Map<String, Object>> runRetention(HttpSession session) {
+        Map<String, Object> response = new HashMap<>();
+        if (!hasAdminRole(session)) {
+            response.put("success", false);
+            response.put("message", "权限不足，只有管理员可以清理操作日志");
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(response);
+        }
+        if (!operationLogRetentionService.startPurge()) {
+            response.put("success", false);
+            response.put("message", "清理正在进行中，请稍后再试");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+        }
+        response.put("success", true);
+        response.put("data", operationLogRetentionService.getStatus());
+        response.put("message", "已开始清理");
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 操作日志归档状态（分段数、归档条数、占用空间和最近一次归档结果）
+     */
+    @GetMapping("/archive")
+    public ResponseEntity<Map<String, Object>> getArchiveStatus(HttpSession session) {
+        Map<String, Object> response = new HashMap<>();
+        if (!hasAdminRole(session)) {
+            response.put("success", false);
+            response.put("message", "权限不足，只有管理员可以查看操作日志");
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(response);
+        }
+        response.put("success", true);
+        response.put("data", operationLogArchiveService.getStatus());
+        response.put("message", "查询成功");
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 立即归档一次（仅管理员），在后台执行，进度和结果通过 /archive 查询
+     */
+    @PostMapping("/archive/run")
+    public ResponseEntity<Map<String, Object>> runArchive(HttpSession session) {
+        Map<String, Object> response = new HashMap<>();
+        if (!hasAdminRole(session)) {
+            response.put("success", false);
+            response.put("message", "权限不足，只有管理员可以归档操作日志");
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(response);
+        }
+        if (!operationLogArchiveService.startArchive()) {
+            response.put("success", false);
+            response.put("message", "归档正在进行中，请稍后再试");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+        }
+        response.put("success", true);
+        response.put("data", operationLogArchiveService.getStatus());
+        response.put("message", "已开始归档");
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * 检查当前用户是否有管理员权限
      */
@@ -1,14 +1,28 @@
 package com.kehu.controller;
 
 import com.kehu.entity.UploadTask;
+import com.kehu.entity.User;
+import com.kehu.service.ExcelImportService;
+import com.kehu.service.ImportBatchStatsService;
+import com.kehu.service.ImportRevertService;
 import com.kehu.service.UploadTaskService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -20,6 +34,17 @@ public class UploadTaskController {
     @Autowired
     private UploadTaskService uploadTaskService;
 
+    @Autowired
+    private ImportRevertService importRevertService;
+
+    @Autowired
+    private ExcelImportService excelImportService;
+
+    @Autowired
+    private ImportBatchStatsService importBatchStatsService;
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadTaskController.class);
+
     /**
      * 获取所有上传任务（分页，按ID倒序）
      */
@@ -119,6 +144,7 @@ public class UploadTaskController {
         
         try {
             uploadTaskService.deleteTask(id);
+            deleteTaskFiles(Collections.singletonList(id));
             response.put("success", true);
             response.put("message", "删除成功");
             return ResponseEntity.ok(response);
@@ -145,6 +171,7 @@ public class UploadTaskController {
         
         try {
             uploadTaskService.deleteTasks(ids);
+            deleteTaskFiles(ids);
             response.put("success", true);
             response.put("message", "批量删除成功，共删除 " + ids.size() + " 条任务");
             return ResponseEntity.ok(response);
@@ -155,6 +182,110 @@ public class UploadTaskController {
         }
     }
 
+    /**
+     * 获取任务的批次耗时时间线和分阶段汇总（解析 / 查重 / 写入 / 提交）
+     */
+    @GetMapping("/{id:[0-9]+}/batch-stats")
+    public ResponseEntity<Map<String, Object>> getBatchStats(@PathVariable Long id, HttpSession session) {
+        Map<String, Object> response = new HashMap<>();
+        if (session == null || session.getAttribute("user") == null) {
+            response.put("success", false);
+            response.put("message", "请先登录");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
+        }
+        
+        try {
+            response.put("success", true);
+            response.put("data", importBatchStatsService.getTaskBreakdown(id));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "获取批次统计失败: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    /**
+     * 下载任务的拒绝行文件（gzip压缩的CSV：行号、原始数据、拒绝原因）
+     */
+    @GetMapping("/{id:[0-9]+}/rejects")
+    public ResponseEntity<Resource> downloadRejects(@PathVariable Long id, HttpSession session) {
+        // 需要登录
+        if (session == null || session.getAttribute("user") == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        
+        try {
+            Path rejectFile = excelImportService.getRejectFile(id);
+            if (!Files.exists(rejectFile)) {
+                return ResponseEntity.notFound().build();
+            }
+            
+            Resource resource = new FileSystemResource(rejectFile.toFile());
+            HttpHeaders headers = new HttpHeaders();
+            headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + rejectFile.getFileName() + "\"");
+            headers.add(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            
+            return ResponseEntity.ok()
+                    .headers(headers)
+                    .contentLength(resource.contentLength())
+                    .body(resource);
+        } catch (Exception e) {
+            logger.error("下载拒绝行文件失败: taskId={}", id, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * 回滚导入（仅管理员）：后台分段删除该任务导入的客户及其备注
+     * 进度通过任务的 status（回滚中/已回滚/回滚失败）和 revertedCount 查询
+     */
+    @PostMapping("/{id:[0-9]+}/revert")
+    public ResponseEntity<Map<String, Object>> revertImport(
+            @PathVariable Long id,
+            HttpSession session,
+            HttpServletRequest request) {
+        Map<String, Object> response = new HashMap<>();
+        
+        // 权限检查：只有ADMIN可以回滚
+        if (!hasAdminRole(session)) {
+            response.put("success", false);
+            response.put("message", "权限不足，只有管理员可以回滚导入");
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(response);
+        }
+        
+        try {
+            UploadTask task = uploadTaskService.getTaskById(id).orElse(null);
+            if (task == null) {
+                response.put("success", false);
+                response.put("message", "任务不存在");
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+            }
+            if ("处理中".equals(task.getStatus())) {
+                response.put("success", false);
+                response.put("message", "任务正在导入中，请等待导入完成后再回滚");
+                return ResponseEntity.badRequest().body(response);
+            }
+            if (!importRevertService.markReverting(id)) {
+                response.put("success", false);
+                response.put("message", "任务正在回滚中");
+                return ResponseEntity.badRequest().body(response);
+            }
+            
+            User user = (User) session.getAttribute("user");
+            importRevertService.revertImportAsync(id, user != null ? user.getUsername() : null, getClientIpAddress(request));
+            
+            response.put("success", true);
+            response.put("taskId", id);
+            response.put("message", "回滚已开始，正在后台删除该任务导入的数据");
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "回滚失败: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
     /**
      * 更新任务备注
      */
@@ -195,6 +326,41 @@ public class UploadTaskController {
         }
     }
 
+    /**
+     * 删除任务的拒绝行文件和批次耗时统计
+     */
+    private void deleteTaskFiles(List<Long> ids) {
+        for (Long id : ids) {
+            try {
+                Files.deleteIfExists(excelImportService.getRejectFile(id));
+            } catch (Exception e) {
+                logger.warn("删除拒绝行文件失败: taskId={}", id, e);
+            }
+        }
+        try {
+            importBatchStatsService.deleteByTaskIds(ids);
+        } catch (Exception e) {
+            logger.warn("删除批次耗时统计失败: taskIds={}", ids, e);
+        }
+    }
+
+    /**
+     * 获取客户端IP地址
+     */
+    private String getClientIpAddress(HttpServletRequest request) {
+        String ip = request.getHeader("X-Forwarded-For");
+        if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
+            ip = request.getHeader("Proxy-Client-IP");
+        }
+        if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
+            ip = request.getHeader("WL-Proxy-Client-IP");
+        }
+        if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
+            ip = request.getRemoteAddr();
+        }
+        return ip;
+    }
+
     /**
      * 检查用户是否为管理员
      */
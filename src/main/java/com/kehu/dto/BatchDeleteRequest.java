@@ -0,0 +1,28 @@
+package com.kehu.dto;
+
+/**
+ * 批量删除请求体 {"ids":[...]} 或 {"selection":"选择集令牌"}
+ * id 由 Jackson 直接解析为 long[]，不经过 List&lt;Integer&gt; 装箱（也不会在 id 超过 int 范围时类型转换失败）
+ */
+public class BatchDeleteRequest {
+
+    private long[] ids;
+
+    private String selection;
+
+    public long[] getIds() {
+        return ids;
+    }
+
+    public void setIds(long[] ids) {
+        this.ids = ids;
+    }
+
+    public String getSelection() {
+        return selection;
+    }
+
+    public void setSelection(String selection) {
+        this.selection = selection;
+    }
+}
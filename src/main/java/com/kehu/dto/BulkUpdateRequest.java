@@ -0,0 +1,152 @@
+package com.kehu.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量修改请求体
+ * 目标四选一：ids（客户id）、selection（选择集令牌）、uploadTaskId（某次导入的全部客户）、filter（高级搜索条件）；
+ * set 为要设置的字段和新值，clear 为要清空的字段（可修改 name、email、address）
+ * <pre>{"uploadTaskId":12, "set":{"address":"新地址"}, "clear":["email"]}</pre>
+ */
+public class BulkUpdateRequest {
+
+    private long[] ids;
+
+    private String selection;
+
+    private Long uploadTaskId;
+
+    private Filter filter;
+
+    private Map<String, String> set;
+
+    private List<String> clear;
+
+    public long[] getIds() {
+        return ids;
+    }
+
+    public void setIds(long[] ids) {
+        this.ids = ids;
+    }
+
+    public String getSelection() {
+        return selection;
+    }
+
+    public void setSelection(String selection) {
+        this.selection = selection;
+    }
+
+    public Long getUploadTaskId() {
+        return uploadTaskId;
+    }
+
+    public void setUploadTaskId(Long uploadTaskId) {
+        this.uploadTaskId = uploadTaskId;
+    }
+
+    public Filter getFilter() {
+        return filter;
+    }
+
+    public void setFilter(Filter filter) {
+        this.filter = filter;
+    }
+
+    public Map<String, String> getSet() {
+        return set;
+    }
+
+    public void setSet(Map<String, String> set) {
+        this.set = set;
+    }
+
+    public List<String> getClear() {
+        return clear;
+    }
+
+    public void setClear(List<String> clear) {
+        this.clear = clear;
+    }
+
+    /**
+     * 高级搜索条件（同 /advanced-search 的参数）
+     */
+    public static class Filter {
+        private String name;
+        private String phone;
+        private String email;
+        private String address;
+        private LocalDateTime startTime;
+        private LocalDateTime endTime;
+        private Long uploadTaskId;
+        private boolean startsWith;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getPhone() {
+            return phone;
+        }
+
+        public void setPhone(String phone) {
+            this.phone = phone;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public void setEmail(String email) {
+            this.email = email;
+        }
+
+        public String getAddress() {
+            return address;
+        }
+
+        public void setAddress(String address) {
+            this.address = address;
+        }
+
+        public LocalDateTime getStartTime() {
+            return startTime;
+        }
+
+        public void setStartTime(LocalDateTime startTime) {
+            this.startTime = startTime;
+        }
+
+        public LocalDateTime getEndTime() {
+            return endTime;
+        }
+
+        public void setEndTime(LocalDateTime endTime) {
+            this.endTime = endTime;
+        }
+
+        public Long getUploadTaskId() {
+            return uploadTaskId;
+        }
+
+        public void setUploadTaskId(Long uploadTaskId) {
+            this.uploadTaskId = uploadTaskId;
+        }
+
+        public boolean isStartsWith() {
+            return startsWith;
+        }
+
+        public void setStartsWith(boolean startsWith) {
+            this.startsWith = startsWith;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.kehu.dto;
+
+/**
+ * 总数（精确值或估算值）
+ * 估算值来自表统计信息或抽样计数，精确值由后台统计完成后替换
+ */
+public class CountEstimate {
+
+    private final long value;
+    private final boolean exact;
+
+    public CountEstimate(long value, boolean exact) {
+        this.value = value;
+        this.exact = exact;
+    }
+
+    public static CountEstimate exact(long value) {
+        return new CountEstimate(value, true);
+    }
+
+    public static CountEstimate approximate(long value) {
+        return new CountEstimate(value, false);
+    }
+
+    public long getValue() {
+        return value;
+    }
+
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * 显示文本：精确值为 "N"，估算值为 "约 N"
+     */
+    public String getLabel() {
+        return exact ? Long.toString(value) : "约 " + value;
+    }
+}
@@ -0,0 +1,73 @@
+package com.kehu.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * 列表、搜索、批量查询返回的客户行（只读投影）
+ * 由查询直接构造（SELECT new ...），不是托管实体：不进入持久化上下文，没有快照和脏检查；
+ * 上传文件名在同一条查询中关联 upload_tasks 取得
+ */
+public class CustomerRow {
+
+    private final Long id;
+    private final String name;
+    private final String phone;
+    private final String email;
+    private final String address;
+    private final Long uploadTaskId;
+    private final String uploadFileName;
+    private final LocalDateTime createTime;
+    private final LocalDateTime updateTime;
+
+    public CustomerRow(Long id, String name, String phone, String email, String address,
+                       Long uploadTaskId, String uploadFileName, LocalDateTime createTime, LocalDateTime updateTime) {
+        this.id = id;
+        this.name = name;
+        this.phone = phone;
+        this.email = email;
+        this.address = address;
+        this.uploadTaskId = uploadTaskId;
+        this.uploadFileName = uploadFileName != null ? uploadFileName : "";
+        this.createTime = createTime;
+        this.updateTime = updateTime;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getPhone() {
+        return phone;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public Long getUploadTaskId() {
+        return uploadTaskId;
+    }
+
+    /**
+     * 关联的上传文件名（没有关联任务时为空字符串）
+     */
+    public String getUploadFileName() {
+        return uploadFileName;
+    }
+
+    public LocalDateTime getCreateTime() {
+        return createTime;
+    }
+
+    public LocalDateTime getUpdateTime() {
+        return updateTime;
+    }
+}
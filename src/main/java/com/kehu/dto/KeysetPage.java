@@ -0,0 +1,50 @@
+package com.kehu.dto;
+
+import com.kehu.util.PageCursor;
+
+import java.util.List;
+
+/**
+ * 键集分页结果（按id升序的一页数据 + 前后翻页令牌）
+ */
+public class KeysetPage<T> {
+
+    private final List<T> content;
+    private final boolean hasNext;
+    private final boolean hasPrevious;
+    private final String nextCursor;
+    private final String prevCursor;
+
+    /**
+     * @param content 本页数据（按id升序）
+     * @param firstId 本页第一条的id（本页为空时为null）
+     * @param lastId 本页最后一条的id（本页为空时为null）
+     */
+    public KeysetPage(List<T> content, Long firstId, Long lastId, boolean hasNext, boolean hasPrevious) {
+        this.content = content;
+        this.hasNext = hasNext && lastId != null;
+        this.hasPrevious = hasPrevious && firstId != null;
+        this.nextCursor = this.hasNext ? PageCursor.after(lastId) : null;
+        this.prevCursor = this.hasPrevious ? PageCursor.before(firstId) : null;
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public boolean hasNext() {
+        return hasNext;
+    }
+
+    public boolean hasPrevious() {
+        return hasPrevious;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public String getPrevCursor() {
+        return prevCursor;
+    }
+}
@@ -8,7 +8,9 @@ import java.time.LocalDateTime;
     @Index(name = "idx_name", columnList = "name"),
     @Index(name = "idx_phone", columnList = "phone"),
     @Index(name = "idx_email", columnList = "email"),
-    @Index(name = "idx_create_time", columnList = "create_time")
+    // 复合索引带上id：按任务、按创建时间过滤后按id排序分页时不需要额外排序（H2等二级索引不含主键的数据库也一样）
+    @Index(name = "idx_create_time_id", columnList = "create_time, id"),
+    @Index(name = "idx_upload_task_id_id", columnList = "upload_task_id, id")
 })
 public class Customer {
     @Id
@@ -36,6 +38,10 @@ public class Customer {
     @Column(name = "update_time")
     private LocalDateTime updateTime;
 
+    @Transient
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    private Integer rowNumber; // 导入时在原始文件中的行号（不持久化，用于记录被拒绝的行）
+
     @PrePersist
     protected void onCreate() {
         createTime = LocalDateTime.now();
@@ -111,5 +117,12 @@ public class Customer {
     public void setUpdateTime(LocalDateTime updateTime) {
         this.updateTime = updateTime;
     }
-}
 
+    public Integer getRowNumber() {
+        return rowNumber;
+    }
+
+    public void setRowNumber(Integer rowNumber) {
+        this.rowNumber = rowNumber;
+    }
+}
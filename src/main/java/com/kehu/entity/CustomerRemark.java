@@ -4,7 +4,9 @@ import javax.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "customer_remarks")
+@Table(name = "customer_remarks", indexes = {
+    @Index(name = "idx_customer_id", columnList = "customer_id")  // 与 schema.sql 一致：按客户查询、批量删除备注
+})
 public class CustomerRemark {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
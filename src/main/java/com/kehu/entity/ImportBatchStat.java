@@ -0,0 +1,203 @@
+package com.kehu.entity;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 导入批次耗时统计（每个入库批次一行）
+ * 各阶段：parse（读取/解析文件）、lookup（查重查询）、insert（写入）、commit（事务提交）
+ */
+@Entity
+@Table(name = "import_batch_stats", indexes = {
+    @Index(name = "idx_task_batch", columnList = "upload_task_id, batch_no")
+})
+public class ImportBatchStat {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "upload_task_id", nullable = false)
+    private Long uploadTaskId;
+
+    @Column(name = "batch_no", nullable = false)
+    private Integer batchNo; // 批次序号（从1开始）
+
+    @Column(name = "import_mode", length = 20)
+    private String importMode;
+
+    @Column(name = "row_count", nullable = false)
+    private Integer rowCount = 0; // 批次行数
+
+    @Column(name = "success_count")
+    private Integer successCount = 0;
+
+    @Column(name = "skip_count")
+    private Integer skipCount = 0;
+
+    @Column(name = "updated_count")
+    private Integer updatedCount = 0;
+
+    @Column(name = "unchanged_count")
+    private Integer unchangedCount = 0;
+
+    @Column(name = "error_count")
+    private Integer errorCount = 0;
+
+    @Column(name = "bytes")
+    private Long bytes = 0L; // 批次原始数据字节数（UTF-8估算）
+
+    @Column(name = "parse_ms")
+    private Long parseMs = 0L;
+
+    @Column(name = "lookup_ms")
+    private Long lookupMs = 0L;
+
+    @Column(name = "insert_ms")
+    private Long insertMs = 0L;
+
+    @Column(name = "commit_ms")
+    private Long commitMs = 0L;
+
+    @Column(name = "total_ms")
+    private Long totalMs = 0L; // 批次总耗时（解析 + 入库调用）
+
+    @Column(name = "start_time", nullable = false)
+    private LocalDateTime startTime; // 批次开始解析的时间
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getUploadTaskId() {
+        return uploadTaskId;
+    }
+
+    public void setUploadTaskId(Long uploadTaskId) {
+        this.uploadTaskId = uploadTaskId;
+    }
+
+    public Integer getBatchNo() {
+        return batchNo;
+    }
+
+    public void setBatchNo(Integer batchNo) {
+        this.batchNo = batchNo;
+    }
+
+    public String getImportMode() {
+        return importMode;
+    }
+
+    public void setImportMode(String importMode) {
+        this.importMode = importMode;
+    }
+
+    public Integer getRowCount() {
+        return rowCount;
+    }
+
+    public void setRowCount(Integer rowCount) {
+        this.rowCount = rowCount;
+    }
+
+    public Integer getSuccessCount() {
+        return successCount;
+    }
+
+    public void setSuccessCount(Integer successCount) {
+        this.successCount = successCount;
+    }
+
+    public Integer getSkipCount() {
+        return skipCount;
+    }
+
+    public void setSkipCount(Integer skipCount) {
+        this.skipCount = skipCount;
+    }
+
+    public Integer getUpdatedCount() {
+        return updatedCount;
+    }
+
+    public void setUpdatedCount(Integer updatedCount) {
+        this.updatedCount = updatedCount;
+    }
+
+    public Integer getUnchangedCount() {
+        return unchangedCount;
+    }
+
+    public void setUnchangedCount(Integer unchangedCount) {
+        this.unchangedCount = unchangedCount;
+    }
+
+    public Integer getErrorCount() {
+        return errorCount;
+    }
+
+    public void setErrorCount(Integer errorCount) {
+        this.errorCount = errorCount;
+    }
+
+    public Long getBytes() {
+        return bytes;
+    }
+
+    public void setBytes(Long bytes) {
+        this.bytes = bytes;
+    }
+
+    public Long getParseMs() {
+        return parseMs;
+    }
+
+    public void setParseMs(Long parseMs) {
+        this.parseMs = parseMs;
+    }
+
+    public Long getLookupMs() {
+        return lookupMs;
+    }
+
+    public void setLookupMs(Long lookupMs) {
+        this.lookupMs = lookupMs;
+    }
+
+    public Long getInsertMs() {
+        return insertMs;
+    }
+
+    public void setInsertMs(Long insertMs) {
+        this.insertMs = insertMs;
+    }
+
+    public Long getCommitMs() {
+        return commitMs;
+    }
+
+    public void setCommitMs(Long commitMs) {
+        this.commitMs = commitMs;
+    }
+
+    public Long getTotalMs() {
+        return totalMs;
+    }
+
+    public void setTotalMs(Long totalMs) {
+        this.totalMs = totalMs;
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(LocalDateTime startTime) {
+        this.startTime = startTime;
+    }
+}
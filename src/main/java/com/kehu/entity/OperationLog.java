@@ -6,7 +6,8 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "operation_logs", indexes = {
     @Index(name = "idx_username", columnList = "username"),
-    @Index(name = "idx_operation", columnList = "operation"),
+    // 按操作类型查询、按操作类型清理过期日志
+    @Index(name = "idx_operation_time_op", columnList = "operation, operation_time"),
     @Index(name = "idx_operation_time", columnList = "operation_time")
 })
 public class OperationLog {
@@ -25,6 +25,21 @@ public class UploadTask {
     @Column(name = "error_count", nullable = false)
     private Integer errorCount = 0;
 
+    @Column(name = "updated_count")
+    private Integer updatedCount = 0; // 合并模式：已存在且被更新的数目
+
+    @Column(name = "unchanged_count")
+    private Integer unchangedCount = 0; // 合并模式：已存在且无变化的数目
+
+    @Column(name = "import_mode", length = 20)
+    private String importMode = "SKIP"; // 导入模式：SKIP（跳过重复）、MERGE（合并更新）
+
+    @Column(name = "rejected_count")
+    private Integer rejectedCount = 0; // 被拒绝的行数（错误 + 重复），明细见拒绝行文件
+
+    @Column(name = "reverted_count")
+    private Integer revertedCount = 0; // 回滚导入：已删除的客户数目
+
     @Column(name = "status", length = 50)
     private String status = "处理中"; // 处理中、添加完成、处理失败
 
@@ -103,6 +118,46 @@ public class UploadTask {
         this.errorCount = errorCount;
     }
 
+    public Integer getUpdatedCount() {
+        return updatedCount;
+    }
+
+    public void setUpdatedCount(Integer updatedCount) {
+        this.updatedCount = updatedCount;
+    }
+
+    public Integer getUnchangedCount() {
+        return unchangedCount;
+    }
+
+    public void setUnchangedCount(Integer unchangedCount) {
+        this.unchangedCount = unchangedCount;
+    }
+
+    public String getImportMode() {
+        return importMode;
+    }
+
+    public void setImportMode(String importMode) {
+        this.importMode = importMode;
+    }
+
+    public Integer getRejectedCount() {
+        return rejectedCount;
+    }
+
+    public void setRejectedCount(Integer rejectedCount) {
+        this.rejectedCount = rejectedCount;
+    }
+
+    public Integer getRevertedCount() {
+        return revertedCount;
+    }
+
+    public void setRevertedCount(Integer revertedCount) {
+        this.revertedCount = revertedCount;
+    }
+
     public String getStatus() {
         return status;
     }
@@ -5,6 +5,7 @@ import com.alibaba.excel.read.listener.ReadListener;
 import com.kehu.dto.CustomerExcelDTO;
 import com.kehu.entity.Customer;
 import com.kehu.service.CustomerService;
+import com.kehu.service.ImportContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -23,6 +24,7 @@ public class CustomerExcelReadListener implements ReadListener<CustomerExcelDTO>
     
     private final CustomerService customerService;
     private final Long uploadTaskId;
+    private final ImportContext importContext;  // 导入上下文（导入模式、合并规则）
     private final int batchSize;  // 批次大小
     private final Consumer<ProgressInfo> progressCallback;  // 进度回调
     
@@ -31,6 +33,10 @@ public class CustomerExcelReadListener implements ReadListener<CustomerExcelDTO>
     private int processedCount = 0;  // 已处理数量（成功入库的数量）
     private int skipCount = 0;  // 跳过的数量（重复数据）
     private int errorCount = 0;  // 错误数量
+    private int updatedCount = 0;  // 更新的数量（合并模式）
+    private int unchangedCount = 0;  // 无变化的数量（合并模式）
+    private long batchBytes = 0;  // 当前批次的原始数据字节数（UTF-8估算）
+    private long batchStartNanos = System.nanoTime();  // 当前批次开始读取的时间
     
     // 进度信息类
     public static class ProgressInfo {
@@ -45,8 +51,14 @@ public class CustomerExcelReadListener implements ReadListener<CustomerExcelDTO>
     
     public CustomerExcelReadListener(CustomerService customerService, Long uploadTaskId, 
                                      int batchSize, Consumer<ProgressInfo> progressCallback) {
+        this(customerService, ImportContext.skip(uploadTaskId), batchSize, progressCallback);
+    }
+    
+    public CustomerExcelReadListener(CustomerService customerService, ImportContext importContext, 
+                                     int batchSize, Consumer<ProgressInfo> progressCallback) {
         this.customerService = customerService;
-        this.uploadTaskId = uploadTaskId;
+        this.importContext = importContext;
+        this.uploadTaskId = importContext.getUploadTaskId();
         this.batchSize = batchSize;
         this.progressCallback = progressCallback;
     }
@@ -56,18 +68,33 @@ public class CustomerExcelReadListener implements ReadListener<CustomerExcelDTO>
      */
     @Override
     public void invoke(CustomerExcelDTO data, AnalysisContext context) {
-        // 跳过空行（姓名为空）
+        // Excel中的行号（从1开始，含表头）
+        Integer rowNumber = context.readRowHolder() != null ? context.readRowHolder().getRowIndex() + 1 : null;
+        
+        // 跳过空行（姓名为空）；姓名为空但其他列有内容的行记入拒绝行文件
         if (data.getName() == null || data.getName().trim().isEmpty()) {
+            if (!isBlank(data.getPhone()) || !isBlank(data.getEmail()) || !isBlank(data.getAddress())) {
+                Customer rejected = new Customer();
+                rejected.setRowNumber(rowNumber);
+                rejected.setPhone(data.getPhone());
+                rejected.setEmail(data.getEmail());
+                rejected.setAddress(data.getAddress());
+                importContext.reject(rejected, "姓名为空");
+                errorCount++;
+            }
             return;
         }
         
         // 转换为Customer实体
         Customer customer = new Customer();
+        customer.setRowNumber(rowNumber);
         customer.setName(data.getName().trim());
         customer.setPhone(data.getPhone() != null && !data.getPhone().trim().isEmpty() ? data.getPhone().trim() : null);
         customer.setEmail(data.getEmail() != null && !data.getEmail().trim().isEmpty() ? data.getEmail().trim() : null);
         customer.setAddress(data.getAddress() != null && !data.getAddress().trim().isEmpty() ? data.getAddress().trim() : null);
         customer.setUploadTaskId(uploadTaskId);
+        batchBytes += ImportContext.utf8Length(data.getName()) + ImportContext.utf8Length(data.getPhone())
+            + ImportContext.utf8Length(data.getEmail()) + ImportContext.utf8Length(data.getAddress());
         
         batch.add(customer);
         totalCount++;
@@ -102,14 +129,21 @@ public class CustomerExcelReadListener implements ReadListener<CustomerExcelDTO>
             return;
         }
         
+        long callStart = System.nanoTime();
+        long parseNanos = callStart - batchStartNanos;
         try {
-            // 批量入库（会返回成功、跳过、错误的数量）
-            Map<String, Object> result = customerService.batchImportCustomers(batch, uploadTaskId);
+            // 批量入库（会返回成功、跳过、错误的数量）；批次内的拒绝行在事务提交后才写入文件
+            importContext.beginBatch();
+            Map<String, Object> result = customerService.batchImportCustomers(batch, importContext);
+            importContext.commitBatch();
+            importContext.recordBatch(batch.size(), batchBytes, parseNanos, System.nanoTime() - callStart, result);
             
             // 更新统计数据（使用实际返回的数量，而不是批次大小）
             Integer success = (Integer) result.get("successCount");
             Integer skip = (Integer) result.get("skipCount");
             Integer error = (Integer) result.get("errorCount");
+            Integer updated = (Integer) result.get("updatedCount");
+            Integer unchanged = (Integer) result.get("unchangedCount");
             
             if (success != null) {
                 processedCount += success;
@@ -120,6 +154,12 @@ public class CustomerExcelReadListener implements ReadListener<CustomerExcelDTO>
             if (error != null) {
                 errorCount += error;
             }
+            if (updated != null) {
+                updatedCount += updated;
+            }
+            if (unchanged != null) {
+                unchangedCount += unchanged;
+            }
             
             // 清空批次，释放内存
             batch.clear();
@@ -127,12 +167,24 @@ public class CustomerExcelReadListener implements ReadListener<CustomerExcelDTO>
             // 注意：不在批量入库时调用进度回调，只在最终完成时更新进度
         } catch (Exception e) {
             logger.error("批量入库失败", e);
-            // 记录错误，继续处理下一批
+            importContext.recordBatch(batch.size(), batchBytes, parseNanos, System.nanoTime() - callStart, null);
+            // 记录错误，继续处理下一批（整批事务已回滚，丢弃批次内暂存的拒绝行，整批记入拒绝行文件）
+            importContext.discardBatch();
             errorCount += batch.size();
+            for (Customer customer : batch) {
+                importContext.reject(customer, "批次入库失败: " + e.getMessage());
+            }
             batch.clear();
+        } finally {
+            batchBytes = 0;
+            batchStartNanos = System.nanoTime();
         }
     }
     
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+    
     /**
      * 获取总记录数
      */
@@ -160,5 +212,18 @@ public class CustomerExcelReadListener implements ReadListener<CustomerExcelDTO>
     public int getErrorCount() {
         return errorCount;
     }
+    
+    /**
+     * 获取更新的数量（合并模式）
+     */
+    public int getUpdatedCount() {
+        return updatedCount;
+    }
+    
+    /**
+     * 获取无变化的数量（合并模式）
+     */
+    public int getUnchangedCount() {
+        return unchangedCount;
+    }
 }
-
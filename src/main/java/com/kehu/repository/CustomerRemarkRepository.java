@@ -2,8 +2,12 @@ package com.kehu.repository;
 
 import com.kehu.entity.CustomerRemark;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.Optional;
 
 @Repository
@@ -14,5 +18,14 @@ public interface CustomerRemarkRepository extends JpaRepository<CustomerRemark,
      * @return 备注信息
      */
     Optional<CustomerRemark> findByCustomerId(Long customerId);
+
+    /**
+     * 删除一批客户的备注（一条 DELETE 语句，不加载实体）
+     * @param customerIds 客户ID列表
+     * @return 删除的备注数
+     */
+    @Modifying
+    @Query("DELETE FROM CustomerRemark r WHERE r.customerId IN :customerIds")
+    int deleteByCustomerIdIn(@Param("customerIds") Collection<Long> customerIds);
 }
 
@@ -1,19 +1,25 @@
 package com.kehu.repository;
 
+import com.kehu.dto.CustomerRow;
 import com.kehu.entity.Customer;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface CustomerRepository extends JpaRepository<Customer, Long> {
+public interface CustomerRepository extends JpaRepository<Customer, Long>, JpaSpecificationExecutor<Customer>,
+        CustomerRepositoryCustom {
     List<Customer> findByNameContaining(String name);
     Page<Customer> findByNameContaining(String name, Pageable pageable);
     Optional<Customer> findByPhone(String phone);
@@ -26,6 +32,30 @@ public interface CustomerRepository extends JpaRepository<Customer, Long> {
     @Query("SELECT c.phone FROM Customer c WHERE c.phone IN :phones AND c.phone IS NOT NULL")
     List<String> findPhonesByPhoneIn(@Param("phones") List<String> phones);
     
+    /**
+     * 批量查询已存在客户的可合并字段（用于合并导入，只查询需要比较的列）
+     * @param phones 电话列表
+     * @return 每行依次为 id, phone, name, email, address
+     */
+    @Query("SELECT c.id, c.phone, c.name, c.email, c.address FROM Customer c WHERE c.phone IN :phones ORDER BY c.id")
+    List<Object[]> findMergeFieldsByPhoneIn(@Param("phones") List<String> phones);
+    
+    /**
+     * 按电话批量取每个电话最早的客户id（批量查询按电话匹配，一条 IN 查询走 idx_phone）
+     * @param phones 电话列表
+     * @return 每行依次为 phone, id
+     */
+    @Query("SELECT c.phone, MIN(c.id) FROM Customer c WHERE c.phone IN :phones GROUP BY c.phone")
+    List<Object[]> findFirstIdsByPhoneIn(@Param("phones") Collection<String> phones);
+    
+    /**
+     * 按id批量删除客户（一条 DELETE 语句，不加载实体）
+     * @return 实际删除的行数
+     */
+    @Modifying
+    @Query("DELETE FROM Customer c WHERE c.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+    
     /**
      * 查询今日新增客户数量（优化：使用索引字段查询）
      * @param startOfDay 今日开始时间
@@ -35,26 +65,33 @@ public interface CustomerRepository extends JpaRepository<Customer, Long> {
     @Query(value = "SELECT COUNT(*) FROM customers WHERE create_time >= :startOfDay AND create_time <= :endOfDay", nativeQuery = true)
     long countByCreateTimeBetween(@Param("startOfDay") LocalDateTime startOfDay, @Param("endOfDay") LocalDateTime endOfDay);
     
+    // 高级搜索按动态条件查询：条件见 CustomerSpecifications，查询见 findIds / count(Specification)
+
+    /**
+     * 按id顺序取一页的id（延迟关联第一步）
+     */
+    @Query("SELECT c.id FROM Customer c ORDER BY c.id")
+    Slice<Long> findIdsOrderById(Pageable pageable);
+    
+    /**
+     * 按id批量取整行（延迟关联第二步）
+     */
+    @Query("SELECT c FROM Customer c WHERE c.id IN :ids ORDER BY c.id")
+    List<Customer> findByIdInOrderById(@Param("ids") Collection<Long> ids);
+    
     /**
-     * 高级搜索：多条件组合查询
-     */
-    @Query("SELECT c FROM Customer c WHERE " +
-           "(:name IS NULL OR c.name LIKE %:name%) AND " +
-           "(:phone IS NULL OR c.phone LIKE %:phone%) AND " +
-           "(:email IS NULL OR c.email LIKE %:email%) AND " +
-           "(:address IS NULL OR c.address LIKE %:address%) AND " +
-           "(:startTime IS NULL OR c.createTime >= :startTime) AND " +
-           "(:endTime IS NULL OR c.createTime <= :endTime) AND " +
-           "(:uploadTaskId IS NULL OR c.uploadTaskId = :uploadTaskId)")
-    Page<Customer> advancedSearch(
-        @Param("name") String name,
-        @Param("phone") String phone,
-        @Param("email") String email,
-        @Param("address") String address,
-        @Param("startTime") LocalDateTime startTime,
-        @Param("endTime") LocalDateTime endTime,
-        @Param("uploadTaskId") Long uploadTaskId,
-        Pageable pageable
-    );
+     * 按id批量取列表显示的列（只读投影，不加载实体），同一条查询关联上传文件名，结果按id升序
+     */
+    @Query("SELECT new com.kehu.dto.CustomerRow(c.id, c.name, c.phone, c.email, c.address, c.uploadTaskId, t.fileName, " +
+           "c.createTime, c.updateTime) FROM Customer c LEFT JOIN UploadTask t ON t.id = c.uploadTaskId " +
+           "WHERE c.id IN :ids ORDER BY c.id")
+    List<CustomerRow> findRowsByIdIn(@Param("ids") Collection<Long> ids);
+    
+    long countByIdBetween(Long fromId, Long toId);
+    
+    /**
+     * 最小和最大id（表为空时均为null）
+     */
+    @Query("SELECT MIN(c.id), MAX(c.id) FROM Customer c")
+    List<Object[]> findIdBounds();
 }
-
@@ -0,0 +1,34 @@
+package com.kehu.repository;
+
+import com.kehu.entity.Customer;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * 按动态条件查询（{@link CustomerSpecifications}），JpaSpecificationExecutor 不支持只查id和不带 COUNT 的分页
+ */
+public interface CustomerRepositoryCustom {
+
+    /**
+     * 按条件取一页id（按id升序，延迟关联第一步）
+     * 返回 Slice：多取一条判断是否有下一页，不执行 COUNT
+     */
+    Slice<Long> findIds(Specification<Customer> spec, Pageable pageable);
+
+    /**
+     * 按条件取前 limit 个id（按id排序，用于键集分页）
+     */
+    List<Long> findIds(Specification<Customer> spec, Sort.Direction direction, int limit);
+
+    /**
+     * 按姓名批量取最佳匹配的客户id：姓名相同的优先，否则取以该姓名开头的第一个（按姓名、id排序）
+     * 每个姓名只在 idx_name 上定位一条，不会把所有包含该姓名的客户都查出来
+     * @param names 姓名列表（已去掉首尾空白）
+     * @return 与 names 一一对应的客户id，没有匹配时为null
+     */
+    List<Long> findFirstIdsByNamePrefix(List<String> names);
+}
@@ -0,0 +1,102 @@
+package com.kehu.repository;
+
+import com.kehu.entity.Customer;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class CustomerRepositoryImpl implements CustomerRepositoryCustom {
+
+    // 一条语句中按姓名定位的个数（每个姓名一个 UNION ALL 分支）
+    private static final int NAME_PROBES_PER_QUERY = 100;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public CustomerRepositoryImpl() {
+    }
+
+    /**
+     * 使用指定的 EntityManager（测试中检查执行计划时使用）
+     */
+    CustomerRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public Slice<Long> findIds(Specification<Customer> spec, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Customer> root = query.from(Customer.class);
+        query.select(root.get("id"));
+        where(query, root, cb, spec);
+        query.orderBy(cb.asc(root.get("id")));
+        List<Long> ids = entityManager.createQuery(query)
+            .setFirstResult((int) pageable.getOffset())
+            .setMaxResults(pageable.getPageSize() + 1)
+            .getResultList();
+        boolean hasNext = ids.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? ids.subList(0, pageable.getPageSize()) : ids, pageable, hasNext);
+    }
+
+    @Override
+    public List<Long> findIds(Specification<Customer> spec, Sort.Direction direction, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Customer> root = query.from(Customer.class);
+        query.select(root.get("id"));
+        where(query, root, cb, spec);
+        query.orderBy(direction.isAscending() ? cb.asc(root.get("id")) : cb.desc(root.get("id")));
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public List<Long> findFirstIdsByNamePrefix(List<String> names) {
+        Long[] ids = new Long[names.size()];
+        for (int from = 0; from < names.size(); from += NAME_PROBES_PER_QUERY) {
+            int to = Math.min(from + NAME_PROBES_PER_QUERY, names.size());
+            // 每个分支：在 idx_name 上定位到第一个以该姓名开头的条目（姓名相同的排在最前），只取一条
+            StringBuilder sql = new StringBuilder();
+            List<Object> args = new ArrayList<>();
+            args.add(String.valueOf(CustomerSpecifications.ESCAPE));
+            for (int i = from; i < to; i++) {
+                if (i > from) {
+                    sql.append(" UNION ALL ");
+                }
+                args.add(CustomerSpecifications.prefixPattern(names.get(i)));
+                sql.append("(SELECT ").append(i).append(" AS k, id FROM customers WHERE name LIKE ?")
+                    .append(args.size()).append(" ESCAPE ?1 ORDER BY name, id LIMIT 1)");
+            }
+            Query query = entityManager.createNativeQuery(sql.toString());
+            for (int i = 0; i < args.size(); i++) {
+                query.setParameter(i + 1, args.get(i));
+            }
+            for (Object result : query.getResultList()) {
+                Object[] row = (Object[]) result;
+                ids[((Number) row[0]).intValue()] = ((Number) row[1]).longValue();
+            }
+        }
+        return Arrays.asList(ids);
+    }
+
+    private static void where(CriteriaQuery<?> query, Root<Customer> root, CriteriaBuilder cb,
+                              Specification<Customer> spec) {
+        Predicate predicate = spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+    }
+}
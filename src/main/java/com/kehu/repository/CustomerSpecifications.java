@@ -0,0 +1,146 @@
+package com.kehu.repository;
+
+import com.kehu.entity.Customer;
+import org.springframework.data.jpa.domain.Specification;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Predicate;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 客户查询条件（JPA Specification）
+ * 只生成实际传入的条件，不再使用 "(:x IS NULL OR ...)" 的固定写法：
+ * 固定写法的执行计划在不知道参数值时生成，上传任务ID、创建时间有索引也只能全表扫描
+ */
+public final class CustomerSpecifications {
+
+    // LIKE 的转义字符（用户输入的 % _ 按普通字符匹配）
+    static final char ESCAPE = '\\';
+
+    private CustomerSpecifications() {
+    }
+
+    /**
+     * 高级搜索条件（条件为null表示不限，调用方负责规范化）
+     * @param prefix true 时字符串条件按前缀匹配（LIKE 'x%'，可以使用姓名、电话、邮箱列的索引），false 时按包含匹配（LIKE '%x%'）
+     */
+    public static Specification<Customer> advancedSearch(String name, String phone, String email, String address,
+                                                         LocalDateTime startTime, LocalDateTime endTime,
+                                                         Long uploadTaskId, boolean prefix) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (uploadTaskId != null) {
+                predicates.add(cb.equal(root.get("uploadTaskId"), uploadTaskId));
+            }
+            if (startTime != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("createTime"), startTime));
+            }
+            if (endTime != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("createTime"), endTime));
+            }
+            addLike(predicates, cb, root.get("name"), name, prefix);
+            addLike(predicates, cb, root.get("phone"), phone, prefix);
+            addLike(predicates, cb, root.get("email"), email, prefix);
+            addLike(predicates, cb, root.get("address"), address, prefix);
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    /**
+     * 与 {@link #advancedSearch} 相同的条件，生成 customers 表（别名 c）上的 SQL 条件，用于 JDBC 逐行读取（导出等）
+     * @param args 按顺序收集绑定参数
+     * @return " WHERE ..."，没有条件时返回空字符串
+     */
+    public static String advancedSearchSql(String name, String phone, String email, String address,
+                                           LocalDateTime startTime, LocalDateTime endTime,
+                                           Long uploadTaskId, boolean prefix, List<Object> args) {
+        List<String> conditions = new ArrayList<>();
+        if (uploadTaskId != null) {
+            conditions.add("c.upload_task_id = ?");
+            args.add(uploadTaskId);
+        }
+        if (startTime != null) {
+            conditions.add("c.create_time >= ?");
+            args.add(Timestamp.valueOf(startTime));
+        }
+        if (endTime != null) {
+            conditions.add("c.create_time <= ?");
+            args.add(Timestamp.valueOf(endTime));
+        }
+        addLikeSql(conditions, args, "c.name", name, prefix);
+        addLikeSql(conditions, args, "c.phone", phone, prefix);
+        addLikeSql(conditions, args, "c.email", email, prefix);
+        addLikeSql(conditions, args, "c.address", address, prefix);
+        return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+    }
+
+    /**
+     * id > afterId
+     */
+    public static Specification<Customer> idGreaterThan(long afterId) {
+        return (root, query, cb) -> cb.greaterThan(root.get("id"), afterId);
+    }
+
+    /**
+     * id < beforeId
+     */
+    public static Specification<Customer> idLessThan(long beforeId) {
+        return (root, query, cb) -> cb.lessThan(root.get("id"), beforeId);
+    }
+
+    /**
+     * fromId <= id <= toId
+     */
+    public static Specification<Customer> idBetween(long fromId, long toId) {
+        return (root, query, cb) -> cb.between(root.get("id"), fromId, toId);
+    }
+
+    private static void addLike(List<Predicate> predicates, CriteriaBuilder cb, Expression<String> column,
+                                String value, boolean prefix) {
+        if (value == null) {
+            return;
+        }
+        String escaped = escapeLike(value);
+        predicates.add(cb.like(column, prefix ? escaped + "%" : "%" + escaped + "%", ESCAPE));
+    }
+
+    private static void addLikeSql(List<String> conditions, List<Object> args, String column,
+                                   String value, boolean prefix) {
+        if (value == null) {
+            return;
+        }
+        String escaped = escapeLike(value);
+        // 转义字符作为参数绑定，不受 MySQL 字符串中反斜杠转义的影响
+        conditions.add(column + " LIKE ? ESCAPE ?");
+        args.add(prefix ? escaped + "%" : "%" + escaped + "%");
+        args.add(String.valueOf(ESCAPE));
+    }
+
+    /**
+     * 前缀匹配的 LIKE 模式（配合 ESCAPE {@link #ESCAPE} 使用）
+     */
+    static String prefixPattern(String value) {
+        return escapeLike(value) + "%";
+    }
+
+    private static String escapeLike(String value) {
+        StringBuilder sb = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '%' || c == '_' || c == ESCAPE) {
+                if (sb == null) {
+                    sb = new StringBuilder(value.length() + 8).append(value, 0, i);
+                }
+                sb.append(ESCAPE);
+            }
+            if (sb != null) {
+                sb.append(c);
+            }
+        }
+        return sb != null ? sb.toString() : value;
+    }
+}
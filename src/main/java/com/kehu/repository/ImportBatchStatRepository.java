@@ -0,0 +1,21 @@
+package com.kehu.repository;
+
+import com.kehu.entity.ImportBatchStat;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ImportBatchStatRepository extends JpaRepository<ImportBatchStat, Long> {
+
+    List<ImportBatchStat> findByUploadTaskIdOrderByBatchNoAsc(Long uploadTaskId);
+
+    @Modifying
+    @Query("DELETE FROM ImportBatchStat s WHERE s.uploadTaskId IN :taskIds")
+    int deleteByUploadTaskIdIn(@Param("taskIds") Collection<Long> taskIds);
+}
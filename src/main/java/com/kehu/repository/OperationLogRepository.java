@@ -9,7 +9,6 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
-import java.util.List;
 
 @Repository
 public interface OperationLogRepository extends JpaRepository<OperationLog, Long> {
@@ -42,10 +41,5 @@ public interface OperationLogRepository extends JpaRepository<OperationLog, Long
         @Param("endTime") LocalDateTime endTime,
         Pageable pageable
     );
-    
-    List<OperationLog> findByOperationTimeBetweenOrderByOperationTimeDesc(
-        LocalDateTime startTime,
-        LocalDateTime endTime
-    );
 }
 
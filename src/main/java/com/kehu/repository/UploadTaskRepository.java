@@ -2,8 +2,11 @@ package com.kehu.repository;
 
 import com.kehu.entity.UploadTask;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -15,5 +18,14 @@ public interface UploadTaskRepository extends JpaRepository<UploadTask, Long> {
     
     // 根据状态查询任务
     List<UploadTask> findByStatusOrderByIdDesc(String status);
+    
+    // 更新回滚进度（只更新两列，不加载实体）
+    @Modifying
+    @Query("UPDATE UploadTask t SET t.status = :status, t.revertedCount = :revertedCount WHERE t.id = :id")
+    int updateRevertProgress(@Param("id") Long id, @Param("status") String status, @Param("revertedCount") Integer revertedCount);
+    
+    // 更新被拒绝行数
+    @Modifying
+    @Query("UPDATE UploadTask t SET t.rejectedCount = :rejectedCount WHERE t.id = :id")
+    int updateRejectedCount(@Param("id") Long id, @Param("rejectedCount") Integer rejectedCount);
 }
-
@@ -0,0 +1,83 @@
+package com.kehu.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * 后台任务（导出、按条件删除、按文件批量查询）的公共部分：id、提交人、状态和结束时间
+ * 状态显示为 动作+中/完成/失败（如 导出中、导出完成），取消为 已取消；任务线程结束时调用 finish
+ */
+public abstract class BackgroundJob {
+
+    /**
+     * 任务状态
+     */
+    public enum State {
+        RUNNING, DONE, CANCELLED, FAILED
+    }
+
+    private final String id = UUID.randomUUID().toString().replace("-", "");
+    private final String action;
+    private final String username;
+    private final LocalDateTime createTime = LocalDateTime.now();
+    private volatile State state = State.RUNNING;
+    private volatile LocalDateTime finishTime;
+    private volatile String error;
+
+    /**
+     * @param action 状态显示用的动作（如 导出、删除、查询）
+     */
+    protected BackgroundJob(String action, String username) {
+        this.action = action;
+        this.username = username;
+    }
+
+    void finish(State state, String error) {
+        this.error = error;
+        this.finishTime = LocalDateTime.now();
+        this.state = state;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public LocalDateTime getCreateTime() {
+        return createTime;
+    }
+
+    @JsonIgnore
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * 状态的显示文字
+     */
+    public String getStatus() {
+        switch (state) {
+            case RUNNING:
+                return action + "中";
+            case DONE:
+                return action + "完成";
+            case CANCELLED:
+                return "已取消";
+            default:
+                return action + "失败";
+        }
+    }
+
+    public LocalDateTime getFinishTime() {
+        return finishTime;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
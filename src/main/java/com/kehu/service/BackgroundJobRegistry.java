@@ -0,0 +1,98 @@
+package com.kehu.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 后台任务的登记和清理（每个后台任务服务持有一个）
+ * 任务只保存在内存中，结束超过保留时间后在提交新任务时清理；结果文件先写 .part 再改名，
+ * 目录中超过保留时间的文件（包括重启前留下的）同时删除
+ */
+class BackgroundJobRegistry<J extends BackgroundJob> {
+
+    private static final Logger logger = LoggerFactory.getLogger(BackgroundJobRegistry.class);
+
+    private final Map<String, J> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * 写入结果文件的内容
+     */
+    interface FileWriter<T> {
+        T write(Path partFile) throws Exception;
+    }
+
+    void add(J job) {
+        jobs.put(job.getId(), job);
+    }
+
+    /**
+     * 查询任务（不存在或已过期时返回null）
+     */
+    J get(String id) {
+        return id != null ? jobs.get(id) : null;
+    }
+
+    /**
+     * 正在运行的任务数
+     */
+    long runningCount() {
+        return jobs.values().stream().filter(job -> job.getState() == BackgroundJob.State.RUNNING).count();
+    }
+
+    /**
+     * 删除结束超过 retentionHours 小时的任务
+     */
+    void removeExpired(long retentionHours) {
+        LocalDateTime expireBefore = LocalDateTime.now().minusHours(retentionHours);
+        jobs.values().removeIf(job -> job.getFinishTime() != null && job.getFinishTime().isBefore(expireBefore));
+    }
+
+    /**
+     * 删除过期的任务，以及目录中文件名匹配 glob、修改时间超过 retentionHours 小时的文件
+     */
+    void removeExpired(long retentionHours, Path dir, String glob) {
+        removeExpired(retentionHours);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        long expireMillis = System.currentTimeMillis() - retentionHours * 3600_000L;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, glob)) {
+            for (Path file : files) {
+                if (Files.getLastModifiedTime(file).toMillis() < expireMillis) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("清理过期文件失败: {}/{}: {}", dir, glob, e.getMessage());
+        }
+    }
+
+    /**
+     * 先写到 文件名.part，写完后改名为 file；失败时删除 .part 文件后继续抛出
+     */
+    static <T> T writeFile(Path file, FileWriter<T> writer) throws Exception {
+        Path partFile = file.resolveSibling(file.getFileName() + ".part");
+        try {
+            Files.createDirectories(file.getParent());
+            T result = writer.write(partFile);
+            Files.move(partFile, file, StandardCopyOption.REPLACE_EXISTING);
+            return result;
+        } catch (Exception e) {
+            try {
+                Files.deleteIfExists(partFile);
+            } catch (IOException ex) {
+                logger.warn("删除未完成的文件失败: {}", partFile);
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package com.kehu.service;
+
+import com.alibaba.excel.EasyExcel;
+import com.alibaba.excel.context.AnalysisContext;
+import com.alibaba.excel.read.listener.ReadListener;
+import com.kehu.dto.CustomerExcelDTO;
+import com.kehu.dto.CustomerRow;
+import com.kehu.util.CsvFields;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 按文件批量查询（后台任务）
+ * 上传 CSV / Excel 查询列表（第1列姓名、第2列电话，第一行为表头，与导入文件格式相同），
+ * 后台逐行读取，每 customer.batch-query.job-block-size 行一批交给 {@link CustomerService#batchQueryCustomers} 匹配，
+ * 结果边匹配边写入 gzip 压缩的 CSV 文件；内存中只保留当前一批，与文件大小无关
+ */
+@Service
+public class BatchQueryJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchQueryJobService.class);
+
+    private static final String[] HEADERS = {"行号", "查询姓名", "查询电话", "匹配状态", "客户ID", "姓名", "电话", "上传文件"};
+
+    private static final DateTimeFormatter FILE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private OperationLogService operationLogService;
+
+    @Autowired
+    @Qualifier("taskExecutor")
+    private Executor taskExecutor;
+
+    // 上传的查询文件和结果文件的目录
+    @Value("${customer.batch-query.dir:batch-query}")
+    private String jobDir;
+
+    // 结果文件的保留时间（小时），过期的任务和文件在提交新任务时清理
+    @Value("${customer.batch-query.retention-hours:24}")
+    private long retentionHours;
+
+    // 同时运行的批量查询任务数上限
+    @Value("${customer.batch-query.max-running-jobs:2}")
+    private int maxRunningJobs;
+
+    // 每批匹配的行数
+    @Value("${customer.batch-query.job-block-size:10000}")
+    private int blockSize;
+
+    private final BackgroundJobRegistry<BatchQueryJob> jobs = new BackgroundJobRegistry<>();
+
+    /**
+     * 查询文件格式是否支持（.csv、.xlsx、.xls）
+     */
+    public static boolean isSupportedFile(String fileName) {
+        if (fileName == null) {
+            return false;
+        }
+        String lower = fileName.toLowerCase();
+        return lower.endsWith(".csv") || lower.endsWith(".xlsx") || lower.endsWith(".xls");
+    }
+
+    /**
+     * 提交批量查询任务（先把上传的文件保存到任务目录，请求结束后临时文件会被删除）
+     * @throws IllegalStateException 运行中的任务已达上限
+     */
+    public BatchQueryJob startJob(MultipartFile file, String username, String clientIp) throws IOException {
+        jobs.removeExpired(retentionHours, Paths.get(jobDir), "batch_query_*");
+        if (jobs.runningCount() >= maxRunningJobs) {
+            throw new IllegalStateException("正在运行的批量查询任务已达上限（" + maxRunningJobs + "个），请稍后再试");
+        }
+        String sourceFileName = file.getOriginalFilename();
+        BatchQueryJob job = new BatchQueryJob(sourceFileName,
+            "批量查询结果_" + LocalDateTime.now().format(FILE_TIME_FORMAT) + ".csv.gz", username);
+        String lower = sourceFileName.toLowerCase();
+        Path input = Paths.get(jobDir, "batch_query_" + job.getId() + lower.substring(lower.lastIndexOf('.')));
+        Files.createDirectories(input.getParent());
+        try (InputStream in = file.getInputStream()) {
+            Files.copy(in, input, StandardCopyOption.REPLACE_EXISTING);
+        }
+        jobs.add(job);
+        taskExecutor.execute(() -> runJob(job, input, clientIp));
+        return job;
+    }
+
+    private void runJob(BatchQueryJob job, Path input, String clientIp) {
+        long begin = System.currentTimeMillis();
+        try {
+            BackgroundJobRegistry.writeFile(getJobFile(job), partFile -> {
+                try (Writer writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(
+                        Files.newOutputStream(partFile), 64 * 1024), StandardCharsets.UTF_8), 64 * 1024)) {
+                    // UTF-8 BOM，解压后用Excel打开不乱码
+                    writer.write('\uFEFF');
+                    writer.write(String.join(",", HEADERS));
+                    writer.write('\n');
+                    Block block = new Block(job, writer);
+                    if (input.getFileName().toString().endsWith(".csv")) {
+                        readCsv(input, block);
+                    } else {
+                        readExcel(input, block);
+                    }
+                    block.flush();
+                }
+                return null;
+            });
+            job.finish(BackgroundJob.State.DONE, null);
+            logger.info("批量查询完成: job={}, 查询={}, 匹配={}, 耗时={}ms", job.getId(), job.getTotalCount(),
+                job.getMatchedCount(), System.currentTimeMillis() - begin);
+            if (job.getUsername() != null) {
+                operationLogService.logSuccess(job.getUsername(), "BATCH_QUERY", "CUSTOMER",
+                    "按文件批量查询: " + job.getSourceFileName() + "，查询 " + job.getTotalCount() + " 条，匹配 "
+                        + job.getMatchedCount() + " 条", clientIp, null);
+            }
+        } catch (Exception e) {
+            logger.error("批量查询失败: job=" + job.getId(), e);
+            job.finish(BackgroundJob.State.FAILED, e.getMessage());
+            if (job.getUsername() != null) {
+                operationLogService.logFailure(job.getUsername(), "BATCH_QUERY", "CUSTOMER",
+                    "按文件批量查询失败: " + job.getSourceFileName(), clientIp, null, e.getMessage());
+            }
+        } finally {
+            try {
+                Files.deleteIfExists(input);
+            } catch (IOException e) {
+                logger.warn("删除批量查询文件失败: {}", input);
+            }
+        }
+    }
+
+    private void readCsv(Path input, Block block) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                // 跳过表头
+                if (lineNumber == 1) {
+                    continue;
+                }
+                String[] values = CsvFields.split(line);
+                block.add(lineNumber, values[0], values.length > 1 ? values[1] : null);
+            }
+        }
+    }
+
+    private void readExcel(Path input, Block block) {
+        EasyExcel.read(input.toFile(), CustomerExcelDTO.class, new ReadListener<CustomerExcelDTO>() {
+            @Override
+            public void invoke(CustomerExcelDTO data, AnalysisContext context) {
+                try {
+                    block.add(context.readRowHolder().getRowIndex() + 1, data.getName(), data.getPhone());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public void doAfterAllAnalysed(AnalysisContext context) {
+            }
+        }).sheet(0).headRowNumber(1).doRead();
+    }
+
+    /**
+     * 当前一批查询项：攒满一批后匹配并写入结果文件
+     */
+    private class Block {
+        private final BatchQueryJob job;
+        private final Writer writer;
+        private final List<Map<String, String>> items = new ArrayList<>(blockSize);
+        private final List<Integer> rowNumbers = new ArrayList<>(blockSize);
+
+        Block(BatchQueryJob job, Writer writer) {
+            this.job = job;
+            this.writer = writer;
+        }
+
+        void add(int rowNumber, String name, String phone) throws IOException {
+            name = name != null ? name.trim() : "";
+            phone = phone != null ? phone.trim() : "";
+            // 跳过空行
+            if (name.isEmpty() && phone.isEmpty()) {
+                return;
+            }
+            Map<String, String> item = new HashMap<>();
+            item.put("name", name);
+            item.put("phone", phone);
+            items.add(item);
+            rowNumbers.add(rowNumber);
+            if (items.size() >= blockSize) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            if (items.isEmpty()) {
+                return;
+            }
+            List<Map<String, Object>> results = customerService.batchQueryCustomers(items);
+            int matched = 0;
+            for (int i = 0; i < results.size(); i++) {
+                Map<String, String> item = items.get(i);
+                CustomerRow customer = (CustomerRow) results.get(i).get("customer");
+                writer.write(Integer.toString(rowNumbers.get(i)));
+                writer.write(',');
+                CsvFields.write(writer, item.get("name"));
+                writer.write(',');
+                CsvFields.write(writer, item.get("phone"));
+                writer.write(',');
+                if (customer != null) {
+                    matched++;
+                    writer.write("已匹配,");
+                    writer.write(Long.toString(customer.getId()));
+                    writer.write(',');
+                    CsvFields.write(writer, customer.getName());
+                    writer.write(',');
+                    CsvFields.write(writer, customer.getPhone());
+                    writer.write(',');
+                    CsvFields.write(writer, customer.getUploadFileName());
+                } else {
+                    writer.write("未匹配,,,,");
+                }
+                writer.write('\n');
+            }
+            job.progress(items.size(), matched);
+            items.clear();
+            rowNumbers.clear();
+        }
+    }
+
+    /**
+     * 查询批量查询任务（不存在或已过期时返回null）
+     */
+    public BatchQueryJob getJob(String id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * 批量查询任务的结果文件（任务完成后才存在）
+     */
+    public Path getJobFile(BatchQueryJob job) {
+        return Paths.get(jobDir, "batch_query_" + job.getId() + "_result.csv.gz");
+    }
+
+    /**
+     * 批量查询任务（进度字段与上传任务相同：totalCount 已读取的查询项数，matchedCount 其中已匹配的数目）
+     */
+    public static class BatchQueryJob extends BackgroundJob {
+        private final String sourceFileName;
+        private final String fileName;
+        private volatile long totalCount;
+        private volatile long matchedCount;
+
+        BatchQueryJob(String sourceFileName, String fileName, String username) {
+            super("查询", username);
+            this.sourceFileName = sourceFileName;
+            this.fileName = fileName;
+        }
+
+        // 只有查询线程写入
+        void progress(int total, int matched) {
+            totalCount += total;
+            matchedCount += matched;
+        }
+
+        public String getSourceFileName() {
+            return sourceFileName;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public long getTotalCount() {
+            return totalCount;
+        }
+
+        public long getMatchedCount() {
+            return matchedCount;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.kehu.service;
+
+import com.kehu.repository.CustomerSpecifications;
+import com.kehu.util.PhoneNormalizer;
+import org.roaringbitmap.longlong.PeekableLongIterator;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量修改客户字段（按id集合、选择集、上传任务或高级搜索条件）
+ * 不加载实体：按主键顺序分段，每段一条 UPDATE 语句、一个短事务；
+ * 全文索引和统计缓存在全部段完成后统一刷新一次
+ */
+@Service
+public class CustomerBulkUpdateService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CustomerBulkUpdateService.class);
+
+    /**
+     * 可以批量修改的字段及其列长度（电话是导入时合并客户的依据，不允许批量设成同一个值）
+     */
+    private static final Map<String, Integer> FIELDS = new LinkedHashMap<>();
+
+    private static final Map<String, String> FIELD_LABELS = new LinkedHashMap<>();
+
+    static {
+        FIELDS.put("name", 100);
+        FIELDS.put("email", 100);
+        FIELDS.put("address", 200);
+        FIELD_LABELS.put("name", "姓名");
+        FIELD_LABELS.put("email", "邮箱");
+        FIELD_LABELS.put("address", "地址");
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private CustomerSearchIndex customerSearchIndex;
+
+    @Autowired
+    private OperationLogService operationLogService;
+
+    // 每段修改的行数（每段一个事务）
+    @Value("${customer.bulk-update.chunk-size:1000}")
+    private int chunkSize;
+
+    /**
+     * 修改指定的客户（不存在的id忽略）
+     * @param changes 字段名 -> 新值，值为null表示清空（字段名：name、email、address）
+     * @param target 目标说明（用于操作日志）
+     * @return 实际修改的客户数
+     * @throws IllegalArgumentException 字段不支持或新值不合法
+     */
+    public long updateByIds(Roaring64Bitmap ids, Map<String, String> changes, String target,
+                            String username, String clientIp) {
+        List<Object> setArgs = new ArrayList<>();
+        String set = buildSet(changes, setArgs);
+        long startMillis = System.currentTimeMillis();
+        long updated = 0;
+        List<Long> touched = new ArrayList<>();
+        try {
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            List<Long> chunk = new ArrayList<>(chunkSize);
+            PeekableLongIterator iterator = ids.getLongIterator();
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() == chunkSize || !iterator.hasNext()) {
+                    List<Object> args = new ArrayList<>(setArgs);
+                    args.addAll(chunk);
+                    String sql = "UPDATE customers c SET " + set + " WHERE c.id IN ("
+                        + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")";
+                    Integer count = transactionTemplate.execute(status -> jdbcTemplate.update(sql, args.toArray()));
+                    updated += count != null ? count : 0;
+                    touched.addAll(chunk);
+                    chunk.clear();
+                }
+            }
+        } catch (RuntimeException e) {
+            finishFailed(touched, changes, target, updated, username, clientIp, e);
+            throw e;
+        }
+        finish(touched, changes, target, updated, startMillis, username, clientIp);
+        return updated;
+    }
+
+    /**
+     * 修改符合高级搜索条件的客户（至少指定一个条件）
+     * 按主键顺序取下一段符合条件的id，再用 UPDATE ... WHERE id BETWEEN 段首 AND 段尾 AND 条件 修改这一段，
+     * 修改时重新检查条件，取id之后被改掉的行不会被误改
+     * @param changes 同 {@link #updateByIds}
+     * @return 实际修改的客户数
+     * @throws IllegalArgumentException 没有任何条件、字段不支持或新值不合法
+     */
+    public long updateByFilter(String name, String phone, String email, String address,
+                               LocalDateTime startTime, LocalDateTime endTime, Long uploadTaskId, boolean startsWith,
+                               Map<String, String> changes, String username, String clientIp) {
+        name = blankToNull(name);
+        phone = PhoneNormalizer.canonicalOrTrim(phone);
+        email = blankToNull(email);
+        address = blankToNull(address);
+        if (name == null && phone == null && email == null && address == null
+                && startTime == null && endTime == null && uploadTaskId == null) {
+            throw new IllegalArgumentException("请至少指定一个修改条件");
+        }
+        List<Object> setArgs = new ArrayList<>();
+        String set = buildSet(changes, setArgs);
+        List<Object> conditionArgs = new ArrayList<>();
+        String where = CustomerSpecifications.advancedSearchSql(name, phone, email, address, startTime, endTime,
+            uploadTaskId, startsWith, conditionArgs);
+        String target = CustomerPurgeService.describe(name, phone, email, address, startTime, endTime,
+            uploadTaskId, startsWith);
+
+        String nextSql = "SELECT c.id FROM customers c" + where + " AND c.id > ? ORDER BY c.id LIMIT ?";
+        String updateSql = "UPDATE customers c SET " + set + where + " AND c.id BETWEEN ? AND ?";
+        long startMillis = System.currentTimeMillis();
+        long updated = 0;
+        List<Long> touched = new ArrayList<>();
+        try {
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            long lastId = 0;
+            while (true) {
+                List<Object> args = new ArrayList<>(conditionArgs);
+                args.add(lastId);
+                args.add(chunkSize);
+                List<Long> candidates = jdbcTemplate.queryForList(nextSql, Long.class, args.toArray());
+                if (candidates.isEmpty()) {
+                    break;
+                }
+                List<Object> updateArgs = new ArrayList<>(setArgs);
+                updateArgs.addAll(conditionArgs);
+                updateArgs.add(candidates.get(0));
+                updateArgs.add(candidates.get(candidates.size() - 1));
+                Integer count = transactionTemplate.execute(status -> jdbcTemplate.update(updateSql, updateArgs.toArray()));
+                updated += count != null ? count : 0;
+                touched.addAll(candidates);
+                if (candidates.size() < chunkSize) {
+                    break;
+                }
+                lastId = candidates.get(candidates.size() - 1);
+            }
+        } catch (RuntimeException e) {
+            finishFailed(touched, changes, target, updated, username, clientIp, e);
+            throw e;
+        }
+        finish(touched, changes, target, updated, startMillis, username, clientIp);
+        return updated;
+    }
+
+    /**
+     * SET 子句（同时更新 update_time）
+     */
+    private static String buildSet(Map<String, String> changes, List<Object> args) {
+        if (changes == null || changes.isEmpty()) {
+            throw new IllegalArgumentException("请指定要修改的字段");
+        }
+        List<String> assignments = new ArrayList<>();
+        for (Map.Entry<String, String> change : changes.entrySet()) {
+            String field = change.getKey();
+            Integer length = FIELDS.get(field);
+            if (length == null) {
+                throw new IllegalArgumentException("不支持批量修改的字段: " + field + "（可选 name、email、address）");
+            }
+            String value = change.getValue() != null ? change.getValue().trim() : null;
+            if (value != null && value.isEmpty()) {
+                value = null;
+            }
+            if (value == null && "name".equals(field)) {
+                throw new IllegalArgumentException("姓名不能为空");
+            }
+            if (value != null && value.length() > length) {
+                throw new IllegalArgumentException(FIELD_LABELS.get(field) + "不能超过" + length + "个字符");
+            }
+            assignments.add("c." + field + " = ?");
+            args.add(value);
+        }
+        assignments.add("c.update_time = ?");
+        args.add(Timestamp.valueOf(LocalDateTime.now()));
+        return String.join(", ", assignments);
+    }
+
+    private void finish(List<Long> touched, Map<String, String> changes, String target, long updated,
+                        long startMillis, String username, String clientIp) {
+        refresh(touched);
+        logger.info("批量修改客户: 目标={}, 修改={}, 共 {} 条, 耗时={}ms", target, describeChanges(changes), updated,
+            System.currentTimeMillis() - startMillis);
+        if (username != null) {
+            operationLogService.logSuccess(username, "UPDATE", "CUSTOMER",
+                "批量修改客户: " + describeChanges(changes) + "（" + target + "），共修改 " + updated + " 条",
+                clientIp, null);
+        }
+    }
+
+    private void finishFailed(List<Long> touched, Map<String, String> changes, String target, long updated,
+                              String username, String clientIp, Exception e) {
+        logger.error("批量修改客户失败: 目标=" + target + ", 已修改=" + updated, e);
+        try {
+            // 已提交的段同样需要刷新索引
+            refresh(touched);
+            if (username != null) {
+                operationLogService.logFailure(username, "UPDATE", "CUSTOMER",
+                    "批量修改客户失败: " + describeChanges(changes) + "（" + target + "），已修改 " + updated + " 条",
+                    clientIp, null, e.getMessage());
+            }
+        } catch (Exception ex) {
+            logger.error("记录批量修改失败日志失败", ex);
+        }
+    }
+
+    /**
+     * 全部段完成后统一刷新一次：按数据库当前值重新索引修改过的客户，清除统计缓存
+     */
+    private void refresh(List<Long> touched) {
+        if (touched.isEmpty()) {
+            return;
+        }
+        customerSearchIndex.refreshAfterCommit(touched);
+        customerService.invalidateCountCache();
+    }
+
+    private static String describeChanges(Map<String, String> changes) {
+        List<String> parts = new ArrayList<>();
+        for (Map.Entry<String, String> change : changes.entrySet()) {
+            String value = change.getValue() != null ? change.getValue().trim() : "";
+            parts.add(value.isEmpty() ? "清空" + FIELD_LABELS.get(change.getKey())
+                : FIELD_LABELS.get(change.getKey()) + "=" + value);
+        }
+        return String.join("，", parts);
+    }
+
+    private static String blankToNull(String value) {
+        return value != null && value.trim().isEmpty() ? null : value;
+    }
+}
@@ -0,0 +1,276 @@
+package com.kehu.service;
+
+import com.kehu.dto.CountEstimate;
+import com.kehu.entity.Customer;
+import com.kehu.repository.CustomerRepository;
+import com.kehu.repository.CustomerSpecifications;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 客户总数统计（列表、搜索、高级搜索的总数）
+ * 分页查询不再附带 COUNT，总数由这里单独提供并缓存：
+ * 没有缓存时先返回估算值（全表用 information_schema 的行数统计，模糊条件用主键范围抽样计数），
+ * 同时在后台线程池执行精确 COUNT，完成后替换缓存中的估算值；客户数据变更时整体失效。
+ * 全文索引可用时，带条件的总数直接在索引中精确统计
+ */
+@Service
+public class CustomerCountService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CustomerCountService.class);
+
+    private static final String KEY_ALL = "all";
+
+    // 抽样的段数（在id范围内均匀分布，避免只抽到某一批导入的数据）
+    private static final int SAMPLE_SEGMENTS = 4;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired(required = false)
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CustomerSearchIndex customerSearchIndex;
+
+    @Autowired
+    private CustomerPhoneIndex customerPhoneIndex;
+
+    @Autowired
+    @Qualifier("taskExecutor")
+    private Executor taskExecutor;
+
+    // 缓存有效期（毫秒）
+    @Value("${customer.count.cache-ttl-ms:300000}")
+    private long cacheTtlMillis;
+
+    // 缓存的最大条数（不同搜索条件各占一条，LRU淘汰）
+    @Value("${customer.count.cache-size:1000}")
+    private int cacheSize;
+
+    // 抽样估算时扫描的行数；总行数不超过该值时直接精确统计
+    @Value("${customer.count.sample-rows:50000}")
+    private long sampleRows;
+
+    private Map<String, CachedCount> cache;
+
+    // 正在后台精确统计的条件，避免同一条件重复提交
+    private final Set<String> counting = ConcurrentHashMap.newKeySet();
+
+    // 缓存版本：失效时递增，失效前开始的后台统计结果不再写入缓存
+    private final AtomicLong generation = new AtomicLong();
+
+    private static class CachedCount {
+        private final CountEstimate count;
+        private final long timestamp;
+
+        CachedCount(CountEstimate count) {
+            this.count = count;
+            this.timestamp = System.currentTimeMillis();
+        }
+    }
+
+    @PostConstruct
+    public void initCache() {
+        cache = Collections.synchronizedMap(new LinkedHashMap<String, CachedCount>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedCount> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * 客户总数
+     */
+    public CountEstimate countAll() {
+        return count(KEY_ALL, this::estimateAll, customerRepository::count);
+    }
+
+    /**
+     * 按条件统计客户数（条件为null表示不限，字符串条件为模糊匹配，调用方负责规范化）
+     */
+    public CountEstimate count(String name, String phone, String email, String address,
+                               LocalDateTime startTime, LocalDateTime endTime, Long uploadTaskId) {
+        return count(name, phone, email, address, startTime, endTime, uploadTaskId, false);
+    }
+
+    /**
+     * 按条件统计客户数
+     * @param prefix true 时字符串条件按前缀匹配，false 时按包含匹配
+     */
+    public CountEstimate count(String name, String phone, String email, String address,
+                               LocalDateTime startTime, LocalDateTime endTime, Long uploadTaskId, boolean prefix) {
+        if (name == null && phone == null && email == null && address == null
+                && startTime == null && endTime == null && uploadTaskId == null) {
+            return countAll();
+        }
+        if (!prefix && name == null && email == null && address == null && startTime == null && endTime == null
+                && uploadTaskId == null) {
+            // 只按电话片段查询时由电话片段索引直接计数
+            long[] ids = customerPhoneIndex.findIds(phone);
+            if (ids != null) {
+                return CountEstimate.exact(ids.length);
+            }
+        }
+        if (!prefix && customerSearchIndex.isReady()) {
+            // 全文索引可用时直接在索引中精确计数（近实时，不缓存）
+            Long indexed = customerSearchIndex.count(name, phone, email, address, startTime, endTime, uploadTaskId);
+            if (indexed != null) {
+                return CountEstimate.exact(indexed);
+            }
+        }
+        String key = String.join("\u0001", "search", String.valueOf(name), String.valueOf(phone),
+            String.valueOf(email), String.valueOf(address), String.valueOf(startTime), String.valueOf(endTime),
+            String.valueOf(uploadTaskId), String.valueOf(prefix));
+        Specification<Customer> spec = CustomerSpecifications.advancedSearch(
+            name, phone, email, address, startTime, endTime, uploadTaskId, prefix);
+        LongSupplier exact = () -> customerRepository.count(spec);
+        if (prefix || (name == null && phone == null && email == null && address == null)) {
+            // 前缀匹配、时间范围、任务ID条件走索引范围计数，本身就快，直接精确统计
+            return count(key, () -> CountEstimate.exact(exact.getAsLong()), exact);
+        }
+        return count(key, () -> estimateByIdSample(spec, exact), exact);
+    }
+
+    /**
+     * 清除所有缓存的总数（客户新增、删除、导入后调用）
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        cache.clear();
+    }
+
+    /**
+     * 取缓存；没有缓存时计算估算值，估算值不精确时提交后台精确统计
+     */
+    private CountEstimate count(String key, Supplier<CountEstimate> estimator, LongSupplier exact) {
+        CachedCount cached = cache.get(key);
+        if (cached != null && System.currentTimeMillis() - cached.timestamp < cacheTtlMillis) {
+            if (!cached.count.isExact()) {
+                submitExactCount(key, exact);
+            }
+            return cached.count;
+        }
+        long startGeneration = generation.get();
+        CountEstimate estimate = estimator.get();
+        if (generation.get() == startGeneration) {
+            cache.put(key, new CachedCount(estimate));
+        }
+        if (!estimate.isExact()) {
+            submitExactCount(key, exact);
+        }
+        return estimate;
+    }
+
+    private void submitExactCount(String key, LongSupplier exact) {
+        if (!counting.add(key)) {
+            return;
+        }
+        long startGeneration = generation.get();
+        try {
+            taskExecutor.execute(() -> {
+                try {
+                    long startTime = System.currentTimeMillis();
+                    long value = exact.getAsLong();
+                    if (generation.get() == startGeneration) {
+                        cache.put(key, new CachedCount(CountEstimate.exact(value)));
+                    }
+                    logger.debug("后台精确统计完成: key={}, count={}, 耗时={}ms",
+                        key, value, System.currentTimeMillis() - startTime);
+                } catch (Exception e) {
+                    logger.warn("后台精确统计失败，继续使用估算值: key={}", key, e);
+                } finally {
+                    counting.remove(key);
+                }
+            });
+        } catch (RuntimeException e) {
+            counting.remove(key);
+            logger.warn("提交后台精确统计失败: key={}", key, e);
+        }
+    }
+
+    /**
+     * 全表行数估算：information_schema 中的表统计行数（MySQL），取不到时精确统计
+     */
+    private CountEstimate estimateAll() {
+        long approximate = queryApproximateCount();
+        if (approximate > 0) {
+            return CountEstimate.approximate(approximate);
+        }
+        return CountEstimate.exact(customerRepository.count());
+    }
+
+    /**
+     * 使用information_schema快速获取近似行数（非常快，但可能不准确）
+     */
+    private long queryApproximateCount() {
+        if (jdbcTemplate == null) {
+            return 0;
+        }
+        try {
+            Long count = jdbcTemplate.queryForObject(
+                "SELECT table_rows FROM information_schema.tables WHERE table_schema = DATABASE() AND table_name = 'customers'",
+                Long.class
+            );
+            return count != null ? count : 0;
+        } catch (Exception e) {
+            logger.debug("近似值查询失败，将使用精确查询", e);
+            return 0;
+        }
+    }
+
+    /**
+     * 模糊条件的抽样估算：在id范围内均匀取几段（按主键范围扫描，总共约 sampleRows 行），
+     * 用段内的匹配比例乘以总行数；表不大时直接精确统计
+     */
+    private CountEstimate estimateByIdSample(Specification<Customer> spec, LongSupplier exact) {
+        long total = countAll().getValue();
+        if (total <= sampleRows) {
+            return CountEstimate.exact(exact.getAsLong());
+        }
+        List<Object[]> bounds = customerRepository.findIdBounds();
+        if (bounds.isEmpty() || bounds.get(0)[0] == null) {
+            return CountEstimate.exact(0);
+        }
+        long minId = ((Number) bounds.get(0)[0]).longValue();
+        long maxId = ((Number) bounds.get(0)[1]).longValue();
+        long span = maxId - minId + 1;
+        // 每段的id宽度：按id密度折算成 sampleRows / SAMPLE_SEGMENTS 行
+        long width = Math.max(1, (long) ((double) span * sampleRows / total / SAMPLE_SEGMENTS));
+        if (width * SAMPLE_SEGMENTS >= span) {
+            return CountEstimate.exact(exact.getAsLong());
+        }
+        long matched = 0;
+        long scanned = 0;
+        for (int i = 0; i < SAMPLE_SEGMENTS; i++) {
+            long fromId = minId + (span - width) * i / (SAMPLE_SEGMENTS - 1);
+            long toId = fromId + width - 1;
+            matched += customerRepository.count(spec.and(CustomerSpecifications.idBetween(fromId, toId)));
+            scanned += customerRepository.countByIdBetween(fromId, toId);
+        }
+        if (scanned == 0) {
+            return CountEstimate.approximate(0);
+        }
+        return CountEstimate.approximate(Math.round((double) matched * total / scanned));
+    }
+}
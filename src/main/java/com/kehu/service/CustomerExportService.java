@@ -0,0 +1,335 @@
+package com.kehu.service;
+
+import com.alibaba.excel.EasyExcel;
+import com.alibaba.excel.ExcelWriter;
+import com.alibaba.excel.write.metadata.WriteSheet;
+import com.kehu.util.CsvFields;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 客户导出（CSV / Excel），条件同高级搜索
+ * 用数据库游标逐行读取、边读边写，内存占用与导出行数无关：
+ * CSV 边写边 gzip 压缩；Excel 由 EasyExcel（SXSSF）写入，内存中只保留最近的行，其余先写临时文件。
+ * 数据量大时可以作为后台任务导出到文件，完成后再下载
+ */
+@Service
+public class CustomerExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CustomerExportService.class);
+
+    public static final String FORMAT_CSV = "csv";
+    public static final String FORMAT_XLSX = "xlsx";
+
+    private static final String[] HEADERS = {"ID", "姓名", "电话", "邮箱", "地址", "上传文件", "创建时间", "更新时间"};
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter FILE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+
+    // Excel 每次交给 EasyExcel 写入的行数
+    private static final int XLSX_BATCH_SIZE = 1000;
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private OperationLogService operationLogService;
+
+    @Autowired
+    @Qualifier("taskExecutor")
+    private Executor taskExecutor;
+
+    // 后台导出文件的目录
+    @Value("${customer.export.dir:exports}")
+    private String exportDir;
+
+    // 后台导出文件的保留时间（小时），过期的任务和文件在提交新任务时清理
+    @Value("${customer.export.retention-hours:24}")
+    private long retentionHours;
+
+    // 同时运行的后台导出任务数上限
+    @Value("${customer.export.max-running-jobs:2}")
+    private int maxRunningJobs;
+
+    // Excel 每个工作表的最大行数（xlsx 每个工作表最多 1048576 行，含表头），超出后写入下一个工作表
+    @Value("${customer.export.sheet-rows:1000000}")
+    private int sheetRows;
+
+    private final BackgroundJobRegistry<ExportJob> jobs = new BackgroundJobRegistry<>();
+
+    /**
+     * 导出格式是否支持
+     */
+    public static boolean isSupportedFormat(String format) {
+        return FORMAT_CSV.equals(format) || FORMAT_XLSX.equals(format);
+    }
+
+    /**
+     * 下载文件名（CSV 为 gzip 压缩的 .csv.gz）
+     */
+    public static String fileName(String format) {
+        String base = "客户导出_" + LocalDateTime.now().format(FILE_TIME_FORMAT);
+        return FORMAT_XLSX.equals(format) ? base + ".xlsx" : base + ".csv.gz";
+    }
+
+    /**
+     * 按条件导出到输出流（不关闭输出流）
+     * @param format csv 或 xlsx
+     * @param progress 每写入一行调用一次（可为null）
+     * @return 导出的行数
+     * @throws IOException 写入失败（如客户端已断开），此时数据库查询已取消
+     */
+    public long export(String format, String name, String phone, String email, String address,
+                       LocalDateTime startTime, LocalDateTime endTime, Long uploadTaskId, boolean startsWith,
+                       OutputStream out, Runnable progress) throws IOException {
+        return export(format, writer -> customerService.streamRows(name, phone, email, address, startTime, endTime,
+            uploadTaskId, startsWith, writer), out, progress);
+    }
+
+    /**
+     * 按选择集导出到输出流（按id顺序，已删除的客户跳过），参数和返回值同按条件导出
+     */
+    public long export(String format, Roaring64Bitmap ids, OutputStream out, Runnable progress) throws IOException {
+        return export(format, writer -> customerService.streamRows(ids, writer), out, progress);
+    }
+
+    private long export(String format, RowSource source, OutputStream out, Runnable progress) throws IOException {
+        if (FORMAT_XLSX.equals(format)) {
+            return exportXlsx(source, out, progress);
+        }
+        return exportCsv(source, out, progress);
+    }
+
+    private long exportCsv(RowSource source, OutputStream out, Runnable progress) throws IOException {
+        GZIPOutputStream gzip = new GZIPOutputStream(new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                // 由调用方关闭输出流
+                out.flush();
+            }
+        }, 64 * 1024);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8), 64 * 1024);
+        // UTF-8 BOM，解压后用Excel打开不乱码
+        writer.write('\uFEFF');
+        writer.write(String.join(",", HEADERS));
+        writer.write('\n');
+        long rows = source.stream(row -> {
+            writer.write(Long.toString(row.getId()));
+            writer.write(',');
+            CsvFields.write(writer, row.getName());
+            writer.write(',');
+            CsvFields.write(writer, row.getPhone());
+            writer.write(',');
+            CsvFields.write(writer, row.getEmail());
+            writer.write(',');
+            CsvFields.write(writer, row.getAddress());
+            writer.write(',');
+            CsvFields.write(writer, row.getUploadFileName());
+            writer.write(',');
+            writer.write(formatTime(row.getCreateTime()));
+            writer.write(',');
+            writer.write(formatTime(row.getUpdateTime()));
+            writer.write('\n');
+            if (progress != null) {
+                progress.run();
+            }
+        });
+        // 写完 gzip 尾部，不关闭调用方的输出流
+        writer.close();
+        return rows;
+    }
+
+    private long exportXlsx(RowSource source, OutputStream out, Runnable progress) throws IOException {
+        List<List<String>> head = new ArrayList<>(HEADERS.length);
+        for (String header : HEADERS) {
+            head.add(Collections.singletonList(header));
+        }
+        ExcelWriter excelWriter = EasyExcel.write(out).autoCloseStream(false).head(head).build();
+        boolean completed = false;
+        try {
+            List<List<Object>> batch = new ArrayList<>(XLSX_BATCH_SIZE);
+            // 当前工作表序号和已写入行数
+            int[] sheet = {0, 0};
+            WriteSheet[] writeSheet = {EasyExcel.writerSheet(0, "客户数据").build()};
+            long rows = source.stream(row -> {
+                if (sheet[1] == sheetRows) {
+                    excelWriter.write(batch, writeSheet[0]);
+                    batch.clear();
+                    sheet[0]++;
+                    sheet[1] = 0;
+                    writeSheet[0] = EasyExcel.writerSheet(sheet[0], "客户数据" + (sheet[0] + 1)).build();
+                }
+                List<Object> cells = new ArrayList<>(HEADERS.length);
+                cells.add(row.getId());
+                cells.add(row.getName());
+                cells.add(row.getPhone());
+                cells.add(row.getEmail());
+                cells.add(row.getAddress());
+                cells.add(row.getUploadFileName());
+                cells.add(formatTime(row.getCreateTime()));
+                cells.add(formatTime(row.getUpdateTime()));
+                batch.add(cells);
+                sheet[1]++;
+                if (batch.size() == XLSX_BATCH_SIZE) {
+                    excelWriter.write(batch, writeSheet[0]);
+                    batch.clear();
+                }
+                if (progress != null) {
+                    progress.run();
+                }
+            });
+            if (!batch.isEmpty() || rows == 0) {
+                excelWriter.write(batch, writeSheet[0]);
+            }
+            completed = true;
+            return rows;
+        } finally {
+            if (completed) {
+                // 把临时文件中的行打包写到输出流，并删除临时文件
+                excelWriter.finish();
+            } else {
+                // 读取中途失败：不写出文件包（否则下载到的是格式完整但缺行的文件），只删除临时文件
+                excelWriter.writeContext().finish(true);
+            }
+        }
+    }
+
+    private static String formatTime(LocalDateTime time) {
+        return time != null ? time.format(TIME_FORMAT) : "";
+    }
+
+    /**
+     * 提交后台导出任务
+     * @throws IllegalStateException 运行中的任务已达上限
+     */
+    public ExportJob startJob(String format, String name, String phone, String email, String address,
+                              LocalDateTime startTime, LocalDateTime endTime, Long uploadTaskId, boolean startsWith,
+                              String username, String clientIp) {
+        return startJob(format, writer -> customerService.streamRows(name, phone, email, address, startTime, endTime,
+            uploadTaskId, startsWith, writer), username, clientIp);
+    }
+
+    /**
+     * 提交按选择集导出的后台任务
+     * @throws IllegalStateException 运行中的任务已达上限
+     */
+    public ExportJob startJob(String format, Roaring64Bitmap ids, String username, String clientIp) {
+        return startJob(format, writer -> customerService.streamRows(ids, writer), username, clientIp);
+    }
+
+    private ExportJob startJob(String format, RowSource source, String username, String clientIp) {
+        jobs.removeExpired(retentionHours, Paths.get(exportDir), "export_*");
+        if (jobs.runningCount() >= maxRunningJobs) {
+            throw new IllegalStateException("正在运行的导出任务已达上限（" + maxRunningJobs + "个），请稍后再试");
+        }
+        ExportJob job = new ExportJob(format, fileName(format), username);
+        jobs.add(job);
+        taskExecutor.execute(() -> runJob(job, source, clientIp));
+        return job;
+    }
+
+    private void runJob(ExportJob job, RowSource source, String clientIp) {
+        long begin = System.currentTimeMillis();
+        try {
+            long rows = BackgroundJobRegistry.writeFile(getJobFile(job), partFile -> {
+                try (OutputStream out = Files.newOutputStream(partFile)) {
+                    return export(job.getFormat(), source, out, job::increment);
+                }
+            });
+            job.finish(BackgroundJob.State.DONE, null);
+            logger.info("后台导出完成: job={}, 行数={}, 耗时={}ms", job.getId(), rows, System.currentTimeMillis() - begin);
+            if (job.getUsername() != null) {
+                operationLogService.logSuccess(job.getUsername(), "EXPORT", "CUSTOMER",
+                    "后台导出客户: " + rows + " 条（" + job.getFormat() + "）", clientIp, null);
+            }
+        } catch (Exception e) {
+            logger.error("后台导出失败: job=" + job.getId(), e);
+            job.finish(BackgroundJob.State.FAILED, e.getMessage());
+            if (job.getUsername() != null) {
+                operationLogService.logFailure(job.getUsername(), "EXPORT", "CUSTOMER",
+                    "后台导出客户失败", clientIp, null, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 查询后台导出任务（不存在或已过期时返回null）
+     */
+    public ExportJob getJob(String id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * 后台导出任务的文件（任务完成后才存在）
+     */
+    public Path getJobFile(ExportJob job) {
+        return Paths.get(exportDir, "export_" + job.getId() + (FORMAT_XLSX.equals(job.getFormat()) ? ".xlsx" : ".csv.gz"));
+    }
+
+    /**
+     * 导出的数据来源（按条件或按选择集逐行读取）
+     */
+    private interface RowSource {
+        long stream(CustomerService.RowWriter writer) throws IOException;
+    }
+
+    /**
+     * 后台导出任务
+     */
+    public static class ExportJob extends BackgroundJob {
+        private final String format;
+        private final String fileName;
+        private volatile long rows;
+
+        ExportJob(String format, String fileName, String username) {
+            super("导出", username);
+            this.format = format;
+            this.fileName = fileName;
+        }
+
+        // 只有导出线程写入
+        void increment() {
+            rows++;
+        }
+
+        public String getFormat() {
+            return format;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+    }
+}
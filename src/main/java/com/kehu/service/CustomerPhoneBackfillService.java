@@ -0,0 +1,194 @@
+package com.kehu.service;
+
+import com.kehu.entity.Customer;
+import com.kehu.util.PhoneNormalizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 电话规范化回填：把历史数据中能识别、但不是规范形式的电话（如 "138 0013 8001"、"+86 13800138001"）改成规范形式
+ * 搜索、清理、批量修改和导入去重都按规范形式匹配完整号码，不回填时这些行匹配不到，电话片段索引也只能逐个比较字符串。
+ * 启动后和恢复备份后在后台按主键顺序分段执行，每段一个短事务；UPDATE 时检查电话没有被同时修改，
+ * 已是规范形式或无法识别的电话不修改
+ */
+@Service
+public class CustomerPhoneBackfillService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CustomerPhoneBackfillService.class);
+
+    @Autowired(required = false)
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private CustomerSearchIndex customerSearchIndex;
+
+    @Autowired
+    private CustomerPhoneIndex customerPhoneIndex;
+
+    // 是否在启动后自动回填
+    @Value("${customer.phone-backfill.enabled:true}")
+    private boolean enabled;
+
+    // 每段读取的行数（每段一个事务）
+    @Value("${customer.phone-backfill.chunk-size:1000}")
+    private int chunkSize;
+
+    // 有修改的段之后的暂停时间（毫秒）
+    @Value("${customer.phone-backfill.pause-ms:50}")
+    private long pauseMillis;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicBoolean rerunPending = new AtomicBoolean(false);
+    private volatile long scanned;
+    private volatile long updated;
+    private volatile Map<String, Object> lastRun;
+
+    /**
+     * 启动完成后在后台回填
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        if (enabled) {
+            backfillAsync();
+        }
+    }
+
+    /**
+     * 在后台回填（已在执行时，当前这次结束后再执行一次，返回false）
+     */
+    public boolean backfillAsync() {
+        if (jdbcTemplate == null) {
+            return false;
+        }
+        if (!running.compareAndSet(false, true)) {
+            rerunPending.set(true);
+            return false;
+        }
+        Thread thread = new Thread(() -> {
+            do {
+                rerunPending.set(false);
+                running.set(true);
+                try {
+                    backfill();
+                } catch (Exception e) {
+                    logger.error("电话规范化回填失败", e);
+                } finally {
+                    running.set(false);
+                }
+            } while (rerunPending.get());
+        }, "phone-backfill");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    private void backfill() throws InterruptedException {
+        long startMillis = System.currentTimeMillis();
+        scanned = 0;
+        updated = 0;
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        long lastId = 0;
+        while (true) {
+            List<Object[]> changes = new ArrayList<>();
+            long[] chunkLastId = {lastId};
+            int[] rows = {0};
+            jdbcTemplate.query("SELECT id, phone FROM customers WHERE id > ? ORDER BY id LIMIT ?", rs -> {
+                long id = rs.getLong(1);
+                String phone = rs.getString(2);
+                chunkLastId[0] = id;
+                rows[0]++;
+                long canonical = PhoneNormalizer.normalize(phone);
+                if (canonical != PhoneNormalizer.INVALID) {
+                    String formatted = PhoneNormalizer.format(phone, canonical);
+                    if (!formatted.equals(phone)) {
+                        changes.add(new Object[]{formatted, id, phone});
+                    }
+                }
+            }, lastId, chunkSize);
+            scanned += rows[0];
+            if (!changes.isEmpty()) {
+                transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(
+                    "UPDATE customers SET phone = ? WHERE id = ? AND phone = ?", changes));
+                refresh(changes);
+                if (pauseMillis > 0) {
+                    Thread.sleep(pauseMillis);
+                }
+            }
+            if (rows[0] < chunkSize) {
+                break;
+            }
+            lastId = chunkLastId[0];
+        }
+        if (updated > 0) {
+            customerService.invalidateCountCache();
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("startTime", LocalDateTime.now());
+        result.put("scanned", scanned);
+        result.put("updated", updated);
+        result.put("duration", System.currentTimeMillis() - startMillis);
+        lastRun = result;
+        logger.info("电话规范化回填: 检查 {} 条, 修改 {} 条, 耗时={}ms", scanned, updated, result.get("duration"));
+    }
+
+    /**
+     * 按数据库当前值同步全文索引和电话片段索引（批量 UPDATE 的影响行数不可靠，改完重新读取）
+     */
+    private void refresh(List<Object[]> changes) {
+        List<Long> ids = new ArrayList<>(changes.size());
+        Map<Long, String> expected = new HashMap<>();
+        for (Object[] change : changes) {
+            ids.add((Long) change[1]);
+            expected.put((Long) change[1], (String) change[0]);
+        }
+        List<Customer> current = jdbcTemplate.query("SELECT id, phone FROM customers WHERE id IN ("
+            + String.join(",", Collections.nCopies(ids.size(), "?")) + ")", (rs, rowNum) -> {
+                Customer customer = new Customer();
+                customer.setId(rs.getLong(1));
+                customer.setPhone(rs.getString(2));
+                return customer;
+            }, ids.toArray());
+        for (Customer customer : current) {
+            if (customer.getPhone() != null && customer.getPhone().equals(expected.get(customer.getId()))) {
+                updated++;
+            }
+        }
+        customerSearchIndex.refreshAfterCommit(ids);
+        customerPhoneIndex.putAfterCommit(current);
+    }
+
+    /**
+     * 回填状态：是否在执行、本次进度和最近一次结果
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", enabled && jdbcTemplate != null);
+        status.put("running", running.get());
+        status.put("scanned", scanned);
+        status.put("updated", updated);
+        status.put("lastRun", lastRun);
+        return status;
+    }
+}
@@ -0,0 +1,241 @@
+package com.kehu.service;
+
+import com.kehu.entity.Customer;
+import com.kehu.util.AfterCommit;
+import com.kehu.util.PhoneDigitIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 电话号码片段查询（客服按尾号后4-6位查客户）
+ * 启动后从数据库加载所有客户的电话到内存中的 {@link PhoneDigitIndex}，之后随客户的新增、修改、删除、导入同步更新；
+ * 只有电话一个条件的搜索由这里直接返回id，不再对整表执行 phone LIKE '%x%'
+ */
+@Service
+public class CustomerPhoneIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(CustomerPhoneIndex.class);
+
+    @Autowired(required = false)
+    private JdbcTemplate jdbcTemplate;
+
+    // 是否启用电话片段索引（每个客户约占50字节内存）
+    @Value("${customer.phone-index.enabled:true}")
+    private boolean enabled;
+
+    // 加载时每次从数据库读取的行数
+    @Value("${customer.phone-index.load-chunk-size:10000}")
+    private int loadChunkSize;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 加载完成前为null，查询回退到数据库
+    private volatile PhoneDigitIndex index;
+
+    // 加载期间的写入：加载完成后在新索引上重放（写入是幂等的，重复执行没有影响）
+    private List<Object[]> pendingChanges;
+
+    private final AtomicBoolean loading = new AtomicBoolean(false);
+    private final AtomicBoolean reloadPending = new AtomicBoolean(false);
+
+    /**
+     * 启动完成后在后台加载
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        reloadAsync();
+    }
+
+    /**
+     * 在后台从数据库重新加载（已在加载中时，当前加载结束后再加载一次，返回false）
+     */
+    public boolean reloadAsync() {
+        if (!enabled || jdbcTemplate == null) {
+            return false;
+        }
+        if (!loading.compareAndSet(false, true)) {
+            reloadPending.set(true);
+            return false;
+        }
+        Thread thread = new Thread(() -> {
+            do {
+                reloadPending.set(false);
+                loading.set(true);
+                try {
+                    load();
+                } catch (Exception e) {
+                    logger.error("加载电话片段索引失败，电话搜索使用数据库查询", e);
+                    lock.writeLock().lock();
+                    try {
+                        pendingChanges = null;
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                } finally {
+                    loading.set(false);
+                }
+            } while (reloadPending.get());
+        }, "phone-index-load");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    private void load() {
+        long startTime = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            pendingChanges = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM customers", Long.class);
+        PhoneDigitIndex loaded = new PhoneDigitIndex((int) Math.min(Integer.MAX_VALUE - 8, (count != null ? count : 0) + 1024));
+        // 按主键顺序分段读取，槽位按id递增追加
+        long[] lastId = {0};
+        int[] rows = new int[1];
+        do {
+            rows[0] = 0;
+            jdbcTemplate.query("SELECT id, phone FROM customers WHERE id > ? ORDER BY id LIMIT ?", rs -> {
+                lastId[0] = rs.getLong(1);
+                loaded.put(lastId[0], rs.getString(2));
+                rows[0]++;
+            }, lastId[0], loadChunkSize);
+        } while (rows[0] == loadChunkSize);
+        lock.writeLock().lock();
+        try {
+            for (Object[] change : pendingChanges) {
+                apply(loaded, (Long) change[0], (String) change[1], change.length > 2);
+            }
+            pendingChanges = null;
+            index = loaded;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("电话片段索引加载完成: {} 条, 字符串比较 {} 条, 耗时={}ms",
+            loaded.size(), loaded.irregularSize(), System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 索引是否可用
+     */
+    public boolean isReady() {
+        return index != null;
+    }
+
+    /**
+     * 查询电话包含该片段的客户id
+     * @param fragment 电话片段（已去掉首尾空白）
+     * @return 按id升序的id；索引未加载或片段含非数字字符时返回null，由调用方回退到数据库
+     */
+    public long[] findIds(String fragment) {
+        if (fragment == null || fragment.isEmpty()) {
+            return null;
+        }
+        for (int i = 0; i < fragment.length(); i++) {
+            char c = fragment.charAt(i);
+            if (c < '0' || c > '9') {
+                return null;
+            }
+        }
+        lock.readLock().lock();
+        try {
+            return index != null ? index.find(fragment) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 新增或修改后的客户（在事务中调用时，事务提交后才写入）
+     */
+    public void putAfterCommit(Collection<Customer> customers) {
+        if (!enabled || customers.isEmpty()) {
+            return;
+        }
+        List<Object[]> changes = new ArrayList<>(customers.size());
+        for (Customer customer : customers) {
+            if (customer.getId() != null) {
+                changes.add(new Object[]{customer.getId(), customer.getPhone()});
+            }
+        }
+        AfterCommit.run(() -> applyAll(changes));
+    }
+
+    /**
+     * 删除的客户（在事务中调用时，事务提交后才删除）
+     */
+    public void removeAfterCommit(Collection<Long> ids) {
+        if (!enabled || ids.isEmpty()) {
+            return;
+        }
+        List<Object[]> changes = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            changes.add(new Object[]{id, null, Boolean.TRUE});
+        }
+        AfterCommit.run(() -> applyAll(changes));
+    }
+
+    /**
+     * @param changes 每项为 {id, phone} 或 {id, null, TRUE}（删除）
+     */
+    private void applyAll(List<Object[]> changes) {
+        lock.writeLock().lock();
+        try {
+            for (Object[] change : changes) {
+                if (index != null) {
+                    apply(index, (Long) change[0], (String) change[1], change.length > 2);
+                }
+            }
+            if (pendingChanges != null) {
+                pendingChanges.addAll(changes);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void apply(PhoneDigitIndex target, long id, String phone, boolean remove) {
+        if (remove) {
+            target.remove(id);
+        } else {
+            target.put(id, phone);
+        }
+    }
+
+    /**
+     * 索引状态（用于管理接口）
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", enabled && jdbcTemplate != null);
+        status.put("loading", loading.get());
+        lock.readLock().lock();
+        try {
+            status.put("ready", index != null);
+            if (index != null) {
+                status.put("slots", index.size());
+                status.put("irregular", index.irregularSize());
+                status.put("postings", index.postingCount());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return status;
+    }
+}
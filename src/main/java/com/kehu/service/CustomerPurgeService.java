@@ -0,0 +1,283 @@
+package com.kehu.service;
+
+import com.kehu.repository.CustomerSpecifications;
+import com.kehu.util.PhoneNormalizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * 按条件删除客户（后台任务，条件同高级搜索）
+ * 按主键顺序分段：先不加锁地取下一段符合条件的id，再在短事务中锁定这些行、重新确认条件后删除客户及其备注，
+ * 段与段之间暂停，避免长时间锁表影响线上请求；可以随时取消，已删除的段不会恢复
+ */
+@Service
+public class CustomerPurgeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CustomerPurgeService.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private CustomerCountService customerCountService;
+
+    @Autowired
+    private OperationLogService operationLogService;
+
+    @Autowired
+    private CustomerSearchIndex customerSearchIndex;
+
+    @Autowired
+    private CustomerPhoneIndex customerPhoneIndex;
+
+    @Autowired
+    @Qualifier("taskExecutor")
+    private Executor taskExecutor;
+
+    // 每段删除的行数（每段一个事务）
+    @Value("${customer.purge.chunk-size:1000}")
+    private int chunkSize;
+
+    // 段与段之间的暂停时间（毫秒），给线上请求让出数据库资源
+    @Value("${customer.purge.pause-ms:50}")
+    private long pauseMillis;
+
+    // 已结束任务的保留时间（小时）
+    @Value("${customer.purge.retention-hours:24}")
+    private long retentionHours;
+
+    private final BackgroundJobRegistry<PurgeJob> jobs = new BackgroundJobRegistry<>();
+
+    /**
+     * 提交按条件删除任务（同时只运行一个）
+     * @throws IllegalArgumentException 没有任何条件（不允许通过此接口删除全部客户）
+     * @throws IllegalStateException 已有删除任务在运行
+     */
+    public synchronized PurgeJob startJob(String name, String phone, String email, String address,
+                                          LocalDateTime startTime, LocalDateTime endTime, Long uploadTaskId,
+                                          boolean startsWith, String username, String clientIp) {
+        name = blankToNull(name);
+        phone = PhoneNormalizer.canonicalOrTrim(phone);
+        email = blankToNull(email);
+        address = blankToNull(address);
+        if (name == null && phone == null && email == null && address == null
+                && startTime == null && endTime == null && uploadTaskId == null) {
+            throw new IllegalArgumentException("请至少指定一个删除条件");
+        }
+        jobs.removeExpired(retentionHours);
+        if (jobs.runningCount() > 0) {
+            throw new IllegalStateException("已有按条件删除任务在运行，请等待完成或取消后再试");
+        }
+
+        String criteria = describe(name, phone, email, address, startTime, endTime, uploadTaskId, startsWith);
+        // 预计删除数（缓存或抽样估算，只用于显示进度）
+        long estimatedTotal = customerCountService.count(name, phone, email, address, startTime, endTime,
+            uploadTaskId, startsWith).getValue();
+        PurgeJob job = new PurgeJob(criteria, username, estimatedTotal);
+        jobs.add(job);
+
+        List<Object> args = new ArrayList<>();
+        String where = CustomerSpecifications.advancedSearchSql(name, phone, email, address, startTime, endTime,
+            uploadTaskId, startsWith, args);
+        taskExecutor.execute(() -> runJob(job, where, args, clientIp));
+        return job;
+    }
+
+    private void runJob(PurgeJob job, String where, List<Object> conditionArgs, String clientIp) {
+        long startTime = System.currentTimeMillis();
+        // 取下一段候选id（一致性读，不加锁）
+        String nextSql = "SELECT c.id FROM customers c" + (where.isEmpty() ? " WHERE " : where + " AND ")
+            + "c.id > ? ORDER BY c.id LIMIT ?";
+        try {
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            long lastId = 0;
+            while (!job.isCancelRequested()) {
+                List<Object> args = new ArrayList<>(conditionArgs);
+                args.add(lastId);
+                args.add(chunkSize);
+                List<Long> candidates = jdbcTemplate.queryForList(nextSql, Long.class, args.toArray());
+                if (candidates.isEmpty()) {
+                    break;
+                }
+                lastId = candidates.get(candidates.size() - 1);
+
+                // 短事务：按主键锁定候选行并重新确认条件（取id后可能已被修改），只删除仍符合条件的
+                Integer chunkDeleted = transactionTemplate.execute(status -> {
+                    String in = String.join(",", Collections.nCopies(candidates.size(), "?"));
+                    List<Object> lockArgs = new ArrayList<>(conditionArgs);
+                    lockArgs.addAll(candidates);
+                    List<Long> ids = jdbcTemplate.queryForList("SELECT c.id FROM customers c"
+                            + (where.isEmpty() ? " WHERE " : where + " AND ") + "c.id IN (" + in + ") FOR UPDATE",
+                        Long.class, lockArgs.toArray());
+                    if (ids.isEmpty()) {
+                        return 0;
+                    }
+                    String idIn = String.join(",", Collections.nCopies(ids.size(), "?"));
+                    jdbcTemplate.update("DELETE FROM customer_remarks WHERE customer_id IN (" + idIn + ")", ids.toArray());
+                    // 事务提交后从全文索引、电话片段索引中删除同一段
+                    customerSearchIndex.deleteAfterCommit(ids);
+                    customerPhoneIndex.removeAfterCommit(ids);
+                    return jdbcTemplate.update("DELETE FROM customers WHERE id IN (" + idIn + ")", ids.toArray());
+                });
+                job.addDeleted(chunkDeleted != null ? chunkDeleted : 0);
+
+                if (candidates.size() < chunkSize) {
+                    break;
+                }
+                if (pauseMillis > 0) {
+                    Thread.sleep(pauseMillis);
+                }
+            }
+
+            customerService.invalidateCountCache();
+            boolean cancelled = job.isCancelRequested();
+            job.finish(cancelled ? BackgroundJob.State.CANCELLED : BackgroundJob.State.DONE, null);
+            long duration = System.currentTimeMillis() - startTime;
+            logger.info("按条件删除{}: job={}, 条件={}, 删除={}, 耗时={}ms", cancelled ? "已取消" : "完成",
+                job.getId(), job.getCriteria(), job.getDeletedCount(), duration);
+            if (job.getUsername() != null) {
+                operationLogService.logSuccess(job.getUsername(), "DELETE", "CUSTOMER",
+                    "按条件删除客户" + (cancelled ? "（已取消）" : "") + ": " + job.getCriteria()
+                        + "，共删除 " + job.getDeletedCount() + " 条", clientIp, null);
+            }
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            logger.error("按条件删除失败: job=" + job.getId() + ", 已删除=" + job.getDeletedCount(), e);
+            job.finish(BackgroundJob.State.FAILED, e.getMessage());
+            try {
+                customerService.invalidateCountCache();
+                if (job.getUsername() != null) {
+                    operationLogService.logFailure(job.getUsername(), "DELETE", "CUSTOMER",
+                        "按条件删除客户失败: " + job.getCriteria() + "，已删除 " + job.getDeletedCount() + " 条",
+                        clientIp, null, e.getMessage());
+                }
+            } catch (Exception ex) {
+                logger.error("记录按条件删除失败日志失败", ex);
+            }
+        }
+    }
+
+    /**
+     * 查询按条件删除任务（不存在或已过期时返回null）
+     */
+    public PurgeJob getJob(String id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * 取消任务：当前段删除完成后停止
+     * @return false表示任务不存在或已结束
+     */
+    public boolean cancelJob(String id) {
+        PurgeJob job = getJob(id);
+        if (job == null || job.getState() != BackgroundJob.State.RUNNING) {
+            return false;
+        }
+        job.requestCancel();
+        return true;
+    }
+
+    /**
+     * 条件的文字说明（用于显示和操作日志）
+     */
+    static String describe(String name, String phone, String email, String address,
+                           LocalDateTime startTime, LocalDateTime endTime, Long uploadTaskId,
+                           boolean startsWith) {
+        List<String> parts = new ArrayList<>();
+        String match = startsWith ? "开头为" : "包含";
+        if (name != null) {
+            parts.add("姓名" + match + name);
+        }
+        if (phone != null) {
+            parts.add("电话" + match + phone);
+        }
+        if (email != null) {
+            parts.add("邮箱" + match + email);
+        }
+        if (address != null) {
+            parts.add("地址" + match + address);
+        }
+        if (startTime != null) {
+            parts.add("创建时间>=" + startTime);
+        }
+        if (endTime != null) {
+            parts.add("创建时间<=" + endTime);
+        }
+        if (uploadTaskId != null) {
+            parts.add("上传任务ID=" + uploadTaskId);
+        }
+        return String.join("，", parts);
+    }
+
+    private static String blankToNull(String value) {
+        return value != null && value.trim().isEmpty() ? null : value;
+    }
+
+    /**
+     * 按条件删除任务
+     */
+    public static class PurgeJob extends BackgroundJob {
+        private final String criteria;
+        private final long estimatedTotal;
+        private volatile long deletedCount;
+        private volatile boolean cancelRequested;
+
+        PurgeJob(String criteria, String username, long estimatedTotal) {
+            super("删除", username);
+            this.criteria = criteria;
+            this.estimatedTotal = estimatedTotal;
+        }
+
+        // 只有删除线程写入
+        void addDeleted(int count) {
+            deletedCount += count;
+        }
+
+        void requestCancel() {
+            cancelRequested = true;
+        }
+
+        /**
+         * 删除条件（用于显示和操作日志）
+         */
+        public String getCriteria() {
+            return criteria;
+        }
+
+        /**
+         * 提交时的预计删除数（估算值）
+         */
+        public long getEstimatedTotal() {
+            return estimatedTotal;
+        }
+
+        public long getDeletedCount() {
+            return deletedCount;
+        }
+
+        public boolean isCancelRequested() {
+            return cancelRequested;
+        }
+    }
+}
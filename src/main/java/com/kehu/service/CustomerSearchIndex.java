@@ -0,0 +1,855 @@
+package com.kehu.service;
+
+import com.kehu.entity.Customer;
+import com.kehu.util.AfterCommit;
+import com.kehu.util.CjkBigramAnalyzer;
+import com.kehu.util.SubstringGramAnalyzer;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.store.FSDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 客户全文索引（嵌入式 Lucene，索引目录在本地磁盘）
+ * 姓名、地址用汉字双字切分（{@link CjkBigramAnalyzer}），电话、邮箱按三字片段切分（{@link SubstringGramAnalyzer}），
+ * 搜索只在索引中取一页id，整行再按id回数据库取，避免 LIKE '%x%' 全表扫描。
+ * 姓名、地址关键词只有是一段连续的汉字、或一个字母数字词时才用索引，其他（含空格、标点、汉字和字母混合）
+ * 按词拆开匹配的结果与 LIKE 不同，走数据库查询
+ *
+ * 客户的新增、修改、删除、导入在事务提交后同步写入索引，由后台线程定期刷新（近实时，默认500ms内可见）；
+ * 启动时索引文档数与数据库不一致、或上次没有正常关闭时，在后台并行重建，重建期间搜索回退到数据库查询
+ */
+@Service
+public class CustomerSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(CustomerSearchIndex.class);
+
+    private static final String FIELD_UID = "uid";
+    private static final String FIELD_ID = "id";
+    private static final String FIELD_NAME = "name";
+    private static final String FIELD_PHONE = "phone_gram";
+    private static final String FIELD_EMAIL = "email_gram";
+    private static final String FIELD_ADDRESS = "address";
+    private static final String FIELD_TASK = "task";
+    private static final String FIELD_CREATED = "created";
+
+    // 提交数据中的正常关闭标记：定期提交时为false，关闭时为true
+    private static final String COMMIT_CLEAN = "clean";
+    // 提交数据中的索引结构版本：字段或分词方式改变时加1，启动时版本不一致会重建
+    private static final String COMMIT_SCHEMA = "schema";
+    private static final String SCHEMA_VERSION = "2";
+
+    private static final String SELECT_COLUMNS =
+        "SELECT id, name, phone, email, address, upload_task_id, create_time FROM customers ";
+
+    @Autowired(required = false)
+    private JdbcTemplate jdbcTemplate;
+
+    // 是否启用全文索引（关闭时搜索全部走数据库）
+    @Value("${customer.search.index.enabled:true}")
+    private boolean enabled;
+
+    // 索引目录
+    @Value("${customer.search.index.dir:search_index}")
+    private String indexDir;
+
+    // 刷新间隔（毫秒）：写入的数据最迟在这个时间后可被搜索到
+    @Value("${customer.search.index.refresh-ms:500}")
+    private long refreshMillis;
+
+    // 提交间隔（秒）：两次提交之间的写入在异常退出时会丢失，下次启动时重建
+    @Value("${customer.search.index.commit-seconds:60}")
+    private long commitSeconds;
+
+    // 重建时并行读取数据库的线程数
+    @Value("${customer.search.index.rebuild-threads:4}")
+    private int rebuildThreads;
+
+    // 重建时每次从数据库读取的行数
+    @Value("${customer.search.index.rebuild-chunk-size:5000}")
+    private int rebuildChunkSize;
+
+    private final Analyzer indexAnalyzer = new PerFieldAnalyzerWrapper(new CjkBigramAnalyzer(true), newGramFieldMap());
+    private final Analyzer queryAnalyzer = new CjkBigramAnalyzer(false);
+
+    private FSDirectory directory;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+    private ScheduledExecutorService refresher;
+
+    // 索引是否可用于搜索（重建期间为false）
+    private volatile boolean ready = false;
+    private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+    // 重建过程中又收到重建请求（如恢复了数据库），当前重建结束后再执行一次
+    private final AtomicBoolean rebuildPending = new AtomicBoolean(false);
+    // 重建期间被写入路径修改过的id，重建完成后按数据库重新同步
+    private final Set<Long> touchedDuringRebuild = ConcurrentHashMap.newKeySet();
+    private final List<Query> deletesDuringRebuild = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+    private volatile boolean cleanShutdown = false;
+    private final AtomicLong rebuildIndexed = new AtomicLong();
+    private volatile long lastRebuildMillis = -1;
+
+    @PostConstruct
+    public void open() {
+        if (!enabled || jdbcTemplate == null) {
+            logger.info("客户全文索引未启用，搜索使用数据库查询");
+            return;
+        }
+        try {
+            directory = FSDirectory.open(Paths.get(indexDir));
+            IndexWriterConfig config = new IndexWriterConfig(indexAnalyzer);
+            config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+            config.setRAMBufferSizeMB(64);
+            writer = new IndexWriter(directory, config);
+            Iterable<Map.Entry<String, String>> commitData = writer.getLiveCommitData();
+            boolean clean = false;
+            String schema = null;
+            if (commitData != null) {
+                for (Map.Entry<String, String> entry : commitData) {
+                    if (COMMIT_CLEAN.equals(entry.getKey())) {
+                        clean = Boolean.parseBoolean(entry.getValue());
+                    } else if (COMMIT_SCHEMA.equals(entry.getKey())) {
+                        schema = entry.getValue();
+                    }
+                }
+            }
+            // 旧版本结构的索引按未正常关闭处理，启动后重建
+            cleanShutdown = clean && SCHEMA_VERSION.equals(schema);
+            // 运行期间标记为未正常关闭，异常退出后下次启动会重建
+            writer.setLiveCommitData(commitData(false));
+            writer.commit();
+            searcherManager = new SearcherManager(writer, true, false, null);
+        } catch (IOException e) {
+            // 索引目录被占用（如同一目录启动了多个实例）或损坏时不影响启动，搜索回退到数据库
+            logger.warn("打开客户全文索引失败，搜索使用数据库查询: {}", e.getMessage());
+            closeQuietly();
+            return;
+        }
+        refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "search-index-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refresh, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+        refresher.scheduleWithFixedDelay(this::commit, commitSeconds, commitSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 启动完成后（初始数据已写入）检查索引与数据库是否一致，不一致时后台重建
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void checkOnStartup() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            Long dbCount = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM customers", Long.class);
+            long indexCount = writer.getDocStats().numDocs;
+            if (cleanShutdown && dbCount != null && dbCount == indexCount) {
+                ready = true;
+                logger.info("客户全文索引已就绪: {} 条", indexCount);
+                return;
+            }
+            logger.info("客户全文索引需要重建: 索引={} 条, 数据库={} 条, 上次正常关闭={}", indexCount, dbCount, cleanShutdown);
+        } catch (Exception e) {
+            logger.warn("检查客户全文索引失败，开始重建", e);
+        }
+        rebuildAsync();
+    }
+
+    @PreDestroy
+    public void close() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+        if (writer != null && writer.isOpen()) {
+            try {
+                // 重建未完成时不标记为正常关闭，下次启动重新构建
+                writer.setLiveCommitData(commitData(ready));
+                writer.commit();
+            } catch (IOException e) {
+                logger.warn("提交客户全文索引失败", e);
+            }
+        }
+        closeQuietly();
+    }
+
+    private static Map<String, Analyzer> newGramFieldMap() {
+        Map<String, Analyzer> analyzers = new HashMap<>();
+        SubstringGramAnalyzer gram = new SubstringGramAnalyzer();
+        analyzers.put(FIELD_PHONE, gram);
+        analyzers.put(FIELD_EMAIL, gram);
+        return analyzers;
+    }
+
+    private static Iterable<Map.Entry<String, String>> commitData(boolean clean) {
+        Map<String, String> data = new HashMap<>();
+        data.put(COMMIT_CLEAN, String.valueOf(clean));
+        data.put(COMMIT_SCHEMA, SCHEMA_VERSION);
+        return data.entrySet();
+    }
+
+    private void closeQuietly() {
+        try {
+            if (searcherManager != null) {
+                searcherManager.close();
+            }
+            if (writer != null) {
+                writer.close();
+            }
+            if (directory != null) {
+                directory.close();
+            }
+        } catch (IOException e) {
+            logger.warn("关闭客户全文索引失败", e);
+        } finally {
+            searcherManager = null;
+            writer = null;
+            directory = null;
+            ready = false;
+        }
+    }
+
+    /**
+     * 索引是否可用于搜索
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    // ==================== 搜索 ====================
+
+    /**
+     * 按条件取一页id（按id升序）
+     * 条件含义与数据库高级搜索相同（null表示不限，电话需已规范化）；条件无法用索引表达时返回null，由调用方回退到数据库
+     * @param offset 跳过的条数
+     * @param limit 返回的最大条数
+     */
+    public List<Long> searchIds(String name, String phone, String email, String address,
+                                LocalDateTime startTime, LocalDateTime endTime, Long uploadTaskId,
+                                int offset, int limit) {
+        Query query = buildQuery(name, phone, email, address, startTime, endTime, uploadTaskId, null, null);
+        if (query == null) {
+            return null;
+        }
+        return search(query, offset, limit, false);
+    }
+
+    /**
+     * 键集分页：id > afterId 的前 limit 个id（升序）；无法用索引表达时返回null
+     */
+    public List<Long> searchIdsAfter(String name, String phone, String email, String address,
+                                     LocalDateTime startTime, LocalDateTime endTime, Long uploadTaskId,
+                                     long afterId, int limit) {
+        Query query = buildQuery(name, phone, email, address, startTime, endTime, uploadTaskId,
+            afterId == Long.MAX_VALUE ? Long.MAX_VALUE : afterId + 1, null);
+        return query == null ? null : search(query, 0, limit, false);
+    }
+
+    /**
+     * 键集分页：id < beforeId 的最后 limit 个id（降序）；无法用索引表达时返回null
+     */
+    public List<Long> searchIdsBefore(String name, String phone, String email, String address,
+                                      LocalDateTime startTime, LocalDateTime endTime, Long uploadTaskId,
+                                      long beforeId, int limit) {
+        Query query = buildQuery(name, phone, email, address, startTime, endTime, uploadTaskId,
+            null, beforeId == Long.MIN_VALUE ? Long.MIN_VALUE : beforeId - 1);
+        return query == null ? null : search(query, 0, limit, true);
+    }
+
+    /**
+     * 按条件统计匹配数；无法用索引表达时返回null
+     */
+    public Long count(String name, String phone, String email, String address,
+                      LocalDateTime startTime, LocalDateTime endTime, Long uploadTaskId) {
+        Query query = buildQuery(name, phone, email, address, startTime, endTime, uploadTaskId, null, null);
+        if (query == null) {
+            return null;
+        }
+        IndexSearcher searcher = acquire();
+        try {
+            return (long) searcher.count(query);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            release(searcher);
+        }
+    }
+
+    /**
+     * 条件能否用索引表达（姓名、地址关键词不是一段连续汉字或一个字母数字词时不能）
+     */
+    public boolean canServe(String name, String address) {
+        return (name == null || textQuery(FIELD_NAME, name) != null)
+            && (address == null || textQuery(FIELD_ADDRESS, address) != null);
+    }
+
+    private List<Long> search(Query query, int offset, int limit, boolean descending) {
+        IndexSearcher searcher = acquire();
+        try {
+            int n = offset + limit;
+            if (n <= 0) {
+                return Collections.emptyList();
+            }
+            TopDocs topDocs = searcher.search(query, n, new Sort(new SortField(FIELD_ID, SortField.Type.LONG, descending)));
+            ScoreDoc[] hits = topDocs.scoreDocs;
+            List<Long> ids = new ArrayList<>(Math.max(0, Math.min(limit, hits.length - offset)));
+            for (int i = offset; i < hits.length; i++) {
+                ids.add(searcher.doc(hits[i].doc).getField(FIELD_ID).numericValue().longValue());
+            }
+            return ids;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            release(searcher);
+        }
+    }
+
+    private IndexSearcher acquire() {
+        SearcherManager manager = searcherManager;
+        if (manager == null) {
+            throw new IllegalStateException("客户全文索引未打开");
+        }
+        try {
+            return manager.acquire();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void release(IndexSearcher searcher) {
+        try {
+            searcherManager.release(searcher);
+        } catch (IOException e) {
+            logger.warn("释放索引搜索器失败", e);
+        }
+    }
+
+    /**
+     * 组合查询条件（全部为过滤条件，不计算相关度，结果按id排序）
+     * @param minId id下限（含，可为null）
+     * @param maxId id上限（含，可为null）
+     * @return 条件无法用索引表达时返回null
+     */
+    private Query buildQuery(String name, String phone, String email, String address,
+                             LocalDateTime startTime, LocalDateTime endTime, Long uploadTaskId,
+                             Long minId, Long maxId) {
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        boolean any = false;
+        for (String[] text : new String[][]{{FIELD_NAME, name}, {FIELD_ADDRESS, address}}) {
+            if (text[1] != null) {
+                Query query = textQuery(text[0], text[1]);
+                if (query == null) {
+                    return null;
+                }
+                builder.add(query, BooleanClause.Occur.FILTER);
+                any = true;
+            }
+        }
+        if (phone != null) {
+            builder.add(gramQuery(FIELD_PHONE, phone), BooleanClause.Occur.FILTER);
+            any = true;
+        }
+        if (email != null) {
+            builder.add(gramQuery(FIELD_EMAIL, email), BooleanClause.Occur.FILTER);
+            any = true;
+        }
+        if (startTime != null || endTime != null) {
+            builder.add(LongPoint.newRangeQuery(FIELD_CREATED,
+                startTime != null ? toMillis(startTime) : Long.MIN_VALUE,
+                endTime != null ? toMillis(endTime) : Long.MAX_VALUE), BooleanClause.Occur.FILTER);
+            any = true;
+        }
+        if (uploadTaskId != null) {
+            builder.add(LongPoint.newExactQuery(FIELD_TASK, uploadTaskId), BooleanClause.Occur.FILTER);
+            any = true;
+        }
+        if (minId != null || maxId != null) {
+            builder.add(LongPoint.newRangeQuery(FIELD_ID,
+                minId != null ? minId : Long.MIN_VALUE, maxId != null ? maxId : Long.MAX_VALUE), BooleanClause.Occur.FILTER);
+            any = true;
+        }
+        if (!any) {
+            return new MatchAllDocsQuery();
+        }
+        return builder.build();
+    }
+
+    /**
+     * 姓名、地址的子串查询：一段连续的汉字按双字组成短语查询，一个字母数字词按词内子串匹配
+     * @return 关键词不是这两种形式时返回null（如 "li w"、"3号楼"，按词拆开匹配与 LIKE '%x%' 结果不同）
+     */
+    private Query textQuery(String field, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (!Character.isLetterOrDigit(text.charAt(i))) {
+                return null;
+            }
+        }
+        PhraseQuery.Builder phrase = null;
+        String word = null;
+        try (TokenStream stream = queryAnalyzer.tokenStream(field, new StringReader(text))) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            TypeAttribute type = stream.addAttribute(TypeAttribute.class);
+            PositionIncrementAttribute increment = stream.addAttribute(PositionIncrementAttribute.class);
+            stream.reset();
+            int position = -1;
+            int lastCjkPosition = -1;
+            while (stream.incrementToken()) {
+                position += increment.getPositionIncrement();
+                if (CjkBigramAnalyzer.isCjkType(type.type())) {
+                    // 汉字与其他词混合、或汉字不连续
+                    if (word != null || (phrase != null && position != lastCjkPosition + 1)) {
+                        return null;
+                    }
+                    if (phrase == null) {
+                        phrase = new PhraseQuery.Builder();
+                    }
+                    phrase.add(new Term(field, term.toString()), position);
+                    lastCjkPosition = position;
+                } else {
+                    // 多个词、或与汉字混合
+                    if (word != null || phrase != null) {
+                        return null;
+                    }
+                    word = term.toString();
+                }
+            }
+            stream.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (phrase != null) {
+            return phrase.build();
+        }
+        // 分词时全角转半角等处理过的词与原文不同，按词内子串匹配不等同于 LIKE
+        if (word == null || !word.equals(text.toLowerCase())) {
+            return null;
+        }
+        return containsQuery(field, word);
+    }
+
+    /**
+     * 电话、邮箱的子串查询（等同于 LIKE '%value%'）：关键词按三字片段组成短语，片段每隔三个字符取一个、
+     * 最后一个与末尾对齐，覆盖整个关键词即可；不足三个字符时在片段词典中做子串匹配
+     */
+    private static Query gramQuery(String field, String value) {
+        String text = SubstringGramAnalyzer.normalize(value);
+        int size = SubstringGramAnalyzer.GRAM_SIZE;
+        if (text.length() < size) {
+            return containsQuery(field, text);
+        }
+        PhraseQuery.Builder phrase = new PhraseQuery.Builder();
+        for (int i = 0; ; i += size) {
+            int start = Math.min(i, text.length() - size);
+            phrase.add(new Term(field, text.substring(start, start + size)), start);
+            if (start + size >= text.length()) {
+                break;
+            }
+        }
+        return phrase.build();
+    }
+
+    /**
+     * 词典中的子串匹配：通配符查询要遍历字段的整个词典，只用于词典不随客户数增长的字段（姓名地址的词、电话邮箱的片段）
+     */
+    private static Query containsQuery(String field, String value) {
+        StringBuilder pattern = new StringBuilder(value.length() + 2).append('*');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '*' || c == '?' || c == '\\') {
+                pattern.append('\\');
+            }
+            pattern.append(c);
+        }
+        return new WildcardQuery(new Term(field, pattern.append('*').toString()));
+    }
+
+    // ==================== 写入 ====================
+
+    /**
+     * 索引新增或修改后的客户（在事务中调用时，事务提交后才写入索引）
+     */
+    public void indexAfterCommit(Collection<Customer> customers) {
+        if (writer == null || customers.isEmpty()) {
+            return;
+        }
+        List<Customer> snapshot = new ArrayList<>(customers);
+        afterCommit(() -> {
+            for (Customer customer : snapshot) {
+                if (customer.getId() != null) {
+                    update(customer.getId(), toDocument(customer.getId(), customer.getName(), customer.getPhone(),
+                        customer.getEmail(), customer.getAddress(), customer.getUploadTaskId(), customer.getCreateTime()));
+                }
+            }
+        });
+    }
+
+    /**
+     * 从索引删除客户（在事务中调用时，事务提交后才删除）
+     */
+    public void deleteAfterCommit(Collection<Long> ids) {
+        if (writer == null || ids.isEmpty()) {
+            return;
+        }
+        List<Long> snapshot = new ArrayList<>(ids);
+        afterCommit(() -> {
+            for (Long id : snapshot) {
+                delete(id);
+            }
+        });
+    }
+
+    /**
+     * 按数据库中的当前值重新索引（被SQL直接修改过的客户；已不存在的从索引删除）
+     */
+    public void refreshAfterCommit(Collection<Long> ids) {
+        if (writer == null || ids.isEmpty()) {
+            return;
+        }
+        List<Long> snapshot = new ArrayList<>(ids);
+        afterCommit(() -> resync(snapshot));
+    }
+
+    /**
+     * 删除某个上传任务在 [fromId, toId] 范围内的客户（回滚导入按段删除时调用）
+     */
+    public void deleteTaskRange(Long taskId, long fromId, long toId) {
+        if (writer == null) {
+            return;
+        }
+        afterCommit(() -> {
+            BooleanQuery query = new BooleanQuery.Builder()
+                .add(LongPoint.newExactQuery(FIELD_TASK, taskId), BooleanClause.Occur.FILTER)
+                .add(LongPoint.newRangeQuery(FIELD_ID, fromId, toId), BooleanClause.Occur.FILTER)
+                .build();
+            if (rebuilding.get()) {
+                // 重建线程可能已读到这些行，重建结束后再删一次
+                deletesDuringRebuild.add(query);
+            }
+            try {
+                writer.deleteDocuments(query);
+                dirty.set(true);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * 有事务时注册到事务提交之后执行，没有事务时立即执行；索引写入失败只记录日志，不影响业务
+     */
+    private void afterCommit(Runnable action) {
+        Runnable safe = () -> {
+            try {
+                action.run();
+            } catch (Exception e) {
+                logger.error("写入客户全文索引失败，可通过重建索引恢复", e);
+            }
+        };
+        AfterCommit.run(safe);
+    }
+
+    private void update(long id, Document document) {
+        if (rebuilding.get()) {
+            touchedDuringRebuild.add(id);
+        }
+        try {
+            writer.updateDocument(new Term(FIELD_UID, Long.toString(id)), document);
+            dirty.set(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void delete(long id) {
+        if (rebuilding.get()) {
+            touchedDuringRebuild.add(id);
+        }
+        try {
+            writer.deleteDocuments(new Term(FIELD_UID, Long.toString(id)));
+            dirty.set(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 按数据库当前值同步一批id
+     */
+    private void resync(Collection<Long> ids) {
+        List<Long> list = new ArrayList<>(ids);
+        for (int i = 0; i < list.size(); i += 1000) {
+            List<Long> batch = list.subList(i, Math.min(i + 1000, list.size()));
+            StringBuilder in = new StringBuilder();
+            for (int j = 0; j < batch.size(); j++) {
+                in.append(j == 0 ? "?" : ",?");
+            }
+            Set<Long> found = new HashSet<>();
+            jdbcTemplate.query(SELECT_COLUMNS + "WHERE id IN (" + in + ")", rs -> {
+                long id = rs.getLong(1);
+                found.add(id);
+                update(id, toDocument(rs));
+            }, batch.toArray());
+            for (Long id : batch) {
+                if (!found.contains(id)) {
+                    delete(id);
+                }
+            }
+        }
+    }
+
+    private Document toDocument(java.sql.ResultSet rs) throws java.sql.SQLException {
+        Number taskId = (Number) rs.getObject(6);
+        Timestamp created = rs.getTimestamp(7);
+        return toDocument(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5),
+            taskId != null ? taskId.longValue() : null, created != null ? created.toLocalDateTime() : null);
+    }
+
+    private Document toDocument(long id, String name, String phone, String email, String address,
+                                Long uploadTaskId, LocalDateTime createTime) {
+        Document document = new Document();
+        document.add(new StringField(FIELD_UID, Long.toString(id), Field.Store.NO));
+        document.add(new LongPoint(FIELD_ID, id));
+        document.add(new NumericDocValuesField(FIELD_ID, id));
+        document.add(new StoredField(FIELD_ID, id));
+        if (name != null) {
+            document.add(new TextField(FIELD_NAME, name, Field.Store.NO));
+        }
+        if (phone != null) {
+            document.add(new TextField(FIELD_PHONE, phone, Field.Store.NO));
+        }
+        if (email != null) {
+            document.add(new TextField(FIELD_EMAIL, email, Field.Store.NO));
+        }
+        if (address != null) {
+            document.add(new TextField(FIELD_ADDRESS, address, Field.Store.NO));
+        }
+        if (uploadTaskId != null) {
+            document.add(new LongPoint(FIELD_TASK, uploadTaskId));
+        }
+        if (createTime != null) {
+            document.add(new LongPoint(FIELD_CREATED, toMillis(createTime)));
+        }
+        return document;
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private void refresh() {
+        try {
+            searcherManager.maybeRefresh();
+        } catch (Exception e) {
+            logger.warn("刷新客户全文索引失败", e);
+        }
+    }
+
+    private void commit() {
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+        try {
+            writer.setLiveCommitData(commitData(false));
+            writer.commit();
+        } catch (Exception e) {
+            dirty.set(true);
+            logger.warn("提交客户全文索引失败", e);
+        }
+    }
+
+    // ==================== 重建 ====================
+
+    /**
+     * 后台重建索引（已在重建中时，当前重建结束后再重建一次，返回false）
+     */
+    public boolean rebuildAsync() {
+        if (writer == null) {
+            return false;
+        }
+        if (!rebuilding.compareAndSet(false, true)) {
+            rebuildPending.set(true);
+            return false;
+        }
+        Thread thread = new Thread(() -> {
+            do {
+                rebuildPending.set(false);
+                rebuilding.set(true);
+                try {
+                    rebuild();
+                } catch (Exception e) {
+                    logger.error("重建客户全文索引失败，搜索继续使用数据库查询", e);
+                } finally {
+                    rebuilding.set(false);
+                }
+            } while (rebuildPending.get());
+        }, "search-index-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    /**
+     * 全量重建：清空索引，把id范围分成若干段由多个线程并行读取数据库写入（IndexWriter 支持多线程写入）
+     */
+    private void rebuild() throws Exception {
+        long startTime = System.currentTimeMillis();
+        ready = false;
+        touchedDuringRebuild.clear();
+        deletesDuringRebuild.clear();
+        rebuildIndexed.set(0);
+        writer.deleteAll();
+
+        Map<String, Object> bounds = jdbcTemplate.queryForMap("SELECT MIN(id) AS min_id, MAX(id) AS max_id FROM customers");
+        Number min = (Number) bounds.get("min_id");
+        Number max = (Number) bounds.get("max_id");
+        if (min != null && max != null) {
+            int threads = Math.max(1, rebuildThreads);
+            long from = min.longValue() - 1;
+            long span = max.longValue() - from;
+            ExecutorService pool = Executors.newFixedThreadPool(threads, new java.util.concurrent.ThreadFactory() {
+                private final AtomicInteger counter = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "search-index-rebuild-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    long lower = from + span * i / threads;
+                    long upper = from + span * (i + 1) / threads;
+                    futures.add(pool.submit(() -> {
+                        indexRange(lower, upper);
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+        writer.setLiveCommitData(commitData(false));
+        writer.commit();
+
+        // 重建期间发生的写入按数据库当前值再同步一次
+        Set<Long> touched = new HashSet<>(touchedDuringRebuild);
+        rebuilding.set(false);
+        if (!touched.isEmpty()) {
+            resync(touched);
+        }
+        for (Query query : deletesDuringRebuild) {
+            writer.deleteDocuments(query);
+        }
+        deletesDuringRebuild.clear();
+        searcherManager.maybeRefreshBlocking();
+        ready = true;
+        lastRebuildMillis = System.currentTimeMillis() - startTime;
+        logger.info("客户全文索引重建完成: {} 条, 重建期间同步 {} 条, 耗时={}ms",
+            rebuildIndexed.get(), touched.size(), lastRebuildMillis);
+    }
+
+    /**
+     * 索引 (lower, upper] 范围内的客户（按主键分段读取）
+     */
+    private void indexRange(long lower, long upper) throws IOException {
+        long lastId = lower;
+        while (lastId < upper) {
+            List<Document> documents = new ArrayList<>(rebuildChunkSize);
+            long[] maxId = {lastId};
+            jdbcTemplate.query(SELECT_COLUMNS + "WHERE id > ? AND id <= ? ORDER BY id LIMIT ?", rs -> {
+                maxId[0] = rs.getLong(1);
+                documents.add(toDocument(rs));
+            }, lastId, upper, rebuildChunkSize);
+            if (documents.isEmpty()) {
+                break;
+            }
+            writer.addDocuments(documents);
+            rebuildIndexed.addAndGet(documents.size());
+            lastId = maxId[0];
+        }
+    }
+
+    /**
+     * 索引状态（用于管理接口）
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", writer != null);
+        status.put("ready", ready);
+        status.put("rebuilding", rebuilding.get());
+        status.put("rebuildIndexed", rebuildIndexed.get());
+        status.put("lastRebuildMillis", lastRebuildMillis);
+        if (writer != null) {
+            status.put("docCount", writer.getDocStats().numDocs);
+        }
+        return status;
+    }
+}
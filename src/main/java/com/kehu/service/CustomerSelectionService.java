@@ -0,0 +1,261 @@
+package com.kehu.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 服务端客户选择集
+ * 把一次搜索的全部结果（或一组id）保存为压缩位图并返回短期令牌，令牌之间可以做并集、交集、差集，
+ * 批量删除、导出、批量修改可以直接传令牌，不用在浏览器和服务器之间来回传几十万个id。
+ * 高级搜索结果快照（翻页用）放在单独的池中，有自己的个数上限和有效期，频繁搜索不会挤掉用户手动保存的选择集；
+ * 快照令牌同样可以当作选择集使用
+ */
+@Service
+public class CustomerSelectionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CustomerSelectionService.class);
+
+    @Autowired
+    private CustomerService customerService;
+
+    // 选择集有效期（分钟，每次使用后顺延）
+    @Value("${customer.selection.ttl-minutes:30}")
+    private long ttlMinutes;
+
+    // 每个用户最多保留的选择集个数（超出时丢弃最早使用的）
+    @Value("${customer.selection.max-per-user:20}")
+    private int maxPerUser;
+
+    // 搜索结果快照有效期（分钟，每次翻页后顺延）
+    @Value("${customer.snapshot.ttl-minutes:15}")
+    private long snapshotTtlMinutes;
+
+    // 每个用户最多保留的快照个数（超出时丢弃最早使用的）
+    @Value("${customer.snapshot.max-per-user:5}")
+    private int snapshotMaxPerUser;
+
+    private final Map<String, Selection> selections = new ConcurrentHashMap<>();
+    private final Map<String, Selection> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * 按高级搜索条件创建选择集（条件同 {@link CustomerService#advancedSearchSlice}）
+     */
+    public Selection createFromSearch(String name, String phone, String email, String address,
+                                      LocalDateTime startTime, LocalDateTime endTime, Long uploadTaskId,
+                                      boolean startsWith, String username) {
+        long start = System.currentTimeMillis();
+        Roaring64Bitmap ids = customerService.selectIds(name, phone, email, address, startTime, endTime,
+            uploadTaskId, startsWith);
+        Selection selection = register(ids, username);
+        logger.info("创建选择集: token={}, 数量={}, 大小={}B, 耗时={}ms", selection.getToken(),
+            selection.getCount(), selection.getSizeInBytes(), System.currentTimeMillis() - start);
+        return selection;
+    }
+
+    /**
+     * 按高级搜索条件创建结果快照（放在快照池中，条件同 {@link #createFromSearch}）
+     */
+    public Selection createSnapshot(String name, String phone, String email, String address,
+                                    LocalDateTime startTime, LocalDateTime endTime, Long uploadTaskId,
+                                    boolean startsWith, String username) {
+        long start = System.currentTimeMillis();
+        Roaring64Bitmap ids = customerService.selectIds(name, phone, email, address, startTime, endTime,
+            uploadTaskId, startsWith);
+        Selection snapshot = register(snapshots, snapshotTtlMinutes, snapshotMaxPerUser, ids, username);
+        logger.info("创建搜索结果快照: token={}, 数量={}, 大小={}B, 耗时={}ms", snapshot.getToken(),
+            snapshot.getCount(), snapshot.getSizeInBytes(), System.currentTimeMillis() - start);
+        return snapshot;
+    }
+
+    /**
+     * 取搜索结果快照并顺延有效期
+     * @throws NoSuchElementException 快照不存在、已过期或不属于当前用户
+     */
+    public Selection getSnapshot(String token, String username) {
+        Selection snapshot = find(snapshots, snapshotTtlMinutes, token, username);
+        if (snapshot == null) {
+            throw new NoSuchElementException("搜索结果已过期，请重新搜索");
+        }
+        return snapshot;
+    }
+
+    /**
+     * 按id列表创建选择集（不检查id是否存在，使用时会跳过已删除的客户）
+     */
+    public Selection createFromIds(long[] ids, String username) {
+        Roaring64Bitmap bitmap = new Roaring64Bitmap();
+        for (long id : ids) {
+            bitmap.addLong(id);
+        }
+        bitmap.runOptimize();
+        return register(bitmap, username);
+    }
+
+    /**
+     * 两个选择集做集合运算，结果保存为新的选择集（原选择集不变）
+     * @param op union（并集）、intersect（交集）、minus（差集）
+     * @throws IllegalArgumentException 运算不支持
+     * @throws NoSuchElementException 选择集不存在、已过期或不属于当前用户
+     */
+    public Selection combine(String token, String op, String otherToken, String username) {
+        Roaring64Bitmap left = get(token, username).getIds();
+        Roaring64Bitmap right = get(otherToken, username).getIds();
+        Roaring64Bitmap result = left.clone();
+        switch (op) {
+            case "union":
+                result.or(right);
+                break;
+            case "intersect":
+                result.and(right);
+                break;
+            case "minus":
+                result.andNot(right);
+                break;
+            default:
+                throw new IllegalArgumentException("不支持的集合运算: " + op + "（可选 union、intersect、minus）");
+        }
+        result.runOptimize();
+        return register(result, username);
+    }
+
+    /**
+     * 取选择集（或搜索结果快照）并顺延有效期
+     * @throws NoSuchElementException 选择集不存在、已过期或不属于当前用户
+     */
+    public Selection get(String token, String username) {
+        Selection selection = find(selections, ttlMinutes, token, username);
+        if (selection == null) {
+            selection = find(snapshots, snapshotTtlMinutes, token, username);
+        }
+        if (selection == null) {
+            throw new NoSuchElementException("选择集不存在或已过期，请重新选择");
+        }
+        return selection;
+    }
+
+    private static Selection find(Map<String, Selection> pool, long ttlMinutes, String token, String username) {
+        Selection selection = token != null ? pool.get(token) : null;
+        if (selection == null || selection.isExpired() || !isOwner(selection, username)) {
+            return null;
+        }
+        selection.touch(ttlMinutes);
+        return selection;
+    }
+
+    /**
+     * 删除选择集
+     * @return false表示不存在或不属于当前用户
+     */
+    public boolean remove(String token, String username) {
+        return remove(selections, token, username) || remove(snapshots, token, username);
+    }
+
+    private static boolean remove(Map<String, Selection> pool, String token, String username) {
+        Selection selection = token != null ? pool.get(token) : null;
+        if (selection == null || !isOwner(selection, username)) {
+            return false;
+        }
+        return pool.remove(token) != null;
+    }
+
+    private Selection register(Roaring64Bitmap ids, String username) {
+        return register(selections, ttlMinutes, maxPerUser, ids, username);
+    }
+
+    private static Selection register(Map<String, Selection> pool, long ttlMinutes, int maxPerUser,
+                                      Roaring64Bitmap ids, String username) {
+        pool.values().removeIf(Selection::isExpired);
+        Selection selection = new Selection(UUID.randomUUID().toString().replace("-", ""), username, ids);
+        selection.touch(ttlMinutes);
+        pool.put(selection.getToken(), selection);
+        if (username != null) {
+            // 超过个数上限时丢弃该用户在这个池中最早使用的
+            long owned = pool.values().stream().filter(s -> username.equals(s.username)).count();
+            if (owned > maxPerUser) {
+                pool.values().stream()
+                    .filter(s -> username.equals(s.username))
+                    .sorted(Comparator.comparing(Selection::getExpireTime))
+                    .limit(owned - maxPerUser)
+                    .map(Selection::getToken)
+                    .forEach(pool::remove);
+            }
+        }
+        return selection;
+    }
+
+    private static boolean isOwner(Selection selection, String username) {
+        return selection.username == null || selection.username.equals(username);
+    }
+
+    /**
+     * 选择集（位图创建后不再修改，集合运算产生新的选择集）
+     */
+    public static class Selection {
+        private final String token;
+        private final String username;
+        private final Roaring64Bitmap ids;
+        private final long count;
+        private final long sizeInBytes;
+        private final LocalDateTime createTime = LocalDateTime.now();
+        private volatile LocalDateTime expireTime;
+
+        Selection(String token, String username, Roaring64Bitmap ids) {
+            this.token = token;
+            this.username = username;
+            this.ids = ids;
+            this.count = ids.getLongCardinality();
+            this.sizeInBytes = ids.getLongSizeInBytes();
+        }
+
+        void touch(long ttlMinutes) {
+            expireTime = LocalDateTime.now().plusMinutes(ttlMinutes);
+        }
+
+        boolean isExpired() {
+            return expireTime.isBefore(LocalDateTime.now());
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        /**
+         * 客户id（只读，不要修改）
+         */
+        @JsonIgnore
+        public Roaring64Bitmap getIds() {
+            return ids;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * 位图占用的内存（字节）
+         */
+        public long getSizeInBytes() {
+            return sizeInBytes;
+        }
+
+        public LocalDateTime getCreateTime() {
+            return createTime;
+        }
+
+        public LocalDateTime getExpireTime() {
+            return expireTime;
+        }
+    }
+}
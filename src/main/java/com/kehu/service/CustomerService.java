@@ -1,31 +1,53 @@
 package com.kehu.service;
 
+import com.kehu.dto.CountEstimate;
+import com.kehu.dto.CustomerRow;
+import com.kehu.dto.KeysetPage;
 import com.kehu.entity.Customer;
+import com.kehu.repository.CustomerRemarkRepository;
 import com.kehu.repository.CustomerRepository;
+import com.kehu.repository.CustomerSpecifications;
+import com.kehu.util.PageCursor;
+import com.kehu.util.PhoneNormalizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.roaringbitmap.longlong.PeekableLongIterator;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
 
 @Service
 public class CustomerService {
@@ -35,44 +57,168 @@ public class CustomerService {
     @Autowired
     private CustomerRepository customerRepository;
 
+    @Autowired
+    private CustomerRemarkRepository customerRemarkRepository;
+
     @Autowired(required = false)
     private JdbcTemplate jdbcTemplate;
 
-    // 缓存客户总数（5分钟过期）
-    private static final Map<String, CacheEntry> countCache = new ConcurrentHashMap<>();
-    private static final long CACHE_EXPIRE_TIME = 5 * 60 * 1000; // 5分钟
+    // 导入时是否拒绝无法识别的电话（默认保留原值入库，只有能识别的号码才规范化）
+    @Value("${customer.import.reject-invalid-phone:false}")
+    private boolean rejectInvalidPhone;
+
+    @Autowired
+    private CustomerCountService customerCountService;
+
+    @Autowired
+    private CustomerSearchIndex customerSearchIndex;
+
+    @Autowired
+    private CustomerPhoneIndex customerPhoneIndex;
+
+    // 逐行读取客户：按条件（WHERE 拼在中间）按id顺序读取，关联上传文件名
+    private static final String ROWS_SELECT = "SELECT c.id, c.name, c.phone, c.email, c.address, c.upload_task_id, " +
+        "t.file_name, c.create_time, c.update_time FROM customers c LEFT JOIN upload_tasks t ON t.id = c.upload_task_id";
+
+    // 逐行读取时每次从数据库取的行数（MySQL 使用流式结果集，不受此参数影响）
+    @Value("${customer.stream.fetch-size:1000}")
+    private int streamFetchSize;
 
-    static {
-        // 定期清理过期缓存
-        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-        scheduler.scheduleAtFixedRate(() -> {
-            long currentTime = System.currentTimeMillis();
-            countCache.entrySet().removeIf(entry -> 
-                currentTime - entry.getValue().getTimestamp() > CACHE_EXPIRE_TIME
-            );
-        }, 1, 1, TimeUnit.MINUTES);
+    // 按id集合读取时每条 IN 查询的id个数
+    @Value("${customer.stream.id-chunk-size:1000}")
+    private int idChunkSize;
+
+    // 批量删除每条 DELETE 语句的id个数
+    @Value("${customer.delete.chunk-size:1000}")
+    private int deleteChunkSize;
+
+    // 批量查询每次匹配的查询项数（每批执行的 IN 列表长度）
+    @Value("${customer.batch-query.chunk-size:1000}")
+    private int batchQueryChunkSize;
+
+    /**
+     * 逐行输出
+     */
+    public interface RowWriter {
+        void write(CustomerRow row) throws IOException;
     }
 
-    private static class CacheEntry {
-        private final long value;
-        private final long timestamp;
+    /**
+     * 按id顺序逐行读取所有客户（服务端游标，只向前读取，内存占用与表大小无关）
+     * MySQL 使用 fetchSize=Integer.MIN_VALUE 的流式结果集，其他数据库按 fetchSize 分批取
+     * @param writer 每行调用一次；抛出 IOException（如客户端已断开）时取消查询并停止读取
+     * @return 读取的行数
+     * @throws IOException writer 抛出的异常
+     */
+    public long streamAllRows(RowWriter writer) throws IOException {
+        return streamRows(null, null, null, null, null, null, null, false, writer);
+    }
 
-        public CacheEntry(long value) {
-            this.value = value;
-            this.timestamp = System.currentTimeMillis();
+    /**
+     * 按高级搜索条件逐行读取客户（条件同 {@link #advancedSearchSlice}），读取方式同 {@link #streamAllRows}
+     * @return 读取的行数
+     */
+    public long streamRows(String name, String phone, String email, String address,
+                           LocalDateTime startTime, LocalDateTime endTime, Long uploadTaskId, boolean startsWith,
+                           RowWriter writer) throws IOException {
+        if (jdbcTemplate == null) {
+            throw new IllegalStateException("数据库不可用");
         }
+        String p = PhoneNormalizer.canonicalOrTrim(phone);
+        List<Object> args = new ArrayList<>();
+        String sql = ROWS_SELECT + CustomerSpecifications.advancedSearchSql(blankToNull(name), p, blankToNull(email),
+            blankToNull(address), startTime, endTime, uploadTaskId, startsWith, args) + " ORDER BY c.id";
+        long[] rows = {0};
+        try {
+            streamQuery(sql, args, rs -> {
+                try {
+                    writer.write(toRow(rs));
+                    rows[0]++;
+                } catch (IOException e) {
+                    // 先取消查询：MySQL 关闭流式结果集时会读完剩余的行
+                    try {
+                        rs.getStatement().cancel();
+                    } catch (SQLException cancelError) {
+                        logger.debug("取消查询失败: {}", cancelError.getMessage());
+                    }
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return rows[0];
+    }
 
-        public long getValue() {
-            return value;
+    /**
+     * 按id集合逐行读取客户（按id顺序，每 customer.stream.id-chunk-size 个id一条 IN 查询）
+     * @return 读取的行数（已不存在的id跳过）
+     * @throws IOException writer 抛出的异常
+     */
+    public long streamRows(Roaring64Bitmap ids, RowWriter writer) throws IOException {
+        if (jdbcTemplate == null) {
+            throw new IllegalStateException("数据库不可用");
+        }
+        long rows = 0;
+        List<Object> chunk = new ArrayList<>(idChunkSize);
+        PeekableLongIterator iterator = ids.getLongIterator();
+        while (iterator.hasNext()) {
+            chunk.add(iterator.next());
+            if (chunk.size() == idChunkSize || !iterator.hasNext()) {
+                String sql = ROWS_SELECT + " WHERE c.id IN (" + String.join(",", Collections.nCopies(chunk.size(), "?"))
+                    + ") ORDER BY c.id";
+                for (CustomerRow row : jdbcTemplate.query(sql, (rs, rowNum) -> toRow(rs), chunk.toArray())) {
+                    writer.write(row);
+                    rows++;
+                }
+                chunk.clear();
+            }
         }
+        return rows;
+    }
 
-        public long getTimestamp() {
-            return timestamp;
+    /**
+     * 按高级搜索条件取所有匹配客户的id（条件同 {@link #advancedSearchSlice}，读取方式同 {@link #streamAllRows}，只读id列）
+     * @return 压缩位图（连续的id按区间存放，几十万个id通常只占几十KB）
+     */
+    public Roaring64Bitmap selectIds(String name, String phone, String email, String address,
+                                     LocalDateTime startTime, LocalDateTime endTime, Long uploadTaskId,
+                                     boolean startsWith) {
+        if (jdbcTemplate == null) {
+            throw new IllegalStateException("数据库不可用");
         }
+        String p = PhoneNormalizer.canonicalOrTrim(phone);
+        List<Object> args = new ArrayList<>();
+        String sql = "SELECT c.id FROM customers c" + CustomerSpecifications.advancedSearchSql(blankToNull(name), p,
+            blankToNull(email), blankToNull(address), startTime, endTime, uploadTaskId, startsWith, args) + " ORDER BY c.id";
+        Roaring64Bitmap ids = new Roaring64Bitmap();
+        streamQuery(sql, args, rs -> ids.addLong(rs.getLong(1)));
+        ids.runOptimize();
+        return ids;
     }
 
-    public List<Customer> getAllCustomers() {
-        return customerRepository.findAll();
+    /**
+     * 只向前读取的查询（MySQL 使用 fetchSize=Integer.MIN_VALUE 的流式结果集，其他数据库按 fetchSize 分批取）
+     */
+    private void streamQuery(String sql, List<Object> args, RowCallbackHandler handler) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            boolean mysql = con.getMetaData().getDatabaseProductName().toLowerCase().contains("mysql");
+            ps.setFetchSize(mysql ? Integer.MIN_VALUE : streamFetchSize);
+            for (int i = 0; i < args.size(); i++) {
+                ps.setObject(i + 1, args.get(i));
+            }
+            return ps;
+        }, handler);
+    }
+
+    private static CustomerRow toRow(ResultSet rs) throws SQLException {
+        Timestamp createTime = rs.getTimestamp(8);
+        Timestamp updateTime = rs.getTimestamp(9);
+        return new CustomerRow(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5),
+            (Long) (rs.getObject(6) != null ? rs.getLong(6) : null), rs.getString(7),
+            createTime != null ? createTime.toLocalDateTime() : null,
+            updateTime != null ? updateTime.toLocalDateTime() : null);
     }
 
     /**
@@ -83,8 +229,93 @@ public class CustomerService {
      */
     public Page<Customer> getAllCustomers(int page, int size) {
         // 按ID升序排列，保持数据库插入顺序
-        Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.ASC, "id"));
-        return customerRepository.findAll(pageable);
+        // 延迟关联：先只取这一页的id，再按id取整行，深分页时被跳过的行不回表
+        Pageable pageable = PageRequest.of(page, size);
+        List<Customer> content = findByIds(customerRepository.findIdsOrderById(pageable).getContent());
+        return PageableExecutionUtils.getPage(content, pageable, customerRepository::count);
+    }
+
+    /**
+     * 分页查询所有客户（不统计总数：多取一条判断是否有下一页，总数由 {@link #countAllCustomers} 单独获取）
+     * @param page 页码（从0开始）
+     * @param size 每页大小
+     */
+    @Transactional(readOnly = true)
+    public Slice<CustomerRow> getCustomersSlice(int page, int size) {
+        Pageable pageable = PageRequest.of(page, size);
+        return toRows(customerRepository.findIdsOrderById(pageable), pageable);
+    }
+
+    /**
+     * 把一页id换成列表行（延迟关联第二步）
+     */
+    private Slice<CustomerRow> toRows(Slice<Long> ids, Pageable pageable) {
+        return new SliceImpl<>(findRows(ids.getContent()), pageable, ids.hasNext());
+    }
+
+    /**
+     * 按id批量取整行（延迟关联第二步），结果按id升序
+     */
+    private List<Customer> findByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return customerRepository.findByIdInOrderById(ids);
+    }
+
+    /**
+     * 按id批量取列表行（只读投影，只查显示的列并关联上传文件名），结果按id升序
+     */
+    private List<CustomerRow> findRows(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return customerRepository.findRowsByIdIn(ids);
+    }
+
+    /**
+     * 键集分页查询所有客户（按id范围定位，任意深度的翻页都是一次索引范围扫描）
+     * @param cursor 分页游标
+     * @param size 每页大小
+     * @return 本页数据和前后翻页令牌
+     */
+    @Transactional(readOnly = true)
+    public KeysetPage<CustomerRow> getCustomersByCursor(PageCursor cursor, int size) {
+        return seek(Specification.where(null), cursor, size);
+    }
+
+    /**
+     * 按游标取一页：先取id，多取一个判断是否还有下一页（或上一页），再按id取列表行
+     * @param forward (afterId, limit) → id > afterId 的id，按id升序
+     * @param backward (beforeId, limit) → id < beforeId 的id，按id降序
+     */
+    private KeysetPage<CustomerRow> seek(PageCursor cursor, int size,
+                                         BiFunction<Long, Integer, List<Long>> forward,
+                                         BiFunction<Long, Integer, List<Long>> backward) {
+        List<Long> ids;
+        boolean hasNext;
+        boolean hasPrevious;
+        if (cursor.isBackward()) {
+            ids = new ArrayList<>(backward.apply(cursor.getBeforeId(), size + 1));
+            hasPrevious = ids.size() > size;
+            if (hasPrevious) {
+                ids.remove(ids.size() - 1);
+            }
+            hasNext = !cursor.isLast();
+        } else {
+            // id从1开始，第一页从0之后开始
+            ids = new ArrayList<>(forward.apply(cursor.isFirst() ? 0L : cursor.getAfterId(), size + 1));
+            hasNext = ids.size() > size;
+            if (hasNext) {
+                ids.remove(ids.size() - 1);
+            }
+            hasPrevious = !cursor.isFirst();
+        }
+        // 回表结果按id升序
+        List<CustomerRow> rows = findRows(ids);
+        Long firstId = rows.isEmpty() ? null : rows.get(0).getId();
+        Long lastId = rows.isEmpty() ? null : rows.get(rows.size() - 1).getId();
+        return new KeysetPage<>(rows, firstId, lastId, hasNext, hasPrevious);
     }
 
     public Optional<Customer> getCustomerById(Long id) {
@@ -92,9 +323,13 @@ public class CustomerService {
     }
 
     public Customer saveCustomer(Customer customer) {
+        customer.setPhone(PhoneNormalizer.canonicalOrTrim(customer.getPhone()));
         // 保存后清除缓存
         invalidateCountCache();
-        return customerRepository.save(customer);
+        Customer saved = customerRepository.save(customer);
+        customerSearchIndex.indexAfterCommit(Collections.singletonList(saved));
+        customerPhoneIndex.putAfterCommit(Collections.singletonList(saved));
+        return saved;
     }
 
     /**
@@ -105,6 +340,8 @@ public class CustomerService {
     @Transactional
     public List<Customer> saveAllCustomers(List<Customer> customers) {
         List<Customer> saved = customerRepository.saveAll(customers);
+        customerSearchIndex.indexAfterCommit(saved);
+        customerPhoneIndex.putAfterCommit(saved);
         // 保存后清除缓存
         invalidateCountCache();
         return saved;
@@ -113,31 +350,40 @@ public class CustomerService {
     @Transactional
     public void deleteCustomer(Long id) {
         customerRepository.deleteById(id);
+        customerSearchIndex.deleteAfterCommit(Collections.singletonList(id));
+        customerPhoneIndex.removeAfterCommit(Collections.singletonList(id));
         // 删除后清除缓存
         invalidateCountCache();
     }
     
     /**
-     * 批量删除客户（优化性能）
-     * @param ids 客户ID列表
-     * @return 删除的数量
+     * 批量删除客户及其备注（同一个事务）
+     * id 排序去重后按 customer.delete.chunk-size 分段，每段先删备注再删客户，各一条 DELETE ... WHERE id IN (...)，
+     * 不加载实体；按主键顺序加锁，并发删除时不会互相死锁
+     * @param ids 客户ID（可以重复，不存在的忽略）
+     * @return 实际删除的客户数
      */
     @Transactional
-    public int batchDeleteCustomers(List<Long> ids) {
-        if (ids == null || ids.isEmpty()) {
+    public int batchDeleteCustomers(long[] ids) {
+        if (ids == null || ids.length == 0) {
             return 0;
         }
+        long[] sorted = Arrays.stream(ids).sorted().distinct().toArray();
         
-        // 使用批量删除，性能更好
         int deletedCount = 0;
-        // 分批删除，每批500条，避免SQL语句过长
-        int batchSize = 500;
-        for (int i = 0; i < ids.size(); i += batchSize) {
-            int end = Math.min(i + batchSize, ids.size());
-            List<Long> batch = ids.subList(i, end);
-            customerRepository.deleteAllById(batch);
-            deletedCount += batch.size();
+        List<Long> deletedIds = new ArrayList<>(sorted.length);
+        for (int from = 0; from < sorted.length; from += deleteChunkSize) {
+            int to = Math.min(from + deleteChunkSize, sorted.length);
+            List<Long> chunk = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                chunk.add(sorted[i]);
+            }
+            customerRemarkRepository.deleteByCustomerIdIn(chunk);
+            deletedCount += customerRepository.deleteByIdIn(chunk);
+            deletedIds.addAll(chunk);
         }
+        customerSearchIndex.deleteAfterCommit(deletedIds);
+        customerPhoneIndex.removeAfterCommit(deletedIds);
         
         // 删除后清除缓存
         invalidateCountCache();
@@ -165,83 +411,25 @@ public class CustomerService {
     }
 
     /**
-     * 获取客户总数（优化：使用缓存 + 快速近似值查询）
+     * 获取客户总数（缓存；没有缓存时先返回表统计的近似值，精确值在后台统计）
      * @return 总数
      */
-    @Transactional(readOnly = true)
     public long getTotalCount() {
-        try {
-            // 检查缓存
-            CacheEntry cached = countCache.get("total");
-            if (cached != null && (System.currentTimeMillis() - cached.getTimestamp()) < CACHE_EXPIRE_TIME) {
-                logger.debug("使用缓存的客户总数: {}", cached.getValue());
-                return cached.getValue();
-            }
-
-            // 缓存过期或不存在，查询数据库
-            // 优先尝试快速近似值查询（使用information_schema，很快但可能不准确）
-            long count = queryApproximateCount();
-            
-            // 如果近似值查询失败或返回0，使用精确查询
-            if (count == 0 && jdbcTemplate != null) {
-                try {
-                    count = customerRepository.count();
-                    logger.debug("使用精确COUNT查询: {}", count);
-                } catch (Exception e) {
-                    logger.warn("精确COUNT查询失败，使用近似值: {}", count, e);
-                }
-            } else {
-                logger.debug("使用近似值查询: {}", count);
-            }
-            
-            // 更新缓存
-            countCache.put("total", new CacheEntry(count));
-            logger.debug("查询并缓存客户总数: {}", count);
-            
-            return count;
-        } catch (Exception e) {
-            logger.error("获取客户总数失败", e);
-            // 如果查询失败，尝试返回缓存值（即使过期）
-            CacheEntry cached = countCache.get("total");
-            if (cached != null) {
-                logger.warn("查询失败，使用过期缓存值: {}", cached.getValue());
-                return cached.getValue();
-            }
-            // 最后尝试精确查询
-            try {
-                return customerRepository.count();
-            } catch (Exception ex) {
-                logger.error("所有查询方法都失败", ex);
-                throw ex;
-            }
-        }
+        return customerCountService.countAll().getValue();
     }
 
     /**
-     * 使用information_schema快速获取近似行数（非常快，但可能不准确）
-     * 适用于数据量很大，不需要精确值的场景
+     * 获取客户总数，附带是否为精确值
      */
-    private long queryApproximateCount() {
-        if (jdbcTemplate == null) {
-            return 0;
-        }
-        try {
-            Long count = jdbcTemplate.queryForObject(
-                "SELECT table_rows FROM information_schema.tables WHERE table_schema = DATABASE() AND table_name = 'customers'",
-                Long.class
-            );
-            return count != null ? count : 0;
-        } catch (Exception e) {
-            logger.debug("近似值查询失败，将使用精确查询", e);
-            return 0;
-        }
+    public CountEstimate countAllCustomers() {
+        return customerCountService.countAll();
     }
 
     /**
      * 清除总数缓存
      */
     public void invalidateCountCache() {
-        countCache.remove("total");
+        customerCountService.invalidate();
     }
 
     /**
@@ -258,66 +446,128 @@ public class CustomerService {
     }
 
     /**
-     * 搜索客户（支持姓名、电话、邮箱）
-     * @param keyword 搜索关键词
-     * @param page 页码
+     * 搜索客户（不统计总数，总数由 {@link #countSearchCustomers} 单独获取）
+     * @param keyword 搜索关键词（为空时等同于查询所有）
+     */
+    @Transactional(readOnly = true)
+    public Slice<CustomerRow> searchCustomersSlice(String keyword, int page, int size) {
+        if (keyword == null || keyword.trim().isEmpty()) {
+            return getCustomersSlice(page, size);
+        }
+        return searchSlice(keyword.trim(), null, null, null, null, null, null, false, PageRequest.of(page, size));
+    }
+
+    /**
+     * 搜索客户（键集分页）
+     * @param keyword 搜索关键词（为空时等同于查询所有）
+     * @param cursor 分页游标
      * @param size 每页大小
-     * @return 分页结果
      */
     @Transactional(readOnly = true)
-    public Page<Customer> searchCustomers(String keyword, int page, int size) {
-        // 按ID升序排列，保持数据库插入顺序
-        Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.ASC, "id"));
-        
-        // 如果关键词为空，返回所有
+    public KeysetPage<CustomerRow> searchCustomersByCursor(String keyword, PageCursor cursor, int size) {
         if (keyword == null || keyword.trim().isEmpty()) {
-            return customerRepository.findAll(pageable);
+            return getCustomersByCursor(cursor, size);
         }
-        
-        // 搜索姓名包含关键词的客户
-        return customerRepository.findByNameContaining(keyword.trim(), pageable);
+        String name = keyword.trim();
+        if (customerSearchIndex.isReady() && customerSearchIndex.canServe(name, null)) {
+            return searchSeek(name, null, null, null, null, null, null, cursor, size);
+        }
+        return seek(CustomerSpecifications.advancedSearch(name, null, null, null, null, null, null, false), cursor, size);
+    }
+
+    /**
+     * 搜索结果总数（缓存；没有缓存时先返回抽样估算值，精确值在后台统计）
+     */
+    public CountEstimate countSearchCustomers(String keyword) {
+        if (keyword == null || keyword.trim().isEmpty()) {
+            return customerCountService.countAll();
+        }
+        return customerCountService.count(keyword.trim(), null, null, null, null, null, null);
     }
 
     /**
-     * 批量查询客户
+     * 批量查询客户（按集合匹配，每 {@code customer.batch-query.chunk-size} 项只执行固定的几条查询）
+     * 先按电话一条 IN 查询匹配；电话没找到的再按姓名匹配，姓名相同的优先，否则取以该姓名开头的第一个客户
      * @param queryItems 查询项列表，每个项包含name、phone、address等字段
-     * @return 查询结果列表，每个结果包含queryItem和匹配的customer（如果找到）
+     * @return 查询结果列表（与查询项顺序一致），每个结果包含queryItem和匹配的customer（列表行，如果找到）
      */
     @Transactional(readOnly = true)
     public List<Map<String, Object>> batchQueryCustomers(List<Map<String, String>> queryItems) {
-        List<Map<String, Object>> results = new ArrayList<>();
+        List<Map<String, Object>> results = new ArrayList<>(queryItems.size());
+        for (int from = 0; from < queryItems.size(); from += batchQueryChunkSize) {
+            matchChunk(queryItems.subList(from, Math.min(from + batchQueryChunkSize, queryItems.size())), results);
+        }
+        return results;
+    }
+
+    private void matchChunk(List<Map<String, String>> queryItems, List<Map<String, Object>> results) {
+        Long[] matchedIds = new Long[queryItems.size()];
         
-        for (Map<String, String> queryItem : queryItems) {
-            Map<String, Object> result = new HashMap<>();
-            result.put("queryItem", queryItem);
-            
-            String phone = queryItem.get("phone");
-            String name = queryItem.get("name");
-            
-            Customer matchedCustomer = null;
-            
-            // 优先按电话精确匹配
+        // 优先按电话精确匹配（同一电话有多个客户时取最早的）
+        String[] phones = new String[queryItems.size()];
+        Set<String> distinctPhones = new HashSet<>();
+        for (int i = 0; i < queryItems.size(); i++) {
+            String phone = queryItems.get(i).get("phone");
             if (phone != null && !phone.trim().isEmpty()) {
-                Optional<Customer> customerOpt = customerRepository.findByPhone(phone.trim());
-                if (customerOpt.isPresent()) {
-                    matchedCustomer = customerOpt.get();
+                phones[i] = PhoneNormalizer.canonicalOrTrim(phone);
+                distinctPhones.add(phones[i]);
+            }
+        }
+        if (!distinctPhones.isEmpty()) {
+            Map<String, Long> idsByPhone = new HashMap<>();
+            for (Object[] row : customerRepository.findFirstIdsByPhoneIn(distinctPhones)) {
+                idsByPhone.put((String) row[0], (Long) row[1]);
+            }
+            for (int i = 0; i < phones.length; i++) {
+                if (phones[i] != null) {
+                    matchedIds[i] = idsByPhone.get(phones[i]);
                 }
             }
-            
-            // 如果电话没找到，尝试按姓名匹配
-            if (matchedCustomer == null && name != null && !name.trim().isEmpty()) {
-                List<Customer> customersByName = customerRepository.findByNameContaining(name.trim());
-                if (!customersByName.isEmpty()) {
-                    matchedCustomer = customersByName.get(0);
+        }
+        
+        // 电话没找到的按姓名匹配（相同姓名只查一次）
+        Map<String, Integer> nameIndexes = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        int[] nameOf = new int[queryItems.size()];
+        for (int i = 0; i < queryItems.size(); i++) {
+            nameOf[i] = -1;
+            String name = queryItems.get(i).get("name");
+            if (matchedIds[i] == null && name != null && !name.trim().isEmpty()) {
+                nameOf[i] = nameIndexes.computeIfAbsent(name.trim(), n -> {
+                    names.add(n);
+                    return names.size() - 1;
+                });
+            }
+        }
+        if (!names.isEmpty()) {
+            List<Long> idsByName = customerRepository.findFirstIdsByNamePrefix(names);
+            for (int i = 0; i < nameOf.length; i++) {
+                if (nameOf[i] >= 0) {
+                    matchedIds[i] = idsByName.get(nameOf[i]);
                 }
             }
-            
+        }
+        
+        // 一次取所有匹配客户的列表行
+        Set<Long> distinctIds = new HashSet<>();
+        for (Long id : matchedIds) {
+            if (id != null) {
+                distinctIds.add(id);
+            }
+        }
+        Map<Long, CustomerRow> rows = new HashMap<>();
+        for (CustomerRow row : findRows(new ArrayList<>(distinctIds))) {
+            rows.put(row.getId(), row);
+        }
+        
+        for (int i = 0; i < queryItems.size(); i++) {
+            CustomerRow matchedCustomer = matchedIds[i] != null ? rows.get(matchedIds[i]) : null;
+            Map<String, Object> result = new HashMap<>();
+            result.put("queryItem", queryItems.get(i));
             result.put("customer", matchedCustomer);
             result.put("matched", matchedCustomer != null);
             results.add(result);
         }
-        
-        return results;
     }
 
     /**
@@ -329,12 +579,61 @@ public class CustomerService {
      */
     @Transactional(rollbackFor = Exception.class)
     public Map<String, Object> batchImportCustomers(List<Customer> customers, Long uploadTaskId) {
+        return batchImportCustomers(customers, ImportContext.skip(uploadTaskId));
+    }
+
+    /**
+     * 批量保存客户（用于导入），按导入上下文选择跳过或合并模式
+     * @param customers 客户列表（通常是批次，如5000条）
+     * @param context 导入上下文（上传任务ID、导入模式、列合并规则）
+     * @return 保存结果统计
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public Map<String, Object> batchImportCustomers(List<Customer> customers, ImportContext context) {
+        // 电话规范化：去掉分隔符和国家码后再查重，"138 0013 8001"、"+86 13800138001" 视为同一个号码
+        List<Customer> accepted = rejectInvalidPhone ? new ArrayList<>(customers.size()) : customers;
+        int invalidPhoneCount = 0;
+        for (Customer customer : customers) {
+            String phone = customer.getPhone();
+            if (phone != null) {
+                long canonical = PhoneNormalizer.normalize(phone);
+                if (canonical != PhoneNormalizer.INVALID) {
+                    customer.setPhone(PhoneNormalizer.format(phone, canonical));
+                } else if (rejectInvalidPhone && !phone.trim().isEmpty()) {
+                    invalidPhoneCount++;
+                    context.reject(customer, "电话格式无效");
+                    continue;
+                }
+            }
+            if (rejectInvalidPhone) {
+                accepted.add(customer);
+            }
+        }
+        
+        Map<String, Object> result = context.isMerge()
+            ? mergeImportCustomers(accepted, context)
+            : skipImportCustomers(accepted, context);
+        if (invalidPhoneCount > 0) {
+            result.put("errorCount", (Integer) result.get("errorCount") + invalidPhoneCount);
+        }
+        return result;
+    }
+
+    /**
+     * 跳过模式导入：电话已存在的行跳过，其余新增
+     */
+    private Map<String, Object> skipImportCustomers(List<Customer> customers, ImportContext context) {
+        Long uploadTaskId = context.getUploadTaskId();
         Map<String, Object> result = new HashMap<>();
         int successCount = 0;
         int skipCount = 0;
-        List<String> errors = new ArrayList<>();
+        int errorCount = 0;
+        List<String> errors = new ArrayList<>();  // 只保留前100条错误摘要用于接口返回，完整明细写入拒绝行文件
         
         long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        long lookupNanos = 0;
+        long insertNanos = 0;
         
         // 第一步：批量收集所有非空电话，一次性查询数据库中已存在的电话
         Set<String> existingPhones = new HashSet<>();
@@ -347,6 +646,7 @@ public class CustomerService {
         
         // 批量查询已存在的电话（避免逐条查询，降低批次大小减少内存占用）
         if (!phoneList.isEmpty()) {
+            long lookupStart = System.nanoTime();
             try {
                 // 分批查询（增大批次大小，提升查询性能，每批最多1000个）
                 int phoneBatchSize = 1000;
@@ -361,6 +661,7 @@ public class CustomerService {
                 logger.warn("批量查询重复电话失败，将跳过重复检查", e);
                 // 如果批量查询失败，existingPhones保持为空，后续会跳过重复检查
             }
+            lookupNanos = System.nanoTime() - lookupStart;
         }
         
         // 第二步：验证和过滤数据，收集所有有效的客户
@@ -370,9 +671,11 @@ public class CustomerService {
             try {
                 // 验证必填字段
                 if (customer.getName() == null || customer.getName().trim().isEmpty()) {
+                    errorCount++;
                     if (errors.size() < 100) { // 最多记录100个错误，避免错误信息过多
                         errors.add("姓名为空");
                     }
+                    context.reject(customer, "姓名为空");
                     continue;
                 }
                 
@@ -383,7 +686,9 @@ public class CustomerService {
                     if (existingPhones.contains(phone)) {
                         skipCount++;
                         logger.debug("跳过重复数据: 电话={}, 姓名={}", phone, customer.getName());
-                        continue; // 跳过重复数据，不记录错误信息，避免内存溢出
+                        // 跳过重复数据，不保留在内存中，只写入拒绝行文件
+                        context.reject(customer, "电话已存在，已跳过");
+                        continue;
                     }
                     // 将当前批次中的电话也加入Set，避免同批次内重复
                     existingPhones.add(phone);
@@ -397,15 +702,19 @@ public class CustomerService {
                 // 添加到有效客户数组
                 validCustomers.add(customer);
             } catch (Exception e) {
+                errorCount++;
                 if (errors.size() < 100) {
                     errors.add("数据验证失败: " + e.getMessage());
                 }
+                context.reject(customer, "数据验证失败: " + e.getMessage());
             }
         }
         
         
         // 第三步：保存有效客户（流式导入时，validCustomers已经是小批次，直接保存）
         if (!validCustomers.isEmpty()) {
+            long insertStart = System.nanoTime();
+            int saved = 0;
             try {
                 // 进一步分批保存，每批最多200条（大幅减少内存占用）
                 int saveBatchSize = 10000; // 增大到10000条（8核32G服务器优化，与JPA batch_size保持一致，大幅提升入库速度）
@@ -413,6 +722,9 @@ public class CustomerService {
                     int end = Math.min(i + saveBatchSize, validCustomers.size());
                     List<Customer> saveBatch = validCustomers.subList(i, end);
                     customerRepository.saveAll(saveBatch);
+                    customerSearchIndex.indexAfterCommit(saveBatch);
+                    customerPhoneIndex.putAfterCommit(saveBatch);
+                    saved = end;
                     successCount += saveBatch.size();
                 }
             } catch (Exception batchError) {
@@ -420,7 +732,9 @@ public class CustomerService {
                 if (errors.size() < 100) {
                     errors.add("批量保存失败: " + batchError.getMessage());
                 }
+                errorCount += rejectUnsaved(validCustomers, saved, context, batchError);
             }
+            insertNanos = System.nanoTime() - insertStart;
         }
         
         // 注意：流式导入时，不要频繁清除缓存，只在最后清除
@@ -431,48 +745,389 @@ public class CustomerService {
         
         result.put("successCount", successCount);
         result.put("skipCount", skipCount);
-        result.put("errorCount", errors.size());
+        result.put("errorCount", errorCount);
         result.put("errors", errors);
         result.put("duration", duration); // 添加耗时信息
+        // 分阶段耗时（纳秒），用于批次耗时统计
+        result.put("lookupNanos", lookupNanos);
+        result.put("insertNanos", insertNanos);
+        result.put("serviceNanos", System.nanoTime() - startNanos);
         
         // 记录导入统计日志
         if (skipCount > 0) {
             logger.info("批量导入完成: 成功={}, 跳过={}（重复数据）, 错误={}, 耗时={}ms", 
-                successCount, skipCount, errors.size(), duration);
+                successCount, skipCount, errorCount, duration);
         } else {
             logger.debug("批量导入完成: 成功={}, 跳过={}, 错误={}, 耗时={}ms", 
-                successCount, skipCount, errors.size(), duration);
+                successCount, skipCount, errorCount, duration);
         }
         
         return result;
     }
 
     /**
-     * 高级搜索：多条件组合查询
+     * 合并导入：电话已存在的客户按列规则更新，不存在的新增
+     * 已存在的记录按电话一次性批量查询，在内存中比较，只对真正有变化的行执行批量UPDATE
+     * （phone列不是唯一键，无法使用 INSERT ... ON DUPLICATE KEY UPDATE，这里用 UPDATE ... WHERE id = ? 批量执行，MySQL和H2通用；
+     * 同一电话存在多条记录时只更新作为比较基准的最早一条，其余记录保留各自的字段）
+     */
+    private Map<String, Object> mergeImportCustomers(List<Customer> customers, ImportContext context) {
+        if (jdbcTemplate == null) {
+            throw new IllegalStateException("合并导入需要JdbcTemplate支持");
+        }
+        
+        Map<String, Object> result = new HashMap<>();
+        int insertedCount = 0;
+        int updatedCount = 0;
+        int unchangedCount = 0;
+        int errorCount = 0;
+        List<String> errors = new ArrayList<>();
+        
+        long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        
+        // 第一步：收集本批次的电话，批量查询已存在的记录（只取需要比较的列，不加载实体）
+        Set<String> phoneSet = new HashSet<>();
+        for (Customer customer : customers) {
+            if (customer.getPhone() != null && !customer.getPhone().trim().isEmpty()) {
+                phoneSet.add(customer.getPhone().trim());
+            }
+        }
+        long lookupStart = System.nanoTime();
+        Map<String, Customer> existingByPhone = new HashMap<>();
+        List<String> phoneList = new ArrayList<>(phoneSet);
+        int phoneBatchSize = 1000;
+        for (int i = 0; i < phoneList.size(); i += phoneBatchSize) {
+            int end = Math.min(i + phoneBatchSize, phoneList.size());
+            for (Object[] row : customerRepository.findMergeFieldsByPhoneIn(phoneList.subList(i, end))) {
+                // 按ID升序返回，同一电话存在多条时以最早的一条作为比较基准
+                Customer existing = new Customer();
+                existing.setId((Long) row[0]);
+                existing.setPhone((String) row[1]);
+                existing.setName((String) row[2]);
+                existing.setEmail((String) row[3]);
+                existing.setAddress((String) row[4]);
+                existingByPhone.putIfAbsent(existing.getPhone(), existing);
+            }
+        }
+        long lookupNanos = System.nanoTime() - lookupStart;
+        
+        // 第二步：逐行分类（新增 / 更新 / 无变化）
+        Map<String, Customer> pendingInserts = new HashMap<>();
+        List<Customer> validCustomers = new ArrayList<>();
+        Set<Customer> dirtyCustomers = new LinkedHashSet<>();
+        for (Customer customer : customers) {
+            if (customer.getName() == null || customer.getName().trim().isEmpty()) {
+                errorCount++;
+                if (errors.size() < 100) {
+                    errors.add("姓名为空");
+                }
+                context.reject(customer, "姓名为空");
+                continue;
+            }
+            
+            String phone = customer.getPhone() != null ? customer.getPhone().trim() : null;
+            if (phone != null && !phone.isEmpty()) {
+                customer.setPhone(phone);
+                // 数据库中已存在，或同批次前面已出现过（待新增），都合并到已有记录上
+                Customer target = existingByPhone.get(phone);
+                boolean pending = false;
+                if (target == null) {
+                    target = pendingInserts.get(phone);
+                    pending = target != null;
+                }
+                if (target != null) {
+                    // 合并到同批次待新增的记录上：这条记录只新增一次（已计入新增数），这一行不计为更新
+                    if (mergeCustomerFields(target, customer, context) && !pending) {
+                        updatedCount++;
+                        dirtyCustomers.add(target);
+                    } else {
+                        unchangedCount++;
+                    }
+                    continue;
+                }
+                pendingInserts.put(phone, customer);
+            }
+            
+            if (customer.getUploadTaskId() == null) {
+                customer.setUploadTaskId(context.getUploadTaskId());
+            }
+            validCustomers.add(customer);
+        }
+        
+        // 第三步：保存新增客户
+        long insertStart = System.nanoTime();
+        if (!validCustomers.isEmpty()) {
+            int saved = 0;
+            try {
+                int saveBatchSize = 10000;
+                for (int i = 0; i < validCustomers.size(); i += saveBatchSize) {
+                    int end = Math.min(i + saveBatchSize, validCustomers.size());
+                    List<Customer> saveBatch = validCustomers.subList(i, end);
+                    customerRepository.saveAll(saveBatch);
+                    customerSearchIndex.indexAfterCommit(saveBatch);
+                    customerPhoneIndex.putAfterCommit(saveBatch);
+                    saved = end;
+                    insertedCount += saveBatch.size();
+                }
+            } catch (Exception batchError) {
+                logger.error("批次保存失败", batchError);
+                if (errors.size() < 100) {
+                    errors.add("批量保存失败: " + batchError.getMessage());
+                }
+                errorCount += rejectUnsaved(validCustomers, saved, context, batchError);
+            }
+        }
+        
+        // 第四步：批量更新有变化的已存在客户（按主键更新，一次批量提交）
+        if (!dirtyCustomers.isEmpty()) {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            List<Object[]> args = new ArrayList<>(dirtyCustomers.size());
+            List<Long> updatedIds = new ArrayList<>(dirtyCustomers.size());
+            for (Customer target : dirtyCustomers) {
+                args.add(new Object[]{target.getName(), target.getEmail(), target.getAddress(), now, target.getId()});
+                updatedIds.add(target.getId());
+            }
+            jdbcTemplate.batchUpdate(
+                "UPDATE customers SET name = ?, email = ?, address = ?, update_time = ? WHERE id = ?", args);
+            customerSearchIndex.refreshAfterCommit(updatedIds);
+        }
+        long insertNanos = System.nanoTime() - insertStart;
+        
+        long duration = System.currentTimeMillis() - startTime;
+        
+        result.put("successCount", insertedCount);
+        result.put("skipCount", 0);
+        result.put("updatedCount", updatedCount);
+        result.put("unchangedCount", unchangedCount);
+        result.put("errorCount", errorCount);
+        result.put("errors", errors);
+        result.put("duration", duration);
+        result.put("lookupNanos", lookupNanos);
+        result.put("insertNanos", insertNanos);
+        result.put("serviceNanos", System.nanoTime() - startNanos);
+        
+        logger.debug("合并导入完成: 新增={}, 更新={}, 无变化={}, 错误={}, 耗时={}ms",
+            insertedCount, updatedCount, unchangedCount, errorCount, duration);
+        
+        return result;
+    }
+
+    /**
+     * 保存失败时，把尚未保存的行全部记为拒绝行
+     * @param validCustomers 待保存的客户
+     * @param saved 已成功保存的数量（之前的子批次）
+     * @return 被拒绝的行数
+     */
+    private int rejectUnsaved(List<Customer> validCustomers, int saved, ImportContext context, Exception error) {
+        String reason = "批量保存失败: " + error.getMessage();
+        for (int i = saved; i < validCustomers.size(); i++) {
+            context.reject(validCustomers.get(i), reason);
+        }
+        return validCustomers.size() - saved;
+    }
+
+    /**
+     * 按列规则把导入行合并到目标客户上
+     * @return 是否有字段发生变化
+     */
+    private boolean mergeCustomerFields(Customer target, Customer incoming, ImportContext context) {
+        boolean changed = false;
+        String name = context.merge(ImportContext.Column.NAME, target.getName(), incoming.getName());
+        // 姓名是必填列，合并结果为空时保留原值
+        if (name != null && !name.trim().isEmpty() && !name.equals(target.getName())) {
+            target.setName(name);
+            changed = true;
+        }
+        String email = context.merge(ImportContext.Column.EMAIL, target.getEmail(), incoming.getEmail());
+        if (!Objects.equals(email, target.getEmail())) {
+            target.setEmail(email);
+            changed = true;
+        }
+        String address = context.merge(ImportContext.Column.ADDRESS, target.getAddress(), incoming.getAddress());
+        if (!Objects.equals(address, target.getAddress())) {
+            target.setAddress(address);
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * 高级搜索：多条件组合查询（不统计总数，总数由 {@link #countAdvancedSearch} 单独获取）
      * @param name 姓名（模糊匹配）
-     * @param phone 电话（模糊匹配）
+     * @param phone 电话（模糊匹配；完整的号码按规范形式匹配）
      * @param email 邮箱（模糊匹配）
      * @param address 地址（模糊匹配）
      * @param startTime 创建时间起始（可选）
      * @param endTime 创建时间结束（可选）
      * @param uploadTaskId 上传任务ID（可选）
+     * @param startsWith 字符串条件按前缀匹配（可以使用列索引），否则按包含匹配
      * @param page 页码
      * @param size 每页大小
-     * @return 分页结果
      */
     @Transactional(readOnly = true)
-    public Page<Customer> advancedSearch(String name, String phone, String email, String address,
+    public Slice<CustomerRow> advancedSearchSlice(String name, String phone, String email, String address,
+                                               LocalDateTime startTime, LocalDateTime endTime, Long uploadTaskId,
+                                               boolean startsWith, int page, int size) {
+        String p = PhoneNormalizer.canonicalOrTrim(phone);
+        return searchSlice(blankToNull(name), p, blankToNull(email), blankToNull(address),
+            startTime, endTime, uploadTaskId, startsWith, PageRequest.of(page, size));
+    }
+
+    /**
+     * 高级搜索（键集分页），条件同 {@link #advancedSearchSlice}
+     * @param cursor 分页游标
+     * @param size 每页大小
+     */
+    @Transactional(readOnly = true)
+    public KeysetPage<CustomerRow> advancedSearchByCursor(String name, String phone, String email, String address,
+                                                          LocalDateTime startTime, LocalDateTime endTime, Long uploadTaskId,
+                                                          boolean startsWith, PageCursor cursor, int size) {
+        String n = blankToNull(name);
+        String p = PhoneNormalizer.canonicalOrTrim(phone);
+        String e = blankToNull(email);
+        String a = blankToNull(address);
+        if (!startsWith) {
+            long[] phoneIds = phoneOnlyIds(n, p, e, a, startTime, endTime, uploadTaskId);
+            if (phoneIds != null) {
+                return seek(cursor, size,
+                    (afterId, limit) -> idsAfter(phoneIds, afterId, limit),
+                    (beforeId, limit) -> {
+                        List<Long> ids = idsBefore(phoneIds, beforeId, limit);
+                        Collections.reverse(ids);
+                        return ids;
+                    });
+            }
+            if (customerSearchIndex.isReady() && customerSearchIndex.canServe(n, a)) {
+                return searchSeek(n, p, e, a, startTime, endTime, uploadTaskId, cursor, size);
+            }
+        }
+        return seek(CustomerSpecifications.advancedSearch(n, p, e, a, startTime, endTime, uploadTaskId, startsWith),
+            cursor, size);
+    }
+
+    /**
+     * 按选择集（高级搜索结果快照）分页，按id顺序
+     * 第N页按位图排名直接定位到本页第一个id，只按主键取本页的行，翻到任意一页都不再执行搜索条件；
+     * 快照创建后被删除的客户跳过（该页会少于 size 行）
+     */
+    @Transactional(readOnly = true)
+    public Slice<CustomerRow> selectionSlice(Roaring64Bitmap ids, int page, int size) {
+        Pageable pageable = PageRequest.of(page, size);
+        long total = ids.getLongCardinality();
+        if (pageable.getOffset() >= total) {
+            return new SliceImpl<>(Collections.emptyList(), pageable, false);
+        }
+        PeekableLongIterator iterator = ids.getLongIterator();
+        iterator.advanceIfNeeded(ids.select(pageable.getOffset()));
+        List<Long> pageIds = new ArrayList<>(size);
+        while (iterator.hasNext() && pageIds.size() < size) {
+            pageIds.add(iterator.next());
+        }
+        return new SliceImpl<>(findRows(pageIds), pageable, pageable.getOffset() + size < total);
+    }
+
+    /**
+     * 高级搜索结果总数（缓存；没有缓存时先返回估算值，精确值在后台统计）
+     */
+    public CountEstimate countAdvancedSearch(String name, String phone, String email, String address,
+                                             LocalDateTime startTime, LocalDateTime endTime, Long uploadTaskId,
+                                             boolean startsWith) {
+        String p = PhoneNormalizer.canonicalOrTrim(phone);
+        return customerCountService.count(blankToNull(name), p, blankToNull(email), blankToNull(address),
+            startTime, endTime, uploadTaskId, startsWith);
+    }
+
+    /**
+     * 按条件取一页：包含匹配时优先用电话片段索引、全文索引取id，否则在数据库中取id；列表行都按id回数据库取
+     */
+    private Slice<CustomerRow> searchSlice(String name, String phone, String email, String address,
                                         LocalDateTime startTime, LocalDateTime endTime, Long uploadTaskId,
-                                        int page, int size) {
-        Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.ASC, "id"));
-        
-        // 处理空字符串，转为null以便查询条件生效
-        if (name != null && name.trim().isEmpty()) name = null;
-        if (phone != null && phone.trim().isEmpty()) phone = null;
-        if (email != null && email.trim().isEmpty()) email = null;
-        if (address != null && address.trim().isEmpty()) address = null;
-        
-        return customerRepository.advancedSearch(name, phone, email, address, 
-                                                startTime, endTime, uploadTaskId, pageable);
+                                        boolean prefix, Pageable pageable) {
+        if (!prefix) {
+            long[] phoneIds = phoneOnlyIds(name, phone, email, address, startTime, endTime, uploadTaskId);
+            if (phoneIds != null) {
+                int from = (int) Math.min(pageable.getOffset(), phoneIds.length);
+                int to = (int) Math.min((long) from + pageable.getPageSize(), phoneIds.length);
+                return new SliceImpl<>(findRows(toList(phoneIds, from, to)), pageable, to < phoneIds.length);
+            }
+            if (customerSearchIndex.isReady()) {
+                List<Long> ids = customerSearchIndex.searchIds(name, phone, email, address, startTime, endTime, uploadTaskId,
+                    (int) pageable.getOffset(), pageable.getPageSize() + 1);
+                if (ids != null) {
+                    boolean hasNext = ids.size() > pageable.getPageSize();
+                    List<Long> pageIds = hasNext ? ids.subList(0, pageable.getPageSize()) : ids;
+                    return new SliceImpl<>(findRows(pageIds), pageable, hasNext);
+                }
+            }
+        }
+        return toRows(customerRepository.findIds(CustomerSpecifications.advancedSearch(name, phone, email, address,
+            startTime, endTime, uploadTaskId, prefix), pageable), pageable);
+    }
+
+    /**
+     * 键集分页（数据库）：按条件加 id 范围取id
+     */
+    private KeysetPage<CustomerRow> seek(Specification<Customer> spec, PageCursor cursor, int size) {
+        return seek(cursor, size,
+            (afterId, limit) -> customerRepository.findIds(
+                spec.and(CustomerSpecifications.idGreaterThan(afterId)), Sort.Direction.ASC, limit),
+            (beforeId, limit) -> customerRepository.findIds(
+                spec.and(CustomerSpecifications.idLessThan(beforeId)), Sort.Direction.DESC, limit));
+    }
+
+    /**
+     * 键集分页（全文索引）：在索引中按id范围取id（向前翻页时索引按id降序返回）
+     */
+    private KeysetPage<CustomerRow> searchSeek(String name, String phone, String email, String address,
+                                               LocalDateTime startTime, LocalDateTime endTime, Long uploadTaskId,
+                                               PageCursor cursor, int size) {
+        return seek(cursor, size,
+            (afterId, limit) -> customerSearchIndex.searchIdsAfter(name, phone, email, address,
+                startTime, endTime, uploadTaskId, afterId, limit),
+            (beforeId, limit) -> customerSearchIndex.searchIdsBefore(name, phone, email, address,
+                startTime, endTime, uploadTaskId, beforeId, limit));
+    }
+
+    /**
+     * 只有电话一个条件时，由电话片段索引返回匹配的id（升序）；其他情况或索引不可用时返回null
+     */
+    private long[] phoneOnlyIds(String name, String phone, String email, String address,
+                                LocalDateTime startTime, LocalDateTime endTime, Long uploadTaskId) {
+        if (phone == null || name != null || email != null || address != null
+                || startTime != null || endTime != null || uploadTaskId != null) {
+            return null;
+        }
+        return customerPhoneIndex.findIds(phone);
+    }
+
+    /**
+     * 升序id中 id > afterId 的前 limit 个
+     */
+    private static List<Long> idsAfter(long[] ids, long afterId, int limit) {
+        int from = Arrays.binarySearch(ids, afterId);
+        from = from >= 0 ? from + 1 : -from - 1;
+        return toList(ids, from, (int) Math.min((long) from + limit, ids.length));
+    }
+
+    /**
+     * 升序id中 id < beforeId 的最后 limit 个
+     */
+    private static List<Long> idsBefore(long[] ids, long beforeId, int limit) {
+        int to = Arrays.binarySearch(ids, beforeId);
+        to = to >= 0 ? to : -to - 1;
+        return toList(ids, Math.max(0, to - limit), to);
+    }
+
+    private static List<Long> toList(long[] ids, int from, int to) {
+        List<Long> list = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            list.add(ids[i]);
+        }
+        return list;
+    }
+
+    private static String blankToNull(String value) {
+        return value != null && value.trim().isEmpty() ? null : value;
     }
 }
@@ -34,6 +34,15 @@ public class DatabaseBackupService {
     @Autowired
     private DataSource dataSource;
 
+    @Autowired
+    private CustomerSearchIndex customerSearchIndex;
+
+    @Autowired
+    private CustomerPhoneIndex customerPhoneIndex;
+
+    @Autowired
+    private CustomerPhoneBackfillService customerPhoneBackfillService;
+
     @Value("${spring.datasource.url:jdbc:mysql://localhost:3306/customer_db}")
     private String jdbcUrl;
 
@@ -135,6 +144,10 @@ public class DatabaseBackupService {
                 }
             }
         }
+        // 客户数据已整体替换，全文索引按恢复后的数据重建；备份中可能有未规范化的电话，再回填一次
+        customerSearchIndex.rebuildAsync();
+        customerPhoneIndex.reloadAsync();
+        customerPhoneBackfillService.backfillAsync();
     }
 
     /**
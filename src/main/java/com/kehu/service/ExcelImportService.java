@@ -7,10 +7,18 @@ import com.kehu.listener.CustomerExcelReadListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.kehu.util.CsvFields;
+import com.kehu.util.ImportRejectWriter;
+
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -28,9 +36,57 @@ public class ExcelImportService {
     @Autowired
     private UploadTaskService uploadTaskService;
     
+    @Autowired
+    private ImportBatchStatsService importBatchStatsService;
+    
     // 批次大小：增大到10000条（8核32G服务器可以处理更大批次，大幅提升入库性能）
     private static final int BATCH_SIZE = 10000;
     
+    // 拒绝行文件目录（每个任务一个 task_{id}_rejects.csv.gz）
+    @Value("${customer.import.reject-dir:import_rejects}")
+    private String rejectDir;
+    
+    /**
+     * 获取任务的拒绝行文件路径（文件不一定存在）
+     */
+    public Path getRejectFile(Long uploadTaskId) {
+        return Paths.get(rejectDir, "task_" + uploadTaskId + "_rejects.csv.gz");
+    }
+    
+    /**
+     * 为导入打开拒绝行文件
+     */
+    private void openRejectWriter(ImportContext importContext) throws IOException {
+        if (importContext.getUploadTaskId() != null) {
+            importContext.setRejectWriter(new ImportRejectWriter(getRejectFile(importContext.getUploadTaskId())));
+        }
+        // 每个入库批次的分阶段耗时交给异步写入线程落库
+        importContext.setBatchStatsSink(importBatchStatsService::submit);
+    }
+    
+    /**
+     * 关闭拒绝行文件并记录拒绝行数；没有拒绝行时删除空文件
+     * @return 拒绝行数
+     */
+    private int closeRejectWriter(ImportContext importContext) {
+        ImportRejectWriter writer = importContext.getRejectWriter();
+        if (writer == null) {
+            return 0;
+        }
+        importContext.setRejectWriter(null);
+        int rejectedCount = writer.getCount();
+        try {
+            writer.close();
+            if (rejectedCount == 0) {
+                Files.deleteIfExists(writer.getFile());
+            }
+            uploadTaskService.updateRejectedCount(importContext.getUploadTaskId(), rejectedCount);
+        } catch (Exception e) {
+            logger.warn("关闭拒绝行文件失败: {}", writer.getFile(), e);
+        }
+        return rejectedCount;
+    }
+    
     /**
      * 更新任务进度的辅助方法
      * @param uploadTaskId 任务ID
@@ -60,6 +116,18 @@ public class ExcelImportService {
      * @throws Exception 解析异常
      */
     public Map<String, Object> parseAndImportExcelFileStream(MultipartFile file, Long uploadTaskId) throws Exception {
+        return parseAndImportExcelFileStream(file, ImportContext.skip(uploadTaskId));
+    }
+
+    /**
+     * 流式解析并导入Excel文件（按导入上下文选择跳过或合并模式）
+     * @param file 上传的文件
+     * @param importContext 导入上下文
+     * @return 导入结果
+     * @throws Exception 解析异常
+     */
+    public Map<String, Object> parseAndImportExcelFileStream(MultipartFile file, ImportContext importContext) throws Exception {
+        Long uploadTaskId = importContext.getUploadTaskId();
         String fileName = file.getOriginalFilename();
         
         if (fileName == null || fileName.isEmpty()) {
@@ -76,11 +144,12 @@ public class ExcelImportService {
         // 创建监听器（不使用进度回调，只在最终完成时更新进度）
         CustomerExcelReadListener listener = new CustomerExcelReadListener(
             customerService,
-            uploadTaskId,
+            importContext,
             BATCH_SIZE,
             null  // 不设置进度回调，只在最终完成时更新进度
         );
         
+        openRejectWriter(importContext);
         try (InputStream inputStream = file.getInputStream()) {
             // 使用EasyExcel读取Excel文件
             // headRowNumber(1) 表示跳过第一行（表头）
@@ -107,12 +176,17 @@ public class ExcelImportService {
             result.put("successCount", finalProcessed);
             result.put("skipCount", finalSkipCount);  // 返回实际跳过的数量（重复数据）
             result.put("errorCount", finalErrorCount);  // 返回实际错误数量
+            result.put("updatedCount", listener.getUpdatedCount());
+            result.put("unchangedCount", listener.getUnchangedCount());
+            result.put("rejectedCount", closeRejectWriter(importContext));
             result.put("errors", new ArrayList<>());
             
             logger.info("EasyExcel导入完成: 总记录数={}, 成功={}, 跳过={}（重复数据）, 错误={}", 
                 finalTotal, finalProcessed, finalSkipCount, finalErrorCount);
             
             return result;
+        } finally {
+            closeRejectWriter(importContext);
         }
     }
 
@@ -124,16 +198,35 @@ public class ExcelImportService {
      * @throws Exception 解析异常
      */
     public Map<String, Object> parseAndImportCsvFileStream(MultipartFile file, Long uploadTaskId) throws Exception {
+        return parseAndImportCsvFileStream(file, ImportContext.skip(uploadTaskId));
+    }
+
+    /**
+     * 流式解析并导入CSV文件（按导入上下文选择跳过或合并模式）
+     * @param file 上传的文件
+     * @param importContext 导入上下文
+     * @return 导入结果
+     * @throws Exception 解析异常
+     */
+    public Map<String, Object> parseAndImportCsvFileStream(MultipartFile file, ImportContext importContext) throws Exception {
+        Long uploadTaskId = importContext.getUploadTaskId();
         logger.info("开始流式导入CSV文件");
         
         int totalCount = 0;
         int processedCount = 0;
         int skipCount = 0;
         int errorCount = 0;
+        int updatedCount = 0;
+        int unchangedCount = 0;
+        int rejectedCount = 0;
         int batchSize = 10000;  // 增大批次大小到10000条（8核32G服务器优化）
         List<Customer> batch = new ArrayList<>();
+        long batchBytes = 0;  // 当前批次的原始数据字节数（UTF-8估算）
         
         // 使用BufferedReader逐行读取，避免一次性加载到内存
+        openRejectWriter(importContext);
+        int lineNumber = 0;
+        long batchStartNanos = System.nanoTime();
         try (java.io.BufferedReader reader = new java.io.BufferedReader(
                 new java.io.InputStreamReader(file.getInputStream(), "UTF-8"))) {
             
@@ -141,6 +234,7 @@ public class ExcelImportService {
             boolean isFirstLine = true;
             
             while ((line = reader.readLine()) != null) {
+                lineNumber++;
                 // 跳过表头
                 if (isFirstLine) {
                     isFirstLine = false;
@@ -153,7 +247,7 @@ public class ExcelImportService {
                 }
                 
                 // 解析CSV行
-                String[] values = parseCsvLine(line);
+                String[] values = CsvFields.split(line);
                 
                 if (values.length >= 1) {
                     Customer customer = new Customer();
@@ -162,19 +256,37 @@ public class ExcelImportService {
                     customer.setEmail(values.length > 2 ? values[2].trim() : null);
                     customer.setAddress(values.length > 3 ? values[3].trim() : null);
                     customer.setUploadTaskId(uploadTaskId);
+                    customer.setRowNumber(lineNumber);
                     
-                    if (!customer.getName().isEmpty()) {
+                    if (customer.getName().isEmpty()) {
+                        // 姓名为空但其他列有内容的行记入拒绝行文件
+                        if (!isBlank(customer.getPhone()) || !isBlank(customer.getEmail()) || !isBlank(customer.getAddress())) {
+                            errorCount++;
+                            importContext.reject(customer, "姓名为空");
+                        }
+                    } else {
                         batch.add(customer);
+                        batchBytes += ImportContext.utf8Length(line) + 1;
                         totalCount++;
                         
                         // 达到批次大小，立即保存
                         if (batch.size() >= batchSize) {
-                            Map<String, Object> batchResult = customerService.batchImportCustomers(batch, uploadTaskId);
+                            long callStart = System.nanoTime();
+                            // 批次内的拒绝行在事务提交后才写入文件（批次失败时整个导入中止，暂存的拒绝行随之丢弃）
+                            importContext.beginBatch();
+                            Map<String, Object> batchResult = customerService.batchImportCustomers(batch, importContext);
+                            importContext.commitBatch();
+                            importContext.recordBatch(batch.size(), batchBytes, callStart - batchStartNanos,
+                                System.nanoTime() - callStart, batchResult);
                             // 累加实际的统计结果
                             processedCount += (Integer) batchResult.getOrDefault("successCount", 0);
                             skipCount += (Integer) batchResult.getOrDefault("skipCount", 0);
                             errorCount += (Integer) batchResult.getOrDefault("errorCount", 0);
+                            updatedCount += (Integer) batchResult.getOrDefault("updatedCount", 0);
+                            unchangedCount += (Integer) batchResult.getOrDefault("unchangedCount", 0);
                             batch.clear();
+                            batchBytes = 0;
+                            batchStartNanos = System.nanoTime();
                         }
                     }
                 }
@@ -182,13 +294,23 @@ public class ExcelImportService {
             
             // 处理剩余的批次
             if (!batch.isEmpty()) {
-                Map<String, Object> batchResult = customerService.batchImportCustomers(batch, uploadTaskId);
+                long callStart = System.nanoTime();
+                importContext.beginBatch();
+                Map<String, Object> batchResult = customerService.batchImportCustomers(batch, importContext);
+                importContext.commitBatch();
+                importContext.recordBatch(batch.size(), batchBytes, callStart - batchStartNanos,
+                    System.nanoTime() - callStart, batchResult);
                 // 累加实际的统计结果
                 processedCount += (Integer) batchResult.getOrDefault("successCount", 0);
                 skipCount += (Integer) batchResult.getOrDefault("skipCount", 0);
                 errorCount += (Integer) batchResult.getOrDefault("errorCount", 0);
+                updatedCount += (Integer) batchResult.getOrDefault("updatedCount", 0);
+                unchangedCount += (Integer) batchResult.getOrDefault("unchangedCount", 0);
                 batch.clear();
             }
+        } finally {
+            // 拒绝行文件在finally中关闭，保证异常中断时已写入的明细也能下载
+            rejectedCount = closeRejectWriter(importContext);
         }
         
         // 最后更新一次进度（只在完成时更新一次）
@@ -203,6 +325,9 @@ public class ExcelImportService {
         result.put("successCount", processedCount);
         result.put("skipCount", skipCount);  // 返回实际跳过的数量（重复数据）
         result.put("errorCount", errorCount);  // 返回实际错误数量
+        result.put("updatedCount", updatedCount);
+        result.put("unchangedCount", unchangedCount);
+        result.put("rejectedCount", rejectedCount);
         result.put("errors", new ArrayList<>());
         
         logger.info("CSV导入完成: 总记录数={}, 成功={}, 跳过={}（重复数据）, 错误={}", 
@@ -211,26 +336,7 @@ public class ExcelImportService {
         return result;
     }
     
-    /**
-     * 解析CSV行（简单实现）
-     */
-    private String[] parseCsvLine(String line) {
-        List<String> values = new ArrayList<>();
-        boolean inQuotes = false;
-        StringBuilder currentValue = new StringBuilder();
-        
-        for (char c : line.toCharArray()) {
-            if (c == '"') {
-                inQuotes = !inQuotes;
-            } else if (c == ',' && !inQuotes) {
-                values.add(currentValue.toString());
-                currentValue = new StringBuilder();
-            } else {
-                currentValue.append(c);
-            }
-        }
-        values.add(currentValue.toString());
-        
-        return values.toArray(new String[0]);
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
     }
 }
@@ -0,0 +1,201 @@
+package com.kehu.service;
+
+import com.kehu.entity.ImportBatchStat;
+import com.kehu.repository.ImportBatchStatRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 导入批次耗时统计
+ * 导入线程只把统计放进有界队列，由单独的写入线程批量落库，统计写入不占用导入的事务和耗时；
+ * 队列满时直接丢弃（只影响统计，不影响导入）
+ */
+@Service
+public class ImportBatchStatsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImportBatchStatsService.class);
+
+    private static final String INSERT_SQL = "INSERT INTO import_batch_stats " +
+        "(upload_task_id, batch_no, import_mode, row_count, success_count, skip_count, updated_count, unchanged_count, " +
+        "error_count, bytes, parse_ms, lookup_ms, insert_ms, commit_ms, total_ms, start_time) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // 每次批量写入的最大条数
+    private static final int WRITE_BATCH_SIZE = 500;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ImportBatchStatRepository importBatchStatRepository;
+
+    // 待写入队列容量
+    @Value("${customer.import.stats.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private BlockingQueue<ImportBatchStat> queue;
+    private Thread writerThread;
+    private volatile boolean running = true;
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        writerThread = new Thread(this::writeLoop, "import-stats-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        writerThread.interrupt();
+        try {
+            writerThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 提交一条批次统计（非阻塞）
+     */
+    public void submit(ImportBatchStat stat) {
+        if (!queue.offer(stat)) {
+            long dropped = droppedCount.incrementAndGet();
+            if (dropped % 1000 == 1) {
+                logger.warn("导入批次统计队列已满，已丢弃 {} 条统计", dropped);
+            }
+        }
+    }
+
+    /**
+     * 写入线程：阻塞等待第一条，再把队列中已有的一起批量写入
+     */
+    private void writeLoop() {
+        List<ImportBatchStat> buffer = new ArrayList<>(WRITE_BATCH_SIZE);
+        while (running || !queue.isEmpty()) {
+            try {
+                ImportBatchStat first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                buffer.add(first);
+                queue.drainTo(buffer, WRITE_BATCH_SIZE - 1);
+            } catch (InterruptedException e) {
+                // 停止时把剩余的统计写完
+                queue.drainTo(buffer, WRITE_BATCH_SIZE);
+            }
+            if (!buffer.isEmpty()) {
+                write(buffer);
+                buffer.clear();
+            }
+        }
+    }
+
+    private void write(List<ImportBatchStat> stats) {
+        try {
+            List<Object[]> args = new ArrayList<>(stats.size());
+            for (ImportBatchStat s : stats) {
+                args.add(new Object[]{s.getUploadTaskId(), s.getBatchNo(), s.getImportMode(), s.getRowCount(),
+                    s.getSuccessCount(), s.getSkipCount(), s.getUpdatedCount(), s.getUnchangedCount(),
+                    s.getErrorCount(), s.getBytes(), s.getParseMs(), s.getLookupMs(), s.getInsertMs(),
+                    s.getCommitMs(), s.getTotalMs(), Timestamp.valueOf(s.getStartTime())});
+            }
+            jdbcTemplate.batchUpdate(INSERT_SQL, args);
+        } catch (Exception e) {
+            logger.warn("写入导入批次统计失败，丢弃 {} 条", stats.size(), e);
+        }
+    }
+
+    /**
+     * 任务的批次时间线及各阶段耗时汇总
+     * @param uploadTaskId 上传任务ID
+     * @return batches（按批次顺序）、summary（各阶段合计、占比和瓶颈阶段）
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> getTaskBreakdown(Long uploadTaskId) {
+        List<ImportBatchStat> batches = importBatchStatRepository.findByUploadTaskIdOrderByBatchNoAsc(uploadTaskId);
+
+        long rows = 0;
+        long bytes = 0;
+        Map<String, Long> stages = new LinkedHashMap<>();
+        stages.put("parse", 0L);
+        stages.put("lookup", 0L);
+        stages.put("insert", 0L);
+        stages.put("commit", 0L);
+        long totalMs = 0;
+        for (ImportBatchStat s : batches) {
+            rows += s.getRowCount();
+            bytes += s.getBytes();
+            stages.merge("parse", s.getParseMs(), Long::sum);
+            stages.merge("lookup", s.getLookupMs(), Long::sum);
+            stages.merge("insert", s.getInsertMs(), Long::sum);
+            stages.merge("commit", s.getCommitMs(), Long::sum);
+            totalMs += s.getTotalMs();
+        }
+
+        // 各阶段占比（%）和耗时最长的阶段
+        Map<String, Double> percentages = new LinkedHashMap<>();
+        String bottleneck = null;
+        long max = -1;
+        for (Map.Entry<String, Long> entry : stages.entrySet()) {
+            percentages.put(entry.getKey(), totalMs > 0 ? Math.round(entry.getValue() * 1000.0 / totalMs) / 10.0 : 0.0);
+            if (entry.getValue() > max) {
+                max = entry.getValue();
+                bottleneck = entry.getKey();
+            }
+        }
+
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("batchCount", batches.size());
+        summary.put("rowCount", rows);
+        summary.put("bytes", bytes);
+        summary.put("totalMs", totalMs);
+        summary.put("stageMs", stages);
+        summary.put("stagePercent", percentages);
+        summary.put("bottleneck", batches.isEmpty() ? null : bottleneck);
+        summary.put("rowsPerSecond", totalMs > 0 ? rows * 1000 / totalMs : 0);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("uploadTaskId", uploadTaskId);
+        result.put("batches", batches);
+        result.put("summary", summary);
+        return result;
+    }
+
+    /**
+     * 删除任务的批次统计（删除任务时调用）
+     */
+    @Transactional
+    public void deleteByTaskIds(List<Long> taskIds) {
+        if (!taskIds.isEmpty()) {
+            importBatchStatRepository.deleteByUploadTaskIdIn(taskIds);
+        }
+    }
+
+    /**
+     * 因队列已满被丢弃的统计条数
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+}
@@ -0,0 +1,307 @@
+package com.kehu.service;
+
+import com.kehu.entity.Customer;
+import com.kehu.entity.ImportBatchStat;
+import com.kehu.util.ImportRejectWriter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 单次导入的上下文（导入模式 + 列级合并规则 + 拒绝行文件 + 批次耗时统计）
+ * 由导入接口创建，经 ExcelImportService / CustomerExcelReadListener 传递给 CustomerService.batchImportCustomers
+ */
+public class ImportContext {
+
+    /** 跳过模式：电话已存在则跳过（原有行为） */
+    public static final String MODE_SKIP = "SKIP";
+    /** 合并模式：电话已存在则按列规则更新 */
+    public static final String MODE_MERGE = "MERGE";
+
+    /**
+     * 可合并的列
+     */
+    public enum Column {
+        NAME, EMAIL, ADDRESS
+    }
+
+    /**
+     * 列级合并规则
+     */
+    public enum MergeRule {
+        /** 总是用新值覆盖（新值为空时清空） */
+        OVERWRITE,
+        /** 仅当新值非空时覆盖 */
+        NON_EMPTY,
+        /** 保留原值，不更新 */
+        KEEP
+    }
+
+    private final Long uploadTaskId;
+    private final String mode;
+    private final Map<Column, MergeRule> rules = new EnumMap<>(Column.class);
+    private ImportRejectWriter rejectWriter;  // 拒绝行文件（由ExcelImportService在解析开始时打开）
+    private Consumer<ImportBatchStat> batchStatsSink;  // 批次耗时统计的接收方（为空时不统计）
+    private List<RejectedRow> pendingRejects;  // 当前批次暂存的拒绝行（批次未开始时为null，直接写文件）
+    private int batchNo = 0;
+
+    public ImportContext(Long uploadTaskId, String mode) {
+        this.uploadTaskId = uploadTaskId;
+        this.mode = MODE_MERGE.equalsIgnoreCase(mode) ? MODE_MERGE : MODE_SKIP;
+        // 默认规则：只在新值非空时覆盖，避免刷新文件中的空单元格清掉已有数据
+        for (Column column : Column.values()) {
+            rules.put(column, MergeRule.NON_EMPTY);
+        }
+    }
+
+    /**
+     * 默认上下文（跳过模式）
+     */
+    public static ImportContext skip(Long uploadTaskId) {
+        return new ImportContext(uploadTaskId, MODE_SKIP);
+    }
+
+    /**
+     * 根据请求参数创建上下文
+     * @param uploadTaskId 上传任务ID
+     * @param mode 导入模式（SKIP / MERGE，为空时默认SKIP）
+     * @param rulesSpec 列规则，格式如 "email:OVERWRITE,address:NON_EMPTY,name:KEEP"（可为空）
+     */
+    public static ImportContext of(Long uploadTaskId, String mode, String rulesSpec) {
+        ImportContext context = new ImportContext(uploadTaskId, mode);
+        if (rulesSpec == null || rulesSpec.trim().isEmpty()) {
+            return context;
+        }
+        for (String part : rulesSpec.split(",")) {
+            String[] kv = part.split(":");
+            if (kv.length != 2) {
+                throw new IllegalArgumentException("合并规则格式错误: " + part);
+            }
+            try {
+                Column column = Column.valueOf(kv[0].trim().toUpperCase());
+                MergeRule rule = MergeRule.valueOf(kv[1].trim().toUpperCase());
+                context.rules.put(column, rule);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("不支持的合并规则: " + part);
+            }
+        }
+        return context;
+    }
+
+    /**
+     * 复制当前的模式和规则，绑定到指定上传任务（接口先校验参数，创建任务后再绑定任务ID）
+     */
+    public ImportContext forTask(Long taskId) {
+        ImportContext context = new ImportContext(taskId, mode);
+        context.rules.putAll(rules);
+        return context;
+    }
+
+    public Long getUploadTaskId() {
+        return uploadTaskId;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public boolean isMerge() {
+        return MODE_MERGE.equals(mode);
+    }
+
+    public MergeRule getRule(Column column) {
+        return rules.get(column);
+    }
+
+    /**
+     * 按列规则计算合并后的值
+     * @param column 列
+     * @param oldValue 数据库中的原值
+     * @param newValue 导入文件中的新值
+     * @return 合并后的值
+     */
+    public String merge(Column column, String oldValue, String newValue) {
+        switch (rules.get(column)) {
+            case OVERWRITE:
+                return newValue;
+            case NON_EMPTY:
+                return newValue != null && !newValue.trim().isEmpty() ? newValue : oldValue;
+            default:
+                return oldValue;
+        }
+    }
+
+    public ImportRejectWriter getRejectWriter() {
+        return rejectWriter;
+    }
+
+    public void setRejectWriter(ImportRejectWriter rejectWriter) {
+        this.rejectWriter = rejectWriter;
+    }
+
+    /**
+     * 记录一条被拒绝的行（未打开拒绝行文件时忽略）
+     * 批次进行中时先暂存，批次事务提交后由 commitBatch 写入文件
+     */
+    public void reject(Customer customer, String reason) {
+        if (rejectWriter == null) {
+            return;
+        }
+        RejectedRow row = new RejectedRow(customer, reason);
+        if (pendingRejects != null) {
+            pendingRejects.add(row);
+        } else {
+            row.writeTo(rejectWriter);
+        }
+    }
+
+    /**
+     * 开始一个入库批次：之后的拒绝行暂存，直到 commitBatch 或 discardBatch
+     */
+    public void beginBatch() {
+        pendingRejects = new ArrayList<>();
+    }
+
+    /**
+     * 批次入库成功（事务已提交），把暂存的拒绝行写入文件
+     */
+    public void commitBatch() {
+        List<RejectedRow> rows = pendingRejects;
+        pendingRejects = null;
+        if (rows != null) {
+            for (RejectedRow row : rows) {
+                row.writeTo(rejectWriter);
+            }
+        }
+    }
+
+    /**
+     * 批次入库失败（事务已回滚），丢弃暂存的拒绝行，由调用方按整批失败记录
+     */
+    public void discardBatch() {
+        pendingRejects = null;
+    }
+
+    public void setBatchStatsSink(Consumer<ImportBatchStat> batchStatsSink) {
+        this.batchStatsSink = batchStatsSink;
+    }
+
+    /**
+     * 记录一个入库批次的耗时统计（未设置统计接收方或没有任务ID时忽略）
+     * @param rowCount 批次行数
+     * @param bytes 批次原始数据字节数
+     * @param parseNanos 读取/解析该批次耗时
+     * @param callNanos batchImportCustomers调用耗时（含事务提交）
+     * @param result batchImportCustomers的返回结果（整批失败时为null）
+     */
+    public void recordBatch(int rowCount, long bytes, long parseNanos, long callNanos, Map<String, Object> result) {
+        if (batchStatsSink == null || uploadTaskId == null) {
+            return;
+        }
+        ImportBatchStat stat = new ImportBatchStat();
+        stat.setUploadTaskId(uploadTaskId);
+        stat.setBatchNo(++batchNo);
+        stat.setImportMode(mode);
+        stat.setRowCount(rowCount);
+        stat.setBytes(bytes);
+        stat.setParseMs(TimeUnit.NANOSECONDS.toMillis(parseNanos));
+        stat.setTotalMs(TimeUnit.NANOSECONDS.toMillis(parseNanos + callNanos));
+        stat.setStartTime(LocalDateTime.now().minusNanos(parseNanos + callNanos));
+        if (result == null) {
+            stat.setErrorCount(rowCount);
+            stat.setCommitMs(TimeUnit.NANOSECONDS.toMillis(callNanos));
+        } else {
+            stat.setSuccessCount(count(result, "successCount"));
+            stat.setSkipCount(count(result, "skipCount"));
+            stat.setUpdatedCount(count(result, "updatedCount"));
+            stat.setUnchangedCount(count(result, "unchangedCount"));
+            stat.setErrorCount(count(result, "errorCount"));
+            long lookupNanos = nanos(result, "lookupNanos");
+            long insertNanos = nanos(result, "insertNanos");
+            // 方法返回后由事务代理提交，调用耗时减去方法内部耗时即为提交（含事务开销）耗时
+            long commitNanos = Math.max(0, callNanos - nanos(result, "serviceNanos"));
+            stat.setLookupMs(TimeUnit.NANOSECONDS.toMillis(lookupNanos));
+            stat.setInsertMs(TimeUnit.NANOSECONDS.toMillis(insertNanos));
+            stat.setCommitMs(TimeUnit.NANOSECONDS.toMillis(commitNanos));
+        }
+        batchStatsSink.accept(stat);
+    }
+
+    private static int count(Map<String, Object> result, String key) {
+        Object value = result.get(key);
+        return value instanceof Number ? ((Number) value).intValue() : 0;
+    }
+
+    private static long nanos(Map<String, Object> result, String key) {
+        Object value = result.get(key);
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+
+    /**
+     * 估算字符串的UTF-8字节数（不分配内存，用于批次字节统计）
+     */
+    public static int utf8Length(String value) {
+        if (value == null) {
+            return 0;
+        }
+        int bytes = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 规则描述（用于任务备注和日志）
+     */
+    public String describeRules() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Column, MergeRule> entry : rules.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(entry.getKey().name().toLowerCase()).append(':').append(entry.getValue().name());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 暂存的拒绝行（记录时的字段值）
+     */
+    private static final class RejectedRow {
+        private final Integer rowNumber;
+        private final String name;
+        private final String phone;
+        private final String email;
+        private final String address;
+        private final String reason;
+
+        RejectedRow(Customer customer, String reason) {
+            this.rowNumber = customer.getRowNumber();
+            this.name = customer.getName();
+            this.phone = customer.getPhone();
+            this.email = customer.getEmail();
+            this.address = customer.getAddress();
+            this.reason = reason;
+        }
+
+        void writeTo(ImportRejectWriter writer) {
+            writer.write(rowNumber, name, phone, email, address, reason);
+        }
+    }
+}
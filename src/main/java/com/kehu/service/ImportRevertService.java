@@ -0,0 +1,160 @@
+package com.kehu.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按上传任务回滚导入（后台任务）
+ * 按主键顺序分段删除任务导入的客户及其备注，每段一个短事务，段与段之间暂停，避免长时间锁表影响线上请求
+ */
+@Service
+public class ImportRevertService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImportRevertService.class);
+
+    public static final String STATUS_REVERTING = "回滚中";
+    public static final String STATUS_REVERTED = "已回滚";
+    public static final String STATUS_REVERT_FAILED = "回滚失败";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private UploadTaskService uploadTaskService;
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private OperationLogService operationLogService;
+
+    @Autowired
+    private CustomerSearchIndex customerSearchIndex;
+
+    @Autowired
+    private CustomerPhoneIndex customerPhoneIndex;
+
+    // 每段删除的行数（每段一个事务）
+    @Value("${customer.import.revert.chunk-size:1000}")
+    private int chunkSize;
+
+    // 段与段之间的暂停时间（毫秒），给线上请求让出数据库资源
+    @Value("${customer.import.revert.pause-ms:50}")
+    private long pauseMillis;
+
+    // 正在回滚的任务，防止同一任务重复提交
+    private final Set<Long> runningTasks = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 标记任务开始回滚（在请求线程中同步调用）
+     * @return false表示该任务已在回滚中
+     */
+    public boolean markReverting(Long taskId) {
+        if (!runningTasks.add(taskId)) {
+            return false;
+        }
+        uploadTaskService.updateRevertProgress(taskId, STATUS_REVERTING, 0);
+        return true;
+    }
+
+    /**
+     * 是否正在回滚
+     */
+    public boolean isReverting(Long taskId) {
+        return runningTasks.contains(taskId);
+    }
+
+    /**
+     * 异步回滚导入：删除该任务导入的所有客户及备注
+     * 注意：合并模式下被更新的已有客户不属于该任务，不会被回滚
+     * @param taskId 上传任务ID
+     * @param username 操作人
+     * @param clientIp 客户端IP
+     */
+    @Async("taskExecutor")
+    public void revertImportAsync(Long taskId, String username, String clientIp) {
+        int deletedCount = 0;
+        long startTime = System.currentTimeMillis();
+        try {
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            long lastId = 0;
+            while (true) {
+                // 取下一段ID（走idx_upload_task_id_id索引，按id有序）
+                List<Long> ids = jdbcTemplate.queryForList(
+                    "SELECT id FROM customers WHERE upload_task_id = ? AND id > ? ORDER BY id LIMIT ?",
+                    Long.class, taskId, lastId, chunkSize);
+                if (ids.isEmpty()) {
+                    break;
+                }
+                long fromId = ids.get(0);
+                long toId = ids.get(ids.size() - 1);
+
+                // 短事务：先删备注，再删客户（按id范围 + 任务ID，只锁这一段）
+                Integer chunkDeleted = transactionTemplate.execute(status -> {
+                    jdbcTemplate.update(
+                        "DELETE FROM customer_remarks WHERE customer_id IN " +
+                        "(SELECT id FROM customers WHERE upload_task_id = ? AND id BETWEEN ? AND ?)",
+                        taskId, fromId, toId);
+                    // 事务提交后从全文索引、电话片段索引中删除同一段
+                    customerSearchIndex.deleteTaskRange(taskId, fromId, toId);
+                    customerPhoneIndex.removeAfterCommit(ids);
+                    return jdbcTemplate.update(
+                        "DELETE FROM customers WHERE upload_task_id = ? AND id BETWEEN ? AND ?",
+                        taskId, fromId, toId);
+                });
+                deletedCount += chunkDeleted != null ? chunkDeleted : 0;
+                lastId = toId;
+
+                uploadTaskService.updateRevertProgress(taskId, STATUS_REVERTING, deletedCount);
+
+                if (ids.size() < chunkSize) {
+                    break;
+                }
+                if (pauseMillis > 0) {
+                    Thread.sleep(pauseMillis);
+                }
+            }
+
+            uploadTaskService.updateRevertProgress(taskId, STATUS_REVERTED, deletedCount);
+            customerService.invalidateCountCache();
+
+            long duration = System.currentTimeMillis() - startTime;
+            logger.info("回滚导入完成: taskId={}, 删除={}, 耗时={}ms", taskId, deletedCount, duration);
+            if (username != null) {
+                operationLogService.logSuccess(username, "DELETE", "CUSTOMER",
+                    "回滚导入任务: 任务ID " + taskId + "，共删除 " + deletedCount + " 条客户", clientIp, taskId);
+            }
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            logger.error("回滚导入失败: taskId=" + taskId + ", 已删除=" + deletedCount, e);
+            try {
+                uploadTaskService.updateRevertProgress(taskId, STATUS_REVERT_FAILED, deletedCount);
+                customerService.invalidateCountCache();
+                if (username != null) {
+                    operationLogService.logFailure(username, "DELETE", "CUSTOMER",
+                        "回滚导入任务失败: 任务ID " + taskId + "，已删除 " + deletedCount + " 条客户", clientIp, taskId, e.getMessage());
+                }
+            } catch (Exception ex) {
+                logger.error("更新回滚状态失败", ex);
+            }
+        } finally {
+            runningTasks.remove(taskId);
+        }
+    }
+}
@@ -0,0 +1,639 @@
+package com.kehu.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kehu.entity.OperationLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 操作日志归档（审计日志需要长期保存，超过 after-days 天的日志移出 operation_logs 表）
+ * 每天一个只追加的压缩分段文件（gzip 的 JSON Lines），旁边是小的索引文件：时间范围、id范围、
+ * 按 用户名/操作/模块 分组的条数。分段写完后不再修改，同一天的日志后来又需要归档时写一个新的分段。
+ * 查询时只读取与时间范围重叠的分段；完全落在时间范围内的分段直接用索引计数，只有需要返回的那几页才解压读取。
+ * 归档后的日志不受保留期清理影响；启用归档时保留期清理只删除 exclude-operations 中的操作类型，
+ * 其他日志在表中一直保留到被归档。手动归档在后台线程执行，进度通过状态接口查询
+ */
+@Service
+public class OperationLogArchiveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OperationLogArchiveService.class);
+
+    private static final String SEGMENT_PREFIX = "operation_logs_";
+    private static final String SEGMENT_SUFFIX = ".jsonl.gz";
+    private static final String INDEX_SUFFIX = ".idx.json";
+
+    private static final String SELECT_COLUMNS = "SELECT id, username, operation, module, description, ip_address, " +
+        "operation_time, target_id, result, error_message FROM operation_logs ";
+
+    // 分组计数键的分隔符
+    private static final char KEY_SEPARATOR = '\u0001';
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    @Qualifier("taskExecutor")
+    private Executor taskExecutor;
+
+    // 是否启用定时归档
+    @Value("${customer.operation-log.archive.enabled:true}")
+    private boolean enabled;
+
+    // 归档文件目录
+    @Value("${customer.operation-log.archive.dir:log-archive}")
+    private String archiveDir;
+
+    // 超过多少天的日志归档（按天整体归档）
+    @Value("${customer.operation-log.archive.after-days:90}")
+    private int afterDays;
+
+    // 不归档的操作类型（逗号分隔，默认全部归档，包括查询类日志）；这些日志只由保留期清理按天数删除，
+    // 保留天数应不超过 after-days，否则表中会留下比归档更早的日志
+    @Value("${customer.operation-log.archive.exclude-operations:}")
+    private String excludeOperations;
+
+    // 每次从数据库读取、删除的行数
+    @Value("${customer.operation-log.archive.chunk-size:5000}")
+    private int chunkSize;
+
+    // 删除段与段之间的暂停时间（毫秒）
+    @Value("${customer.operation-log.archive.pause-ms:100}")
+    private long pauseMillis;
+
+    // 归档间隔（小时），启动后 initial-delay-minutes 分钟执行第一次
+    @Value("${customer.operation-log.archive.interval-hours:24}")
+    private long intervalHours;
+
+    @Value("${customer.operation-log.archive.initial-delay-minutes:30}")
+    private long initialDelayMinutes;
+
+    // 文件名 -> 分段索引（文件名按日期排序）
+    private final NavigableMap<String, SegmentIndex> segments = new ConcurrentSkipListMap<>();
+    private final Set<String> excludedOperations = new LinkedHashSet<>();
+    // 排除不归档操作类型的条件（没有排除时为空串）
+    private String excludeCondition = "";
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private ScheduledExecutorService scheduler;
+    private volatile Map<String, Object> lastRun;
+    // 当前归档的进度
+    private volatile LocalDateTime currentStartTime;
+    private volatile LocalDate currentDay;
+    private volatile int currentDays;
+    private final AtomicLong currentRows = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        for (String operation : excludeOperations.split(",")) {
+            if (!operation.trim().isEmpty()) {
+                excludedOperations.add(operation.trim());
+            }
+        }
+        if (!excludedOperations.isEmpty()) {
+            excludeCondition = " AND operation NOT IN ("
+                + String.join(",", Collections.nCopies(excludedOperations.size(), "?")) + ")";
+        }
+        loadSegments();
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "operation-log-archive");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::runScheduled, TimeUnit.MINUTES.toMillis(initialDelayMinutes),
+            TimeUnit.HOURS.toMillis(intervalHours), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 加载已有分段的索引；没有索引的分段是归档中途退出留下的（对应的日志还在表中），直接删除
+     */
+    private void loadSegments() {
+        Path dir = Paths.get(archiveDir);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".part")) {
+                    Files.deleteIfExists(file);
+                } else if (name.endsWith(SEGMENT_SUFFIX)) {
+                    Path indexFile = dir.resolve(name + INDEX_SUFFIX);
+                    if (Files.exists(indexFile)) {
+                        segments.put(name, objectMapper.readValue(indexFile.toFile(), SegmentIndex.class));
+                    } else {
+                        logger.warn("删除未完成的操作日志归档分段: {}", name);
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("读取操作日志归档目录失败: " + dir, e);
+        }
+        logger.info("操作日志归档: {} 个分段", segments.size());
+    }
+
+    private void runScheduled() {
+        try {
+            archive();
+        } catch (Exception e) {
+            logger.error("操作日志归档失败", e);
+        }
+    }
+
+    // ==================== 归档 ====================
+
+    /**
+     * 在后台线程归档一次，进度和结果通过 {@link #getStatus()} 查询
+     * @return 已有归档在运行时返回false
+     */
+    public boolean startArchive() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        taskExecutor.execute(() -> {
+            try {
+                doArchive();
+            } catch (Exception e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                logger.error("操作日志归档失败", e);
+                Map<String, Object> result = new HashMap<>();
+                result.put("startTime", currentStartTime);
+                result.put("days", currentDays);
+                result.put("rows", currentRows.get());
+                result.put("error", e.getMessage());
+                lastRun = result;
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 归档一次：把 after-days 天之前的日志按天写入分段文件，再从表中分段删除（同时只运行一次）
+     * @return 归档的天数、条数、耗时；已有归档在运行时返回null
+     */
+    public Map<String, Object> archive() throws IOException, InterruptedException {
+        if (!running.compareAndSet(false, true)) {
+            return null;
+        }
+        try {
+            return doArchive();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private Map<String, Object> doArchive() throws IOException, InterruptedException {
+        long startMillis = System.currentTimeMillis();
+        LocalDate cutoff = LocalDate.now().minusDays(afterDays);
+        currentStartTime = LocalDateTime.now();
+        currentDay = null;
+        currentDays = 0;
+        currentRows.set(0);
+        int days = 0;
+        long rows = 0;
+        Timestamp oldest = jdbcTemplate.queryForObject(
+            "SELECT MIN(operation_time) FROM operation_logs WHERE 1 = 1" + excludeCondition, Timestamp.class,
+            excludedOperations.toArray());
+        if (oldest != null) {
+            for (LocalDate day = oldest.toLocalDateTime().toLocalDate(); day.isBefore(cutoff); day = day.plusDays(1)) {
+                currentDay = day;
+                long archived = archiveDay(day);
+                if (archived > 0) {
+                    days++;
+                    rows += archived;
+                    currentDays = days;
+                    currentRows.addAndGet(archived);
+                }
+            }
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("startTime", LocalDateTime.now());
+        result.put("archivedBefore", cutoff);
+        result.put("days", days);
+        result.put("rows", rows);
+        result.put("duration", System.currentTimeMillis() - startMillis);
+        lastRun = result;
+        logger.info("操作日志归档: {} 天, {} 条, 耗时={}ms", days, rows, result.get("duration"));
+        return result;
+    }
+
+    /**
+     * 归档一天的日志：先写分段文件和索引，索引写好（分段完整）后才从表中删除
+     * 之前已归档过这一天（删除前中断）时，先删掉已归档的行，剩下的写入新的分段
+     */
+    private long archiveDay(LocalDate day) throws IOException, InterruptedException {
+        Timestamp from = Timestamp.valueOf(day.atStartOfDay());
+        Timestamp to = Timestamp.valueOf(day.plusDays(1).atStartOfDay());
+        String dayPrefix = SEGMENT_PREFIX + day;
+        long archivedMaxId = 0;
+        int sequence = 0;
+        for (SegmentIndex index : segments.subMap(dayPrefix, dayPrefix + Character.MAX_VALUE).values()) {
+            archivedMaxId = Math.max(archivedMaxId, index.getMaxId());
+            sequence++;
+        }
+        if (archivedMaxId > 0) {
+            deleteArchived(from, to, archivedMaxId);
+        }
+
+        String name = dayPrefix + (sequence == 0 ? "" : "_" + (sequence + 1)) + SEGMENT_SUFFIX;
+        Path dir = Paths.get(archiveDir);
+        Files.createDirectories(dir);
+        Path file = dir.resolve(name);
+        Path partFile = dir.resolve(name + ".part");
+        SegmentIndex index = new SegmentIndex();
+        index.setFile(name);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(partFile), 64 * 1024), StandardCharsets.UTF_8))) {
+            long lastId = archivedMaxId;
+            while (true) {
+                List<OperationLog> chunk = jdbcTemplate.query(SELECT_COLUMNS + "WHERE operation_time >= ? AND "
+                        + "operation_time < ? AND id > ?" + excludeCondition + " ORDER BY id LIMIT ?", (rs, rowNum) -> {
+                    OperationLog log = new OperationLog();
+                    log.setId(rs.getLong(1));
+                    log.setUsername(rs.getString(2));
+                    log.setOperation(rs.getString(3));
+                    log.setModule(rs.getString(4));
+                    log.setDescription(rs.getString(5));
+                    log.setIpAddress(rs.getString(6));
+                    log.setOperationTime(rs.getTimestamp(7).toLocalDateTime());
+                    Number targetId = (Number) rs.getObject(8);
+                    log.setTargetId(targetId != null ? targetId.longValue() : null);
+                    log.setResult(rs.getString(9));
+                    log.setErrorMessage(rs.getString(10));
+                    return log;
+                }, args(from, to, lastId, chunkSize));
+                for (OperationLog log : chunk) {
+                    writer.write(objectMapper.writeValueAsString(log));
+                    writer.write('\n');
+                    index.add(log);
+                }
+                if (chunk.size() < chunkSize) {
+                    break;
+                }
+                lastId = chunk.get(chunk.size() - 1).getId();
+            }
+        }
+        if (index.getCount() == 0) {
+            Files.deleteIfExists(partFile);
+            return 0;
+        }
+        index.setBytes(Files.size(partFile));
+        Files.move(partFile, file, StandardCopyOption.REPLACE_EXISTING);
+        // 索引最后写入：有索引的分段才是完整的
+        Path indexPart = dir.resolve(name + INDEX_SUFFIX + ".part");
+        objectMapper.writeValue(indexPart.toFile(), index);
+        Files.move(indexPart, dir.resolve(name + INDEX_SUFFIX), StandardCopyOption.REPLACE_EXISTING);
+        segments.put(name, index);
+
+        deleteArchived(from, to, index.getMaxId());
+        return index.getCount();
+    }
+
+    /**
+     * 从表中分段删除已归档的行（这一天中 id 不超过已归档最大id的，不归档的操作类型除外）
+     */
+    private void deleteArchived(Timestamp from, Timestamp to, long maxId) throws InterruptedException {
+        String sql = "DELETE FROM operation_logs WHERE operation_time >= ? AND operation_time < ? AND id <= ?"
+            + excludeCondition + " LIMIT " + chunkSize;
+        while (jdbcTemplate.update(sql, args(from, to, maxId)) == chunkSize) {
+            if (pauseMillis > 0) {
+                Thread.sleep(pauseMillis);
+            }
+        }
+    }
+
+    /**
+     * 时间、id等参数后接排除的操作类型（LIMIT 参数放在最后）
+     */
+    private Object[] args(Timestamp from, Timestamp to, long id, Integer limit) {
+        List<Object> args = new ArrayList<>();
+        args.add(from);
+        args.add(to);
+        args.add(id);
+        args.addAll(excludedOperations);
+        if (limit != null) {
+            args.add(limit);
+        }
+        return args.toArray();
+    }
+
+    private Object[] args(Timestamp from, Timestamp to, long id) {
+        return args(from, to, id, null);
+    }
+
+    /**
+     * 是否启用归档（启用时保留期清理只删除不归档的操作类型）
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 不归档的操作类型
+     */
+    public Set<String> getExcludedOperations() {
+        return Collections.unmodifiableSet(excludedOperations);
+    }
+
+    // ==================== 查询 ====================
+
+    /**
+     * 按条件统计归档中的日志条数（条件同 {@link OperationLogService#searchLogs}）
+     * 完全落在时间范围内的分段用索引计数，只有跨越时间范围边界的分段需要读取
+     */
+    public long count(String username, String operation, String module,
+                      LocalDateTime startTime, LocalDateTime endTime) throws IOException {
+        long total = 0;
+        for (SegmentIndex index : segments.values()) {
+            total += matchCount(index, username, operation, module, startTime, endTime, null);
+        }
+        return total;
+    }
+
+    /**
+     * 按条件查询归档中的日志，按时间倒序跳过 offset 条后返回最多 limit 条
+     * 从最新的分段往前，用索引计数跳过整个分段，只解压读取包含所需行的分段
+     */
+    public List<OperationLog> search(String username, String operation, String module,
+                                     LocalDateTime startTime, LocalDateTime endTime,
+                                     long offset, int limit) throws IOException {
+        List<OperationLog> result = new ArrayList<>(limit);
+        for (SegmentIndex index : segments.descendingMap().values()) {
+            if (result.size() >= limit) {
+                break;
+            }
+            List<OperationLog> scanned = new ArrayList<>();
+            long count = matchCount(index, username, operation, module, startTime, endTime, scanned);
+            if (offset >= count) {
+                offset -= count;
+                continue;
+            }
+            if (scanned.isEmpty()) {
+                scanned = read(index, username, operation, module, startTime, endTime);
+            }
+            int from = (int) offset;
+            int to = Math.min(scanned.size(), from + limit - result.size());
+            result.addAll(scanned.subList(from, to));
+            offset = 0;
+        }
+        return result;
+    }
+
+    /**
+     * 分段中符合条件的条数；需要读取分段才能统计时，把读到的行（按时间倒序）放进 scanned
+     */
+    private long matchCount(SegmentIndex index, String username, String operation, String module,
+                            LocalDateTime startTime, LocalDateTime endTime, List<OperationLog> scanned)
+            throws IOException {
+        if ((startTime != null && index.getMaxTime().isBefore(startTime))
+                || (endTime != null && index.getMinTime().isAfter(endTime))) {
+            return 0;
+        }
+        long count = 0;
+        for (Map.Entry<String, Long> entry : index.getCounts().entrySet()) {
+            String[] key = entry.getKey().split(String.valueOf(KEY_SEPARATOR), -1);
+            if (matches(key[0], key[1], key[2], username, operation, module)) {
+                count += entry.getValue();
+            }
+        }
+        boolean covered = (startTime == null || !index.getMinTime().isBefore(startTime))
+            && (endTime == null || !index.getMaxTime().isAfter(endTime));
+        if (covered || count == 0) {
+            return count;
+        }
+        List<OperationLog> logs = read(index, username, operation, module, startTime, endTime);
+        if (scanned != null) {
+            scanned.addAll(logs);
+        }
+        return logs.size();
+    }
+
+    /**
+     * 解压读取分段中符合条件的行，按时间倒序
+     */
+    private List<OperationLog> read(SegmentIndex index, String username, String operation, String module,
+                                    LocalDateTime startTime, LocalDateTime endTime) throws IOException {
+        List<OperationLog> logs = new ArrayList<>();
+        Path file = Paths.get(archiveDir, index.getFile());
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file), 64 * 1024), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                OperationLog log = objectMapper.readValue(line, OperationLog.class);
+                if ((startTime == null || !log.getOperationTime().isBefore(startTime))
+                        && (endTime == null || !log.getOperationTime().isAfter(endTime))
+                        && matches(log.getUsername(), log.getOperation(), log.getModule(), username, operation, module)) {
+                    logs.add(log);
+                }
+            }
+        }
+        logs.sort((a, b) -> b.getOperationTime().compareTo(a.getOperationTime()));
+        return logs;
+    }
+
+    /**
+     * 与表查询相同的匹配规则：用户名包含（不区分大小写），操作、模块相等；条件为null时不限
+     */
+    private static boolean matches(String logUsername, String logOperation, String logModule,
+                                   String username, String operation, String module) {
+        return (username == null || (logUsername != null
+                && logUsername.toLowerCase(Locale.ROOT).contains(username.toLowerCase(Locale.ROOT))))
+            && (operation == null || operation.equals(logOperation))
+            && (module == null || module.equals(logModule));
+    }
+
+    /**
+     * 归档是否有数据（没有时查询不需要合并）
+     */
+    public boolean isEmpty() {
+        return segments.isEmpty();
+    }
+
+    /**
+     * 归档状态：分段数、条数、占用空间、时间范围、正在执行的归档进度和最近一次归档结果
+     */
+    public Map<String, Object> getStatus() {
+        long rows = 0;
+        long bytes = 0;
+        for (SegmentIndex index : segments.values()) {
+            rows += index.getCount();
+            bytes += index.getBytes();
+        }
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", enabled);
+        status.put("afterDays", afterDays);
+        status.put("excludeOperations", excludedOperations);
+        status.put("segments", segments.size());
+        status.put("rows", rows);
+        status.put("bytes", bytes);
+        status.put("oldest", segments.isEmpty() ? null : segments.firstEntry().getValue().getMinTime());
+        status.put("newest", segments.isEmpty() ? null : segments.lastEntry().getValue().getMaxTime());
+        boolean isRunning = running.get();
+        status.put("running", isRunning);
+        if (isRunning) {
+            Map<String, Object> progress = new HashMap<>();
+            progress.put("startTime", currentStartTime);
+            progress.put("day", currentDay);
+            progress.put("days", currentDays);
+            progress.put("rows", currentRows.get());
+            status.put("progress", progress);
+        }
+        status.put("lastRun", lastRun);
+        return status;
+    }
+
+    /**
+     * 分段索引（与分段文件放在一起的 JSON 文件）
+     */
+    public static class SegmentIndex {
+        private String file;
+        private LocalDateTime minTime;
+        private LocalDateTime maxTime;
+        private long minId;
+        private long maxId;
+        private long count;
+        private long bytes;
+        // 用户名、操作、模块 -> 条数
+        private Map<String, Long> counts = new HashMap<>();
+
+        void add(OperationLog log) {
+            LocalDateTime time = log.getOperationTime();
+            if (minTime == null || time.isBefore(minTime)) {
+                minTime = time;
+            }
+            if (maxTime == null || time.isAfter(maxTime)) {
+                maxTime = time;
+            }
+            minId = count == 0 ? log.getId() : Math.min(minId, log.getId());
+            maxId = Math.max(maxId, log.getId());
+            count++;
+            counts.merge(nullToEmpty(log.getUsername()) + KEY_SEPARATOR + nullToEmpty(log.getOperation())
+                + KEY_SEPARATOR + nullToEmpty(log.getModule()), 1L, Long::sum);
+        }
+
+        private static String nullToEmpty(String value) {
+            return value != null ? value : "";
+        }
+
+        public String getFile() {
+            return file;
+        }
+
+        public void setFile(String file) {
+            this.file = file;
+        }
+
+        public LocalDateTime getMinTime() {
+            return minTime;
+        }
+
+        public void setMinTime(LocalDateTime minTime) {
+            this.minTime = minTime;
+        }
+
+        public LocalDateTime getMaxTime() {
+            return maxTime;
+        }
+
+        public void setMaxTime(LocalDateTime maxTime) {
+            this.maxTime = maxTime;
+        }
+
+        public long getMinId() {
+            return minId;
+        }
+
+        public void setMinId(long minId) {
+            this.minId = minId;
+        }
+
+        public long getMaxId() {
+            return maxId;
+        }
+
+        public void setMaxId(long maxId) {
+            this.maxId = maxId;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public void setCount(long count) {
+            this.count = count;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public void setBytes(long bytes) {
+            this.bytes = bytes;
+        }
+
+        public Map<String, Long> getCounts() {
+            return counts;
+        }
+
+        public void setCounts(Map<String, Long> counts) {
+            this.counts = counts;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.kehu.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 操作日志保留期清理（定时任务）
+ * 按操作类型分别设置保留天数，每次用 DELETE ... WHERE operation_time &lt; ? LIMIT n 删除一段，
+ * 段与段之间暂停，不加载实体，也不会长时间锁表；手动清理在后台线程执行，进度通过状态接口查询
+ * 启用归档（{@link OperationLogArchiveService}）时只清理归档排除的操作类型，其他日志在表中保留到被归档，
+ * 不会在归档之前被删除；未启用归档时按下面的保留天数清理全部日志
+ */
+@Service
+public class OperationLogRetentionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OperationLogRetentionService.class);
+
+    // 其他操作类型的统计键
+    private static final String OTHER_OPERATIONS = "*";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private OperationLogArchiveService operationLogArchiveService;
+
+    @Autowired
+    @Qualifier("taskExecutor")
+    private Executor taskExecutor;
+
+    // 是否启用定时清理
+    @Value("${customer.operation-log.retention.enabled:true}")
+    private boolean enabled;
+
+    // 默认保留天数
+    @Value("${customer.operation-log.retention.days:180}")
+    private int defaultDays;
+
+    // 按操作类型设置的保留天数，格式 操作=天数,操作=天数（查询类日志量大，未启用归档时默认只保留30天）
+    @Value("${customer.operation-log.retention.operation-days:SEARCH=30,ADVANCED_SEARCH=30,BATCH_QUERY=30}")
+    private String operationDays;
+
+    // 每条 DELETE 语句最多删除的行数
+    @Value("${customer.operation-log.retention.chunk-size:5000}")
+    private int chunkSize;
+
+    // 段与段之间的暂停时间（毫秒），给线上请求让出数据库资源
+    @Value("${customer.operation-log.retention.pause-ms:100}")
+    private long pauseMillis;
+
+    // 清理间隔（小时），启动后 initial-delay-minutes 分钟执行第一次
+    @Value("${customer.operation-log.retention.interval-hours:24}")
+    private long intervalHours;
+
+    @Value("${customer.operation-log.retention.initial-delay-minutes:10}")
+    private long initialDelayMinutes;
+
+    private final Map<String, Integer> retentionDays = new LinkedHashMap<>();
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private ScheduledExecutorService scheduler;
+    private volatile Map<String, Object> lastRun;
+    // 当前清理的进度
+    private volatile LocalDateTime currentStartTime;
+    private volatile String currentOperation;
+    private final AtomicLong currentDeleted = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        for (String entry : operationDays.split(",")) {
+            String[] parts = entry.trim().split("=");
+            if (parts.length == 2) {
+                retentionDays.put(parts[0].trim(), Integer.parseInt(parts[1].trim()));
+            } else if (!entry.trim().isEmpty()) {
+                throw new IllegalArgumentException("操作日志保留天数配置格式错误: " + entry);
+            }
+        }
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "operation-log-retention");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::runScheduled, TimeUnit.MINUTES.toMillis(initialDelayMinutes),
+            TimeUnit.HOURS.toMillis(intervalHours), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void runScheduled() {
+        try {
+            purge();
+        } catch (Exception e) {
+            logger.error("操作日志保留期清理失败", e);
+        }
+    }
+
+    /**
+     * 在后台线程按保留期清理一次，进度和结果通过 {@link #getStatus()} 查询
+     * @return 已有清理在运行时返回false
+     */
+    public boolean startPurge() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        taskExecutor.execute(() -> {
+            try {
+                doPurge();
+            } catch (Exception e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                logger.error("操作日志保留期清理失败", e);
+                Map<String, Object> result = new HashMap<>();
+                result.put("startTime", currentStartTime);
+                result.put("total", currentDeleted.get());
+                result.put("error", e.getMessage());
+                lastRun = result;
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 按保留期清理一次（同时只运行一次）
+     * @return 各操作类型删除的行数（"*" 为未单独配置的操作类型）、耗时；已有清理在运行时返回null
+     */
+    public Map<String, Object> purge() throws InterruptedException {
+        if (!running.compareAndSet(false, true)) {
+            return null;
+        }
+        try {
+            return doPurge();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private Map<String, Object> doPurge() throws InterruptedException {
+        long startMillis = System.currentTimeMillis();
+        LocalDateTime now = LocalDateTime.now();
+        currentStartTime = now;
+        currentOperation = null;
+        currentDeleted.set(0);
+        Map<String, Long> purged = new LinkedHashMap<>();
+        if (operationLogArchiveService.isEnabled()) {
+            // 只清理不归档的操作类型，需要归档的日志留给归档任务移出
+            for (String operation : operationLogArchiveService.getExcludedOperations()) {
+                currentOperation = operation;
+                purged.put(operation, deleteChunked("operation = ?", Collections.singletonList(operation),
+                    now.minusDays(retentionDays.getOrDefault(operation, defaultDays))));
+            }
+        } else {
+            for (Map.Entry<String, Integer> entry : retentionDays.entrySet()) {
+                currentOperation = entry.getKey();
+                purged.put(entry.getKey(), deleteChunked("operation = ?",
+                    Collections.singletonList(entry.getKey()), now.minusDays(entry.getValue())));
+            }
+            List<Object> excluded = new ArrayList<>(retentionDays.keySet());
+            String condition = excluded.isEmpty() ? null
+                : "operation NOT IN (" + String.join(",", Collections.nCopies(excluded.size(), "?")) + ")";
+            currentOperation = OTHER_OPERATIONS;
+            purged.put(OTHER_OPERATIONS, deleteChunked(condition, excluded, now.minusDays(defaultDays)));
+        }
+
+        long total = purged.values().stream().mapToLong(Long::longValue).sum();
+        Map<String, Object> result = new HashMap<>();
+        result.put("startTime", now);
+        result.put("purged", purged);
+        result.put("total", total);
+        result.put("duration", System.currentTimeMillis() - startMillis);
+        lastRun = result;
+        logger.info("操作日志保留期清理: 共删除 {} 条 {}, 耗时={}ms", total, purged, result.get("duration"));
+        return result;
+    }
+
+    /**
+     * 删除 operation_time 早于 before 的日志（可附加条件），每段一条 DELETE ... LIMIT，段与段之间暂停
+     */
+    private long deleteChunked(String condition, List<Object> conditionArgs, LocalDateTime before)
+            throws InterruptedException {
+        String sql = "DELETE FROM operation_logs WHERE operation_time < ?"
+            + (condition != null ? " AND " + condition : "") + " LIMIT " + chunkSize;
+        List<Object> args = new ArrayList<>();
+        args.add(Timestamp.valueOf(before));
+        args.addAll(conditionArgs);
+        long deleted = 0;
+        while (true) {
+            int count = jdbcTemplate.update(sql, args.toArray());
+            deleted += count;
+            currentDeleted.addAndGet(count);
+            if (count < chunkSize) {
+                return deleted;
+            }
+            if (pauseMillis > 0) {
+                Thread.sleep(pauseMillis);
+            }
+        }
+    }
+
+    /**
+     * 清理配置、正在执行的清理进度和最近一次清理结果
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", enabled);
+        status.put("defaultDays", defaultDays);
+        status.put("operationDays", retentionDays);
+        // 启用归档时实际清理的操作类型
+        status.put("archiveEnabled", operationLogArchiveService.isEnabled());
+        if (operationLogArchiveService.isEnabled()) {
+            status.put("purgedOperations", operationLogArchiveService.getExcludedOperations());
+        }
+        boolean isRunning = running.get();
+        status.put("running", isRunning);
+        if (isRunning) {
+            Map<String, Object> progress = new HashMap<>();
+            progress.put("startTime", currentStartTime);
+            progress.put("operation", currentOperation);
+            progress.put("deleted", currentDeleted.get());
+            status.put("progress", progress);
+        }
+        status.put("lastRun", lastRun);
+        return status;
+    }
+}
@@ -2,29 +2,114 @@ package com.kehu.service;
 
 import com.kehu.entity.OperationLog;
 import com.kehu.repository.OperationLogRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * 操作日志
+ * 异步写入：请求线程只把日志放进有界队列（数组环形缓冲，放入不阻塞），由单独的写入线程每 flush-ms 毫秒
+ * 或攒够 flush-size 条时用一条多行 INSERT 落库，查询接口不再为审计日志等待插入和提交。
+ * 队列满时查询类日志（搜索、批量查询）丢弃并计数，其他操作在调用线程中直接写入，不会丢失；关闭时写完队列中剩余的日志
+ */
 @Service
 public class OperationLogService {
 
+    private static final Logger logger = LoggerFactory.getLogger(OperationLogService.class);
+
+    private static final String INSERT_SQL = "INSERT INTO operation_logs " +
+        "(username, operation, module, description, ip_address, operation_time, target_id, result, error_message) VALUES ";
+
+    private static final String ROW_PLACEHOLDERS = "(?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // 队列满时可以丢弃的查询类操作
+    private static final Set<String> READ_OPERATIONS = new HashSet<>(Arrays.asList("SEARCH", "ADVANCED_SEARCH", "BATCH_QUERY"));
+
     @Autowired
     private OperationLogRepository operationLogRepository;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private OperationLogArchiveService operationLogArchiveService;
+
+    // 待写入队列容量
+    @Value("${customer.operation-log.queue-capacity:10000}")
+    private int queueCapacity;
+
+    // 最长攒批时间（毫秒）
+    @Value("${customer.operation-log.flush-ms:500}")
+    private long flushMillis;
+
+    // 每条 INSERT 语句最多写入的条数
+    @Value("${customer.operation-log.flush-size:500}")
+    private int flushSize;
+
+    private BlockingQueue<OperationLog> queue;
+    private Thread writerThread;
+    private volatile boolean running;
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        writerThread = new Thread(this::writeLoop, "operation-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
     /**
-     * 记录操作日志
+     * 停止写入线程，写完队列中剩余的日志（之后记录的日志直接写入）
      */
-    @Transactional
-    public OperationLog log(String username, String operation, String module, 
-                           String description, String ipAddress, Long targetId, 
-                           String result, String errorMessage) {
+    @PreDestroy
+    public void stop() {
+        running = false;
+        try {
+            writerThread.join(10000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<OperationLog> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            write(rest);
+        }
+    }
+
+    /**
+     * 记录操作日志（异步写入，不阻塞调用线程）
+     */
+    public void log(String username, String operation, String module,
+                    String description, String ipAddress, Long targetId,
+                    String result, String errorMessage) {
         OperationLog log = new OperationLog();
         log.setUsername(username);
         log.setOperation(operation);
@@ -35,24 +120,125 @@ public class OperationLogService {
         log.setResult(result);
         log.setErrorMessage(errorMessage);
         log.setOperationTime(LocalDateTime.now());
-        
-        return operationLogRepository.save(log);
+
+        if (running && queue.offer(log)) {
+            // 放入后 stop() 可能已经取完队列：还在运行，或已被写入线程、stop() 取走时由它们写入；
+            // 否则从队列中取回，在调用线程中直接写入
+            if (running || !queue.remove(log)) {
+                return;
+            }
+            write(Collections.singletonList(log));
+            return;
+        }
+        if (running && READ_OPERATIONS.contains(operation)) {
+            long dropped = droppedCount.incrementAndGet();
+            if (dropped % 1000 == 1) {
+                logger.warn("操作日志队列已满，已丢弃 {} 条查询日志", dropped);
+            }
+            return;
+        }
+        // 队列满（非查询操作）或已停止写入线程：在调用线程中直接写入
+        write(Collections.singletonList(log));
     }
 
     /**
      * 记录成功操作
      */
-    public OperationLog logSuccess(String username, String operation, String module, 
-                                  String description, String ipAddress, Long targetId) {
-        return log(username, operation, module, description, ipAddress, targetId, "SUCCESS", null);
+    public void logSuccess(String username, String operation, String module,
+                           String description, String ipAddress, Long targetId) {
+        log(username, operation, module, description, ipAddress, targetId, "SUCCESS", null);
     }
 
     /**
      * 记录失败操作
      */
-    public OperationLog logFailure(String username, String operation, String module, 
-                                  String description, String ipAddress, Long targetId, String errorMessage) {
-        return log(username, operation, module, description, ipAddress, targetId, "FAILURE", errorMessage);
+    public void logFailure(String username, String operation, String module,
+                           String description, String ipAddress, Long targetId, String errorMessage) {
+        log(username, operation, module, description, ipAddress, targetId, "FAILURE", errorMessage);
+    }
+
+    /**
+     * 写入线程：等到第一条后继续攒批，攒够 flushSize 条或等满 flushMillis 毫秒后一次写入
+     */
+    private void writeLoop() {
+        List<OperationLog> buffer = new ArrayList<>(flushSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                OperationLog first = queue.poll(flushMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                buffer.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushMillis);
+                while (running && buffer.size() < flushSize) {
+                    queue.drainTo(buffer, flushSize - buffer.size());
+                    long waitNanos = deadline - System.nanoTime();
+                    if (buffer.size() >= flushSize || waitNanos <= 0) {
+                        break;
+                    }
+                    OperationLog next = queue.poll(waitNanos, TimeUnit.NANOSECONDS);
+                    if (next != null) {
+                        buffer.add(next);
+                    }
+                }
+                queue.drainTo(buffer, flushSize - buffer.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            write(buffer);
+            buffer.clear();
+        }
+    }
+
+    /**
+     * 多行 INSERT 写入；整批失败时（如某条超长）逐条重试，只丢弃写不进去的
+     */
+    private void write(List<OperationLog> logs) {
+        try {
+            insert(logs);
+        } catch (Exception e) {
+            if (logs.size() == 1) {
+                failedCount.incrementAndGet();
+                logger.warn("写入操作日志失败: {}", e.getMessage());
+                return;
+            }
+            logger.warn("批量写入 {} 条操作日志失败，逐条重试: {}", logs.size(), e.getMessage());
+            for (OperationLog log : logs) {
+                write(Collections.singletonList(log));
+            }
+        }
+    }
+
+    private void insert(List<OperationLog> logs) {
+        StringBuilder sql = new StringBuilder(INSERT_SQL);
+        List<Object> args = new ArrayList<>(logs.size() * 9);
+        for (int i = 0; i < logs.size(); i++) {
+            OperationLog log = logs.get(i);
+            sql.append(i == 0 ? ROW_PLACEHOLDERS : ", " + ROW_PLACEHOLDERS);
+            args.add(log.getUsername());
+            args.add(log.getOperation());
+            args.add(log.getModule());
+            args.add(log.getDescription());
+            args.add(log.getIpAddress());
+            args.add(Timestamp.valueOf(log.getOperationTime()));
+            args.add(log.getTargetId());
+            args.add(log.getResult());
+            args.add(log.getErrorMessage());
+        }
+        jdbcTemplate.update(sql.toString(), args.toArray());
+    }
+
+    /**
+     * 异步写入状态：队列中待写入的条数、因队列满丢弃的查询日志条数、写入失败的条数
+     */
+    public Map<String, Object> getWriterStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("pending", queue.size());
+        status.put("capacity", queueCapacity);
+        status.put("dropped", droppedCount.get());
+        status.put("failed", failedCount.get());
+        return status;
     }
 
     /**
@@ -96,26 +282,25 @@ public class OperationLogService {
     }
 
     /**
-     * 高级搜索日志
+     * 高级搜索日志（同时查询表和归档，按时间倒序）
+     * 归档的日志都比表中的早，先取表中的这一页，不够一页时从归档的开头补足；总数为两者之和
      */
     public Page<OperationLog> searchLogs(String username, String operation, String module, 
                                         LocalDateTime startTime, LocalDateTime endTime, 
-                                        int page, int size) {
+                                        int page, int size) throws IOException {
         Pageable pageable = PageRequest.of(page, size);
-        return operationLogRepository.searchLogs(username, operation, module, startTime, endTime, pageable);
-    }
-
-    /**
-     * 删除指定时间之前的日志（用于清理旧日志）
-     */
-    @Transactional
-    public int deleteLogsBefore(LocalDateTime beforeTime) {
-        List<OperationLog> logs = operationLogRepository.findByOperationTimeBetweenOrderByOperationTimeDesc(
-            LocalDateTime.of(1970, 1, 1, 0, 0), beforeTime
-        );
-        int count = logs.size();
-        operationLogRepository.deleteAll(logs);
-        return count;
+        Page<OperationLog> hot = operationLogRepository.searchLogs(username, operation, module, startTime, endTime, pageable);
+        if (operationLogArchiveService.isEmpty()) {
+            return hot;
+        }
+        long archived = operationLogArchiveService.count(username, operation, module, startTime, endTime);
+        List<OperationLog> content = new ArrayList<>(hot.getContent());
+        if (content.size() < size && archived > 0) {
+            long archiveOffset = Math.max(0, pageable.getOffset() - hot.getTotalElements());
+            content.addAll(operationLogArchiveService.search(username, operation, module, startTime, endTime,
+                archiveOffset, size - content.size()));
+        }
+        return new PageImpl<>(content, pageable, hot.getTotalElements() + archived);
     }
 }
 
@@ -68,6 +68,22 @@ public class UploadTaskService {
         uploadTaskRepository.deleteAllById(ids);
     }
 
+    /**
+     * 更新回滚进度（独立事务，立即提交，前端轮询可实时看到）
+     */
+    @Transactional(propagation = org.springframework.transaction.annotation.Propagation.REQUIRES_NEW)
+    public void updateRevertProgress(Long id, String status, int revertedCount) {
+        uploadTaskRepository.updateRevertProgress(id, status, revertedCount);
+    }
+
+    /**
+     * 更新被拒绝行数（独立事务）
+     */
+    @Transactional(propagation = org.springframework.transaction.annotation.Propagation.REQUIRES_NEW)
+    public void updateRejectedCount(Long id, int rejectedCount) {
+        uploadTaskRepository.updateRejectedCount(id, rejectedCount);
+    }
+
     /**
      * 根据状态查询任务
      */
@@ -0,0 +1,49 @@
+package com.kehu.util;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.cjk.CJKBigramFilter;
+import org.apache.lucene.analysis.cjk.CJKWidthFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+
+/**
+ * 中文姓名、地址的分词器：汉字按相邻两字切分（张三丰 → 张三、三丰），其他文字按词切分并转小写，
+ * 全角字母数字先转半角
+ *
+ * 索引时同时输出单字（outputUnigrams=true），单字查询也能命中；
+ * 查询时只输出双字，按位置组成短语查询，效果等同于汉字部分的 LIKE '%xx%'
+ */
+public class CjkBigramAnalyzer extends Analyzer {
+
+    /** 双字词的 token 类型 */
+    public static final String TYPE_DOUBLE = "<DOUBLE>";
+    /** 单字的 token 类型（查询中孤立的单个汉字） */
+    public static final String TYPE_SINGLE = "<SINGLE>";
+
+    private final boolean outputUnigrams;
+
+    /**
+     * @param outputUnigrams 是否同时输出单字（索引用true，查询用false）
+     */
+    public CjkBigramAnalyzer(boolean outputUnigrams) {
+        this.outputUnigrams = outputUnigrams;
+    }
+
+    @Override
+    protected TokenStreamComponents createComponents(String fieldName) {
+        StandardTokenizer source = new StandardTokenizer();
+        TokenStream result = new CJKWidthFilter(source);
+        result = new LowerCaseFilter(result);
+        result = new CJKBigramFilter(result, CJKBigramFilter.HAN | CJKBigramFilter.HIRAGANA
+            | CJKBigramFilter.KATAKANA | CJKBigramFilter.HANGUL, outputUnigrams);
+        return new TokenStreamComponents(source, result);
+    }
+
+    /**
+     * 是否为汉字（及日韩文字）切分出的 token
+     */
+    public static boolean isCjkType(String type) {
+        return TYPE_DOUBLE.equals(type) || TYPE_SINGLE.equals(type);
+    }
+}
@@ -0,0 +1,80 @@
+package com.kehu.util;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 导入被拒绝行的旁路文件（gzip压缩的CSV，边导入边写盘）
+ * 每行记录：原始行号、姓名、电话、邮箱、地址、原因；内存占用只有缓冲区大小，与拒绝行数无关
+ */
+public class ImportRejectWriter implements Closeable {
+
+    private static final String HEADER = "行号,姓名,电话,邮箱,地址,原因";
+
+    private final Path file;
+    private final Writer writer;
+    private int count = 0;
+
+    public ImportRejectWriter(Path file) throws IOException {
+        this.file = file;
+        Files.createDirectories(file.getParent());
+        this.writer = new BufferedWriter(new OutputStreamWriter(
+            new GZIPOutputStream(Files.newOutputStream(file), 64 * 1024), StandardCharsets.UTF_8), 64 * 1024);
+        // UTF-8 BOM，解压后用Excel打开不乱码
+        writer.write('\uFEFF');
+        writer.write(HEADER);
+        writer.write('\n');
+    }
+
+    /**
+     * 写入一条被拒绝的行
+     * @param rowNumber 原始文件中的行号（未知时传null）
+     */
+    public synchronized void write(Integer rowNumber, String name, String phone, String email,
+                                   String address, String reason) {
+        try {
+            writer.write(rowNumber != null ? rowNumber.toString() : "");
+            writer.write(',');
+            writeField(name);
+            writer.write(',');
+            writeField(phone);
+            writer.write(',');
+            writeField(email);
+            writer.write(',');
+            writeField(address);
+            writer.write(',');
+            writeField(reason);
+            writer.write('\n');
+            count++;
+        } catch (IOException e) {
+            throw new IllegalStateException("写入拒绝行文件失败: " + file, e);
+        }
+    }
+
+    private void writeField(String value) throws IOException {
+        CsvFields.write(writer, value);
+    }
+
+    /**
+     * 已写入的拒绝行数
+     */
+    public synchronized int getCount() {
+        return count;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,96 @@
+package com.kehu.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 键集分页游标（按主键id定位，替代 LIMIT offset）
+ * 对外是不透明的字符串令牌：base64url("a:{id}") 表示取 id 之后的一页，base64url("b:{id}") 表示取 id 之前的一页
+ */
+public final class PageCursor {
+
+    private final Long afterId;
+    private final Long beforeId;
+
+    private PageCursor(Long afterId, Long beforeId) {
+        this.afterId = afterId;
+        this.beforeId = beforeId;
+    }
+
+    /**
+     * 根据请求参数确定游标：优先使用令牌，其次 afterId / beforeId，都没有时从第一页开始
+     * @throws IllegalArgumentException 令牌无效
+     */
+    public static PageCursor of(String token, Long afterId, Long beforeId) {
+        if (token != null && !token.isEmpty()) {
+            return decode(token);
+        }
+        return new PageCursor(beforeId == null ? afterId : null, beforeId);
+    }
+
+    /**
+     * id 之后一页的令牌
+     */
+    public static String after(long id) {
+        return encode("a:" + id);
+    }
+
+    /**
+     * id 之前一页的令牌
+     */
+    public static String before(long id) {
+        return encode("b:" + id);
+    }
+
+    private static String encode(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static PageCursor decode(String token) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII);
+            long id = Long.parseLong(value.substring(2));
+            if (value.startsWith("a:")) {
+                return new PageCursor(id, null);
+            }
+            if (value.startsWith("b:")) {
+                return new PageCursor(null, id);
+            }
+        } catch (RuntimeException e) {
+            // 统一按无效令牌处理
+        }
+        throw new IllegalArgumentException("无效的分页游标: " + token);
+    }
+
+    /**
+     * 向后翻页时的起点（不含），第一页为null
+     */
+    public Long getAfterId() {
+        return afterId;
+    }
+
+    /**
+     * 向前翻页时的终点（不含），向后翻页时为null
+     */
+    public Long getBeforeId() {
+        return beforeId;
+    }
+
+    public boolean isBackward() {
+        return beforeId != null;
+    }
+
+    /**
+     * 是否为第一页（没有任何游标）
+     */
+    public boolean isFirst() {
+        return afterId == null && beforeId == null;
+    }
+
+    /**
+     * 是否为最后一页（beforeId = Long.MAX_VALUE，取最后 size 条）
+     */
+    public boolean isLast() {
+        return beforeId != null && beforeId == Long.MAX_VALUE;
+    }
+}
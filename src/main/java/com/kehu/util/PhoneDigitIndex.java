@@ -0,0 +1,370 @@
+package com.kehu.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 电话号码片段索引（内存）：按电话中的数字子串（如尾号后4-6位）查客户id，等同于 phone LIKE '%片段%'
+ *
+ * 每个客户占一个槽位，按id递增追加（二分查找定位），纯数字电话存为 long + 位数（保留前导0）；
+ * 电话中每个相邻的3位数字组合（000-999）对应一个槽位列表，查询时取片段中槽位最少的组合逐个核对。
+ * 修改电话时原地改槽位、向新增的组合追加槽位，不再包含的组合中的槽位记为失效（查询时核对过滤），
+ * 某个组合的失效槽位超过列表的一半时整理该列表，反复修改、删除不会使列表无限增长；
+ * 含非数字字符、超过18位、或id小于已有最大id的电话放在单独的表中直接比较字符串（数量很少：能识别的号码
+ * 在入库时规范化为纯数字，历史数据由 CustomerPhoneBackfillService 回填，剩下的只有无法识别的号码）。
+ *
+ * 内存约为每个客户 17 字节 + 每个3位组合 4 字节（11位手机号约 50 字节），非线程安全，由调用方加锁
+ */
+public class PhoneDigitIndex {
+
+    /** 组合的位数 */
+    public static final int GRAM = 3;
+
+    // long 最多无损存放18位数字
+    private static final int MAX_DIGITS = 18;
+
+    private static final int GRAM_COUNT = 1000;
+
+    // 失效槽位少于这个数时不整理
+    private static final int MIN_STALE_TO_COMPACT = 16;
+
+    private static final int[] NO_GRAMS = new int[0];
+
+    private static final long[] POW10 = new long[MAX_DIGITS + 1];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    private long[] ids;
+    private long[] digits;
+    // 数字位数，0 表示没有电话（或已删除、或放在 irregular 中）
+    private byte[] lengths;
+    private int size;
+
+    private final int[][] postings = new int[GRAM_COUNT][];
+    private final int[] postingSizes = new int[GRAM_COUNT];
+    // 每个组合列表中失效（电话已不包含该组合）或重复的槽位数
+    private final int[] staleCounts = new int[GRAM_COUNT];
+
+    // 不能按数字存放的电话：id → 原值
+    private final Map<Long, String> irregular = new HashMap<>();
+
+    public PhoneDigitIndex() {
+        this(1024);
+    }
+
+    /**
+     * @param expectedSize 预计的客户数（一次分配好槽位数组）
+     */
+    public PhoneDigitIndex(int expectedSize) {
+        int capacity = Math.max(16, expectedSize);
+        ids = new long[capacity];
+        digits = new long[capacity];
+        lengths = new byte[capacity];
+    }
+
+    /**
+     * 写入或修改客户的电话（phone 为null表示没有电话）
+     */
+    public void put(long id, String phone) {
+        int slot = slotOf(id);
+        if (slot < 0) {
+            if (size > 0 && id <= ids[size - 1]) {
+                // id 小于已有最大id（少见，如恢复备份后）：不插入中间，放到字符串表
+                if (phone != null) {
+                    irregular.put(id, phone);
+                } else {
+                    irregular.remove(id);
+                }
+                return;
+            }
+            slot = append(id);
+        }
+        int length = digitLength(phone);
+        if (length > 0) {
+            long value = Long.parseLong(phone);
+            if (lengths[slot] == length && digits[slot] == value) {
+                return;
+            }
+            int[] oldGrams = gramsOf(slot);
+            int[] newGrams = distinctGrams(value, length);
+            digits[slot] = value;
+            lengths[slot] = (byte) length;
+            for (int gram : oldGrams) {
+                if (!contains(newGrams, gram)) {
+                    markStale(gram);
+                }
+            }
+            for (int gram : newGrams) {
+                if (!contains(oldGrams, gram)) {
+                    addPosting(gram, slot);
+                }
+            }
+            irregular.remove(id);
+        } else {
+            clear(slot);
+            if (phone != null) {
+                irregular.put(id, phone);
+            } else {
+                irregular.remove(id);
+            }
+        }
+    }
+
+    /**
+     * 删除客户
+     */
+    public void remove(long id) {
+        int slot = slotOf(id);
+        if (slot >= 0) {
+            clear(slot);
+        }
+        irregular.remove(id);
+    }
+
+    /**
+     * 查询电话包含该片段的客户id
+     * @param fragment 电话片段（必须全部是数字）
+     * @return 按id升序、无重复的id
+     */
+    public long[] find(String fragment) {
+        int m = fragment.length();
+        if (m == 0) {
+            throw new IllegalArgumentException("电话片段不能为空");
+        }
+        LongList result = new LongList();
+        if (m <= MAX_DIGITS && isDigits(fragment)) {
+            long query = Long.parseLong(fragment);
+            if (m >= GRAM) {
+                // 取片段中槽位最少的组合，只核对这些槽位
+                int best = -1;
+                for (int i = 0; i + GRAM <= m; i++) {
+                    int gram = (int) (query / POW10[m - GRAM - i] % GRAM_COUNT);
+                    if (best < 0 || postingSizes[gram] < postingSizes[best]) {
+                        best = gram;
+                    }
+                }
+                int[] posting = postings[best];
+                for (int i = 0, n = postingSizes[best]; i < n; i++) {
+                    int slot = posting[i];
+                    if (matches(digits[slot], lengths[slot], query, m)) {
+                        result.add(ids[slot]);
+                    }
+                }
+            } else {
+                for (int slot = 0; slot < size; slot++) {
+                    if (matches(digits[slot], lengths[slot], query, m)) {
+                        result.add(ids[slot]);
+                    }
+                }
+            }
+        }
+        for (Map.Entry<Long, String> entry : irregular.entrySet()) {
+            if (entry.getValue().contains(fragment)) {
+                result.add(entry.getKey());
+            }
+        }
+        return result.toSortedUnique();
+    }
+
+    /**
+     * 槽位数（含已删除的）
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 组合列表中的槽位总数（含失效的）
+     */
+    public long postingCount() {
+        long count = 0;
+        for (int n : postingSizes) {
+            count += n;
+        }
+        return count;
+    }
+
+    /**
+     * 按字符串比较的电话数
+     */
+    public int irregularSize() {
+        return irregular.size();
+    }
+
+    /**
+     * 是否为可以按数字存放的电话：1-18位纯数字，返回位数，否则返回0
+     */
+    private static int digitLength(String phone) {
+        if (phone == null || phone.isEmpty() || phone.length() > MAX_DIGITS || !isDigits(phone)) {
+            return 0;
+        }
+        return phone.length();
+    }
+
+    private static boolean isDigits(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 长度为 length 的数字 value 中是否包含长度为 m 的数字 query（按固定位数比较，前导0有效）
+     */
+    private static boolean matches(long value, int length, long query, int m) {
+        if (length < m) {
+            return false;
+        }
+        long mod = POW10[m];
+        for (int shift = 0; shift <= length - m; shift++) {
+            if (value / POW10[shift] % mod == query) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int slotOf(long id) {
+        return Arrays.binarySearch(ids, 0, size, id);
+    }
+
+    private int append(long id) {
+        if (size == ids.length) {
+            int capacity = ids.length + (ids.length >> 1);
+            ids = Arrays.copyOf(ids, capacity);
+            digits = Arrays.copyOf(digits, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+        ids[size] = id;
+        return size++;
+    }
+
+    /**
+     * 槽位当前电话的组合（没有电话时为空）
+     */
+    private int[] gramsOf(int slot) {
+        return lengths[slot] > 0 ? distinctGrams(digits[slot], lengths[slot]) : NO_GRAMS;
+    }
+
+    /**
+     * 清空槽位的电话，原有组合中的槽位记为失效
+     */
+    private void clear(int slot) {
+        for (int gram : gramsOf(slot)) {
+            markStale(gram);
+        }
+        lengths[slot] = 0;
+    }
+
+    /**
+     * 电话中的3位组合（同一电话内重复的组合只取一次）
+     */
+    private static int[] distinctGrams(long value, int length) {
+        if (length < GRAM) {
+            return NO_GRAMS;
+        }
+        int[] grams = new int[length - GRAM + 1];
+        int count = 0;
+        for (int i = 0; i < grams.length; i++) {
+            int gram = (int) (value / POW10[i] % GRAM_COUNT);
+            if (!contains(grams, count, gram)) {
+                grams[count++] = gram;
+            }
+        }
+        return count == grams.length ? grams : Arrays.copyOf(grams, count);
+    }
+
+    private static boolean contains(int[] values, int value) {
+        return contains(values, values.length, value);
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addPosting(int gram, int slot) {
+        int[] posting = postings[gram];
+        int n = postingSizes[gram];
+        if (posting == null) {
+            posting = postings[gram] = new int[16];
+        } else if (n == posting.length) {
+            posting = postings[gram] = Arrays.copyOf(posting, n + (n >> 1));
+        }
+        posting[n] = slot;
+        postingSizes[gram] = n + 1;
+    }
+
+    /**
+     * 记一个失效槽位，超过列表的一半时整理（整理的开销分摊到每次修改上是常数级）
+     */
+    private void markStale(int gram) {
+        int stale = ++staleCounts[gram];
+        if (stale >= MIN_STALE_TO_COMPACT && stale * 2 > postingSizes[gram]) {
+            compact(gram);
+        }
+    }
+
+    /**
+     * 整理组合列表：按槽位排序，去掉电话已不包含该组合的槽位和重复的槽位
+     */
+    private void compact(int gram) {
+        int[] posting = postings[gram];
+        int n = postingSizes[gram];
+        Arrays.sort(posting, 0, n);
+        int kept = 0;
+        for (int i = 0; i < n; i++) {
+            int slot = posting[i];
+            if (kept > 0 && posting[kept - 1] == slot) {
+                continue;
+            }
+            if (lengths[slot] > 0 && contains(distinctGrams(digits[slot], lengths[slot]), gram)) {
+                posting[kept++] = slot;
+            }
+        }
+        postingSizes[gram] = kept;
+        staleCounts[gram] = 0;
+        if (posting.length > 16 && kept < posting.length / 4) {
+            postings[gram] = Arrays.copyOf(posting, Math.max(16, kept + (kept >> 1)));
+        }
+    }
+
+    /**
+     * 查询结果收集
+     */
+    private static final class LongList {
+        private long[] values = new long[64];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toSortedUnique() {
+            Arrays.sort(values, 0, size);
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (n == 0 || values[i] != values[n - 1]) {
+                    values[n++] = values[i];
+                }
+            }
+            return Arrays.copyOf(values, n);
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package com.kehu.util;
+
+/**
+ * 电话号码规范化（中国大陆手机号 / 固话）
+ * 单次遍历字符，不使用正则、不截取子串、不分配对象：
+ * 去掉空格、横线、括号等分隔符，去掉 +86 / 0086 / 86 国家码，按预先计算的号段表校验，得到规范化的 long
+ *
+ * 规范化的 long：
+ * 手机号为11位数字本身（13800138001）；固话为去掉长途前缀0后的区号+号码（010-12345678 → 1012345678）。
+ * 固话去掉0后最多11位且不会是"1开头的11位"，因此两类号码不会冲突，可以无歧义地还原成字符串
+ */
+public final class PhoneNormalizer {
+
+    /** 无效号码 */
+    public static final long INVALID = -1L;
+
+    // 最多接受的数字位数（0086 + 12位固话）
+    private static final int MAX_DIGITS = 16;
+
+    private static final long[] POW10 = new long[19];
+
+    // 手机号段表：下标为号码第2、3位（1xy 中的 xy），true 表示有效号段
+    private static final boolean[] MOBILE_PREFIX = new boolean[100];
+
+    // 固话区号长度表：下标为去掉0后的前两位，值为区号位数（不含0），0表示无效
+    private static final byte[] AREA_CODE_LENGTH = new byte[100];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+
+        int[] mobilePrefixes = {
+            30, 31, 32, 33, 34, 35, 36, 37, 38, 39,
+            40, 41, 44, 45, 46, 47, 48, 49,
+            50, 51, 52, 53, 55, 56, 57, 58, 59,
+            62, 65, 66, 67,
+            70, 71, 72, 73, 74, 75, 76, 77, 78,
+            80, 81, 82, 83, 84, 85, 86, 87, 88, 89,
+            90, 91, 92, 93, 95, 96, 97, 98, 99
+        };
+        for (int prefix : mobilePrefixes) {
+            MOBILE_PREFIX[prefix] = true;
+        }
+
+        // 010（北京）、020-029（广州、上海、天津、重庆、沈阳、南京、武汉、成都、西安）为2位区号
+        AREA_CODE_LENGTH[10] = 2;
+        for (int i = 20; i <= 29; i++) {
+            AREA_CODE_LENGTH[i] = 2;
+        }
+        // 03xx-09xx 为3位区号（第二位为0的只有新疆的090x）
+        for (int i = 31; i <= 99; i++) {
+            if (i % 10 != 0 || i == 90) {
+                AREA_CODE_LENGTH[i] = 3;
+            }
+        }
+    }
+
+    private PhoneNormalizer() {
+    }
+
+    /**
+     * 规范化电话号码
+     * @return 规范化的 long，无效时返回 {@link #INVALID}
+     */
+    public static long normalize(CharSequence phone) {
+        return phone == null ? INVALID : normalize(phone, 0, phone.length());
+    }
+
+    /**
+     * 规范化字符序列中 [from, to) 范围内的电话号码
+     * @return 规范化的 long，无效时返回 {@link #INVALID}
+     */
+    public static long normalize(CharSequence phone, int from, int to) {
+        long value = 0;
+        int digits = 0;
+        boolean plus = false;
+        for (int i = from; i < to; i++) {
+            char c = phone.charAt(i);
+            int d;
+            if (c >= '0' && c <= '9') {
+                d = c - '0';
+            } else if (c >= '\uFF10' && c <= '\uFF19') {
+                // 全角数字
+                d = c - '\uFF10';
+            } else if (isSeparator(c)) {
+                continue;
+            } else if ((c == '+' || c == '\uFF0B') && digits == 0 && !plus) {
+                plus = true;
+                continue;
+            } else {
+                return INVALID;
+            }
+            if (digits == MAX_DIGITS) {
+                return INVALID;
+            }
+            value = value * 10 + d;
+            digits++;
+        }
+        return canonicalize(value, digits, plus);
+    }
+
+    /**
+     * 规范化 UTF-8 字节数组中 [from, to) 范围内的电话号码（用于直接处理文件字节，不解码成字符串）
+     * @return 规范化的 long，无效时返回 {@link #INVALID}
+     */
+    public static long normalize(byte[] phone, int from, int to) {
+        long value = 0;
+        int digits = 0;
+        boolean plus = false;
+        for (int i = from; i < to; i++) {
+            int b = phone[i] & 0xFF;
+            int d;
+            if (b >= '0' && b <= '9') {
+                d = b - '0';
+            } else if (b == 0xEF && i + 2 < to && (phone[i + 1] & 0xFF) == 0xBC) {
+                // 全角字符 U+FF00-U+FF3F 的 UTF-8 编码为 EF BC xx
+                int b3 = phone[i + 2] & 0xFF;
+                i += 2;
+                if (b3 >= 0x90 && b3 <= 0x99) {
+                    d = b3 - 0x90;
+                } else if (b3 == 0x88 || b3 == 0x89 || b3 == 0x8D || b3 == 0x8E) {
+                    // 全角括号、横线、点
+                    continue;
+                } else if (b3 == 0x8B && digits == 0 && !plus) {
+                    plus = true;
+                    continue;
+                } else {
+                    return INVALID;
+                }
+            } else if (b == 0xE3 && i + 2 < to && (phone[i + 1] & 0xFF) == 0x80 && (phone[i + 2] & 0xFF) == 0x80) {
+                // 全角空格 U+3000
+                i += 2;
+                continue;
+            } else if (b < 0x80 && isSeparator((char) b)) {
+                continue;
+            } else if (b == '+' && digits == 0 && !plus) {
+                plus = true;
+                continue;
+            } else {
+                return INVALID;
+            }
+            if (digits == MAX_DIGITS) {
+                return INVALID;
+            }
+            value = value * 10 + d;
+            digits++;
+        }
+        return canonicalize(value, digits, plus);
+    }
+
+    /**
+     * 规范化为字符串：有效号码返回规范形式（输入已是规范形式时返回原对象，不分配新字符串），
+     * 无效号码返回去掉首尾空白的原值，空值返回null
+     */
+    public static String canonicalOrTrim(String phone) {
+        if (phone == null) {
+            return null;
+        }
+        long canonical = normalize(phone);
+        if (canonical == INVALID) {
+            String trimmed = phone.trim();
+            return trimmed.isEmpty() ? null : trimmed;
+        }
+        return format(phone, canonical);
+    }
+
+    /**
+     * 是否为有效号码
+     */
+    public static boolean isValid(CharSequence phone) {
+        return normalize(phone) != INVALID;
+    }
+
+    /**
+     * 是否为手机号（规范化的 long）
+     */
+    public static boolean isMobile(long canonical) {
+        return canonical >= POW10[10] && canonical < 2 * POW10[10];
+    }
+
+    /**
+     * 把规范化的 long 还原成字符串：手机号11位，固话带长途前缀0（如 01012345678）
+     */
+    public static String format(long canonical) {
+        if (canonical <= 0) {
+            throw new IllegalArgumentException("无效的电话号码: " + canonical);
+        }
+        return isMobile(canonical) ? Long.toString(canonical) : "0" + canonical;
+    }
+
+    /**
+     * 把规范化的 long 还原成字符串；原值已经是规范形式时直接返回原值
+     * @param original 规范化前的原值
+     * @param canonical 原值规范化的结果
+     */
+    public static String format(String original, long canonical) {
+        return isFormatted(original, canonical) ? original : format(canonical);
+    }
+
+    private static boolean isSeparator(char c) {
+        switch (c) {
+            case ' ':
+            case '\t':
+            case '-':
+            case '.':
+            case '(':
+            case ')':
+            case '/':
+            case '\u3000':
+            case '\uFF08':
+            case '\uFF09':
+            case '\uFF0D':
+            case '\uFF0E':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 输入是否已经是 format(canonical) 的形式
+     */
+    private static boolean isFormatted(String phone, long canonical) {
+        int length = decimalLength(canonical);
+        boolean mobile = isMobile(canonical);
+        int expected = mobile ? length : length + 1;
+        if (phone.length() != expected) {
+            return false;
+        }
+        int offset = 0;
+        if (!mobile) {
+            if (phone.charAt(0) != '0') {
+                return false;
+            }
+            offset = 1;
+        }
+        long value = canonical;
+        for (int i = phone.length() - 1; i >= offset; i--) {
+            if (phone.charAt(i) != (char) ('0' + value % 10)) {
+                return false;
+            }
+            value /= 10;
+        }
+        return true;
+    }
+
+    /**
+     * 国家码、长途前缀处理和号段校验
+     * @param value 累积的数字（前导0已丢失）
+     * @param digits 数字总位数（含前导0）
+     * @param plus 是否以+开头
+     */
+    private static long canonicalize(long value, int digits, boolean plus) {
+        if (value == 0) {
+            return INVALID;
+        }
+        int length = decimalLength(value);
+        int leadingZeros = digits - length;
+        boolean international = plus || leadingZeros == 2;
+        if (leadingZeros > 2 || (plus && leadingZeros > 0)) {
+            return INVALID;
+        }
+        if (!international && leadingZeros == 0 && length == 13 && value / POW10[11] == 86
+                && value / POW10[10] % 10 == 1) {
+            // 86 + 11位手机号（不带+的国际格式）
+            international = true;
+        }
+        if (international) {
+            // 去掉国家码86
+            if (length < 3 || value / POW10[length - 2] != 86) {
+                return INVALID;
+            }
+            value -= 86 * POW10[length - 2];
+            int national = length - 2;
+            length = decimalLength(value);
+            // 国家码后面允许带一个长途前缀0（+86 (0)10 12345678）
+            if (value == 0 || national - length > 1) {
+                return INVALID;
+            }
+            leadingZeros = national - length;
+            if (leadingZeros == 0 && length == 11) {
+                return checkMobile(value);
+            }
+            return checkLandline(value, length);
+        }
+        if (length == 11 && value / POW10[10] == 1) {
+            // 手机号（允许前面多写一个0）
+            return checkMobile(value);
+        }
+        if (leadingZeros != 1) {
+            return INVALID;
+        }
+        return checkLandline(value, length);
+    }
+
+    private static long checkMobile(long value) {
+        if (value / POW10[10] != 1) {
+            return INVALID;
+        }
+        return MOBILE_PREFIX[(int) (value / POW10[8] % 100)] ? value : INVALID;
+    }
+
+    /**
+     * 校验固话：区号（不含0）2-3位，号码7-8位且不以0、1开头；2位区号的号码必须是8位
+     */
+    private static long checkLandline(long value, int length) {
+        if (length < 9 || length > 11) {
+            return INVALID;
+        }
+        int areaLength = AREA_CODE_LENGTH[(int) (value / POW10[length - 2])];
+        if (areaLength == 0) {
+            return INVALID;
+        }
+        int subscriberLength = length - areaLength;
+        if (subscriberLength != 8 && (subscriberLength != 7 || areaLength == 2)) {
+            return INVALID;
+        }
+        long firstDigit = value / POW10[subscriberLength - 1] % 10;
+        return firstDigit >= 2 ? value : INVALID;
+    }
+
+    private static int decimalLength(long value) {
+        int length = 1;
+        while (length < POW10.length && value >= POW10[length]) {
+            length++;
+        }
+        return length;
+    }
+}
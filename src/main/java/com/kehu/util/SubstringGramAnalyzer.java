@@ -0,0 +1,80 @@
+package com.kehu.util;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+
+import java.io.IOException;
+
+/**
+ * 电话、邮箱的子串索引分词器：整个值转小写后按相邻三个字符切分（13800 → 138、380、800），每段位置加1；
+ * 不足三个字符的值整体作为一个词
+ *
+ * 查询时把关键词同样切分，按位置组成短语查询，效果等同于 LIKE '%xx%'；
+ * 词典中只有三字片段，不会随客户数增长，不足三个字符的关键词在片段词典中做子串匹配
+ */
+public class SubstringGramAnalyzer extends Analyzer {
+
+    /** 片段长度 */
+    public static final int GRAM_SIZE = 3;
+
+    @Override
+    protected TokenStreamComponents createComponents(String fieldName) {
+        return new TokenStreamComponents(new GramTokenizer());
+    }
+
+    /**
+     * 转小写（索引和查询用同一规则）
+     */
+    public static String normalize(String value) {
+        char[] chars = value.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    private static final class GramTokenizer extends Tokenizer {
+
+        private final CharTermAttribute term = addAttribute(CharTermAttribute.class);
+        private final OffsetAttribute offset = addAttribute(OffsetAttribute.class);
+        private final StringBuilder value = new StringBuilder();
+        private int position;
+
+        @Override
+        public boolean incrementToken() throws IOException {
+            clearAttributes();
+            int length = value.length();
+            int gramLength = Math.min(GRAM_SIZE, length);
+            if (length == 0 || position + gramLength > length) {
+                return false;
+            }
+            term.setEmpty().append(value, position, position + gramLength);
+            offset.setOffset(correctOffset(position), correctOffset(position + gramLength));
+            position++;
+            return true;
+        }
+
+        @Override
+        public void reset() throws IOException {
+            super.reset();
+            value.setLength(0);
+            char[] buffer = new char[256];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                for (int i = 0; i < read; i++) {
+                    value.append(Character.toLowerCase(buffer[i]));
+                }
+            }
+            position = 0;
+        }
+
+        @Override
+        public void end() throws IOException {
+            super.end();
+            int end = correctOffset(value.length());
+            offset.setOffset(end, end);
+        }
+    }
+}
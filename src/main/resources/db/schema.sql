@@ -31,7 +31,8 @@ CREATE TABLE IF NOT EXISTS `customers` (
   KEY `idx_name` (`name`),
   KEY `idx_phone` (`phone`),
   KEY `idx_email` (`email`),
-  KEY `idx_create_time` (`create_time`)
+  KEY `idx_create_time_id` (`create_time`, `id`),
+  KEY `idx_upload_task_id_id` (`upload_task_id`, `id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='客户信息表';
 
 -- 创建用户表
@@ -46,6 +47,13 @@ CREATE TABLE IF NOT EXISTS `users` (
   UNIQUE KEY `uk_username` (`username`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='用户表';
 
+-- 已有数据库升级：为按上传任务回滚导入添加索引
+-- ALTER TABLE `customers` ADD KEY `idx_upload_task_id` (`upload_task_id`);
+
+-- 已有数据库升级：高级搜索按任务、创建时间过滤并按id分页，替换为带id的复合索引
+-- ALTER TABLE `customers` ADD KEY `idx_upload_task_id_id` (`upload_task_id`, `id`), ADD KEY `idx_create_time_id` (`create_time`, `id`);
+-- ALTER TABLE `customers` DROP KEY `idx_upload_task_id`, DROP KEY `idx_create_time`;
+
 -- 创建备注表（可选，用于存储客户备注信息）
 CREATE TABLE IF NOT EXISTS `customer_remarks` (
   `id` BIGINT(20) NOT NULL AUTO_INCREMENT COMMENT '备注ID',
@@ -65,6 +73,11 @@ CREATE TABLE IF NOT EXISTS `upload_tasks` (
   `total_count` INT(11) NOT NULL DEFAULT 0 COMMENT '总数目',
   `added_count` INT(11) NOT NULL DEFAULT 0 COMMENT '添加数目',
   `existing_count` INT(11) NOT NULL DEFAULT 0 COMMENT '存在数目',
+  `updated_count` INT(11) DEFAULT 0 COMMENT '更新数目（合并模式）',
+  `unchanged_count` INT(11) DEFAULT 0 COMMENT '未变化数目（合并模式）',
+  `import_mode` VARCHAR(20) DEFAULT 'SKIP' COMMENT '导入模式：SKIP、MERGE',
+  `rejected_count` INT(11) DEFAULT 0 COMMENT '被拒绝行数（错误+重复）',
+  `reverted_count` INT(11) DEFAULT 0 COMMENT '回滚导入已删除数目',
   `status` VARCHAR(50) DEFAULT '处理中' COMMENT '状态：处理中、添加完成、处理失败',
   `upload_time` DATETIME NOT NULL COMMENT '上传时间',
   `complete_time` DATETIME DEFAULT NULL COMMENT '完成时间',
@@ -72,4 +85,39 @@ CREATE TABLE IF NOT EXISTS `upload_tasks` (
   PRIMARY KEY (`id`),
   KEY `idx_upload_time` (`upload_time`),
   KEY `idx_status` (`status`)
-) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='上传任务表';
\ No newline at end of file
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='上传任务表';
+
+-- 已有数据库升级：导入模式（跳过/合并）及合并模式的统计列
+-- ALTER TABLE `upload_tasks` ADD COLUMN `updated_count` INT(11) DEFAULT 0 COMMENT '更新数目（合并模式）' AFTER `existing_count`, ADD COLUMN `unchanged_count` INT(11) DEFAULT 0 COMMENT '未变化数目（合并模式）' AFTER `updated_count`, ADD COLUMN `import_mode` VARCHAR(20) DEFAULT 'SKIP' COMMENT '导入模式：SKIP、MERGE' AFTER `unchanged_count`;
+
+-- 已有数据库升级：拒绝行文件的行数
+-- ALTER TABLE `upload_tasks` ADD COLUMN `rejected_count` INT(11) DEFAULT 0 COMMENT '被拒绝行数（错误+重复）' AFTER `import_mode`;
+
+-- 已有数据库升级：回滚导入已删除的客户数
+-- ALTER TABLE `upload_tasks` ADD COLUMN `reverted_count` INT(11) DEFAULT 0 COMMENT '回滚导入已删除数目' AFTER `rejected_count`;
+
+-- 创建导入批次耗时统计表（每个入库批次一行，由异步写入线程批量写入）
+CREATE TABLE IF NOT EXISTS `import_batch_stats` (
+  `id` BIGINT(20) NOT NULL AUTO_INCREMENT COMMENT '统计ID',
+  `upload_task_id` BIGINT(20) NOT NULL COMMENT '上传任务ID',
+  `batch_no` INT(11) NOT NULL COMMENT '批次序号',
+  `import_mode` VARCHAR(20) DEFAULT NULL COMMENT '导入模式：SKIP、MERGE',
+  `row_count` INT(11) NOT NULL DEFAULT 0 COMMENT '批次行数',
+  `success_count` INT(11) DEFAULT 0 COMMENT '新增数目',
+  `skip_count` INT(11) DEFAULT 0 COMMENT '跳过数目',
+  `updated_count` INT(11) DEFAULT 0 COMMENT '更新数目',
+  `unchanged_count` INT(11) DEFAULT 0 COMMENT '未变化数目',
+  `error_count` INT(11) DEFAULT 0 COMMENT '错误数目',
+  `bytes` BIGINT(20) DEFAULT 0 COMMENT '批次原始数据字节数',
+  `parse_ms` BIGINT(20) DEFAULT 0 COMMENT '解析耗时（毫秒）',
+  `lookup_ms` BIGINT(20) DEFAULT 0 COMMENT '查重耗时（毫秒）',
+  `insert_ms` BIGINT(20) DEFAULT 0 COMMENT '写入耗时（毫秒）',
+  `commit_ms` BIGINT(20) DEFAULT 0 COMMENT '提交耗时（毫秒）',
+  `total_ms` BIGINT(20) DEFAULT 0 COMMENT '批次总耗时（毫秒）',
+  `start_time` DATETIME NOT NULL COMMENT '批次开始时间',
+  PRIMARY KEY (`id`),
+  KEY `idx_task_batch` (`upload_task_id`, `batch_no`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='导入批次耗时统计表';
+
+-- 已有数据库升级：操作日志按操作类型查询、按操作类型清理过期日志，idx_operation 替换为带操作时间的复合索引
+-- ALTER TABLE `operation_logs` ADD KEY `idx_operation_time_op` (`operation`, `operation_time`), DROP KEY `idx_operation`;
@@ -6,6 +6,12 @@ var currentPage = 0;
 var pageSize = 20;
 var totalPages = 0;
 var totalElements = 0;
+var totalLabel = '0'; // 总数显示文本（估算值为"约 N"）
+var hasNextPage = false; // 是否有下一页（搜索接口多取一条判断，不依赖总数）
+var countQuery = null; // 当前总数对应的搜索条件
+var countTimer = null;
+var snapshotToken = null; // 固定结果的快照令牌（翻页时只按id取本页）
+var snapshotQuery = null; // 快照对应的搜索条件
 
 // 搜索条件
 var searchParams = {};
@@ -19,28 +25,27 @@ document.addEventListener('DOMContentLoaded', function() {
 function doAdvancedSearch(page = 0) {
     currentPage = page;
     
-    // 收集搜索条件
-    const name = document.getElementById('name').value.trim();
-    const phone = document.getElementById('phone').value.trim();
-    const email = document.getElementById('email').value.trim();
-    const address = document.getElementById('address').value.trim();
-    const startTime = document.getElementById('startTime').value;
-    const endTime = document.getElementById('endTime').value;
-    
-    // 构建查询参数
-    let url = API_BASE_URL + '/advanced-search?page=' + currentPage + '&size=' + pageSize;
-    if (name) url += '&name=' + encodeURIComponent(name);
-    if (phone) url += '&phone=' + encodeURIComponent(phone);
-    if (email) url += '&email=' + encodeURIComponent(email);
-    if (address) url += '&address=' + encodeURIComponent(address);
-    if (startTime) {
-        // 将datetime-local格式转换为ISO格式
-        const isoStartTime = new Date(startTime).toISOString();
-        url += '&startTime=' + encodeURIComponent(isoStartTime);
+    const query = buildSearchQuery();
+    const materialize = document.getElementById('materialize').checked;
+    let url = API_BASE_URL + '/advanced-search?page=' + currentPage + '&size=' + pageSize + query;
+    if (!materialize || query !== snapshotQuery) {
+        snapshotToken = null;
     }
-    if (endTime) {
-        const isoEndTime = new Date(endTime).toISOString();
-        url += '&endTime=' + encodeURIComponent(isoEndTime);
+    if (snapshotToken) {
+        url = API_BASE_URL + '/advanced-search/snapshots/' + snapshotToken + '?page=' + currentPage + '&size=' + pageSize;
+    } else if (materialize) {
+        url += '&materialize=true';
+    }
+    
+    // 搜索接口不返回总数，条件变化时单独获取（固定结果时随结果返回精确总数）
+    if (materialize) {
+        countQuery = null;
+    } else if (query !== countQuery) {
+        countQuery = query;
+        totalElements = 0;
+        totalPages = 0;
+        totalLabel = '...';
+        loadSearchCount(query, 0);
     }
     
     const loading = document.getElementById('loading');
@@ -65,12 +70,19 @@ function doAdvancedSearch(page = 0) {
                     const response = JSON.parse(xhr.responseText);
                     if (response.success) {
                         const data = response.data || [];
+                        if (response.snapshot) {
+                            snapshotToken = response.snapshot;
+                            snapshotQuery = query;
+                            totalElements = response.total;
+                            totalLabel = response.totalLabel;
+                            totalPages = Math.ceil(totalElements / pageSize);
+                        }
                         displayResults(data);
-                        totalPages = response.totalPages || 0;
-                        totalElements = response.total || 0;
+                        hasNextPage = response.hasNext === true;
                         updatePaginationInfo();
                         table.style.display = 'block';
-                        showMessage('搜索成功，共找到 ' + totalElements + ' 条记录', 'success');
+                        showMessage(data.length > 0 || currentPage === 0 ? '搜索成功' : '当前页没有数据，请返回首页',
+                            data.length > 0 || currentPage === 0 ? 'success' : 'error');
                     } else {
                         showMessage('搜索失败: ' + response.message, 'error');
                     }
@@ -78,6 +90,10 @@ function doAdvancedSearch(page = 0) {
                     showMessage('解析响应数据失败: ' + e.message, 'error');
                     console.error('解析错误:', e);
                 }
+            } else if (xhr.status === 404 && snapshotToken) {
+                // 快照已过期，重新搜索
+                snapshotToken = null;
+                doAdvancedSearch(currentPage);
             } else if (xhr.status === 401) {
                 showMessage('未登录或登录已过期，请重新登录', 'error');
                 setTimeout(function() {
@@ -97,6 +113,73 @@ function doAdvancedSearch(page = 0) {
     xhr.send();
 }
 
+// 根据表单构建搜索条件参数（以 & 开头）
+function buildSearchQuery() {
+    // 收集搜索条件
+    const name = document.getElementById('name').value.trim();
+    const phone = document.getElementById('phone').value.trim();
+    const email = document.getElementById('email').value.trim();
+    const address = document.getElementById('address').value.trim();
+    const startTime = document.getElementById('startTime').value;
+    const endTime = document.getElementById('endTime').value;
+    const startsWith = document.getElementById('startsWith').checked;
+    
+    // 构建查询参数
+    let query = '';
+    if (name) query += '&name=' + encodeURIComponent(name);
+    if (phone) query += '&phone=' + encodeURIComponent(phone);
+    if (email) query += '&email=' + encodeURIComponent(email);
+    if (address) query += '&address=' + encodeURIComponent(address);
+    if (startTime) {
+        // 将datetime-local格式转换为ISO格式
+        const isoStartTime = new Date(startTime).toISOString();
+        query += '&startTime=' + encodeURIComponent(isoStartTime);
+    }
+    if (endTime) {
+        const isoEndTime = new Date(endTime).toISOString();
+        query += '&endTime=' + encodeURIComponent(isoEndTime);
+    }
+    if (startsWith) query += '&startsWith=true';
+    return query;
+}
+
+// 获取搜索结果总数：先返回估算值（显示为"约 N"），精确值在后台统计完成后自动刷新（最多重试10次）
+function loadSearchCount(query, retry) {
+    if (countTimer) {
+        clearTimeout(countTimer);
+        countTimer = null;
+    }
+    const xhr = new XMLHttpRequest();
+    xhr.open('GET', API_BASE_URL + '/advanced-search/count?' + query.substring(1), true);
+    xhr.withCredentials = true;
+    xhr.onreadystatechange = function() {
+        if (xhr.readyState === 4 && xhr.status === 200 && query === countQuery) {
+            try {
+                const response = JSON.parse(xhr.responseText);
+                if (response.success) {
+                    totalElements = response.total || 0;
+                    totalLabel = response.totalLabel || String(totalElements);
+                    totalPages = Math.ceil(totalElements / pageSize);
+                    updatePaginationInfo();
+                    if (response.totalExact === false && retry < 10) {
+                        countTimer = setTimeout(function() {
+                            loadSearchCount(query, retry + 1);
+                        }, 2000);
+                    }
+                }
+            } catch (e) {
+                console.error('解析总数失败:', e);
+            }
+        }
+    };
+    xhr.send();
+}
+
+// 当前页显示的结果行数
+function currentRowCount() {
+    return document.querySelectorAll('#resultTableBody tr[data-row]').length;
+}
+
 // 显示搜索结果
 function displayResults(customers) {
     const tableBody = document.getElementById('resultTableBody');
@@ -109,6 +192,7 @@ function displayResults(customers) {
     
     customers.forEach(function(customer) {
         const row = document.createElement('tr');
+        row.setAttribute('data-row', '1');
         row.innerHTML = `
             <td>${customer.id || ''}</td>
             <td>${escapeHtml(customer.name || '')}</td>
@@ -126,6 +210,129 @@ function displayResults(customers) {
     });
 }
 
+// 导出当前搜索条件下的所有结果（边查询边下载）
+function exportCustomers(format) {
+    window.location.href = API_BASE_URL + '/export?format=' + format + buildSearchQuery();
+}
+
+// 后台导出：提交任务后轮询状态，完成后自动下载
+function startExportJob(format) {
+    const xhr = new XMLHttpRequest();
+    xhr.open('POST', API_BASE_URL + '/export/jobs?format=' + format + buildSearchQuery(), true);
+    xhr.withCredentials = true;
+    xhr.onreadystatechange = function() {
+        if (xhr.readyState === 4) {
+            try {
+                const response = JSON.parse(xhr.responseText);
+                if (response.success) {
+                    showMessage('已开始后台导出，完成后自动下载', 'success');
+                    pollExportJob(response.data.id);
+                } else {
+                    showMessage('导出失败: ' + response.message, 'error');
+                }
+            } catch (e) {
+                showMessage('导出失败，状态码: ' + xhr.status, 'error');
+            }
+        }
+    };
+    xhr.send();
+}
+
+function pollExportJob(jobId) {
+    const xhr = new XMLHttpRequest();
+    xhr.open('GET', API_BASE_URL + '/export/jobs/' + jobId, true);
+    xhr.withCredentials = true;
+    xhr.onreadystatechange = function() {
+        if (xhr.readyState === 4 && xhr.status === 200) {
+            const job = JSON.parse(xhr.responseText).data;
+            if (job.status === '导出完成') {
+                showMessage('导出完成，共 ' + job.rows + ' 条', 'success');
+                window.location.href = API_BASE_URL + '/export/jobs/' + jobId + '/file';
+            } else if (job.status === '导出失败') {
+                showMessage('导出失败: ' + (job.error || ''), 'error');
+            } else {
+                setTimeout(function() {
+                    pollExportJob(jobId);
+                }, 2000);
+            }
+        }
+    };
+    xhr.send();
+}
+
+// 按条件删除（仅管理员）：后台按主键分段删除，轮询进度，可取消
+var purgeJobId = null;
+
+function startPurgeJob() {
+    const query = buildSearchQuery();
+    if (!query) {
+        showMessage('请至少指定一个删除条件', 'error');
+        return;
+    }
+    if (!confirm('确定要删除所有符合当前条件的客户吗？此操作不可恢复！')) {
+        return;
+    }
+    const xhr = new XMLHttpRequest();
+    xhr.open('POST', API_BASE_URL + '/purge/jobs?' + query.substring(1), true);
+    xhr.withCredentials = true;
+    xhr.onreadystatechange = function() {
+        if (xhr.readyState === 4) {
+            try {
+                const response = JSON.parse(xhr.responseText);
+                if (response.success) {
+                    purgeJobId = response.data.id;
+                    document.getElementById('cancelPurgeBtn').style.display = '';
+                    showMessage('已开始按条件删除，预计 ' + response.data.estimatedTotal + ' 条', 'success');
+                    pollPurgeJob(purgeJobId);
+                } else {
+                    showMessage('删除失败: ' + response.message, 'error');
+                }
+            } catch (e) {
+                showMessage('删除失败，状态码: ' + xhr.status, 'error');
+            }
+        }
+    };
+    xhr.send();
+}
+
+function pollPurgeJob(jobId) {
+    const xhr = new XMLHttpRequest();
+    xhr.open('GET', API_BASE_URL + '/purge/jobs/' + jobId, true);
+    xhr.withCredentials = true;
+    xhr.onreadystatechange = function() {
+        if (xhr.readyState === 4 && xhr.status === 200) {
+            const job = JSON.parse(xhr.responseText).data;
+            if (job.status === '删除中') {
+                showMessage('正在删除... 已删除 ' + job.deletedCount + ' / 预计 ' + job.estimatedTotal + ' 条', 'success');
+                setTimeout(function() {
+                    pollPurgeJob(jobId);
+                }, 2000);
+                return;
+            }
+            purgeJobId = null;
+            document.getElementById('cancelPurgeBtn').style.display = 'none';
+            if (job.status === '删除失败') {
+                showMessage('删除失败: ' + (job.error || '') + '，已删除 ' + job.deletedCount + ' 条', 'error');
+            } else {
+                showMessage(job.status + '，共删除 ' + job.deletedCount + ' 条', 'success');
+            }
+            snapshotToken = null;
+            doAdvancedSearch(0);
+        }
+    };
+    xhr.send();
+}
+
+function cancelPurgeJob() {
+    if (!purgeJobId) {
+        return;
+    }
+    const xhr = new XMLHttpRequest();
+    xhr.open('POST', API_BASE_URL + '/purge/jobs/' + purgeJobId + '/cancel', true);
+    xhr.withCredentials = true;
+    xhr.send();
+}
+
 // 清空表单
 function clearForm() {
     document.getElementById('name').value = '';
@@ -134,6 +341,7 @@ function clearForm() {
     document.getElementById('address').value = '';
     document.getElementById('startTime').value = '';
     document.getElementById('endTime').value = '';
+    document.getElementById('startsWith').checked = false;
 }
 
 // 更新分页信息
@@ -146,13 +354,14 @@ function updatePaginationInfo() {
     const lastBtn = document.getElementById('lastBtn');
     
     if (paginationInfo) {
-        const start = totalElements > 0 ? currentPage * pageSize + 1 : 0;
-        const end = Math.min((currentPage + 1) * pageSize, totalElements);
-        paginationInfo.textContent = `显示第 ${start}-${end} 条，共 ${totalElements} 条记录`;
+        const rows = currentRowCount();
+        const start = rows > 0 ? currentPage * pageSize + 1 : 0;
+        const end = currentPage * pageSize + rows;
+        paginationInfo.textContent = `显示第 ${start}-${end} 条，共 ${totalLabel} 条记录`;
     }
     
     if (pageInfo) {
-        pageInfo.textContent = `第 ${currentPage + 1} 页 / 共 ${totalPages || 1} 页`;
+        pageInfo.textContent = `第 ${currentPage + 1} 页 / 共 ${Math.max(totalPages, currentPage + 1)} 页`;
     }
     
     if (firstBtn) {
@@ -168,15 +377,15 @@ function updatePaginationInfo() {
     }
     
     if (nextBtn) {
-        nextBtn.disabled = currentPage >= totalPages - 1;
-        nextBtn.style.opacity = currentPage >= totalPages - 1 ? '0.5' : '1';
-        nextBtn.style.cursor = currentPage >= totalPages - 1 ? 'not-allowed' : 'pointer';
+        nextBtn.disabled = !hasNextPage;
+        nextBtn.style.opacity = !hasNextPage ? '0.5' : '1';
+        nextBtn.style.cursor = !hasNextPage ? 'not-allowed' : 'pointer';
     }
     
     if (lastBtn) {
-        lastBtn.disabled = currentPage >= totalPages - 1;
-        lastBtn.style.opacity = currentPage >= totalPages - 1 ? '0.5' : '1';
-        lastBtn.style.cursor = currentPage >= totalPages - 1 ? 'not-allowed' : 'pointer';
+        lastBtn.disabled = !hasNextPage;
+        lastBtn.style.opacity = !hasNextPage ? '0.5' : '1';
+        lastBtn.style.cursor = !hasNextPage ? 'not-allowed' : 'pointer';
     }
 }
 
@@ -196,15 +405,16 @@ function previousPage() {
 
 // 下一页
 function nextPage() {
-    if (currentPage < totalPages - 1) {
+    if (hasNextPage) {
         doAdvancedSearch(currentPage + 1);
     }
 }
 
 // 最后一页
 function lastPage() {
-    if (totalPages > 0 && currentPage < totalPages - 1) {
-        doAdvancedSearch(totalPages - 1);
+    // 总数为估算值时最后一页的页码也是估算的
+    if (hasNextPage) {
+        doAdvancedSearch(Math.max(totalPages - 1, currentPage + 1));
     }
 }
 
@@ -213,6 +423,7 @@ function changePageSize() {
     const sizeSelect = document.getElementById('pageSizeSelect');
     if (sizeSelect) {
         pageSize = parseInt(sizeSelect.value);
+        totalPages = Math.ceil(totalElements / pageSize);
         doAdvancedSearch(0);
     }
 }
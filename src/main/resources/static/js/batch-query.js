@@ -24,7 +24,162 @@ function batchQuery() {
         return;
     }
     
-    // 解析输入数据
+    // 按文件批量查询（后台任务）
+function startBatchQueryJob() {
+    const fileInput = document.getElementById('queryFile');
+    const fileBtn = document.getElementById('queryFileBtn');
+    const fileStatus = document.getElementById('queryFileStatus');
+    
+    if (!fileInput.files || fileInput.files.length === 0) {
+        alert('请选择要查询的文件');
+        return;
+    }
+    
+    const formData = new FormData();
+    formData.append('file', fileInput.files[0]);
+    
+    fileBtn.disabled = true;
+    fileStatus.textContent = '正在上传...';
+    
+    const xhr = new XMLHttpRequest();
+    xhr.open('POST', BATCH_QUERY_API + '/jobs', true);
+    xhr.withCredentials = true;
+    xhr.onreadystatechange = function() {
+        if (xhr.readyState === 4) {
+            try {
+                const response = JSON.parse(xhr.responseText);
+                if (response.success) {
+                    fileStatus.textContent = '正在查询...';
+                    pollBatchQueryJob(response.data.id);
+                    return;
+                }
+                fileStatus.textContent = '查询失败: ' + response.message;
+            } catch (e) {
+                fileStatus.textContent = '查询失败，状态码: ' + xhr.status;
+            }
+            fileBtn.disabled = false;
+        }
+    };
+    xhr.send(formData);
+}
+
+function pollBatchQueryJob(jobId) {
+    const fileBtn = document.getElementById('queryFileBtn');
+    const fileStatus = document.getElementById('queryFileStatus');
+    const xhr = new XMLHttpRequest();
+    xhr.open('GET', BATCH_QUERY_API + '/jobs/' + jobId, true);
+    xhr.withCredentials = true;
+    xhr.onreadystatechange = function() {
+        if (xhr.readyState === 4) {
+            if (xhr.status !== 200) {
+                fileStatus.textContent = '查询任务不存在或已过期';
+                fileBtn.disabled = false;
+                return;
+            }
+            const job = JSON.parse(xhr.responseText).data;
+            if (job.status === '查询完成') {
+                fileStatus.textContent = `查询完成: ${job.totalCount}条 匹配: ${job.matchedCount}条`;
+                fileBtn.disabled = false;
+                window.location.href = BATCH_QUERY_API + '/jobs/' + jobId + '/file';
+            } else if (job.status === '查询失败') {
+                fileStatus.textContent = '查询失败: ' + (job.error || '');
+                fileBtn.disabled = false;
+            } else {
+                fileStatus.textContent = `正在查询... 已查询: ${job.totalCount}条 匹配: ${job.matchedCount}条`;
+                setTimeout(function() {
+                    pollBatchQueryJob(jobId);
+                }, 2000);
+            }
+        }
+    };
+    xhr.send();
+}
+
+// 解析输入数据
+    const queryItems = parseQueryInput(inputText);
+    
+    if (queryItems.length === 0) {
+        alert('没有有效的查询数据');
+        return;
+    }
+    
+    // 禁用按钮
+    queryBtn.disabled = true;
+    queryBtn.textContent = '查询中...';
+    queryStatus.textContent = '正在查询...';
+    resultTableBody.innerHTML = '<tr><td colspan="6" style="text-align: center; padding: 20px;">正在查询...</td></tr>';
+    
+    queryStartTime = Date.now();
+    queryResults = [];
+    
+    // 流式批量查询：请求体每行一个查询项，服务端每匹配完一批就输出一批结果（每行一个）
+    const body = queryItems.map(function(item) { return JSON.stringify(item); }).join('\n');
+    var matchedCount = 0;
+    var pending = '';
+    var failure = null;
+    
+    function handleLine(line) {
+        if (!line) return;
+        const result = JSON.parse(line);
+        if (result.success === false) {
+            failure = result.message;
+            return;
+        }
+        queryResults.push(result);
+        if (result.matched) {
+            matchedCount++;
+        }
+    }
+    
+    function finish() {
+        queryBtn.disabled = false;
+        queryBtn.textContent = '按照列表信息查询';
+    }
+    
+    fetch(BATCH_QUERY_API + '/stream', {
+        method: 'POST',
+        headers: { 'Content-Type': 'application/x-ndjson' },
+        credentials: 'include',
+        body: body
+    }).then(function(response) {
+        if (!response.ok) {
+            throw new Error('状态码: ' + response.status);
+        }
+        const reader = response.body.getReader();
+        const decoder = new TextDecoder('utf-8');
+        function read() {
+            return reader.read().then(function(chunk) {
+                if (chunk.done) {
+                    handleLine(pending.trim());
+                    return;
+                }
+                pending += decoder.decode(chunk.value, { stream: true });
+                const lines = pending.split('\n');
+                pending = lines.pop();
+                lines.forEach(handleLine);
+                queryStatus.textContent = '正在查询... ' + queryResults.length + '/' + queryItems.length;
+                return read();
+            });
+        }
+        return read();
+    }).then(function() {
+        finish();
+        if (failure) {
+            alert('查询失败: ' + failure);
+            resultTableBody.innerHTML = '<tr><td colspan="6" class="no-result">查询失败</td></tr>';
+            return;
+        }
+        const elapsedTime = ((Date.now() - queryStartTime) / 1000).toFixed(2);
+        queryStatus.textContent = `查询结果: ${queryResults.length}条 匹配: ${matchedCount}条 耗时: ${elapsedTime}秒`;
+        displayQueryResults(queryResults);
+    }).catch(function(e) {
+        finish();
+        alert('查询失败，' + e.message);
+        resultTableBody.innerHTML = '<tr><td colspan="6" class="no-result">查询失败</td></tr>';
+    });
+}
+
+// 解析输入数据
     const queryItems = parseQueryInput(inputText);
     
     if (queryItems.length === 0) {
@@ -16,6 +16,31 @@ let currentUploadChunkXHRs = []; // 当前分块上传的所有XHR对象
 let isUploadCancelled = false; // 上传是否已取消
 let currentChunkUploadId = null; // 当前分块上传的ID（用于清理服务器临时文件）
 
+// 获取导入模式（SKIP：跳过已存在电话；MERGE：按列规则更新已存在客户）
+function getImportOptions() {
+    const modeSelect = document.getElementById('importMode');
+    const mode = modeSelect ? modeSelect.value : 'SKIP';
+    const rules = [];
+    if (mode === 'MERGE') {
+        ['name', 'email', 'address'].forEach(function(column) {
+            const ruleSelect = document.getElementById('mergeRule_' + column);
+            if (ruleSelect) {
+                rules.push(column + ':' + ruleSelect.value);
+            }
+        });
+    }
+    return { mode: mode, mergeRules: rules.join(',') };
+}
+
+// 切换导入模式时显示/隐藏合并规则
+function onImportModeChange() {
+    const options = getImportOptions();
+    const rulesEl = document.getElementById('mergeRulesSection');
+    if (rulesEl) {
+        rulesEl.style.display = options.mode === 'MERGE' ? 'block' : 'none';
+    }
+}
+
 // 检查导入权限（只有管理员可以导入）
 function checkImportPermission() {
     // 先初始化页面功能，让页面可以正常显示和使用
@@ -200,6 +225,9 @@ async function importData() {
         // 直接上传文件并处理（一步完成，后台异步处理）
         const formData = new FormData();
         formData.append('file', selectedFile);
+        const importOptions = getImportOptions();
+        formData.append('mode', importOptions.mode);
+        formData.append('mergeRules', importOptions.mergeRules);
         
     const xhr = new XMLHttpRequest();
     xhr.open('POST', IMPORT_API, true);
@@ -808,9 +836,12 @@ function mergeChunksAndProcess(uploadId, fileName) {
         // 保存XHR对象以便取消
         currentUploadXHR = xhr;
         
+        const importOptions = getImportOptions();
         const data = JSON.stringify({
             uploadId: uploadId,
-            fileName: fileName
+            fileName: fileName,
+            mode: importOptions.mode,
+            mergeRules: importOptions.mergeRules
         });
         
         xhr.onreadystatechange = function() {
@@ -1279,6 +1310,9 @@ function uploadSingleFileForSplit(file, fileIndex, totalFiles) {
     // 创建FormData
     const formData = new FormData();
         formData.append('file', file);
+        const importOptions = getImportOptions();
+        formData.append('mode', importOptions.mode);
+        formData.append('mergeRules', importOptions.mergeRules);
         
         // 发送请求
         const xhr = new XMLHttpRequest();
@@ -1387,6 +1421,9 @@ function uploadSingleFile(file, isSplitFile = false, waitForProcessing = true) {
         // 创建FormData
         const formData = new FormData();
         formData.append('file', file);
+        const importOptions = getImportOptions();
+        formData.append('mode', importOptions.mode);
+        formData.append('mergeRules', importOptions.mergeRules);
     
     // 发送请求
     const xhr = new XMLHttpRequest();
@@ -1673,6 +1710,10 @@ function displayImportResult(response) {
     successCount.textContent = success;
     errorCount.textContent = error;
     skipCount.textContent = skip;
+    // 合并模式：已存在的数据中区分更新和无变化
+    if (response.updatedCount || response.unchangedCount) {
+        skipCount.textContent = skip + '（更新 ' + (response.updatedCount || 0) + '，无变化 ' + (response.unchangedCount || 0) + '）';
+    }
     
     // 显示错误列表
     if (errors.length > 0) {
@@ -2005,6 +2046,8 @@ function showTaskComplete(task) {
         successCount: task.addedCount || 0,
         errorCount: task.errorCount || 0,
         skipCount: task.existingCount || 0,
+        updatedCount: task.updatedCount || 0,
+        unchangedCount: task.unchangedCount || 0,
         taskId: task.id,
         message: `任务完成：${task.status}`
     });
@@ -2037,6 +2080,9 @@ function uploadFileToServer(file) {
     return new Promise((resolve, reject) => {
         const formData = new FormData();
         formData.append('file', file);
+        const importOptions = getImportOptions();
+        formData.append('mode', importOptions.mode);
+        formData.append('mergeRules', importOptions.mergeRules);
         
         const xhr = new XMLHttpRequest();
         xhr.open('POST', UPLOAD_FILE_API, true);
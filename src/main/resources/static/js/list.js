@@ -6,7 +6,13 @@ var currentPage = 0;
 var pageSize = 20;
 var totalPages = 0;
 var totalElements = 0;
+var totalLabel = '0'; // 总数显示文本（估算值为"约 N"）
+var hasNextPage = false; // 是否有下一页（分页接口多取一条判断，不依赖总数）
 var searchKeyword = ''; // 搜索关键词
+var nextCursor = null; // 下一页游标（键集分页）
+var prevCursor = null; // 上一页游标（键集分页）
+// 最后一页：取id最大的一页（beforeId为Long最大值）
+const LAST_PAGE_QUERY = 'beforeId=9223372036854775807';
 
 // 页面加载时自动加载客户列表
 document.addEventListener('DOMContentLoaded', function() {
@@ -45,10 +51,28 @@ window.addEventListener('beforeunload', function() {
     stopTodayCountRefresh();
 });
 
-// 加载客户总数
-function loadTotalCount() {
+// 总数为估算值时，等待后台精确统计后重新获取的次数
+var totalCountRetry = 0;
+const MAX_TOTAL_COUNT_RETRY = 10;
+var totalCountTimer = null;
+
+// 加载客户总数（有搜索关键词时为搜索结果总数）
+// 分页接口不再返回总数；总数先返回估算值（显示为"约 N"），精确值在后台统计完成后自动刷新
+function loadTotalCount(isRetry) {
+    if (!isRetry) {
+        totalCountRetry = 0;
+    }
+    if (totalCountTimer) {
+        clearTimeout(totalCountTimer);
+        totalCountTimer = null;
+    }
+    var url = API_BASE_URL + '/count';
+    if (typeof searchKeyword !== 'undefined' && searchKeyword) {
+        url = API_BASE_URL + '/search/count?keyword=' + encodeURIComponent(searchKeyword);
+    }
+    const keyword = searchKeyword;
     const xhr = new XMLHttpRequest();
-    xhr.open('GET', API_BASE_URL + '/count', true);
+    xhr.open('GET', url, true);
     xhr.setRequestHeader('Content-Type', 'application/json');
     xhr.timeout = 5000; // 设置5秒超时
     
@@ -57,9 +81,18 @@ function loadTotalCount() {
             if (xhr.status === 200) {
                 try {
                     const response = JSON.parse(xhr.responseText);
-                    if (response.success) {
+                    if (response.success && keyword === searchKeyword) {
                         totalElements = response.total || 0;
+                        totalLabel = response.totalLabel || String(totalElements);
+                        totalPages = Math.ceil(totalElements / pageSize);
                         updatePaginationInfo();
+                        updateStats();
+                        if (response.totalExact === false && totalCountRetry < MAX_TOTAL_COUNT_RETRY) {
+                            totalCountRetry++;
+                            totalCountTimer = setTimeout(function() {
+                                loadTotalCount(true);
+                            }, 2000);
+                        }
                     }
                 } catch (e) {
                     console.error('解析总数失败:', e);
@@ -83,9 +116,14 @@ function loadTotalCount() {
 }
 
 // 加载客户列表（分页）
-function loadCustomers(page = 0, size = 20) {
+// cursorQuery: 键集分页参数（如 'cursor=xxx'），上一页/下一页/首页/末页都按id范围定位；
+// 只有跳转到指定页时不传，使用页码分页
+function loadCustomers(page = 0, size = 20, cursorQuery) {
     currentPage = page;
     pageSize = size;
+    if (cursorQuery === undefined && page === 0) {
+        cursorQuery = 'cursor=';
+    }
     
     const loading = document.getElementById('loading');
     const table = document.getElementById('customerTable');
@@ -103,6 +141,9 @@ function loadCustomers(page = 0, size = 20) {
         // 如果有搜索关键词，使用搜索接口（需要后端支持）
         url = API_BASE_URL + '/search?keyword=' + encodeURIComponent(searchKeyword) + '&page=' + page + '&size=' + size;
     }
+    if (cursorQuery !== undefined) {
+        url += '&' + cursorQuery;
+    }
     
     const xhr = new XMLHttpRequest();
     xhr.open('GET', url, true);
@@ -124,17 +165,20 @@ function loadCustomers(page = 0, size = 20) {
                         const data = response.data || [];
                         // 不输出敏感数据到控制台
                         
+                        // 键集分页返回前后游标；是否有下一页由接口判断，总数单独获取
+                        nextCursor = response.nextCursor || null;
+                        prevCursor = response.prevCursor || null;
+                        hasNextPage = response.hasNext === true;
+                        
                         if (data.length > 0) {
                             displayCustomers(data);
-                            totalPages = response.totalPages || 0;
-                            totalElements = response.total || 0;
                             updatePaginationInfo();
                             updateStats();
                             table.style.display = 'block';
-                            showMessage('加载成功，共 ' + totalElements + ' 条记录', 'success');
-                        } else if (response.total > 0) {
-                            // 如果总数大于0但当前页没有数据，可能是分页问题
-                            showMessage('当前页没有数据，但数据库中共有 ' + response.total + ' 条记录', 'error');
+                            showMessage('加载成功', 'success');
+                        } else if (currentPage > 0) {
+                            // 当前页没有数据（数据已被删除或总数为估算值），可以返回首页
+                            showMessage('当前页没有数据，请返回首页', 'error');
                             table.style.display = 'block';
                         } else {
                             showMessage('数据库中没有数据，请先添加客户', 'error');
@@ -578,13 +622,13 @@ function updatePaginationInfo() {
     const lastBtn = document.getElementById('lastBtn');
     
     if (paginationInfo) {
-        const start = totalElements > 0 ? currentPage * pageSize + 1 : 0;
-        const end = Math.min((currentPage + 1) * pageSize, totalElements);
-        paginationInfo.textContent = `显示第 ${start}-${end} 条，共 ${totalElements} 条记录`;
+        const start = currentRowCount() > 0 ? currentPage * pageSize + 1 : 0;
+        const end = hasNextPage ? (currentPage + 1) * pageSize : currentPage * pageSize + currentRowCount();
+        paginationInfo.textContent = `显示第 ${start}-${end} 条，共 ${totalLabel} 条记录`;
     }
     
     if (pageInfo) {
-        pageInfo.textContent = `第 ${currentPage + 1} 页 / 共 ${totalPages || 1} 页`;
+        pageInfo.textContent = `第 ${currentPage + 1} 页 / 共 ${Math.max(totalPages, currentPage + 1)} 页`;
     }
     
     // 更新首页按钮状态（不使用disabled属性，只用样式，确保onclick可以触发）
@@ -617,7 +661,7 @@ function updatePaginationInfo() {
     
     // 更新下一页按钮状态
     if (nextBtn) {
-        const isDisabled = currentPage >= totalPages - 1;
+        const isDisabled = !hasNextPage;
         if (isDisabled) {
             nextBtn.style.opacity = '0.5';
             nextBtn.style.cursor = 'not-allowed';
@@ -631,7 +675,7 @@ function updatePaginationInfo() {
     
     // 更新最后一页按钮状态
     if (lastBtn) {
-        const isDisabled = currentPage >= totalPages - 1;
+        const isDisabled = !hasNextPage;
         if (isDisabled) {
             lastBtn.style.opacity = '0.5';
             lastBtn.style.cursor = 'not-allowed';
@@ -644,43 +688,58 @@ function updatePaginationInfo() {
     }
 }
 
+// 当前页显示的行数
+function currentRowCount() {
+    const tableBody = document.getElementById('customerTableBody');
+    return tableBody ? tableBody.querySelectorAll('input.checkbox').length : 0;
+}
+
 // 首页
 function firstPage() {
     // 如果已经在首页，直接返回
-    if (currentPage === 0 || totalPages === 0) {
+    if (currentPage === 0) {
         return;
     }
-    loadCustomers(0, pageSize);
+    loadCustomers(0, pageSize, 'cursor=');
 }
 
-// 上一页
+// 上一页（按游标定位，回到第一页时从头查询）
 function previousPage() {
     // 如果已经在第一页，直接返回
     if (currentPage === 0) {
         return;
     }
-    loadCustomers(currentPage - 1, pageSize);
+    if (currentPage === 1 || !prevCursor) {
+        loadCustomers(currentPage - 1, pageSize, currentPage === 1 ? 'cursor=' : undefined);
+        return;
+    }
+    loadCustomers(currentPage - 1, pageSize, 'cursor=' + encodeURIComponent(prevCursor));
 }
 
-// 下一页
+// 下一页（按游标定位）
 function nextPage() {
     // 如果已经在最后一页，直接返回
-    if (totalPages === 0 || currentPage >= totalPages - 1) {
+    if (!hasNextPage) {
+        return;
+    }
+    if (!nextCursor) {
+        loadCustomers(currentPage + 1, pageSize, undefined);
         return;
     }
-    loadCustomers(currentPage + 1, pageSize);
+    loadCustomers(currentPage + 1, pageSize, 'cursor=' + encodeURIComponent(nextCursor));
 }
 
-// 最后一页
+// 最后一页（取id最大的一页，不使用大偏移量）
 function lastPage() {
     // 如果没有数据或已经在最后一页，直接返回
-    if (totalPages === 0 || currentPage >= totalPages - 1) {
+    if (!hasNextPage) {
         return;
     }
-    loadCustomers(totalPages - 1, pageSize);
+    // 总数可能是估算值，页码按估算值显示，数据按id定位到真正的最后一页
+    loadCustomers(Math.max(totalPages - 1, currentPage + 1), pageSize, LAST_PAGE_QUERY);
 }
 
-// 跳转到指定页
+// 跳转到指定页（页码分页）
 function goToPage(page) {
     if (page >= 0 && page < totalPages) {
         loadCustomers(page, pageSize);
@@ -692,6 +751,7 @@ function changePageSize() {
     const sizeSelect = document.getElementById('pageSizeSelect');
     if (sizeSelect) {
         pageSize = parseInt(sizeSelect.value);
+        totalPages = Math.ceil(totalElements / pageSize);
         loadCustomers(0, pageSize);
     }
 }
@@ -702,6 +762,7 @@ function searchCustomers() {
     if (searchInput) {
         searchKeyword = searchInput.value.trim();
         loadCustomers(0, pageSize);
+        loadTotalCount();
     }
 }
 
@@ -712,6 +773,7 @@ function clearSearch() {
         searchInput.value = '';
         searchKeyword = '';
         loadCustomers(0, pageSize);
+        loadTotalCount();
     }
 }
 
@@ -720,7 +782,7 @@ function updateStats() {
     // 更新总客户数
     const totalCountEl = document.getElementById('totalCount');
     if (totalCountEl) {
-        totalCountEl.textContent = totalElements;
+        totalCountEl.textContent = totalLabel;
     }
     
     // 更新当前页显示数
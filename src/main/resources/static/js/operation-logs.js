@@ -197,6 +197,7 @@ function displayLogs(logs) {
             'EXPORT': '导出',
             'SEARCH': '搜索',
             'ADVANCED_SEARCH': '高级搜索',
+            'BATCH_QUERY': '批量查询',
             'LOGIN': '登录',
             'LOGOUT': '登出',
             'BACKUP': '备份',
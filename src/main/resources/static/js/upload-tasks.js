@@ -77,12 +77,24 @@ function displayTasks(tasks) {
         html += '<td>' + escapeHtml(task.fileName || '') + '</td>';
         html += '<td>' + (task.totalCount || 0) + '</td>';
         html += '<td>' + (task.addedCount || 0) + '</td>';
-        html += '<td>' + (task.existingCount || 0) + '</td>';
+        let existingText = String(task.existingCount || 0);
+        if (task.importMode === 'MERGE') {
+            existingText += '<br><span style="color: #999; font-size: 12px;">更新 ' + (task.updatedCount || 0) + ' / 无变化 ' + (task.unchangedCount || 0) + '</span>';
+        }
+        html += '<td>' + existingText + '</td>';
         html += '<td><span class="status-badge ' + statusClass + '">' + escapeHtml(task.status || '处理中') + '</span></td>';
         html += '<td>' + uploadTime + '</td>';
         html += '<td>' + completeTime + '</td>';
         html += '<td>';
+        if (task.rejectedCount > 0) {
+            html += '<a href="' + API_BASE_URL + '/' + task.id + '/rejects" class="btn btn-secondary btn-sm" title="下载被拒绝的行（含原始行号和原因）">⬇ 拒绝行(' + task.rejectedCount + ')</a> ';
+        }
         if (isAdmin()) {
+            if (task.status === '回滚中') {
+                html += '<span style="color: #faad14;">回滚中 ' + (task.revertedCount || 0) + '</span> ';
+            } else if (task.status !== '已回滚' && task.status !== '处理中') {
+                html += '<button onclick="revertTask(' + task.id + ')" class="btn btn-warning btn-sm">↺ 回滚导入</button> ';
+            }
             html += '<button onclick="deleteTask(' + task.id + ')" class="btn btn-danger btn-sm">× 删除</button>';
         } else {
             html += '<span style="color: #999;">只读模式</span>';
@@ -98,6 +110,11 @@ function displayTasks(tasks) {
     tbody.innerHTML = html;
     tableEl.style.display = 'block';
     
+    // 有任务正在回滚时自动刷新进度
+    if (tasks.some(function(task) { return task.status === '回滚中'; })) {
+        startRevertPolling();
+    }
+    
     // 加载备注
     tasks.forEach(function(task) {
         loadTaskRemark(task.id);
@@ -108,8 +125,10 @@ function displayTasks(tasks) {
 function getStatusClass(status) {
     if (status === '添加完成') {
         return 'status-complete';
-    } else if (status === '处理失败') {
+    } else if (status === '处理失败' || status === '回滚失败') {
         return 'status-failed';
+    } else if (status === '回滚中') {
+        return 'status-processing status-reverting';
     } else {
         return 'status-processing';
     }
@@ -200,6 +219,58 @@ function deleteTask(id) {
     xhr.send();
 }
 
+// 回滚导入（删除该任务导入的所有客户）
+function revertTask(id) {
+    if (!isAdmin()) {
+        showMessage('权限不足，只有管理员可以回滚导入', 'error');
+        return;
+    }
+    
+    if (!confirm('确定要回滚这个导入任务吗？该任务导入的所有客户及其备注都将被删除，且不可恢复。')) {
+        return;
+    }
+    
+    const xhr = new XMLHttpRequest();
+    xhr.open('POST', API_BASE_URL + '/' + id + '/revert', true);
+    xhr.setRequestHeader('Content-Type', 'application/json');
+    xhr.withCredentials = true;
+    
+    xhr.onreadystatechange = function() {
+        if (xhr.readyState === 4) {
+            try {
+                const response = JSON.parse(xhr.responseText);
+                if (xhr.status === 200 && response.success) {
+                    showMessage(response.message, 'success');
+                    loadTasks();
+                    startRevertPolling();
+                } else {
+                    showMessage('回滚失败: ' + response.message, 'error');
+                }
+            } catch (e) {
+                showMessage('回滚失败，状态码: ' + xhr.status, 'error');
+            }
+        }
+    };
+    
+    xhr.send();
+}
+
+// 回滚进行中时定时刷新列表，显示删除进度
+var revertPollingTimer = null;
+function startRevertPolling() {
+    if (revertPollingTimer) {
+        return;
+    }
+    revertPollingTimer = setInterval(function() {
+        if (!document.querySelector('#taskTableBody .status-reverting')) {
+            clearInterval(revertPollingTimer);
+            revertPollingTimer = null;
+            return;
+        }
+        loadTasks();
+    }, 3000);
+}
+
 // 批量删除任务
 function batchDeleteTasks() {
     if (!isAdmin()) {
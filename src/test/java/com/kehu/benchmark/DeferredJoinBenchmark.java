@@ -0,0 +1,233 @@
+package com.kehu.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 偏移分页：直接 LIMIT/OFFSET 取整行 与 延迟关联（先取id，再 WHERE id IN 取整行）的对比
+ * 在独立的 bench_customers 表上生成数据（列和索引同 customers 表），表已有足够数据时直接复用；
+ * depth 为偏移量占总行数（按任务过滤时为该任务行数）的比例
+ *
+ * 运行（默认H2文件库 target/bench、1000万行，数据在多次运行间复用）：
+ * mvn -B test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.kehu.benchmark.DeferredJoinBenchmark
+ * 指定MySQL和行数：
+ * -Dbench.jdbc.url=jdbc:mysql://localhost:3306/bench?rewriteBatchedStatements=true -Dbench.jdbc.user=root
+ * -Dbench.jdbc.password=xxx -Dbench.rows=10000000
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class DeferredJoinBenchmark {
+
+    private static final String COLUMNS = "id, name, phone, email, address, upload_task_id, create_time, update_time";
+
+    // 生成数据时的任务数（每个任务的行数 = 总行数 / 任务数）
+    private static final int TASK_COUNT = 10;
+
+    private static final int INSERT_BATCH_SIZE = 10000;
+
+    @Param({"0.01", "0.5", "0.99"})
+    public double depth;
+
+    @Param({"false", "true"})
+    public boolean filtered;
+
+    @Param({"20"})
+    public int pageSize;
+
+    private Connection connection;
+    private PreparedStatement directQuery;
+    private PreparedStatement idQuery;
+    private PreparedStatement rowsByIdQuery;
+    private long offset;
+    private long taskId;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        String url = System.getProperty("bench.jdbc.url", "jdbc:h2:./target/bench/customers;MODE=MySQL;OPTIMIZE_REUSE_RESULTS=FALSE");
+        long rows = Long.getLong("bench.rows", 10_000_000L);
+        connection = DriverManager.getConnection(url,
+            System.getProperty("bench.jdbc.user", "sa"), System.getProperty("bench.jdbc.password", ""));
+        prepareTable(rows);
+
+        String where = filtered ? " WHERE upload_task_id = ?" : "";
+        directQuery = connection.prepareStatement(
+            "SELECT " + COLUMNS + " FROM bench_customers" + where + " ORDER BY id LIMIT ? OFFSET ?");
+        idQuery = connection.prepareStatement(
+            "SELECT id FROM bench_customers" + where + " ORDER BY id LIMIT ? OFFSET ?");
+        StringBuilder in = new StringBuilder();
+        for (int i = 0; i < pageSize; i++) {
+            in.append(i == 0 ? "?" : ", ?");
+        }
+        rowsByIdQuery = connection.prepareStatement(
+            "SELECT " + COLUMNS + " FROM bench_customers WHERE id IN (" + in + ") ORDER BY id");
+
+        taskId = TASK_COUNT / 2;
+        long scope = filtered ? rows / TASK_COUNT : rows;
+        offset = Math.min((long) (scope * depth), Math.max(0, scope - pageSize));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    /**
+     * 直接分页：数据库要为被跳过的每一行读取整行
+     */
+    @Benchmark
+    public int direct() throws SQLException {
+        int i = bindFilter(directQuery);
+        directQuery.setInt(i++, pageSize);
+        directQuery.setLong(i, offset);
+        int count = 0;
+        try (ResultSet rs = directQuery.executeQuery()) {
+            while (rs.next()) {
+                count += consume(rs);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 延迟关联：跳过的行只扫描索引，只为当前页的行回表
+     */
+    @Benchmark
+    public int deferredJoin() throws SQLException {
+        int i = bindFilter(idQuery);
+        idQuery.setInt(i++, pageSize);
+        idQuery.setLong(i, offset);
+        List<Long> ids = new ArrayList<>(pageSize);
+        try (ResultSet rs = idQuery.executeQuery()) {
+            while (rs.next()) {
+                ids.add(rs.getLong(1));
+            }
+        }
+        // IN 的占位符个数固定为 pageSize，不足时用最后一个id补齐
+        for (int p = 0; p < pageSize; p++) {
+            rowsByIdQuery.setLong(p + 1, ids.isEmpty() ? -1L : ids.get(Math.min(p, ids.size() - 1)));
+        }
+        int count = 0;
+        try (ResultSet rs = rowsByIdQuery.executeQuery()) {
+            while (rs.next()) {
+                count += consume(rs);
+            }
+        }
+        return count;
+    }
+
+    private int bindFilter(PreparedStatement statement) throws SQLException {
+        if (filtered) {
+            statement.setLong(1, taskId);
+            return 2;
+        }
+        return 1;
+    }
+
+    private static int consume(ResultSet rs) throws SQLException {
+        return (int) rs.getLong(1) + rs.getString(2).length() + rs.getString(5).length();
+    }
+
+    /**
+     * 建表并生成数据（表中已是指定行数时直接复用）
+     */
+    private void prepareTable(long rows) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM bench_customers")) {
+                rs.next();
+                if (rs.getLong(1) == rows) {
+                    return;
+                }
+            } catch (SQLException e) {
+                // 表不存在
+            }
+            statement.execute("DROP TABLE IF EXISTS bench_customers");
+            statement.execute("CREATE TABLE bench_customers (" +
+                "id BIGINT NOT NULL AUTO_INCREMENT, " +
+                "name VARCHAR(100) NOT NULL, " +
+                "phone VARCHAR(20), " +
+                "email VARCHAR(100), " +
+                "address VARCHAR(200), " +
+                "upload_task_id BIGINT, " +
+                "create_time DATETIME, " +
+                "update_time DATETIME, " +
+                "PRIMARY KEY (id))");
+            // 先灌数据再建索引，生成速度快得多
+            insertRows(rows);
+            statement.execute("CREATE INDEX idx_bench_upload_task_id ON bench_customers (upload_task_id)");
+            statement.execute("CREATE INDEX idx_bench_create_time ON bench_customers (create_time)");
+        }
+    }
+
+    private void insertRows(long rows) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        long baseTime = System.currentTimeMillis() - rows * 1000;
+        try (PreparedStatement insert = connection.prepareStatement(
+            "INSERT INTO bench_customers (name, phone, email, address, upload_task_id, create_time, update_time) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            for (long i = 1; i <= rows; i++) {
+                Timestamp time = new Timestamp(baseTime + i * 1000);
+                insert.setString(1, "客户" + i);
+                insert.setString(2, Long.toString(13000000000L + i));
+                insert.setString(3, "customer" + i + "@example.com");
+                insert.setString(4, "北京市朝阳区建国路" + (i % 1000) + "号" + (i % 97) + "室");
+                // 按行号分段分配任务，同一任务的行id连续（与实际导入一致）
+                insert.setLong(5, (i - 1) * TASK_COUNT / rows);
+                insert.setTimestamp(6, time);
+                insert.setTimestamp(7, time);
+                insert.addBatch();
+                if (i % INSERT_BATCH_SIZE == 0) {
+                    insert.executeBatch();
+                    connection.commit();
+                }
+            }
+            insert.executeBatch();
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        // 把 bench.* 系统属性传给fork出的JVM
+        List<String> jvmArgs = new ArrayList<>();
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("bench.")) {
+                jvmArgs.add("-D" + name + "=" + System.getProperty(name));
+            }
+        }
+        new Runner(new OptionsBuilder()
+            .include(DeferredJoinBenchmark.class.getSimpleName())
+            .jvmArgsAppend(jvmArgs.toArray(new String[0]))
+            .build()).run();
+    }
+}
@@ -0,0 +1,79 @@
+package com.kehu.benchmark;
+
+import com.kehu.util.PhoneDigitIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 电话片段查询：内存片段索引 与 逐行比较字符串（相当于 phone LIKE '%片段%' 全表扫描，不含数据库IO）的对比
+ * 随机生成手机号，fragment 为查询片段（尾号4位、6位，中间3位）
+ *
+ * 运行（默认100万个号码）：
+ * mvn -B test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.kehu.benchmark.PhoneDigitIndexBenchmark
+ * 指定号码数：-Dbench.rows=10000000（需要相应调大 -Xmx）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class PhoneDigitIndexBenchmark {
+
+    @Param({"5678", "345678", "888"})
+    public String fragment;
+
+    private String[] phones;
+    private PhoneDigitIndex index;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        int rows = Integer.getInteger("bench.rows", 1_000_000);
+        Random random = new Random(42);
+        phones = new String[rows];
+        index = new PhoneDigitIndex(rows);
+        for (int i = 0; i < rows; i++) {
+            phones[i] = Long.toString(13000000000L + (long) (random.nextDouble() * 9000000000L));
+            index.put(i + 1, phones[i]);
+        }
+    }
+
+    @Benchmark
+    public int index() {
+        return index.find(fragment).length;
+    }
+
+    @Benchmark
+    public int scan() {
+        int count = 0;
+        for (String phone : phones) {
+            if (phone.contains(fragment)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(PhoneDigitIndexBenchmark.class.getSimpleName())
+            .jvmArgsAppend("-Dbench.rows=" + Integer.getInteger("bench.rows", 1_000_000))
+            .build()).run();
+    }
+}
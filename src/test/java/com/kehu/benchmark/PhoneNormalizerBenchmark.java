@@ -0,0 +1,118 @@
+package com.kehu.benchmark;
+
+import com.kehu.util.PhoneNormalizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 电话规范化吞吐量基准（单线程，结果为每秒处理的号码数）
+ * 运行：mvn -B test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.kehu.benchmark.PhoneNormalizerBenchmark
+ * 或在IDE中直接运行 main 方法
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PhoneNormalizerBenchmark {
+
+    private static final int SIZE = 1024;
+
+    private String[] phones;
+    private byte[] bytes;
+    private int[] offsets;
+
+    @Setup
+    public void setup() {
+        // 混合常见的写法：纯数字、带空格、带横线、带国家码、固话、无效值
+        String[] formats = {"%s", "%s %s %s", "%s-%s-%s", "+86 %s", "0086-%s", "86%s"};
+        Random random = new Random(42);
+        phones = new String[SIZE];
+        StringBuilder all = new StringBuilder();
+        offsets = new int[SIZE + 1];
+        for (int i = 0; i < SIZE; i++) {
+            String mobile = "13" + (100000000 + random.nextInt(900000000));
+            String phone;
+            switch (i % 8) {
+                case 6:
+                    phone = "010-" + (20000000 + random.nextInt(70000000));
+                    break;
+                case 7:
+                    phone = "not a phone";
+                    break;
+                default:
+                    String format = formats[i % formats.length];
+                    phone = format.contains("%s %s %s") || format.contains("%s-%s-%s")
+                        ? String.format(format, mobile.substring(0, 3), mobile.substring(3, 7), mobile.substring(7))
+                        : String.format(format, mobile);
+            }
+            phones[i] = phone;
+            offsets[i] = all.length();
+            all.append(phone);
+        }
+        offsets[SIZE] = all.length();
+        bytes = all.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public long normalizeCharSequence() {
+        long sum = 0;
+        for (String phone : phones) {
+            sum += PhoneNormalizer.normalize(phone);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public long normalizeBytes() {
+        long sum = 0;
+        for (int i = 0; i < SIZE; i++) {
+            sum += PhoneNormalizer.normalize(bytes, offsets[i], offsets[i + 1]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int regexBaseline() {
+        // 对照：正则去分隔符 + 截取国家码（原先常见的写法）
+        int valid = 0;
+        for (String phone : phones) {
+            String digits = phone.replaceAll("[\\s\\-()]", "");
+            if (digits.startsWith("+86")) {
+                digits = digits.substring(3);
+            } else if (digits.startsWith("0086")) {
+                digits = digits.substring(4);
+            }
+            if (digits.matches("1[3-9]\\d{9}|0\\d{9,11}")) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(PhoneNormalizerBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+}
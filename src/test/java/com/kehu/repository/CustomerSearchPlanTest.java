@@ -0,0 +1,223 @@
+package com.kehu.repository;
+
+import com.kehu.entity.Customer;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 高级搜索的执行计划：每种过滤条件组合生成的 SQL（取一页id、键集分页取id、计数）都要用上对应的索引
+ * 记录 Hibernate 实际执行的 SQL 和参数，再用 EXPLAIN 查看执行计划（H2 看计划文本中的索引名，MySQL 看 key 列）。
+ * 只有包含匹配（LIKE '%x%'）的条件无法使用索引，不在这里检查；
+ * 范围条件（时间段、按开头匹配）的键集分页按id排序取前N条，优化器也可能沿主键顺序扫描，两种计划都接受
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class CustomerSearchPlanTest {
+
+    private static final long TASK_BASE = 900000L;
+    private static final int ROWS = 5000;
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2001, 1, 1, 0, 0);
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    public void insertRows() {
+        List<Object[]> args = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            Timestamp time = Timestamp.valueOf(BASE_TIME.plusMinutes(i));
+            args.add(new Object[]{"计划" + i, Long.toString(15000000000L + i), "plan" + i + "@example.com",
+                "测试地址" + i, TASK_BASE + i % 50, time, time});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO customers (name, phone, email, address, upload_task_id, create_time, update_time) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)", args);
+        // 更新统计信息，让优化器按实际数据分布选择索引
+        for (String analyze : new String[]{"ANALYZE TABLE customers", "ANALYZE"}) {
+            try {
+                jdbcTemplate.execute(analyze);
+                break;
+            } catch (Exception e) {
+                // 不同数据库语法不同
+            }
+        }
+    }
+
+    @AfterAll
+    public void deleteRows() {
+        jdbcTemplate.update("DELETE FROM customers WHERE upload_task_id BETWEEN ? AND ?", TASK_BASE, TASK_BASE + 49);
+    }
+
+    @Test
+    public void uploadTaskUsesTaskIndex() throws SQLException {
+        assertUsesIndex("idx_upload_task_id_id", true, spec(null, null, null, null, null, null, TASK_BASE + 7, false));
+        assertUsesIndex("idx_upload_task_id_id", true, spec("计划", null, null, null, null, null, TASK_BASE + 7, false));
+    }
+
+    @Test
+    public void createTimeRangeUsesTimeIndex() throws SQLException {
+        LocalDateTime from = BASE_TIME.plusMinutes(100);
+        LocalDateTime to = BASE_TIME.plusMinutes(150);
+        assertUsesIndex("idx_create_time_id", false, spec(null, null, null, null, from, to, null, false));
+        assertUsesIndex("idx_create_time_id", false, spec(null, null, null, null, from, null, null, false));
+        assertUsesIndex("idx_create_time_id", false, spec(null, null, null, "地址", from, to, null, false));
+    }
+
+    @Test
+    public void prefixMatchUsesColumnIndex() throws SQLException {
+        assertUsesIndex("idx_name", false, spec("计划12", null, null, null, null, null, null, true));
+        assertUsesIndex("idx_phone", false, spec(null, "1500000", null, null, null, null, null, true));
+        assertUsesIndex("idx_email", false, spec(null, null, "plan12", null, null, null, null, true));
+    }
+
+    private static Specification<Customer> spec(String name, String phone, String email, String address,
+                                                LocalDateTime startTime, LocalDateTime endTime, Long uploadTaskId,
+                                                boolean prefix) {
+        return CustomerSpecifications.advancedSearch(name, phone, email, address, startTime, endTime, uploadTaskId, prefix);
+    }
+
+    /**
+     * 取一页id、键集分页取id、计数三种查询都要用到该索引
+     * @param equality 是否为等值条件（否则键集分页也接受沿主键顺序扫描）
+     */
+    private void assertUsesIndex(String index, boolean equality, Specification<Customer> spec) throws SQLException {
+        String[] seekIndexes = equality ? new String[]{index} : new String[]{index, "primary"};
+        assertPlan(repository -> repository.findIds(spec, PageRequest.of(2, 20)), index);
+        assertPlan(repository -> repository.findIds(
+            spec.and(CustomerSpecifications.idGreaterThan(10L)), Sort.Direction.ASC, 21), seekIndexes);
+        assertPlan(repository -> repository.findIds(
+            spec.and(CustomerSpecifications.idLessThan(Long.MAX_VALUE)), Sort.Direction.DESC, 21), seekIndexes);
+        assertPlan(repository -> new SimpleJpaRepository<>(Customer.class, repository.entityManager).count(spec), index);
+    }
+
+    private void assertPlan(Consumer<PlanRepository> query, String... indexes) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            List<Object[]> statements = new ArrayList<>();
+            Connection recording = recordingConnection(connection, statements);
+            SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+            try (Session session = sessionFactory.withOptions().connection(recording).openSession()) {
+                query.accept(new PlanRepository(session));
+            }
+            assertFalse(statements.isEmpty(), "没有执行SQL");
+            for (Object[] statement : statements) {
+                String sql = (String) statement[0];
+                @SuppressWarnings("unchecked")
+                Map<Integer, Object> parameters = (Map<Integer, Object>) statement[1];
+                String plan = explain(connection, sql, parameters).toLowerCase();
+                boolean used = false;
+                for (String index : indexes) {
+                    used |= plan.contains(index.toLowerCase());
+                }
+                assertTrue(used, "未使用索引 " + String.join("/", indexes) + "\nSQL: " + sql + "\n执行计划: " + plan);
+            }
+        }
+    }
+
+    /**
+     * EXPLAIN 结果：有 key 列（MySQL）时取各行的 key，否则取计划文本（H2）
+     */
+    private static String explain(Connection connection, String sql, Map<Integer, Object> parameters) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+            for (Map.Entry<Integer, Object> parameter : parameters.entrySet()) {
+                statement.setObject(parameter.getKey(), parameter.getValue());
+            }
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rs = statement.executeQuery()) {
+                ResultSetMetaData meta = rs.getMetaData();
+                int keyColumn = 0;
+                for (int i = 1; i <= meta.getColumnCount(); i++) {
+                    if ("key".equalsIgnoreCase(meta.getColumnLabel(i))) {
+                        keyColumn = i;
+                    }
+                }
+                while (rs.next()) {
+                    plan.append(rs.getString(keyColumn > 0 ? keyColumn : 1)).append('\n');
+                }
+            }
+            return plan.toString();
+        }
+    }
+
+    /**
+     * 记录执行的查询SQL和绑定参数
+     */
+    private static Connection recordingConnection(Connection target, List<Object[]> statements) {
+        return (Connection) Proxy.newProxyInstance(CustomerSearchPlanTest.class.getClassLoader(),
+            new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                Object result = invoke(target, method, args);
+                if (method.getName().equals("prepareStatement") && result instanceof PreparedStatement) {
+                    String sql = (String) args[0];
+                    Map<Integer, Object> parameters = new TreeMap<>();
+                    PreparedStatement statement = (PreparedStatement) result;
+                    return Proxy.newProxyInstance(CustomerSearchPlanTest.class.getClassLoader(),
+                        new Class<?>[]{PreparedStatement.class}, (p, m, a) -> {
+                            if (m.getName().startsWith("set") && a != null && a.length >= 2 && a[0] instanceof Integer) {
+                                parameters.put((Integer) a[0], a[1]);
+                            } else if (m.getName().equals("executeQuery")) {
+                                statements.add(new Object[]{sql, new TreeMap<>(parameters)});
+                            }
+                            return invoke(statement, m, a);
+                        });
+                }
+                return result;
+            });
+    }
+
+    private static Object invoke(Object target, java.lang.reflect.Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 使用记录连接的会话执行查询
+     */
+    private static class PlanRepository extends CustomerRepositoryImpl {
+        private final Session entityManager;
+
+        PlanRepository(Session session) {
+            super(session);
+            this.entityManager = session;
+        }
+    }
+}
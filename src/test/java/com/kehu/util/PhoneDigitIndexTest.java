@@ -0,0 +1,158 @@
+package com.kehu.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PhoneDigitIndex单元测试（结果与按字符串逐个比较一致，反复修改后列表不增长）
+ */
+public class PhoneDigitIndexTest {
+
+    @Test
+    public void testFind() {
+        PhoneDigitIndex index = new PhoneDigitIndex();
+        index.put(1, "13800138001");
+        index.put(2, "01062345678");
+        index.put(3, "12");
+        index.put(4, "分机 8001");
+        index.put(5, null);
+
+        assertArrayEquals(new long[]{1, 4}, index.find("8001"));
+        assertArrayEquals(new long[]{2}, index.find("0106"));
+        assertArrayEquals(new long[]{1, 2, 3, 4}, index.find("1"));
+        assertArrayEquals(new long[]{3}, index.find("12"));
+        assertArrayEquals(new long[0], index.find("999"));
+        assertArrayEquals(new long[]{4}, index.find("分机"));
+        assertThrows(IllegalArgumentException.class, () -> index.find(""));
+    }
+
+    @Test
+    public void testChangeAndRemove() {
+        PhoneDigitIndex index = new PhoneDigitIndex();
+        index.put(1, "13800138001");
+        index.put(2, "13912345678");
+
+        index.put(1, "15000000000");
+        assertArrayEquals(new long[0], index.find("8001"));
+        assertArrayEquals(new long[]{1}, index.find("500"));
+
+        // 改成无法按数字存放的电话，再改回
+        index.put(1, "138-0013-8001");
+        assertArrayEquals(new long[]{1}, index.find("0013"));
+        assertArrayEquals(new long[0], index.find("500"));
+        index.put(1, "13800138001");
+        assertArrayEquals(new long[]{1}, index.find("0013"));
+        assertEquals(0, index.irregularSize());
+
+        index.remove(2);
+        assertArrayEquals(new long[0], index.find("1234"));
+        index.put(2, "13912345678");
+        assertArrayEquals(new long[]{2}, index.find("1234"));
+
+        // id 小于已有最大id
+        index.put(0, "13700000000");
+        assertArrayEquals(new long[]{0}, index.find("137"));
+        assertEquals(1, index.irregularSize());
+    }
+
+    @Test
+    public void testRepeatedChangesDoNotGrowPostings() {
+        PhoneDigitIndex index = new PhoneDigitIndex();
+        for (int id = 1; id <= 100; id++) {
+            index.put(id, String.format("139%08d", id));
+        }
+        long initial = index.postingCount();
+        for (int i = 0; i < 10000; i++) {
+            index.put(1, i % 2 == 0 ? "15812345678" : "13900000001");
+            index.remove(2);
+            index.put(2, "13900000002");
+        }
+        assertTrue(index.postingCount() <= initial * 2, "postings=" + index.postingCount() + ", initial=" + initial);
+        assertArrayEquals(new long[]{1}, index.find("13900000001"));
+        assertArrayEquals(new long[]{2}, index.find("13900000002"));
+        assertEquals(100, index.size());
+    }
+
+    @Test
+    public void testRandomOperationsMatchStringContains() {
+        Random random = new Random(42);
+        PhoneDigitIndex index = new PhoneDigitIndex(16);
+        Map<Long, String> expected = new TreeMap<>();
+        // 先按id顺序写入，之后的修改都在已有槽位上
+        for (long id = 1; id <= 300; id++) {
+            String phone = randomPhone(random);
+            index.put(id, phone);
+            if (phone != null) {
+                expected.put(id, phone);
+            }
+        }
+        for (int op = 0; op < 20000; op++) {
+            long id = 1 + random.nextInt(300);
+            int kind = random.nextInt(10);
+            if (kind == 0) {
+                index.remove(id);
+                expected.remove(id);
+            } else {
+                String phone = randomPhone(random);
+                index.put(id, phone);
+                if (phone != null) {
+                    expected.put(id, phone);
+                } else {
+                    expected.remove(id);
+                }
+            }
+            if (op % 500 == 0) {
+                assertFindMatches(index, expected, random);
+            }
+        }
+        assertFindMatches(index, expected, random);
+    }
+
+    private static void assertFindMatches(PhoneDigitIndex index, Map<Long, String> expected, Random random) {
+        for (int i = 0; i < 50; i++) {
+            String fragment = randomDigits(random, 1 + random.nextInt(5));
+            List<Long> ids = new ArrayList<>();
+            for (Map.Entry<Long, String> entry : expected.entrySet()) {
+                if (entry.getValue().contains(fragment)) {
+                    ids.add(entry.getKey());
+                }
+            }
+            long[] actual = index.find(fragment);
+            assertEquals(ids.size(), actual.length, fragment);
+            for (int j = 0; j < actual.length; j++) {
+                assertEquals(ids.get(j).longValue(), actual[j], fragment);
+            }
+        }
+    }
+
+    /**
+     * 号码取自少量前缀，片段容易命中；偶尔为空、过短或含非数字字符
+     */
+    private static String randomPhone(Random random) {
+        switch (random.nextInt(20)) {
+            case 0:
+                return null;
+            case 1:
+                return randomDigits(random, 2);
+            case 2:
+                return "138-" + randomDigits(random, 4);
+            default:
+                return "13" + randomDigits(random, 1) + randomDigits(random, 3 + random.nextInt(6));
+        }
+    }
+
+    private static String randomDigits(Random random, int length) {
+        StringBuilder digits = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            digits.append((char) ('0' + random.nextInt(4)));
+        }
+        return digits.toString();
+    }
+}
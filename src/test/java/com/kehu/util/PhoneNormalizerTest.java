@@ -0,0 +1,127 @@
+package com.kehu.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.NullAndEmptySource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PhoneNormalizer单元测试（字符和 UTF-8 字节两种输入的结果必须一致）
+ */
+public class PhoneNormalizerTest {
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+        // 手机号
+        "13800138001                | 13800138001",
+        "138 0013 8001              | 13800138001",
+        "138-0013-8001              | 13800138001",
+        "(138)0013.8001             | 13800138001",
+        "013800138001               | 13800138001",
+        "19912345678                | 19912345678",
+        // 国家码
+        "+8613800138001             | 13800138001",
+        "+86 138 0013 8001          | 13800138001",
+        "008613800138001            | 13800138001",
+        "0086-138-0013-8001         | 13800138001",
+        "8613800138001              | 13800138001",
+        // 固话
+        "010-62345678               | 1062345678",
+        "(010)62345678              | 1062345678",
+        "0755-2345678               | 7552345678",
+        "0571-88888888              | 57188888888",
+        "+86 10 62345678            | 1062345678",
+        "+86 (0)10 62345678         | 1062345678",
+        "0086 755 2345678           | 7552345678",
+        // 全角数字、全角符号
+        "１３８００１３８００１      | 13800138001",
+        "＋８６　１３８　００１３　８００１ | 13800138001",
+        "（０１０）６２３４５６７８  | 1062345678",
+        "０１０－６２３４５６７８    | 1062345678"
+    })
+    public void testNormalizeValid(String input, long expected) {
+        assertEquals(expected, PhoneNormalizer.normalize(input), input);
+        byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+        assertEquals(expected, PhoneNormalizer.normalize(bytes, 0, bytes.length), input + "（字节）");
+        assertTrue(PhoneNormalizer.isValid(input));
+    }
+
+    @ParameterizedTest
+    @NullAndEmptySource
+    @ValueSource(strings = {
+        " ",
+        "abc",
+        "12345",
+        "0000",
+        // 无效号段
+        "12000138001",
+        "10012345678",
+        // 号码不能以0、1开头；2位区号的号码必须是8位
+        "010-12345678",
+        "021-2345678",
+        // 位数不对
+        "1380013800",
+        "138001380011",
+        "13800138001234567",
+        // 国家码不是86、+后面跟0、多余的前导0
+        "+8513800138001",
+        "+0086 13800138001",
+        "00013800138001",
+        "+86",
+        // 非法字符
+        "138 0013 8001 转 1",
+        "138x0013x8001",
+        "1380013800１a",
+        "+138+00138001"
+    })
+    public void testNormalizeInvalid(String input) {
+        assertEquals(PhoneNormalizer.INVALID, PhoneNormalizer.normalize(input), String.valueOf(input));
+        if (input != null) {
+            byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+            assertEquals(PhoneNormalizer.INVALID, PhoneNormalizer.normalize(bytes, 0, bytes.length), input + "（字节）");
+        }
+    }
+
+    @Test
+    public void testNormalizeByteRange() {
+        byte[] line = "张三,138 0013 8001,北京".getBytes(StandardCharsets.UTF_8);
+        int from = "张三,".getBytes(StandardCharsets.UTF_8).length;
+        int to = from + "138 0013 8001".length();
+        assertEquals(13800138001L, PhoneNormalizer.normalize(line, from, to));
+        assertEquals(PhoneNormalizer.INVALID, PhoneNormalizer.normalize(line, 0, to));
+
+        String text = "张三,010-62345678,北京";
+        assertEquals(1062345678L, PhoneNormalizer.normalize(text, 3, 15));
+    }
+
+    @Test
+    public void testFormat() {
+        assertEquals("13800138001", PhoneNormalizer.format(13800138001L));
+        assertEquals("01062345678", PhoneNormalizer.format(1062345678L));
+        assertEquals("07552345678", PhoneNormalizer.format(7552345678L));
+        assertTrue(PhoneNormalizer.isMobile(13800138001L));
+        assertFalse(PhoneNormalizer.isMobile(1062345678L));
+        assertThrows(IllegalArgumentException.class, () -> PhoneNormalizer.format(PhoneNormalizer.INVALID));
+    }
+
+    @Test
+    public void testCanonicalOrTrim() {
+        assertEquals("13800138001", PhoneNormalizer.canonicalOrTrim(" 138 0013 8001 "));
+        assertEquals("13800138001", PhoneNormalizer.canonicalOrTrim("+86 13800138001"));
+        assertEquals("01062345678", PhoneNormalizer.canonicalOrTrim("(010) 6234-5678"));
+        // 已是规范形式时返回原对象
+        String canonical = "13800138001";
+        assertSame(canonical, PhoneNormalizer.canonicalOrTrim(canonical));
+        // 无法识别的保留原值（去掉首尾空白），空白返回null
+        assertEquals("8001", PhoneNormalizer.canonicalOrTrim(" 8001 "));
+        assertEquals("分机 8001", PhoneNormalizer.canonicalOrTrim("分机 8001"));
+        assertNull(PhoneNormalizer.canonicalOrTrim("   "));
+        assertNull(PhoneNormalizer.canonicalOrTrim(""));
+        assertNull(PhoneNormalizer.canonicalOrTrim(null));
+    }
+}